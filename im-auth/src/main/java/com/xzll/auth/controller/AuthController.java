@@ -29,6 +29,8 @@ import jakarta.annotation.Resource;
 
 import org.redisson.api.RedissonClient;
 import org.redisson.api.RLock;
+import org.redisson.api.RTopic;
+import org.redisson.client.codec.StringCodec;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -559,6 +561,7 @@ public class AuthController {
 
                 if (!keyList.isEmpty()) {
                     redissonUtils.deleteKeys(keyList.toArray(new String[0]));
+                    publishTokenRevoked(keyList);
                     log.debug("删除用户{}端{}的旧token，共删除{}个key", userId, deviceType.getDescription(), keyList.size());
                 }
             }
@@ -583,6 +586,7 @@ public class AuthController {
 
                 if (!keyList.isEmpty()) {
                     redissonUtils.deleteKeys(keyList.toArray(new String[0]));
+                    publishTokenRevoked(keyList);
                     log.debug("登出删除用户{}端{}的token，共删除{}个key", userId, deviceType.getDescription(), keyList.size());
                     return keyList.size();
                 }
@@ -594,6 +598,21 @@ public class AuthController {
         }
     }
 
+    /**
+     * 广播被删除的token（message: tokenMd5），im-connect 收到后失效本地已验证 token 缓存
+     * 广播失败不影响登出，im-connect 本地缓存会按TTL过期
+     */
+    private void publishTokenRevoked(List<String> tokenKeys) {
+        try {
+            RTopic revokeTopic = redissonClient.getTopic(ImConstant.RedisKeyConstant.USER_TOKEN_REVOKE_TOPIC, StringCodec.INSTANCE);
+            for (String tokenKey : tokenKeys) {
+                revokeTopic.publishAsync(tokenKey.substring(tokenKey.lastIndexOf(':') + 1));
+            }
+        } catch (Exception e) {
+            log.warn("广播token吊销失败，tokenKeys: {}", tokenKeys, e);
+        }
+    }
+
     /**
      * 验证JWT格式是否有效
      */
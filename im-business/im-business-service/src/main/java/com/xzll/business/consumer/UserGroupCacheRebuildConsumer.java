@@ -3,6 +3,7 @@ package com.xzll.business.consumer;
 import cn.hutool.json.JSONUtil;
 import com.xzll.business.cluster.mq.RocketMqProducerWrap;
 import com.xzll.business.config.nacos.RocketMqConfig;
+import com.xzll.business.service.FriendGraphCacheService;
 import com.xzll.business.service.UserGroupCacheService;
 import com.xzll.common.constant.ImConstant;
 import com.xzll.common.rocketmq.ClusterEvent;
@@ -32,6 +33,7 @@ import java.util.List;
  * 2. 查询数据库，获取用户的群列表
  * 3. 写入 Redis 缓存
  * 4. 发送"缓存已更新"事件（广播到所有 im-connect）
+ * 5. 事件类型为好友关系缓存重建时，重建 friend:{userId}:ids / friend:{userId}:blocked
  */
 @Slf4j
 @Component
@@ -45,6 +47,9 @@ public class UserGroupCacheRebuildConsumer implements InitializingBean {
     @Resource
     private UserGroupCacheService userGroupCacheService;
 
+    @Resource
+    private FriendGraphCacheService friendGraphCacheService;
+
     @Resource
     private RocketMqProducerWrap rocketMqProducerWrap;
 
@@ -123,6 +128,15 @@ public class UserGroupCacheRebuildConsumer implements InitializingBean {
             String userId = rebuildMessage.getUserId();
             String reason = rebuildMessage.getReason();
 
+            // 好友关系缓存重建与群组缓存共用此 topic，按事件类型区分
+            if (clusterEvent.getClusterEventType() != null
+                    && clusterEvent.getClusterEventType() == ImConstant.ClusterEventTypeConstant.FRIEND_GRAPH_CACHE_REBUILD) {
+                friendGraphCacheService.refresh(userId);
+                log.info("{}好友关系缓存重建完成 - userId:{}, reason:{}, cost:{}ms",
+                        TAG, userId, reason, System.currentTimeMillis() - startTime);
+                return;
+            }
+
             log.info("{}【步骤1-解析成功】userId:{}, reason:{}", TAG, userId, reason);
 
             // 3. 查询数据库，获取用户的群列表
@@ -1,10 +1,9 @@
 package com.xzll.business.controller;
 
 import cn.hutool.json.JSONUtil;
-import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.google.common.collect.Lists;
-import com.xzll.business.mapper.ImUserMapper;
-import com.xzll.common.pojo.entity.ImUserDO;
+import com.xzll.business.entity.redis.UserProfileCacheEntry;
+import com.xzll.business.service.UserProfileCacheService;
 import com.xzll.common.pojo.request.BatchUserInfoAO;
 import com.xzll.common.pojo.response.BatchUserInfoVO;
 import com.xzll.common.pojo.base.WebBaseResponse;
@@ -17,7 +16,6 @@ import jakarta.annotation.Resource;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
-import org.springframework.beans.factory.annotation.Value;
 
 /**
  * 批量用户信息查询控制器
@@ -32,11 +30,7 @@ import org.springframework.beans.factory.annotation.Value;
 public class BatchUserInfoController {
 
     @Resource
-    private ImUserMapper imUserMapper;
-
-    // 文件服务基础URL配置
-    @Value("${minio.file.upload.base-url:http://localhost:8080/im-business/api/file/}")
-    private String fileBaseUrl;
+    private UserProfileCacheService userProfileCacheService;
 
     /**
      * 批量查询用户基础信息
@@ -71,55 +65,30 @@ public class BatchUserInfoController {
                 return WebBaseResponse.returnResultSuccess(new BatchUserInfoVO());
             }
 
-            // 批量查询用户信息
-            List<ImUserDO> users = imUserMapper.selectList(
-                    Wrappers.lambdaQuery(ImUserDO.class)
-                            .in(ImUserDO::getUserId, validUserIds)
-            );
+            // 批量查询用户信息（多级缓存，未命中的合并为一次回源）
+            Map<String, UserProfileCacheEntry> profiles = userProfileCacheService.getProfiles(validUserIds);
 
-            // 组装返回结果
+            // 组装返回结果，按请求顺序输出
             BatchUserInfoVO result = new BatchUserInfoVO();
-            
-            if (!CollectionUtils.isEmpty(users)) {
-                // 转换为基础信息VO
-                List<BatchUserInfoVO.UserBasicInfo> userInfos = users.stream()
-                        .map(user -> {
-                            BatchUserInfoVO.UserBasicInfo info = new BatchUserInfoVO.UserBasicInfo();
-                            info.setUserId(user.getUserId());
-                            info.setUserName(user.getUserName());
-                            info.setUserFullName(user.getUserFullName());
-                            
-                            // 转换头像路径为完整访问URL（短链接）
-                            if (StringUtils.hasText(user.getHeadImage())) {
-                                String shortCode = generateShortCode(user.getHeadImage());
-                                String fullAvatarUrl = fileBaseUrl + "s/" + shortCode;
-                                info.setHeadImage(fullAvatarUrl);
-                                log.debug("批量查询头像URL转换 - 用户ID: {}, 原路径: {}, 短码: {}, 完整URL: {}", 
-                                    user.getUserId(), user.getHeadImage(), shortCode, fullAvatarUrl);
-                            } else {
-                                info.setHeadImage(null);
-                            }
-                            
-                            info.setSex(user.getSex());
-                            return info;
-                        })
-                        .collect(Collectors.toList());
-                
-                result.setUsers(userInfos);
-
-                // 找出未查询到的用户ID
-                Map<String, ImUserDO> userMap = users.stream()
-                        .collect(Collectors.toMap(ImUserDO::getUserId, user -> user));
-                
-                List<String> notFoundIds = validUserIds.stream()
-                        .filter(id -> !userMap.containsKey(id))
-                        .collect(Collectors.toList());
-                
-                result.setNotFoundUserIds(notFoundIds);
-            } else {
-                result.setUsers(Lists.newArrayList());
-                result.setNotFoundUserIds(validUserIds);
+            List<BatchUserInfoVO.UserBasicInfo> userInfos = Lists.newArrayListWithCapacity(profiles.size());
+            List<String> notFoundIds = Lists.newArrayList();
+            for (String userId : validUserIds) {
+                UserProfileCacheEntry profile = profiles.get(userId);
+                if (profile == null) {
+                    notFoundIds.add(userId);
+                    continue;
+                }
+                BatchUserInfoVO.UserBasicInfo info = new BatchUserInfoVO.UserBasicInfo();
+                info.setUserId(profile.getUserId());
+                info.setUserName(profile.getUserName());
+                info.setUserFullName(profile.getUserFullName());
+                // 头像完整访问URL（短链接）已在缓存加载时转换好
+                info.setHeadImage(profile.getAvatarUrl());
+                info.setSex(profile.getSex());
+                userInfos.add(info);
             }
+            result.setUsers(userInfos);
+            result.setNotFoundUserIds(notFoundIds);
 
             log.info("批量查询用户信息成功，查询{}个，找到{}个，未找到{}个", 
                     validUserIds.size(), 
@@ -133,11 +102,4 @@ public class BatchUserInfoController {
             return WebBaseResponse.returnResultError("批量查询用户信息失败：" + e.getMessage());
         }
     }
-
-    /**
-     * 生成短码（Base64编码文件路径）
-     */
-    private String generateShortCode(String filePath) {
-        return java.util.Base64.getEncoder().encodeToString(filePath.getBytes());
-    }
 }
@@ -1,5 +1,10 @@
 package com.xzll.business.controller;
 
+import com.xzll.business.dto.request.FileUploadInitDTO;
+import com.xzll.business.dto.response.FileUploadSessionDTO;
+import com.xzll.business.service.ChunkedUploadService;
+import com.xzll.business.service.FileDownloadService;
+import com.xzll.business.service.ImageDerivativeService;
 import com.xzll.business.service.UserProfileService;
 import com.xzll.common.constant.enums.FileBusinessType;
 import com.xzll.common.controller.BaseController;
@@ -14,13 +19,11 @@ import io.minio.PutObjectArgs;
 import com.xzll.business.config.MinioConfig;
 
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.UUID;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
-import java.io.InputStream;
-import org.springframework.util.StreamUtils;
-import io.minio.GetObjectArgs;
 
 /**
  * 文件上传控制器
@@ -40,6 +43,15 @@ public class FileUploadController extends BaseController {
     @Resource
     private UserProfileService userProfileService;
 
+    @Resource
+    private FileDownloadService fileDownloadService;
+
+    @Resource
+    private ImageDerivativeService imageDerivativeService;
+
+    @Resource
+    private ChunkedUploadService chunkedUploadService;
+
     // 文件上传配置
     @Value("${minio.file.upload.base-url:http://localhost:8080/im-business/api/file/}")
     private String fileBaseUrl;
@@ -103,6 +115,9 @@ public class FileUploadController extends BaseController {
                     .build()
             );
 
+            // 异步生成缩略图/预览图，不影响上传耗时
+            imageDerivativeService.submit(fileName);
+
             // 6. 存储文件路径到数据库（不是完整URL，避免预签名URL过期问题）
             String storagePath = fileName;
 
@@ -131,21 +146,25 @@ public class FileUploadController extends BaseController {
     }
 
     /**
-     * 短链接文件访问接口
+     * 短链接文件访问接口（流式输出，支持Range与条件请求）
+     * size=thumb|preview 时返回对应衍生图，衍生图不存在则返回原图
      */
     @GetMapping("/s/{shortCode}")
     @CrossOrigin
-    public ResponseEntity<byte[]> getFileByShortCode(@PathVariable String shortCode) {
+    public void getFileByShortCode(@PathVariable String shortCode,
+                                   @RequestParam(required = false) String size,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String filePath;
         try {
             // 从短码解码文件路径
-            String filePath = new String(java.util.Base64.getDecoder().decode(shortCode));
-            log.info("短链接访问文件，短码：{}，文件路径：{}", shortCode, filePath);
-            
-            return getFileContent(filePath);
-        } catch (Exception e) {
-            log.error("短链接访问失败，shortCode：{}", shortCode, e);
-            return ResponseEntity.notFound().build();
+            filePath = new String(java.util.Base64.getDecoder().decode(shortCode));
+        } catch (IllegalArgumentException e) {
+            log.warn("短链接格式错误，shortCode：{}", shortCode);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        log.debug("短链接访问文件，短码：{}，文件路径：{}，规格：{}", shortCode, filePath, size);
+        fileDownloadService.writeObject(imageDerivativeService.resolve(filePath, size), request, response);
     }
     
     /**
@@ -153,67 +172,20 @@ public class FileUploadController extends BaseController {
      */
     @GetMapping("/image/{encodedPath}")
     @CrossOrigin
-    public ResponseEntity<byte[]> getImage(@PathVariable String encodedPath) {
+    public void getImage(@PathVariable String encodedPath,
+                         @RequestParam(required = false) String size,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String filePath;
         try {
             // 解码文件路径
-            String filePath = new String(java.util.Base64.getDecoder().decode(encodedPath));
-            log.info("访问图片，文件路径：{}", filePath);
-
-            // 从MinIO获取文件流
-            InputStream inputStream = minioClient.getObject(
-                GetObjectArgs.builder()
-                    .bucket(minioConfig.getBucketName())
-                    .object(filePath)
-                    .build()
-            );
-
-            // 读取文件内容
-            byte[] imageBytes = StreamUtils.copyToByteArray(inputStream);
-            inputStream.close();
-
-            // 设置响应头
-            HttpHeaders headers = new HttpHeaders();
-
-            // 根据文件扩展名设置Content-Type
-            String contentType = getContentTypeByExtension(filePath);
-            headers.set("Content-Type", contentType);
-            headers.set("Cache-Control", "public, max-age=86400"); // 缓存1天
-            headers.set("ETag", "\"" + filePath.hashCode() + "\""); // 添加ETag便于缓存
-            headers.set("Access-Control-Allow-Origin", "*"); // 允许跨域访问
-
-            log.info("图片访问成功，文件路径：{}，大小：{} bytes", filePath, imageBytes.length);
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(imageBytes);
-
-        } catch (Exception e) {
-            log.error("图片访问失败，encodedPath：{}", encodedPath, e);
-            return ResponseEntity.notFound().build();
-        }
-    }
-
-    /**
-     * 根据文件扩展名获取Content-Type
-     */
-    private String getContentTypeByExtension(String filePath) {
-        String extension = getFileExtension(filePath).toLowerCase();
-        switch (extension) {
-            case ".jpg":
-            case ".jpeg":
-                return "image/jpeg";
-            case ".png":
-                return "image/png";
-            case ".gif":
-                return "image/gif";
-            case ".webp":
-                return "image/webp";
-            case ".bmp":
-                return "image/bmp";
-            case ".svg":
-                return "image/svg+xml";
-            default:
-                return "image/jpeg"; // 默认
+            filePath = new String(java.util.Base64.getDecoder().decode(encodedPath));
+        } catch (IllegalArgumentException e) {
+            log.warn("图片路径格式错误，encodedPath：{}", encodedPath);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        log.debug("访问图片，文件路径：{}，规格：{}", filePath, size);
+        fileDownloadService.writeObject(imageDerivativeService.resolve(filePath, size), request, response);
     }
 
     /**
@@ -258,6 +230,11 @@ public class FileUploadController extends BaseController {
                     .build()
             );
 
+            // 图片文件异步生成缩略图/预览图
+            if (file.getContentType() != null && file.getContentType().toLowerCase().startsWith("image/")) {
+                imageDerivativeService.submit(fileName);
+            }
+
             // 6. 生成永久访问URL（短链接）
             String shortCode = generateShortCode(fileName);
             String fileUrl = fileBaseUrl + "s/" + shortCode;
@@ -272,6 +249,99 @@ public class FileUploadController extends BaseController {
         }
     }
 
+    /**
+     * 分片上传-初始化（内容哈希命中时秒传，未完成的同一文件返回原会话用于断点续传）
+     */
+    @PostMapping("/chunk/init")
+    public WebBaseResponse<FileUploadSessionDTO> initChunkUpload(@RequestBody FileUploadInitDTO initDTO) {
+        String userId = getCurrentUserIdWithValidation();
+        if (userId == null) {
+            return WebBaseResponse.returnResultError("用户未登录或token无效");
+        }
+        try {
+            return WebBaseResponse.returnResultSuccess(chunkedUploadService.init(userId, initDTO));
+        } catch (IllegalArgumentException e) {
+            return WebBaseResponse.returnResultError(e.getMessage());
+        } catch (Exception e) {
+            log.error("分片上传初始化失败，userId：{}", userId, e);
+            return WebBaseResponse.returnResultError("初始化失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 分片上传-上传分片，请求体为分片原始字节（application/octet-stream），可并行上传
+     */
+    @PutMapping("/chunk/{uploadId}/{partNumber}")
+    public WebBaseResponse<Void> uploadChunk(@PathVariable String uploadId, @PathVariable int partNumber,
+                                             HttpServletRequest request) {
+        String userId = getCurrentUserIdWithValidation();
+        if (userId == null) {
+            return WebBaseResponse.returnResultError("用户未登录或token无效");
+        }
+        try {
+            chunkedUploadService.uploadPart(userId, uploadId, partNumber, request.getInputStream(),
+                    request.getContentLengthLong());
+            return WebBaseResponse.returnResultSuccess();
+        } catch (IllegalArgumentException e) {
+            return WebBaseResponse.returnResultError(e.getMessage());
+        } catch (Exception e) {
+            log.error("分片上传失败，uploadId：{}，partNumber：{}", uploadId, partNumber, e);
+            return WebBaseResponse.returnResultError("上传失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 分片上传-查询进度
+     */
+    @GetMapping("/chunk/{uploadId}")
+    public WebBaseResponse<FileUploadSessionDTO> getChunkUpload(@PathVariable String uploadId) {
+        String userId = getCurrentUserIdWithValidation();
+        if (userId == null) {
+            return WebBaseResponse.returnResultError("用户未登录或token无效");
+        }
+        try {
+            return WebBaseResponse.returnResultSuccess(chunkedUploadService.getSession(userId, uploadId));
+        } catch (IllegalArgumentException e) {
+            return WebBaseResponse.returnResultError(e.getMessage());
+        }
+    }
+
+    /**
+     * 分片上传-完成合并，返回文件访问地址
+     */
+    @PostMapping("/chunk/{uploadId}/complete")
+    public WebBaseResponse<FileUploadSessionDTO> completeChunkUpload(@PathVariable String uploadId) {
+        String userId = getCurrentUserIdWithValidation();
+        if (userId == null) {
+            return WebBaseResponse.returnResultError("用户未登录或token无效");
+        }
+        try {
+            return WebBaseResponse.returnResultSuccess("文件上传成功", chunkedUploadService.complete(userId, uploadId));
+        } catch (IllegalArgumentException e) {
+            return WebBaseResponse.returnResultError(e.getMessage());
+        } catch (Exception e) {
+            log.error("分片合并失败，uploadId：{}", uploadId, e);
+            return WebBaseResponse.returnResultError("合并失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 分片上传-取消
+     */
+    @DeleteMapping("/chunk/{uploadId}")
+    public WebBaseResponse<Void> abortChunkUpload(@PathVariable String uploadId) {
+        String userId = getCurrentUserIdWithValidation();
+        if (userId == null) {
+            return WebBaseResponse.returnResultError("用户未登录或token无效");
+        }
+        try {
+            chunkedUploadService.abort(userId, uploadId);
+            return WebBaseResponse.returnResultSuccess();
+        } catch (IllegalArgumentException e) {
+            return WebBaseResponse.returnResultError(e.getMessage());
+        }
+    }
+
     /**
      * 生成文件存储路径
      */
@@ -334,40 +404,6 @@ public class FileUploadController extends BaseController {
         return java.util.Base64.getEncoder().encodeToString(filePath.getBytes());
     }
     
-    /**
-     * 获取文件内容的通用方法
-     */
-    private ResponseEntity<byte[]> getFileContent(String filePath) {
-        try {
-            // 从MinIO获取文件流
-            InputStream inputStream = minioClient.getObject(
-                GetObjectArgs.builder()
-                    .bucket(minioConfig.getBucketName())
-                    .object(filePath)
-                    .build()
-            );
-            
-            // 读取文件内容
-            byte[] fileBytes = StreamUtils.copyToByteArray(inputStream);
-            inputStream.close();
-            
-            // 设置响应头
-            HttpHeaders headers = new HttpHeaders();
-            String contentType = getContentTypeByExtension(filePath);
-            headers.set("Content-Type", contentType);
-            headers.set("Cache-Control", "public, max-age=86400"); // 缓存1天
-            headers.set("ETag", "\"" + filePath.hashCode() + "\"");
-            headers.set("Access-Control-Allow-Origin", "*");
-            
-            log.info("文件访问成功，文件路径：{}，大小：{} bytes", filePath, fileBytes.length);
-            return ResponseEntity.ok().headers(headers).body(fileBytes);
-            
-        } catch (Exception e) {
-            log.error("文件访问失败，filePath：{}", filePath, e);
-            return ResponseEntity.notFound().build();
-        }
-    }
-
     /**
      * 文件上传结果
      */
@@ -26,6 +26,12 @@ public class ChatHistoryQueryDTO {
      */
     private String lastMsgId;
 
+    /**
+     * 上一条消息的时间戳 (分页参数，可选，与lastMsgId配合使用)
+     * 传入后直接按 (msgCreateTime, msgId) 定位下一页，无需回查上一条消息；取上次响应的 nextLastMsgTime
+     */
+    private Long lastMsgTime;
+
     /**
      * 每页大小 (默认50，最大100)
      */
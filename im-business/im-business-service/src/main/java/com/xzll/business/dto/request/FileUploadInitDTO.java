@@ -0,0 +1,38 @@
+package com.xzll.business.dto.request;
+
+import lombok.Data;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 分片上传初始化请求DTO
+ */
+@Data
+public class FileUploadInitDTO {
+
+    /**
+     * 原始文件名 (用于取扩展名)
+     */
+    private String fileName;
+
+    /**
+     * 文件总大小 (字节，必填)
+     */
+    private Long fileSize;
+
+    /**
+     * 文件类型 (可选)
+     */
+    private String contentType;
+
+    /**
+     * 文件内容 SHA-256 (十六进制小写，必填)
+     * 用于秒传与断点续传：已存在相同内容时直接返回文件地址，未完成的同一文件返回原会话
+     */
+    private String contentHash;
+
+    /**
+     * 期望分片大小 (字节，可选，服务端会限制在允许范围内)
+     */
+    private Long partSize;
+}
@@ -27,6 +27,11 @@ public class ChatHistoryResponseDTO {
      */
     private String nextLastMsgId;
 
+    /**
+     * 下一页的lastMsgTime (与nextLastMsgId一起作为下次查询的分页参数)
+     */
+    private Long nextLastMsgTime;
+
     /**
      * 当前页实际数量
      */
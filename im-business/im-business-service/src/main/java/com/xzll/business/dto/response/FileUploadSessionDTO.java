@@ -0,0 +1,54 @@
+package com.xzll.business.dto.response;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 分片上传会话响应DTO
+ */
+@Data
+public class FileUploadSessionDTO {
+
+    /**
+     * 上传会话ID (秒传时为空)
+     */
+    private String uploadId;
+
+    /**
+     * 是否秒传 (服务端已有相同内容，无需上传)
+     */
+    private Boolean instant;
+
+    /**
+     * 文件访问地址 (秒传或完成后返回)
+     */
+    private String url;
+
+    /**
+     * 分片大小 (字节，最后一片可能更小)
+     */
+    private Long partSize;
+
+    /**
+     * 分片总数，分片号从1开始
+     */
+    private Integer partCount;
+
+    /**
+     * 已上传的分片号 (断点续传时跳过这些分片)
+     */
+    private List<Integer> uploadedParts;
+
+    /**
+     * 已上传字节数
+     */
+    private Long uploadedBytes;
+
+    /**
+     * 文件总大小
+     */
+    private Long fileSize;
+}
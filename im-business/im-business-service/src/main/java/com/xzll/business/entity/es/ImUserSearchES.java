@@ -0,0 +1,59 @@
+package com.xzll.business.entity.es;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
+import org.springframework.data.elasticsearch.annotations.Setting;
+
+import static com.xzll.common.constant.ImConstant.TableConstant.IM_USER_SEARCH;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 用户搜索ES索引实体类
+ *
+ * 用户名、昵称建 1-10 的 n-gram（单字也可命中），支持任意位置的子串匹配；手机号、邮箱只建前缀（edge n-gram）；
+ * 查询端整体作为一个词项（user_search），keyword 子字段用于精确匹配
+ */
+@Data
+@Document(indexName = IM_USER_SEARCH, createIndex = false)
+@Setting(settingPath = "es/im_user_search_settings.json")
+public class ImUserSearchES {
+
+    /**
+     * 文档ID即用户ID
+     */
+    @Id
+    @Field(type = FieldType.Keyword)
+    private String userId;
+
+    @MultiField(
+            mainField = @Field(type = FieldType.Text, analyzer = "user_ngram", searchAnalyzer = "user_search"),
+            otherFields = @InnerField(suffix = "keyword", type = FieldType.Keyword, normalizer = "lowercase_normalizer"))
+    private String userName;
+
+    @MultiField(
+            mainField = @Field(type = FieldType.Text, analyzer = "user_ngram", searchAnalyzer = "user_search"),
+            otherFields = @InnerField(suffix = "keyword", type = FieldType.Keyword, normalizer = "lowercase_normalizer"))
+    private String userFullName;
+
+    @MultiField(
+            mainField = @Field(type = FieldType.Text, analyzer = "user_edge_ngram", searchAnalyzer = "user_search"),
+            otherFields = @InnerField(suffix = "keyword", type = FieldType.Keyword))
+    private String phone;
+
+    @MultiField(
+            mainField = @Field(type = FieldType.Text, analyzer = "user_edge_ngram", searchAnalyzer = "user_search"),
+            otherFields = @InnerField(suffix = "keyword", type = FieldType.Keyword, normalizer = "lowercase_normalizer"))
+    private String email;
+
+    /**
+     * 注册时间（毫秒时间戳），相关度相同时按注册时间倒序
+     */
+    @Field(type = FieldType.Long)
+    private Long registerTime;
+}
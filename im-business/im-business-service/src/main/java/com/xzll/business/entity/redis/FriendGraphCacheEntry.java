@@ -0,0 +1,77 @@
+package com.xzll.business.entity.redis;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 单个用户的好友关系快照（不可变）
+ *
+ * 好友按成为好友的时间倒序排列，和好友列表接口的展示顺序一致；成员判断走哈希集合，O(1)。
+ * 拉黑的好友仍是好友，只是额外出现在拉黑集合中。
+ */
+public final class FriendGraphCacheEntry {
+
+    /**
+     * 好友ID，按成为好友时间倒序
+     */
+    private final List<String> friendIds;
+
+    /**
+     * 好友ID -> 成为好友的时间戳（毫秒）
+     */
+    private final Map<String, Long> friendSince;
+
+    /**
+     * 该用户拉黑的好友ID
+     */
+    private final Set<String> blockedIds;
+
+    public FriendGraphCacheEntry(List<String> friendIds, Map<String, Long> friendSince, Set<String> blockedIds) {
+        this.friendIds = Collections.unmodifiableList(friendIds);
+        this.friendSince = Collections.unmodifiableMap(new HashMap<>(friendSince));
+        this.blockedIds = Collections.unmodifiableSet(new HashSet<>(blockedIds));
+    }
+
+    public boolean isFriend(String friendId) {
+        return friendSince.containsKey(friendId);
+    }
+
+    public boolean isBlocked(String friendId) {
+        return blockedIds.contains(friendId);
+    }
+
+    public int size() {
+        return friendIds.size();
+    }
+
+    /**
+     * 分页截取好友ID
+     *
+     * @param offset 起始下标
+     * @param limit  数量
+     */
+    public List<String> page(int offset, int limit) {
+        if (offset >= friendIds.size()) {
+            return Collections.emptyList();
+        }
+        return friendIds.subList(offset, Math.min(friendIds.size(), offset + limit));
+    }
+
+    public Long getFriendSince(String friendId) {
+        return friendSince.get(friendId);
+    }
+
+    public List<String> getFriendIds() {
+        return friendIds;
+    }
+
+    public Set<String> getBlockedIds() {
+        return blockedIds;
+    }
+}
@@ -0,0 +1,212 @@
+package com.xzll.business.entity.redis;
+
+import com.xzll.common.pojo.entity.ImUserDO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 用户资料缓存条目（不可变）
+ *
+ * 只保留资料展示需要的字段（不含密码等敏感字段），头像完整访问URL在加载时算好，读取方直接使用。
+ * Redis 中以紧凑二进制存储：版本号 + 写入时间 + 各字段，比 JSON 小且编解码不走反射。
+ */
+public final class UserProfileCacheEntry {
+
+    /**
+     * 二进制格式版本，字段变化时递增，旧版本数据视为未命中
+     */
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    private final String userId;
+    private final String userName;
+    private final String userFullName;
+    private final String phone;
+    private final String email;
+    /**
+     * 头像原始存储路径
+     */
+    private final String headImage;
+    /**
+     * 头像完整访问URL（短链接），无头像时为null
+     */
+    private final String avatarUrl;
+    private final Integer sex;
+    private final LocalDateTime registerTime;
+    private final LocalDateTime lastLoginTime;
+    /**
+     * 写入缓存的时间（毫秒），用于判断二级缓存是否过期
+     */
+    private final long cachedAt;
+
+    private UserProfileCacheEntry(String userId, String userName, String userFullName, String phone, String email,
+                                  String headImage, String avatarUrl, Integer sex, LocalDateTime registerTime,
+                                  LocalDateTime lastLoginTime, long cachedAt) {
+        this.userId = userId;
+        this.userName = userName;
+        this.userFullName = userFullName;
+        this.phone = phone;
+        this.email = email;
+        this.headImage = headImage;
+        this.avatarUrl = avatarUrl;
+        this.sex = sex;
+        this.registerTime = registerTime;
+        this.lastLoginTime = lastLoginTime;
+        this.cachedAt = cachedAt;
+    }
+
+    /**
+     * 由数据库记录构建缓存条目
+     *
+     * @param user        用户记录
+     * @param fileBaseUrl 文件服务基础URL，用于生成头像短链接
+     */
+    public static UserProfileCacheEntry from(ImUserDO user, String fileBaseUrl) {
+        String avatarUrl = null;
+        if (user.getHeadImage() != null && !user.getHeadImage().isEmpty()) {
+            avatarUrl = fileBaseUrl + "s/" + Base64.getEncoder()
+                    .encodeToString(user.getHeadImage().getBytes(StandardCharsets.UTF_8));
+        }
+        return new UserProfileCacheEntry(user.getUserId(), user.getUserName(), user.getUserFullName(), user.getPhone(),
+                user.getEmail(), user.getHeadImage(), avatarUrl, user.getSex(), user.getRegisterTime(),
+                user.getLastLoginTime(), System.currentTimeMillis());
+    }
+
+    /**
+     * 编码为二进制
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(cachedAt);
+            writeString(out, userId);
+            writeString(out, userName);
+            writeString(out, userFullName);
+            writeString(out, phone);
+            writeString(out, email);
+            writeString(out, headImage);
+            writeString(out, avatarUrl);
+            out.writeInt(sex == null ? Integer.MIN_VALUE : sex);
+            writeTime(out, registerTime);
+            writeTime(out, lastLoginTime);
+        } catch (IOException e) {
+            throw new IllegalStateException("用户资料缓存编码失败, userId: " + userId, e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * 从二进制解码，版本不匹配或数据损坏时返回null（按未命中处理）
+     */
+    public static UserProfileCacheEntry fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != FORMAT_VERSION) {
+                return null;
+            }
+            long cachedAt = in.readLong();
+            String userId = readString(in);
+            String userName = readString(in);
+            String userFullName = readString(in);
+            String phone = readString(in);
+            String email = readString(in);
+            String headImage = readString(in);
+            String avatarUrl = readString(in);
+            int sex = in.readInt();
+            LocalDateTime registerTime = readTime(in);
+            LocalDateTime lastLoginTime = readTime(in);
+            return new UserProfileCacheEntry(userId, userName, userFullName, phone, email, headImage, avatarUrl,
+                    sex == Integer.MIN_VALUE ? null : sex, registerTime, lastLoginTime, cachedAt);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time == null ? NULL_TIME : time.toInstant(ZoneOffset.UTC).toEpochMilli());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        long millis = in.readLong();
+        return millis == NULL_TIME ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getUserFullName() {
+        return userFullName;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getHeadImage() {
+        return headImage;
+    }
+
+    public String getAvatarUrl() {
+        return avatarUrl;
+    }
+
+    public Integer getSex() {
+        return sex;
+    }
+
+    public LocalDateTime getRegisterTime() {
+        return registerTime;
+    }
+
+    public LocalDateTime getLastLoginTime() {
+        return lastLoginTime;
+    }
+
+    public long getCachedAt() {
+        return cachedAt;
+    }
+}
@@ -1,5 +1,8 @@
 package com.xzll.business.service;
 
+import cn.hutool.json.JSONObject;
+
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -11,6 +14,11 @@ import java.util.Map;
  * Type: Hash
  * Field: {chatId}
  * Value: LZ4压缩的JSON {"m":"msgId","u":5,"t":1700366400000,"f":"fromUserId"}
+ *
+ * 最近会话索引：
+ * Key: chat:recent:{userId}
+ * Type: ZSet
+ * Member: {chatId}，Score: 最后消息时间戳
  * 
  * @Author: hzz
  * @Date: 2025/11/19
@@ -37,6 +45,35 @@ public interface ChatListService {
      */
     Map<String, String> getAllChatListMetadata(String userId);
     
+    /**
+     * 批量获取指定会话的元数据（只读取这些会话的字段，不全量 HGETALL）
+     *
+     * @param userId 用户ID
+     * @param chatIds 会话ID集合
+     * @return Map<chatId, 已解析并合并未读数(u)的元数据>，不存在的会话不在结果中
+     */
+    Map<String, JSONObject> getChatListMetadata(String userId, Collection<String> chatIds);
+
+    /**
+     * 按最后消息时间倒序读取最近会话索引
+     *
+     * @param userId 用户ID
+     * @param maxTime 最大时间戳（含），为null表示不限
+     * @param offset 在时间范围内的偏移量
+     * @param count 读取数量
+     * @return 有序的 Map<chatId, 最后消息时间戳>，按时间倒序
+     */
+    Map<String, Long> getRecentChats(String userId, Long maxTime, int offset, int count);
+
+    /**
+     * 获取指定会话在最近会话索引中的时间戳
+     *
+     * @param userId 用户ID
+     * @param chatIds 会话ID集合
+     * @return Map<chatId, 最后消息时间戳>，不在索引中的会话不在结果中
+     */
+    Map<String, Long> getRecentChatTimes(String userId, Collection<String> chatIds);
+
     /**
      * 获取单个会话的元数据
      * 
@@ -0,0 +1,50 @@
+package com.xzll.business.service;
+
+import com.xzll.business.dto.request.FileUploadInitDTO;
+import com.xzll.business.dto.response.FileUploadSessionDTO;
+
+import java.io.InputStream;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 聊天文件分片上传服务
+ *
+ * 功能说明：
+ * 1. 初始化 -> 并行上传分片 -> 完成合并；会话与已传分片记录在 Redis，带过期时间
+ * 2. 断点续传：同一用户同一内容哈希的未完成会话在初始化时直接返回，客户端跳过已传分片
+ * 3. 秒传：内容哈希命中已校验过的文件时不再上传，直接返回文件地址
+ * 4. 分片直接从请求流写入 MinIO，完成时由 MinIO 服务端合并，应用不持有整个文件
+ * 参数或会话状态不合法时抛出 IllegalArgumentException，message 可直接返回给客户端
+ */
+public interface ChunkedUploadService {
+
+    /**
+     * 初始化上传（可能直接秒传，或返回未完成的会话）
+     */
+    FileUploadSessionDTO init(String userId, FileUploadInitDTO initDTO);
+
+    /**
+     * 上传一个分片，重复上传同一分片会覆盖
+     *
+     * @param partNumber    分片号，从1开始
+     * @param data          分片内容流（请求体）
+     * @param contentLength 请求体长度，必须与该分片应有大小一致
+     */
+    void uploadPart(String userId, String uploadId, int partNumber, InputStream data, long contentLength) throws Exception;
+
+    /**
+     * 查询上传进度
+     */
+    FileUploadSessionDTO getSession(String userId, String uploadId);
+
+    /**
+     * 合并分片，返回文件地址
+     */
+    FileUploadSessionDTO complete(String userId, String uploadId) throws Exception;
+
+    /**
+     * 取消上传并清理已传分片
+     */
+    void abort(String userId, String uploadId);
+}
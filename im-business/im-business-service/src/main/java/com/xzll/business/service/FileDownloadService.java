@@ -0,0 +1,36 @@
+package com.xzll.business.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: MinIO 文件下载代理服务
+ *
+ * 功能说明：
+ * 1. 直接把 MinIO 对象流式写入响应，不在堆上整块缓冲
+ * 2. 支持单段 Range（206/416）与 If-Range
+ * 3. 使用对象真实 ETag / Last-Modified 处理 If-None-Match / If-Modified-Since（304）
+ * 4. 头像、缩略图等热点小对象进入按字节数限量的本地 LRU 缓存，命中时不访问 MinIO
+ */
+public interface FileDownloadService {
+
+    /**
+     * 把对象写入响应（GET/HEAD）
+     *
+     * @param objectPath MinIO 对象路径
+     * @param request    请求，读取 Range 与条件请求头
+     * @param response   响应
+     */
+    void writeObject(String objectPath, HttpServletRequest request, HttpServletResponse response) throws IOException;
+
+    /**
+     * 对象被覆盖或删除时移除本地缓存
+     *
+     * @param objectPath MinIO 对象路径
+     */
+    void evict(String objectPath);
+}
@@ -0,0 +1,62 @@
+package com.xzll.business.service;
+
+import com.xzll.business.entity.redis.FriendGraphCacheEntry;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 好友关系缓存服务 - 统一管理 Redis 中的好友集合与拉黑集合
+ *
+ * 功能说明：
+ * 1. 维护 friend:{userId}:ids（ZSet，好友 -> 成为好友时间）与 friend:{userId}:blocked（Set，拉黑的好友）
+ * 2. 两个集合由 Lua 脚本整体写入并带占位成员，占位成员存在才视为已加载，未加载时从数据库重建
+ * 3. 同意申请、删除好友、拉黑/取消拉黑在事务提交后重建相关用户的缓存，并广播失效各实例的本地近端缓存
+ * 4. im-connect 直接读取拉黑集合，单聊发送时校验是否被拉黑，不查数据库
+ */
+public interface FriendGraphCacheService {
+
+    /**
+     * 获取用户的好友关系快照（本地近端缓存 -> Redis -> 数据库）
+     *
+     * @param userId 用户ID
+     * @return 好友关系快照，不为null
+     */
+    FriendGraphCacheEntry getGraph(String userId);
+
+    /**
+     * 是否为好友（含已拉黑的好友）
+     */
+    boolean isFriend(String userId, String friendId);
+
+    /**
+     * userId 是否拉黑了 targetId
+     */
+    boolean isBlocked(String userId, String targetId);
+
+    /**
+     * 批量获取与目标用户的关系状态
+     *
+     * @param userId    当前用户ID
+     * @param targetIds 目标用户ID
+     * @return 目标用户ID -> 1 已是好友 / 3 已拉黑，非好友不在结果中
+     */
+    Map<String, Integer> getRelationStates(String userId, Collection<String> targetIds);
+
+    /**
+     * 好友关系变更后重建缓存：存在事务时在提交后执行，否则立即执行
+     *
+     * @param userIds 关系发生变化的用户
+     */
+    void refreshAfterCommit(String... userIds);
+
+    /**
+     * 从数据库重建用户的好友关系缓存并广播失效
+     *
+     * @param userId 用户ID
+     * @return 重建后的好友关系快照
+     */
+    FriendGraphCacheEntry refresh(String userId);
+}
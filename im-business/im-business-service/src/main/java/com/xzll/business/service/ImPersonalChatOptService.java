@@ -2,6 +2,7 @@ package com.xzll.business.service;
 
 import com.xzll.business.entity.mysql.ImPersonalChatOpt;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @Author: hzz
@@ -10,6 +11,21 @@ import java.util.List;
  */
 public interface ImPersonalChatOptService {
 
+    /**
+     * 会话个人操作位：置顶
+     */
+    int FLAG_TO_TOP = 1;
+
+    /**
+     * 会话个人操作位：不展示
+     */
+    int FLAG_UN_SHOW = 1 << 1;
+
+    /**
+     * 会话个人操作位：删除
+     */
+    int FLAG_DEL_CHAT = 1 << 2;
+
     /**
      * 查询个人的会话信息（分页）
      *
@@ -27,4 +43,13 @@ public interface ImPersonalChatOptService {
      * @return
      */
     public List<ImPersonalChatOpt> findPersonalChatByUserId(ImPersonalChatOpt ao, Integer currentPage, Integer pageSize);
+
+    /**
+     * 查询用户所有会话的个人操作位，只包含置顶/不展示/删除至少有一项的会话
+     * 操作表由其他服务写入，本服务无法在变更后失效缓存，因此直接查库（只取有操作的行，走 userId 索引）
+     *
+     * @param userId 用户ID
+     * @return Map<chatId, 操作位（FLAG_TO_TOP | FLAG_UN_SHOW | FLAG_DEL_CHAT）>
+     */
+    Map<String, Integer> getChatOptFlags(String userId);
 }
@@ -0,0 +1,68 @@
+package com.xzll.business.service;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 图片衍生图服务（缩略图 / 预览图）
+ *
+ * 功能说明：
+ * 1. 图片上传成功后异步生成衍生图，在有界线程池中执行，队列满时直接放弃（访问时回退原图）
+ * 2. 衍生图与原图同目录，key 固定为 {原图去扩展名}_{规格}.jpg，可由原图路径直接推出
+ * 3. 短链接通过 size 参数选择规格；衍生图不存在（未生成或原图本身更小）时返回原图
+ */
+public interface ImageDerivativeService {
+
+    /**
+     * 衍生图规格，尺寸为最长边像素，由配置决定
+     */
+    enum DerivativeSize {
+        /**
+         * 缩略图：会话列表、好友列表头像
+         */
+        THUMB("thumb"),
+        /**
+         * 预览图：聊天消息中的图片预览
+         */
+        PREVIEW("preview");
+
+        private final String code;
+
+        DerivativeSize(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public static DerivativeSize of(String code) {
+            for (DerivativeSize size : values()) {
+                if (size.code.equalsIgnoreCase(code)) {
+                    return size;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 提交原图的衍生图生成任务（异步，不抛异常）
+     *
+     * @param objectPath 原图 MinIO 路径
+     */
+    void submit(String objectPath);
+
+    /**
+     * 解析实际要返回的对象路径
+     *
+     * @param objectPath 原图 MinIO 路径
+     * @param size       规格参数，为空或无法识别时返回原图
+     * @return 衍生图存在时返回衍生图路径，否则返回原图路径
+     */
+    String resolve(String objectPath, String size);
+
+    /**
+     * 衍生图路径
+     */
+    String derivativePath(String objectPath, DerivativeSize size);
+}
@@ -0,0 +1,36 @@
+package com.xzll.business.service;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 消息统计预聚合服务
+ *
+ * 功能说明：
+ * 1. 消费C2C消息事件时顺带累加统计，进程内先合并计数，定时批量 HINCRBY 到 Redis 分桶 Hash
+ * 2. 分桶粒度：分钟 / 小时 / 天，另有一份全量累计，key 与 field 约定见 ImConstant.MsgStatsConstant
+ * 3. 看板与统计接口只读这些预聚合结果，不再对消息集合做 count
+ * 4. 计数最多延迟一个刷新周期；进程异常退出时会丢失尚未刷新的增量
+ */
+public interface MessageStatsRollupService {
+
+    /**
+     * 新消息入库
+     *
+     * @param msgFormat 消息格式
+     * @param msgStatus 入库时的消息状态
+     */
+    void recordNewMessage(Integer msgFormat, Integer msgStatus);
+
+    /**
+     * 消息状态变更，调用方需保证 oldStatus 为变更前的真实状态，相同状态不应调用
+     *
+     * @param oldStatus 变更前状态，未知时传null
+     * @param newStatus 变更后状态
+     */
+    void recordStatusChange(Integer oldStatus, Integer newStatus);
+
+    /**
+     * 消息被撤回（只在未撤回 -> 已撤回时调用）
+     */
+    void recordWithdraw();
+}
@@ -0,0 +1,44 @@
+package com.xzll.business.service;
+
+import com.xzll.business.entity.redis.UserProfileCacheEntry;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 用户资料多级缓存服务
+ *
+ * 功能说明：
+ * 1. 一级缓存：进程内有界缓存（容量上限 + 写入后过期），热点用户的资料读取不出进程
+ * 2. 二级缓存：Redis String user:profile:cache:{userId}，value 为紧凑二进制条目，按 l2-ttl 过期
+ * 3. 批量读取：一级未命中的一次 MGET，二级仍未命中的一次 IN 查询回源；
+ *    同一用户的并发回源只有一个线程真正查库（single-flight），其余线程等待其结果
+ * 4. 资料修改后调用 invalidate：删除二级缓存并广播，所有节点清除一级缓存
+ */
+public interface UserProfileCacheService {
+
+    /**
+     * 获取单个用户资料
+     *
+     * @param userId 用户ID
+     * @return 用户资料，用户不存在时返回null
+     */
+    UserProfileCacheEntry getProfile(String userId);
+
+    /**
+     * 批量获取用户资料
+     *
+     * @param userIds 用户ID集合（可重复、可含空值）
+     * @return userId -> 用户资料，不存在的用户不在结果中
+     */
+    Map<String, UserProfileCacheEntry> getProfiles(Collection<String> userIds);
+
+    /**
+     * 用户资料变更后失效缓存，需在数据库更新成功后调用
+     *
+     * @param userId 用户ID
+     */
+    void invalidate(String userId);
+}
@@ -0,0 +1,44 @@
+package com.xzll.business.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 用户搜索索引服务
+ *
+ * 功能说明：
+ * 1. 用户名/昵称/手机号/邮箱写入独立的 ES 索引（im_user_search），搜索不再对 im_user 做 LIKE '%keyword%'
+ * 2. 索引来源：
+ *    - 资料变更广播（RedisKeyConstant.USER_PROFILE_CHANGE_TOPIC）触发单个用户重建
+ *    - 定时按自增主键增量拉取新注册用户（主键范围扫描，多实例通过分布式锁只由一个实例执行）
+ *    - 索引不存在时自动创建并全量重建
+ * 3. 在 im-business 之外直接改库的资料变更（如 im-auth 修改用户名）不会发广播，需全量重建才能反映
+ */
+public interface UserSearchIndexService {
+
+    /**
+     * 搜索用户ID，按相关度、注册时间倒序
+     *
+     * @param keyword       关键词
+     * @param exact         是否只做精确匹配
+     * @param excludeUserId 排除的用户（当前用户自己）
+     * @param currentPage   页码，从1开始
+     * @param pageSize      每页数量
+     * @return 用户ID列表
+     */
+    List<String> searchUserIds(String keyword, boolean exact, String excludeUserId, int currentPage, int pageSize);
+
+    /**
+     * 异步重建指定用户的索引文档（用户不存在时删除文档）
+     */
+    void reindexUsers(Collection<String> userIds);
+
+    /**
+     * 全量重建索引（按主键分批）
+     *
+     * @return 写入的文档数
+     */
+    long rebuild();
+}
@@ -6,15 +6,23 @@ import com.xzll.business.service.ChatListService;
 import com.xzll.business.service.UnreadCountService;
 import com.xzll.common.utils.ChatFieldOptimizer;
 import com.xzll.common.utils.CompressionUtil;
+import com.xzll.common.utils.LuaScriptRegistry;
 import com.xzll.common.utils.RedissonUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RMap;
+import org.redisson.api.RScoredSortedSet;
 import org.redisson.api.RedissonClient;
 import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.ScoredEntry;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -35,6 +43,11 @@ import java.util.Map;
  * 1. 未读数递增使用 HINCRBY（完全原子）
  * 2. 清零时记录时间戳
  * 3. 递增时检查消息时间 > 清零时间，防止清零后旧消息递增
+ *
+ * 最近会话索引：
+ * chat:recent:{userId} = ZSet(chatId -> 最后消息时间戳)，与元数据同时写入，会话列表按它分页，
+ * 只有当前页的会话才去读元数据和消息内容。
+ * 索引上线前已存在的会话由首次读取时从元数据重建，重建完成后写入标记成员（score=0，不会出现在正常范围查询中）
  */
 @Slf4j
 @Service
@@ -49,10 +62,15 @@ public class ChatListServiceImpl implements ChatListService {
     @Resource
     private UnreadCountService unreadCountService;
     
+    @Resource
+    private LuaScriptRegistry luaScriptRegistry;
+    
     private static final String CHAT_LIST_KEY_PREFIX = "chat:list:";
     private static final String META_SUFFIX = ":meta";
     private static final String UNREAD_SUFFIX = ":unread";
     private static final String CLEAR_TS_SUFFIX = ":clear_ts";  // 清零时间戳
+    private static final String RECENT_KEY_PREFIX = "chat:recent:";
+    private static final String RECENT_INDEX_MARKER = "#";  // 索引已从元数据重建的标记
     
     // 【混合优化】根据字段类型选择不同优化策略
     // meta: 可逆压缩 (需要chatId拼接rowkey)
@@ -66,6 +84,13 @@ public class ChatListServiceImpl implements ChatListService {
         "redis.call('HSET', KEYS[1], ARGV[1], tostring(newVal)); " +
         "return newVal";
     
+    private LuaScriptRegistry.LuaScript incrUnreadScript;
+    
+    @PostConstruct
+    public void init() {
+        incrUnreadScript = luaScriptRegistry.register("chat_list_incr_unread", LUA_INCR_UNREAD);
+    }
+    
     /**
      * 更新会话列表元数据（时间戳防护版）
      * 
@@ -110,11 +135,12 @@ public class ChatListServiceImpl implements ChatListService {
             // 4. 保存元数据到 {compressed}:meta（可逆压缩，支持rowkey拼接）
             String metaField = ChatFieldOptimizer.buildOptimizedField(chatId, META_SUFFIX);
             redissonUtils.setHashWithStringCodec(redisKey, metaField, compressedValue);
+            recentIndex(userId).addIfGreater(timestamp, chatId);
             
             // 5. 【原子递增未读数】到 {hash8}:unread（纯 hash标识）
             String unreadField = ChatFieldOptimizer.buildOptimizedField(chatId, UNREAD_SUFFIX);
-            Long newUnread = redissonUtils.executeLuaScriptAsLongWithStringCodec(
-                LUA_INCR_UNREAD, 
+            Long newUnread = luaScriptRegistry.evalShaAsLong(
+                incrUnreadScript, 
                 java.util.Collections.singletonList(redisKey), 
                 unreadField
             );
@@ -150,6 +176,7 @@ public class ChatListServiceImpl implements ChatListService {
         String compressedValue = CompressionUtil.compressToBase64(metadata.toString());
         String metaField = ChatFieldOptimizer.buildOptimizedField(chatId, META_SUFFIX);
         redissonUtils.setHashWithStringCodec(redisKey, metaField, compressedValue);
+        recentIndex(userId).addIfGreater(timestamp, chatId);
         
         log.debug("仅更新元数据（不递增未读数）, userId: {}, chatId: {}", userId, chatId);
     }
@@ -226,6 +253,124 @@ public class ChatListServiceImpl implements ChatListService {
         }
     }
     
+    /**
+     * 批量获取指定会话的元数据（HMGET meta + unread 字段，每条元数据只解析一次）
+     */
+    @Override
+    public Map<String, JSONObject> getChatListMetadata(String userId, Collection<String> chatIds) {
+        Map<String, JSONObject> result = new HashMap<>();
+        if (chatIds == null || chatIds.isEmpty()) {
+            return result;
+        }
+        String redisKey = CHAT_LIST_KEY_PREFIX + userId;
+        
+        try {
+            List<String> fields = new ArrayList<>(chatIds.size() * 2);
+            for (String chatId : chatIds) {
+                fields.add(ChatFieldOptimizer.buildOptimizedField(chatId, META_SUFFIX));
+                fields.add(ChatFieldOptimizer.buildOptimizedField(chatId, UNREAD_SUFFIX));
+            }
+            Map<String, String> values = redissonUtils.batchGetHashWithStringCodec(redisKey, fields);
+            
+            for (String chatId : chatIds) {
+                String compressed = values.get(ChatFieldOptimizer.buildOptimizedField(chatId, META_SUFFIX));
+                if (compressed == null) {
+                    continue;
+                }
+                try {
+                    JSONObject metadata = JSONUtil.parseObj(CompressionUtil.decompressFromBase64(compressed));
+                    String unread = values.get(ChatFieldOptimizer.buildOptimizedField(chatId, UNREAD_SUFFIX));
+                    metadata.set("u", unread != null ? Long.parseLong(unread) : 0L);
+                    result.put(chatId, metadata);
+                } catch (Exception e) {
+                    log.error("解析会话元数据失败, userId: {}, chatId: {}", userId, chatId, e);
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            log.error("批量查询会话元数据失败, userId: {}, 会话数: {}", userId, chatIds.size(), e);
+            return result;
+        }
+    }
+    
+    /**
+     * 按时间倒序读取最近会话索引（ZREVRANGEBYSCORE），首页读取前确保历史会话已建索引
+     */
+    @Override
+    public Map<String, Long> getRecentChats(String userId, Long maxTime, int offset, int count) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        
+        try {
+            RScoredSortedSet<String> index = recentIndex(userId);
+            if (maxTime == null && offset == 0) {
+                ensureRecentIndex(userId, index);
+            }
+            // 下界 0 不含，标记成员不会出现在结果中
+            Collection<ScoredEntry<String>> entries = index.entryRangeReversed(
+                0, false, maxTime != null ? maxTime : Double.POSITIVE_INFINITY, true, offset, count);
+            for (ScoredEntry<String> entry : entries) {
+                result.put(entry.getValue(), entry.getScore().longValue());
+            }
+            return result;
+        } catch (Exception e) {
+            log.error("查询最近会话索引失败, userId: {}, maxTime: {}, offset: {}", userId, maxTime, offset, e);
+            return result;
+        }
+    }
+    
+    /**
+     * 批量获取会话在索引中的时间戳（ZMSCORE）
+     */
+    @Override
+    public Map<String, Long> getRecentChatTimes(String userId, Collection<String> chatIds) {
+        Map<String, Long> result = new HashMap<>();
+        if (chatIds == null || chatIds.isEmpty()) {
+            return result;
+        }
+        
+        try {
+            List<String> chatIdList = new ArrayList<>(chatIds);
+            List<Double> scores = recentIndex(userId).getScore(chatIdList);
+            for (int i = 0; i < chatIdList.size(); i++) {
+                Double score = scores.get(i);
+                if (score != null) {
+                    result.put(chatIdList.get(i), score.longValue());
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            log.error("查询会话索引时间失败, userId: {}", userId, e);
+            return result;
+        }
+    }
+    
+    /**
+     * 索引上线前的会话只存在于元数据中，首次读取时全量重建一次
+     */
+    private void ensureRecentIndex(String userId, RScoredSortedSet<String> index) {
+        if (index.getScore(RECENT_INDEX_MARKER) != null) {
+            return;
+        }
+        Map<String, Double> scores = new HashMap<>();
+        for (Map.Entry<String, String> entry : getAllChatListMetadata(userId).entrySet()) {
+            try {
+                long time = JSONUtil.parseObj(entry.getValue()).getLong("t", 0L);
+                if (time > 0) {
+                    scores.put(entry.getKey(), (double) time);
+                }
+            } catch (Exception e) {
+                log.warn("重建会话索引时解析元数据失败, userId: {}, chatId: {}", userId, entry.getKey());
+            }
+        }
+        scores.put(RECENT_INDEX_MARKER, 0d);
+        index.addAll(scores);
+        log.info("重建最近会话索引, userId: {}, 会话数: {}", userId, scores.size() - 1);
+    }
+    
+    private RScoredSortedSet<String> recentIndex(String userId) {
+        return redissonClient.getScoredSortedSet(RECENT_KEY_PREFIX + userId, StringCodec.INSTANCE);
+    }
+    
     /**
      * 获取单个会话的元数据（V3增强版：合并元数据+未读数）
      */
@@ -303,6 +448,7 @@ public class ChatListServiceImpl implements ChatListService {
             redissonUtils.deleteHashWithStringCodec(redisKey, metaField);
             redissonUtils.deleteHashWithStringCodec(redisKey, unreadField);
             redissonUtils.deleteHashWithStringCodec(redisKey, clearTsField);
+            recentIndex(userId).remove(chatId);
             
             log.info("删除会话元数据, userId: {}, chatId: {}", userId, chatId);
         } catch (Exception e) {
@@ -319,6 +465,7 @@ public class ChatListServiceImpl implements ChatListService {
         
         try {
             redissonUtils.delete(redisKey);
+            redissonUtils.delete(RECENT_KEY_PREFIX + userId);
             log.info("删除所有会话列表数据, userId: {}", userId);
         } catch (Exception e) {
             log.error("删除所有会话列表数据失败, userId: {}", userId, e);
@@ -0,0 +1,443 @@
+package com.xzll.business.service.impl;
+
+import com.xzll.business.config.MinioConfig;
+import com.xzll.business.dto.request.FileUploadInitDTO;
+import com.xzll.business.dto.response.FileUploadSessionDTO;
+import com.xzll.business.service.ChunkedUploadService;
+import com.xzll.business.service.ImageDerivativeService;
+import io.minio.ComposeObjectArgs;
+import io.minio.ComposeSource;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 聊天文件分片上传服务实现类
+ *
+ * 实现方式：每个分片作为临时对象 tmp/multipart/{uploadId}/{partNumber} 流式写入 MinIO，
+ * 完成时用 composeObject 在 MinIO 服务端拼接为最终对象并删除临时分片。
+ * 合并后在后台按对象内容重新计算 SHA-256，与客户端声明一致才写入秒传索引，防止伪造哈希污染秒传。
+ */
+@Slf4j
+@Service
+public class ChunkedUploadServiceImpl implements ChunkedUploadService {
+
+    private static final String TAG = "[分片上传]_";
+
+    /**
+     * 会话信息 Hash：im:file:upload:session:{uploadId}
+     */
+    private static final String SESSION_KEY_PREFIX = "im:file:upload:session:";
+
+    /**
+     * 已上传分片 Hash：im:file:upload:parts:{uploadId}，field: 分片号，value: 分片大小
+     */
+    private static final String PARTS_KEY_PREFIX = "im:file:upload:parts:";
+
+    /**
+     * 断点续传索引：im:file:upload:resume:{userId}:{contentHash} -> uploadId
+     */
+    private static final String RESUME_KEY_PREFIX = "im:file:upload:resume:";
+
+    /**
+     * 秒传索引 Hash，field: contentHash，value: 对象路径
+     */
+    private static final String DEDUP_KEY = "im:file:dedup";
+
+    private static final String PART_OBJECT_PREFIX = "tmp/multipart/";
+
+    /**
+     * MinIO/S3 合并要求除最后一片外每片不小于 5MB
+     */
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private static final int MAX_PART_COUNT = 10000;
+
+    private static final Pattern SHA256_PATTERN = Pattern.compile("^[0-9a-f]{64}$");
+
+    private static final String F_USER_ID = "userId";
+    private static final String F_OBJECT_NAME = "objectName";
+    private static final String F_FILE_SIZE = "fileSize";
+    private static final String F_PART_SIZE = "partSize";
+    private static final String F_PART_COUNT = "partCount";
+    private static final String F_CONTENT_HASH = "contentHash";
+    private static final String F_CONTENT_TYPE = "contentType";
+    private static final String F_COMPLETING = "completing";
+
+    @Resource
+    private MinioClient minioClient;
+
+    @Resource
+    private MinioConfig minioConfig;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private ImageDerivativeService imageDerivativeService;
+
+    @Value("${minio.file.upload.base-url:http://localhost:8080/im-business/api/file/}")
+    private String fileBaseUrl;
+
+    @Value("${im.file.multipart.default-part-size:8388608}")
+    private long defaultPartSize;
+
+    @Value("${im.file.multipart.max-part-size:67108864}")
+    private long maxPartSize;
+
+    @Value("${im.file.multipart.max-file-size:2147483648}")
+    private long maxFileSize;
+
+    @Value("${im.file.multipart.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    private ThreadPoolExecutor postProcessExecutor;
+
+    @PostConstruct
+    public void init() {
+        postProcessExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                r -> {
+                    Thread thread = new Thread(r, "file-upload-post");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (r, e) -> log.warn("{}后处理队列已满，放弃本次秒传索引校验", TAG));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        postProcessExecutor.shutdownNow();
+    }
+
+    @Override
+    public FileUploadSessionDTO init(String userId, FileUploadInitDTO initDTO) {
+        Long fileSize = initDTO.getFileSize();
+        if (fileSize == null || fileSize <= 0) {
+            throw new IllegalArgumentException("文件大小不正确");
+        }
+        if (fileSize > maxFileSize) {
+            throw new IllegalArgumentException("文件大小不能超过" + (maxFileSize / 1024 / 1024) + "MB");
+        }
+        String contentHash = initDTO.getContentHash() == null ? null : initDTO.getContentHash().toLowerCase(Locale.ROOT);
+        if (contentHash == null || !SHA256_PATTERN.matcher(contentHash).matches()) {
+            throw new IllegalArgumentException("contentHash必须为SHA-256十六进制字符串");
+        }
+
+        // 1. 秒传
+        RMap<String, String> dedup = redissonClient.getMap(DEDUP_KEY, StringCodec.INSTANCE);
+        String existing = dedup.get(contentHash);
+        if (existing != null) {
+            if (objectExists(existing)) {
+                log.info("{}秒传命中, userId: {}, objectName: {}", TAG, userId, existing);
+                FileUploadSessionDTO result = new FileUploadSessionDTO();
+                result.setInstant(true);
+                result.setUrl(buildUrl(existing));
+                result.setFileSize(fileSize);
+                result.setUploadedBytes(fileSize);
+                return result;
+            }
+            dedup.fastRemove(contentHash);
+        }
+
+        // 2. 断点续传
+        RBucket<String> resume = redissonClient.getBucket(RESUME_KEY_PREFIX + userId + ":" + contentHash, StringCodec.INSTANCE);
+        String resumeUploadId = resume.get();
+        if (resumeUploadId != null) {
+            Map<String, String> session = sessionMap(resumeUploadId).readAllMap();
+            if (userId.equals(session.get(F_USER_ID)) && String.valueOf(fileSize).equals(session.get(F_FILE_SIZE))
+                    && !session.containsKey(F_COMPLETING)) {
+                log.info("{}断点续传, userId: {}, uploadId: {}", TAG, userId, resumeUploadId);
+                return toSessionDTO(resumeUploadId, session);
+            }
+        }
+
+        // 3. 新会话
+        long partSize = Math.min(Math.max(initDTO.getPartSize() == null ? defaultPartSize : initDTO.getPartSize(),
+                MIN_PART_SIZE), maxPartSize);
+        if ((fileSize + partSize - 1) / partSize > MAX_PART_COUNT) {
+            partSize = (fileSize + MAX_PART_COUNT - 1) / MAX_PART_COUNT;
+        }
+        int partCount = (int) ((fileSize + partSize - 1) / partSize);
+
+        String uploadId = UUID.randomUUID().toString().replace("-", "");
+        String cleanUserId = userId.replaceAll("[^a-zA-Z0-9]", "_");
+        String objectName = cleanUserId + "/chat/" + UUID.randomUUID() + getFileExtension(initDTO.getFileName());
+
+        Map<String, String> session = new HashMap<>();
+        session.put(F_USER_ID, userId);
+        session.put(F_OBJECT_NAME, objectName);
+        session.put(F_FILE_SIZE, String.valueOf(fileSize));
+        session.put(F_PART_SIZE, String.valueOf(partSize));
+        session.put(F_PART_COUNT, String.valueOf(partCount));
+        session.put(F_CONTENT_HASH, contentHash);
+        if (StringUtils.hasText(initDTO.getContentType())) {
+            session.put(F_CONTENT_TYPE, initDTO.getContentType());
+        }
+        RMap<String, String> sessionMap = sessionMap(uploadId);
+        sessionMap.putAll(session);
+        sessionMap.expire(sessionTtl());
+        resume.set(uploadId, sessionTtl());
+
+        log.info("{}创建会话, userId: {}, uploadId: {}, fileSize: {}, partSize: {}, partCount: {}",
+                TAG, userId, uploadId, fileSize, partSize, partCount);
+        return toSessionDTO(uploadId, session);
+    }
+
+    @Override
+    public void uploadPart(String userId, String uploadId, int partNumber, InputStream data, long contentLength) throws Exception {
+        Map<String, String> session = loadSession(userId, uploadId);
+        if (session.containsKey(F_COMPLETING)) {
+            throw new IllegalArgumentException("上传会话正在合并");
+        }
+        int partCount = Integer.parseInt(session.get(F_PART_COUNT));
+        if (partNumber < 1 || partNumber > partCount) {
+            throw new IllegalArgumentException("分片号超出范围: 1-" + partCount);
+        }
+        long expectedSize = partSizeOf(session, partNumber);
+        if (contentLength != expectedSize) {
+            throw new IllegalArgumentException("分片" + partNumber + "大小应为" + expectedSize + "字节");
+        }
+
+        // partSize 传 -1 由 SDK 按 5MB 切分，单个请求在内存中最多缓冲一个 SDK 分段
+        minioClient.putObject(PutObjectArgs.builder()
+                .bucket(minioConfig.getBucketName())
+                .object(partObjectName(uploadId, partNumber))
+                .stream(data, expectedSize, -1)
+                .build());
+
+        RMap<String, String> parts = partsMap(uploadId);
+        parts.fastPut(String.valueOf(partNumber), String.valueOf(expectedSize));
+        parts.expire(sessionTtl());
+        sessionMap(uploadId).expire(sessionTtl());
+        log.debug("{}分片上传完成, uploadId: {}, part: {}/{}", TAG, uploadId, partNumber, partCount);
+    }
+
+    @Override
+    public FileUploadSessionDTO getSession(String userId, String uploadId) {
+        return toSessionDTO(uploadId, loadSession(userId, uploadId));
+    }
+
+    @Override
+    public FileUploadSessionDTO complete(String userId, String uploadId) throws Exception {
+        Map<String, String> session = loadSession(userId, uploadId);
+        int partCount = Integer.parseInt(session.get(F_PART_COUNT));
+        Set<String> uploaded = partsMap(uploadId).readAllKeySet();
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 1; i <= partCount && missing.size() < 20; i++) {
+            if (!uploaded.contains(String.valueOf(i))) {
+                missing.add(i);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("分片未全部上传，缺少: " + missing);
+        }
+
+        RMap<String, String> sessionMap = sessionMap(uploadId);
+        if (!sessionMap.fastPutIfAbsent(F_COMPLETING, "1")) {
+            throw new IllegalArgumentException("上传会话正在合并");
+        }
+
+        String objectName = session.get(F_OBJECT_NAME);
+        String contentType = session.get(F_CONTENT_TYPE);
+        try {
+            List<ComposeSource> sources = new ArrayList<>(partCount);
+            for (int i = 1; i <= partCount; i++) {
+                sources.add(ComposeSource.builder()
+                        .bucket(minioConfig.getBucketName())
+                        .object(partObjectName(uploadId, i))
+                        .build());
+            }
+            ComposeObjectArgs.Builder compose = ComposeObjectArgs.builder()
+                    .bucket(minioConfig.getBucketName())
+                    .object(objectName)
+                    .sources(sources);
+            if (contentType != null) {
+                compose.headers(Map.of("Content-Type", contentType));
+            }
+            minioClient.composeObject(compose.build());
+        } catch (Exception e) {
+            sessionMap.fastRemove(F_COMPLETING);
+            throw e;
+        }
+
+        removePartObjects(uploadId, partCount);
+        redissonClient.getKeys().delete(SESSION_KEY_PREFIX + uploadId, PARTS_KEY_PREFIX + uploadId,
+                RESUME_KEY_PREFIX + userId + ":" + session.get(F_CONTENT_HASH));
+
+        String contentHash = session.get(F_CONTENT_HASH);
+        postProcessExecutor.execute(() -> verifyAndIndex(objectName, contentHash));
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("image/")) {
+            imageDerivativeService.submit(objectName);
+        }
+
+        log.info("{}合并完成, userId: {}, uploadId: {}, objectName: {}", TAG, userId, uploadId, objectName);
+        FileUploadSessionDTO result = new FileUploadSessionDTO();
+        result.setUploadId(uploadId);
+        result.setInstant(false);
+        result.setUrl(buildUrl(objectName));
+        result.setFileSize(Long.parseLong(session.get(F_FILE_SIZE)));
+        result.setUploadedBytes(result.getFileSize());
+        result.setPartCount(partCount);
+        return result;
+    }
+
+    @Override
+    public void abort(String userId, String uploadId) {
+        Map<String, String> session = loadSession(userId, uploadId);
+        removePartObjects(uploadId, Integer.parseInt(session.get(F_PART_COUNT)));
+        redissonClient.getKeys().delete(SESSION_KEY_PREFIX + uploadId, PARTS_KEY_PREFIX + uploadId,
+                RESUME_KEY_PREFIX + userId + ":" + session.get(F_CONTENT_HASH));
+        log.info("{}取消上传, userId: {}, uploadId: {}", TAG, userId, uploadId);
+    }
+
+    /**
+     * 重新计算对象 SHA-256，与声明一致才写入秒传索引
+     */
+    private void verifyAndIndex(String objectName, String contentHash) {
+        try (InputStream in = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(minioConfig.getBucketName())
+                .object(objectName)
+                .build())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[65536];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+            String actual = HexFormat.of().formatHex(digest.digest());
+            if (!actual.equals(contentHash)) {
+                log.warn("{}内容哈希不一致，不写入秒传索引, objectName: {}, declared: {}, actual: {}",
+                        TAG, objectName, contentHash, actual);
+                return;
+            }
+            redissonClient.<String, String>getMap(DEDUP_KEY, StringCodec.INSTANCE).fastPutIfAbsent(contentHash, objectName);
+        } catch (Exception e) {
+            log.error("{}秒传索引校验失败, objectName: {}", TAG, objectName, e);
+        }
+    }
+
+    private void removePartObjects(String uploadId, int partCount) {
+        List<DeleteObject> objects = new ArrayList<>(partCount);
+        for (int i = 1; i <= partCount; i++) {
+            objects.add(new DeleteObject(partObjectName(uploadId, i)));
+        }
+        try {
+            Iterable<Result<DeleteError>> results = minioClient.removeObjects(RemoveObjectsArgs.builder()
+                    .bucket(minioConfig.getBucketName())
+                    .objects(objects)
+                    .build());
+            // removeObjects 是惰性的，遍历结果才会真正执行删除
+            for (Result<DeleteError> result : results) {
+                DeleteError error = result.get();
+                log.warn("{}删除临时分片失败, object: {}, message: {}", TAG, error.objectName(), error.message());
+            }
+        } catch (Exception e) {
+            log.error("{}删除临时分片失败, uploadId: {}", TAG, uploadId, e);
+        }
+    }
+
+    private Map<String, String> loadSession(String userId, String uploadId) {
+        Map<String, String> session = sessionMap(uploadId).readAllMap();
+        if (session.isEmpty() || !userId.equals(session.get(F_USER_ID))) {
+            throw new IllegalArgumentException("上传会话不存在或已过期");
+        }
+        return session;
+    }
+
+    private FileUploadSessionDTO toSessionDTO(String uploadId, Map<String, String> session) {
+        Map<String, String> parts = partsMap(uploadId).readAllMap();
+        List<Integer> uploadedParts = new ArrayList<>(parts.size());
+        long uploadedBytes = 0;
+        for (Map.Entry<String, String> e : parts.entrySet()) {
+            uploadedParts.add(Integer.valueOf(e.getKey()));
+            uploadedBytes += Long.parseLong(e.getValue());
+        }
+        Collections.sort(uploadedParts);
+
+        FileUploadSessionDTO dto = new FileUploadSessionDTO();
+        dto.setUploadId(uploadId);
+        dto.setInstant(false);
+        dto.setPartSize(Long.parseLong(session.get(F_PART_SIZE)));
+        dto.setPartCount(Integer.parseInt(session.get(F_PART_COUNT)));
+        dto.setFileSize(Long.parseLong(session.get(F_FILE_SIZE)));
+        dto.setUploadedParts(uploadedParts);
+        dto.setUploadedBytes(uploadedBytes);
+        return dto;
+    }
+
+    private static long partSizeOf(Map<String, String> session, int partNumber) {
+        long fileSize = Long.parseLong(session.get(F_FILE_SIZE));
+        long partSize = Long.parseLong(session.get(F_PART_SIZE));
+        int partCount = Integer.parseInt(session.get(F_PART_COUNT));
+        return partNumber < partCount ? partSize : fileSize - partSize * (partCount - 1);
+    }
+
+    private boolean objectExists(String objectName) {
+        try {
+            minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(minioConfig.getBucketName())
+                    .object(objectName)
+                    .build());
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private RMap<String, String> sessionMap(String uploadId) {
+        return redissonClient.getMap(SESSION_KEY_PREFIX + uploadId, StringCodec.INSTANCE);
+    }
+
+    private RMap<String, String> partsMap(String uploadId) {
+        return redissonClient.getMap(PARTS_KEY_PREFIX + uploadId, StringCodec.INSTANCE);
+    }
+
+    private Duration sessionTtl() {
+        return Duration.ofHours(sessionTtlHours);
+    }
+
+    private static String partObjectName(String uploadId, int partNumber) {
+        return PART_OBJECT_PREFIX + uploadId + "/" + partNumber;
+    }
+
+    private String buildUrl(String objectName) {
+        return fileBaseUrl + "s/" + Base64.getEncoder().encodeToString(objectName.getBytes());
+    }
+
+    private static String getFileExtension(String fileName) {
+        if (fileName == null) {
+            return "";
+        }
+        int dot = fileName.lastIndexOf('.');
+        String extension = dot > 0 ? fileName.substring(dot) : "";
+        return extension.matches("\\.[A-Za-z0-9]{1,10}") ? extension : "";
+    }
+}
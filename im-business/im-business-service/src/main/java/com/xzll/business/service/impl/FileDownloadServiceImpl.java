@@ -0,0 +1,317 @@
+package com.xzll.business.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.xzll.business.config.MinioConfig;
+import com.xzll.business.service.FileDownloadService;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: MinIO 文件下载代理服务实现类
+ *
+ * 两级本地缓存：
+ * 1. 元数据缓存：所有对象的 ETag / 大小 / 修改时间 / 类型，条件请求与 Range 请求不必每次 statObject
+ * 2. 内容缓存：不超过 max-object-bytes 的小对象整块缓存，按总字节数限量、近似 LRU 淘汰
+ * 对象路径带 UUID，上传后内容不再变化，缓存过期时间只用于兜底回收
+ */
+@Slf4j
+@Service
+public class FileDownloadServiceImpl implements FileDownloadService {
+
+    private static final String TAG = "[文件下载代理]_";
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    @Resource
+    private MinioClient minioClient;
+
+    @Resource
+    private MinioConfig minioConfig;
+
+    @Value("${im.file.download.cache.max-bytes:67108864}")
+    private long cacheMaxBytes;
+
+    @Value("${im.file.download.cache.max-object-bytes:262144}")
+    private long cacheMaxObjectBytes;
+
+    @Value("${im.file.download.cache.ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    @Value("${im.file.download.meta-cache.max-size:50000}")
+    private long metaCacheMaxSize;
+
+    @Value("${im.file.download.meta-cache.ttl-seconds:300}")
+    private long metaCacheTtlSeconds;
+
+    @Value("${im.file.download.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${im.file.download.max-age-seconds:86400}")
+    private long maxAgeSeconds;
+
+    private Cache<String, ObjectMeta> metaCache;
+
+    private Cache<String, byte[]> contentCache;
+
+    @PostConstruct
+    public void init() {
+        metaCache = CacheBuilder.newBuilder()
+                .maximumSize(metaCacheMaxSize)
+                .expireAfterWrite(metaCacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        contentCache = CacheBuilder.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                .weigher((String key, byte[] value) -> value.length)
+                .expireAfterAccess(cacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        log.info("{}初始化完成, 内容缓存上限: {}bytes, 单对象上限: {}bytes", TAG, cacheMaxBytes, cacheMaxObjectBytes);
+    }
+
+    @Override
+    public void writeObject(String objectPath, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ObjectMeta meta;
+        try {
+            meta = getMeta(objectPath);
+        } catch (ErrorResponseException e) {
+            log.warn("{}对象不存在, objectPath: {}, code: {}", TAG, objectPath, e.errorResponse().code());
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        } catch (Exception e) {
+            log.error("{}获取对象信息失败, objectPath: {}", TAG, objectPath, e);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, meta.etag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, meta.lastModified());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + maxAgeSeconds);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+
+        if (isNotModified(request, meta)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long length = meta.size();
+        HttpRange range = resolveRange(request, meta);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(meta.size());
+                length = range.getRangeEnd(meta.size()) - start + 1;
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + meta.size());
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + start + "-" + (start + length - 1) + "/" + meta.size());
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+        response.setContentType(meta.contentType());
+        response.setContentLengthLong(length);
+
+        if (HttpMethod.HEAD.matches(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        try {
+            writeBody(objectPath, meta, start, length, range == null, response);
+        } catch (IOException e) {
+            // 客户端中途断开（如图片列表快速滑动），无需按错误处理
+            log.debug("{}写出中断, objectPath: {}, msg: {}", TAG, objectPath, e.getMessage());
+        } catch (Exception e) {
+            log.error("{}读取对象失败, objectPath: {}", TAG, objectPath, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_BAD_GATEWAY);
+            }
+        }
+    }
+
+    @Override
+    public void evict(String objectPath) {
+        metaCache.invalidate(objectPath);
+        contentCache.invalidate(objectPath);
+    }
+
+    private void writeBody(String objectPath, ObjectMeta meta, long start, long length, boolean fullObject,
+                           HttpServletResponse response) throws Exception {
+        OutputStream out = response.getOutputStream();
+
+        byte[] cached = contentCache.getIfPresent(objectPath);
+        if (cached != null) {
+            out.write(cached, (int) start, (int) length);
+            return;
+        }
+
+        // 小对象的完整请求：读入后放进缓存，大小受 max-object-bytes 限制
+        if (fullObject && meta.size() <= cacheMaxObjectBytes) {
+            byte[] data;
+            try (InputStream in = openStream(objectPath, 0, meta.size())) {
+                data = in.readNBytes((int) meta.size());
+            }
+            if (data.length == meta.size()) {
+                contentCache.put(objectPath, data);
+            }
+            out.write(data);
+            return;
+        }
+
+        // 大对象或 Range 请求：按区间从 MinIO 读取，固定缓冲区边读边写
+        try (InputStream in = openStream(objectPath, start, length)) {
+            byte[] buffer = new byte[bufferSize];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private InputStream openStream(String objectPath, long offset, long length) throws Exception {
+        return minioClient.getObject(GetObjectArgs.builder()
+                .bucket(minioConfig.getBucketName())
+                .object(objectPath)
+                .offset(offset)
+                .length(length)
+                .build());
+    }
+
+    private ObjectMeta getMeta(String objectPath) throws Exception {
+        ObjectMeta meta = metaCache.getIfPresent(objectPath);
+        if (meta != null) {
+            return meta;
+        }
+        StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                .bucket(minioConfig.getBucketName())
+                .object(objectPath)
+                .build());
+        String contentType = stat.contentType();
+        if (!StringUtils.hasText(contentType) || DEFAULT_CONTENT_TYPE.equals(contentType)) {
+            contentType = getContentTypeByExtension(objectPath);
+        }
+        String etag = stat.etag();
+        if (etag != null && !etag.startsWith("\"")) {
+            etag = "\"" + etag + "\"";
+        }
+        meta = new ObjectMeta(stat.size(), etag, stat.lastModified().toInstant().toEpochMilli(), contentType);
+        metaCache.put(objectPath, meta);
+        return meta;
+    }
+
+    /**
+     * If-None-Match 优先，存在时忽略 If-Modified-Since
+     */
+    private boolean isNotModified(HttpServletRequest request, ObjectMeta meta) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if ("*".equals(candidate) || weakEtag(candidate).equals(weakEtag(meta.etag()))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && meta.lastModified() / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * 只处理单段 Range；多段或格式错误时忽略 Range，返回完整内容
+     */
+    private HttpRange resolveRange(HttpServletRequest request, ObjectMeta meta) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || meta.size() == 0) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            boolean matched = ifRange.startsWith("\"")
+                    ? ifRange.equals(meta.etag())
+                    : meta.lastModified() / 1000 <= dateHeader(request, HttpHeaders.IF_RANGE) / 1000;
+            if (!matched) {
+                return null;
+            }
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static String weakEtag(String etag) {
+        return etag != null && etag.startsWith("W/") ? etag.substring(2) : String.valueOf(etag);
+    }
+
+    /**
+     * 对象未记录 Content-Type 时按扩展名推断
+     */
+    private static String getContentTypeByExtension(String objectPath) {
+        int dot = objectPath.lastIndexOf('.');
+        String extension = dot >= 0 ? objectPath.substring(dot).toLowerCase(Locale.ROOT) : "";
+        switch (extension) {
+            case ".jpg":
+            case ".jpeg":
+                return "image/jpeg";
+            case ".png":
+                return "image/png";
+            case ".gif":
+                return "image/gif";
+            case ".webp":
+                return "image/webp";
+            case ".bmp":
+                return "image/bmp";
+            case ".svg":
+                return "image/svg+xml";
+            case ".mp4":
+                return "video/mp4";
+            case ".mp3":
+                return "audio/mpeg";
+            case ".pdf":
+                return "application/pdf";
+            default:
+                return DEFAULT_CONTENT_TYPE;
+        }
+    }
+
+    private record ObjectMeta(long size, String etag, long lastModified, String contentType) {
+    }
+}
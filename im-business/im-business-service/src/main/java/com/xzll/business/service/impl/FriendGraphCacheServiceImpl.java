@@ -0,0 +1,324 @@
+package com.xzll.business.service.impl;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.xzll.business.entity.mysql.ImFriendRelation;
+import com.xzll.business.entity.redis.FriendGraphCacheEntry;
+import com.xzll.business.mapper.ImFriendRelationMapper;
+import com.xzll.business.service.FriendGraphCacheService;
+import com.xzll.common.utils.LuaScriptRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.ScoredEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.xzll.common.constant.ImConstant.RedisKeyConstant.FRIEND_BLOCKED_KEY_FORMAT;
+import static com.xzll.common.constant.ImConstant.RedisKeyConstant.FRIEND_GRAPH_CHANGE_TOPIC;
+import static com.xzll.common.constant.ImConstant.RedisKeyConstant.FRIEND_GRAPH_LOADED_MARKER;
+import static com.xzll.common.constant.ImConstant.RedisKeyConstant.FRIEND_GRAPH_VERSION_KEY_FORMAT;
+import static com.xzll.common.constant.ImConstant.RedisKeyConstant.FRIEND_IDS_KEY_FORMAT;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 好友关系缓存服务实现类
+ *
+ * 一致性说明：
+ * 1. 关系变更只在事务提交后从数据库整体重建，不做增量修改，避免并发变更时缓存与数据库偏离
+ * 2. 重建失败时删除 Redis 缓存，下次读取重新加载
+ * 3. 本地近端缓存靠变更广播失效，订阅异常时最长不一致时间为 local-ttl
+ * 4. 回填带版本号比较：读者未命中时先读版本号再查库，写者先自增版本号再查库，
+ *    写入 Redis 时版本号已变化则放弃，避免读者查到的旧快照在写者重建之后覆盖缓存（拉黑等变更被旧数据吞掉）
+ */
+@Slf4j
+@Service
+public class FriendGraphCacheServiceImpl implements FriendGraphCacheService {
+
+    private static final String TAG = "[好友关系缓存]_";
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    /**
+     * 版本号一致时整体重建好友集合与拉黑集合，不一致返回 -1 不写入
+     * KEYS[1] 好友集合，KEYS[2] 拉黑集合，KEYS[3] 版本号
+     * ARGV[1] 过期时间（秒），ARGV[2] 占位成员，ARGV[3] 查库前读到的版本号（不存在为空串），ARGV[4] 好友数 n，
+     * 随后 n 组 (score, friendId)，剩余参数为拉黑的好友ID
+     */
+    private static final String LUA_REBUILD =
+        "local ver = redis.call('GET', KEYS[3]) or ''; " +
+        "if ver ~= ARGV[3] then return -1 end; " +
+        "redis.call('DEL', KEYS[1], KEYS[2]); " +
+        "local n = tonumber(ARGV[4]); " +
+        "redis.call('ZADD', KEYS[1], 0, ARGV[2]); " +
+        "for i = 0, n - 1 do redis.call('ZADD', KEYS[1], ARGV[5 + i * 2], ARGV[6 + i * 2]) end; " +
+        "redis.call('SADD', KEYS[2], ARGV[2]); " +
+        "for i = 5 + n * 2, #ARGV do redis.call('SADD', KEYS[2], ARGV[i]) end; " +
+        "redis.call('EXPIRE', KEYS[1], ARGV[1]); " +
+        "redis.call('EXPIRE', KEYS[2], ARGV[1]); " +
+        "if ver ~= '' then redis.call('EXPIRE', KEYS[3], tonumber(ARGV[1]) * 2) end; " +
+        "return n";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private LuaScriptRegistry luaScriptRegistry;
+
+    @Resource
+    private ImFriendRelationMapper friendRelationMapper;
+
+    @Value("${im.friend-graph.cache.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${im.friend-graph.cache.local-max-size:50000}")
+    private long localMaxSize;
+
+    @Value("${im.friend-graph.cache.local-ttl-seconds:30}")
+    private long localTtlSeconds;
+
+    private Cache<String, FriendGraphCacheEntry> localCache;
+
+    private LuaScriptRegistry.LuaScript rebuildScript;
+
+    private RTopic changeTopic;
+    private int changeListenerId = -1;
+
+    @PostConstruct
+    public void init() {
+        localCache = CacheBuilder.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        rebuildScript = luaScriptRegistry.register("friend_graph_rebuild", LUA_REBUILD);
+        try {
+            changeTopic = redissonClient.getTopic(FRIEND_GRAPH_CHANGE_TOPIC, StringCodec.INSTANCE);
+            changeListenerId = changeTopic.addListener(String.class, (channel, userId) -> {
+                localCache.invalidate(userId);
+                log.debug("{}收到变更广播, userId: {}", TAG, userId);
+            });
+        } catch (Exception e) {
+            log.error("{}订阅变更广播失败, 本地缓存将仅按TTL过期", TAG, e);
+        }
+        log.info("{}初始化完成, ttl: {}s, localMaxSize: {}, localTtl: {}s", TAG, ttlSeconds, localMaxSize, localTtlSeconds);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (changeTopic != null && changeListenerId != -1) {
+            changeTopic.removeListener(changeListenerId);
+        }
+    }
+
+    @Override
+    public FriendGraphCacheEntry getGraph(String userId) {
+        FriendGraphCacheEntry entry = localCache.getIfPresent(userId);
+        if (entry != null) {
+            return entry;
+        }
+        try {
+            String[] version = new String[1];
+            entry = loadFromRedis(userId, version);
+            if (entry == null) {
+                entry = loadFromDb(userId);
+                if (!writeToRedis(userId, entry, version[0])) {
+                    // 查库期间关系有变更，本次查到的可能是旧快照：不回填、不进本地缓存，交给写者重建
+                    log.debug("{}回填时版本号已变化，放弃回填, userId: {}", TAG, userId);
+                    return entry;
+                }
+                log.debug("{}缓存未命中，已从数据库重建, userId: {}, 好友数: {}", TAG, userId, entry.size());
+            }
+        } catch (Exception e) {
+            log.error("{}读取Redis失败，直接查库, userId: {}", TAG, userId, e);
+            return loadFromDb(userId);
+        }
+        localCache.put(userId, entry);
+        return entry;
+    }
+
+    @Override
+    public boolean isFriend(String userId, String friendId) {
+        return getGraph(userId).isFriend(friendId);
+    }
+
+    @Override
+    public boolean isBlocked(String userId, String targetId) {
+        return getGraph(userId).isBlocked(targetId);
+    }
+
+    @Override
+    public Map<String, Integer> getRelationStates(String userId, Collection<String> targetIds) {
+        Map<String, Integer> result = new HashMap<>();
+        FriendGraphCacheEntry graph = getGraph(userId);
+        for (String targetId : targetIds) {
+            if (graph.isFriend(targetId)) {
+                result.put(targetId, graph.isBlocked(targetId) ? 3 : 1);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void refreshAfterCommit(String... userIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refreshQuietly(userIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refreshQuietly(userIds);
+            }
+        });
+    }
+
+    @Override
+    public FriendGraphCacheEntry refresh(String userId) {
+        // 先自增版本号再查库：之前开始的读者回填都会失败，并发的多个写者只有最后自增的那个能写入
+        RAtomicLong versionCounter = redissonClient.getAtomicLong(versionKey(userId));
+        String version = String.valueOf(versionCounter.incrementAndGet());
+        versionCounter.expireAsync(Duration.ofSeconds(ttlSeconds * 2));
+        FriendGraphCacheEntry entry = loadFromDb(userId);
+        if (!writeToRedis(userId, entry, version)) {
+            log.debug("{}重建期间有更新的变更，由后一次重建写入, userId: {}", TAG, userId);
+        }
+        localCache.invalidate(userId);
+        if (changeTopic != null) {
+            changeTopic.publish(userId);
+        }
+        log.info("{}重建好友关系缓存, userId: {}, 好友数: {}, 拉黑数: {}",
+                TAG, userId, entry.size(), entry.getBlockedIds().size());
+        return entry;
+    }
+
+    private void refreshQuietly(String... userIds) {
+        for (String userId : userIds) {
+            if (!StringUtils.hasText(userId)) {
+                continue;
+            }
+            try {
+                refresh(userId);
+            } catch (Exception e) {
+                log.error("{}重建好友关系缓存失败，删除缓存等待下次加载, userId: {}", TAG, userId, e);
+                try {
+                    redissonClient.getKeys().delete(idsKey(userId), blockedKey(userId));
+                    localCache.invalidate(userId);
+                } catch (Exception ex) {
+                    log.error("{}删除好友关系缓存失败, userId: {}", TAG, userId, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一次往返读取好友集合、拉黑集合与版本号，任一集合缺少占位成员视为未加载
+     *
+     * @param version 输出参数，version[0] 为读到的版本号（不存在为空串），未加载时用于回填比较
+     * @return 未加载时返回null
+     */
+    private FriendGraphCacheEntry loadFromRedis(String userId, String[] version) {
+        RBatch batch = redissonClient.createBatch();
+        RFuture<String> versionFuture = batch.<String>getBucket(versionKey(userId), StringCodec.INSTANCE).getAsync();
+        RFuture<Collection<ScoredEntry<String>>> friendsFuture = batch.<String>getScoredSortedSet(idsKey(userId), StringCodec.INSTANCE)
+                .entryRangeReversedAsync(0, -1);
+        RFuture<Set<String>> blockedFuture = batch.<String>getSet(blockedKey(userId), StringCodec.INSTANCE)
+                .readAllAsync();
+        batch.execute();
+
+        Collection<ScoredEntry<String>> friends = friendsFuture.toCompletableFuture().join();
+        Set<String> blocked = blockedFuture.toCompletableFuture().join();
+        String ver = versionFuture.toCompletableFuture().join();
+        version[0] = ver == null ? "" : ver;
+        if (!blocked.contains(FRIEND_GRAPH_LOADED_MARKER)) {
+            return null;
+        }
+
+        boolean loaded = false;
+        List<String> friendIds = new ArrayList<>(friends.size());
+        Map<String, Long> friendSince = new HashMap<>(friends.size() * 2);
+        for (ScoredEntry<String> friend : friends) {
+            if (FRIEND_GRAPH_LOADED_MARKER.equals(friend.getValue())) {
+                loaded = true;
+                continue;
+            }
+            friendIds.add(friend.getValue());
+            friendSince.put(friend.getValue(), friend.getScore().longValue());
+        }
+        if (!loaded) {
+            return null;
+        }
+        blocked.remove(FRIEND_GRAPH_LOADED_MARKER);
+        return new FriendGraphCacheEntry(friendIds, friendSince, blocked);
+    }
+
+    private FriendGraphCacheEntry loadFromDb(String userId) {
+        List<ImFriendRelation> relations = friendRelationMapper.selectList(Wrappers.lambdaQuery(ImFriendRelation.class)
+                .select(ImFriendRelation::getFriendId, ImFriendRelation::getBlackFlag, ImFriendRelation::getCreateTime)
+                .eq(ImFriendRelation::getUserId, userId)
+                .eq(ImFriendRelation::getDelFlag, false)
+                .orderByDesc(ImFriendRelation::getCreateTime));
+
+        List<String> friendIds = new ArrayList<>(relations.size());
+        Map<String, Long> friendSince = new HashMap<>(relations.size() * 2);
+        Set<String> blocked = new HashSet<>();
+        for (ImFriendRelation relation : relations) {
+            friendIds.add(relation.getFriendId());
+            friendSince.put(relation.getFriendId(), relation.getCreateTime() == null ? 0L
+                    : relation.getCreateTime().atZone(ZONE).toInstant().toEpochMilli());
+            if (Boolean.TRUE.equals(relation.getBlackFlag())) {
+                blocked.add(relation.getFriendId());
+            }
+        }
+        return new FriendGraphCacheEntry(friendIds, friendSince, blocked);
+    }
+
+    /**
+     * 版本号仍为 expectedVersion 时写入
+     *
+     * @return 是否写入
+     */
+    private boolean writeToRedis(String userId, FriendGraphCacheEntry entry, String expectedVersion) {
+        List<Object> args = new ArrayList<>(4 + entry.size() * 2 + entry.getBlockedIds().size());
+        args.add(String.valueOf(ttlSeconds));
+        args.add(FRIEND_GRAPH_LOADED_MARKER);
+        args.add(expectedVersion);
+        args.add(String.valueOf(entry.size()));
+        for (String friendId : entry.getFriendIds()) {
+            args.add(String.valueOf(entry.getFriendSince(friendId)));
+            args.add(friendId);
+        }
+        args.addAll(entry.getBlockedIds());
+        Long written = luaScriptRegistry.evalShaAsLong(rebuildScript,
+                List.of(idsKey(userId), blockedKey(userId), versionKey(userId)), args.toArray());
+        return written != null && written >= 0;
+    }
+
+    private static String idsKey(String userId) {
+        return String.format(FRIEND_IDS_KEY_FORMAT, userId);
+    }
+
+    private static String blockedKey(String userId) {
+        return String.format(FRIEND_BLOCKED_KEY_FORMAT, userId);
+    }
+
+    private static String versionKey(String userId) {
+        return String.format(FRIEND_GRAPH_VERSION_KEY_FORMAT, userId);
+    }
+}
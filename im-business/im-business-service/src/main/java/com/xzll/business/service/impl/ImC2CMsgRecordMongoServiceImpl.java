@@ -8,16 +8,19 @@ import com.xzll.business.entity.mongo.ImC2CMsgRecordMongo;
 import com.xzll.business.entity.mysql.ImC2CMsgRecord;
 import com.xzll.business.repository.ImC2CMsgRecordMongoRepository;
 import com.xzll.business.service.ImC2CMsgRecordService;
+import com.xzll.business.service.MessageStatsRollupService;
 import com.xzll.business.cluster.mq.RocketMqProducerWrap;
 import com.xzll.common.constant.ImConstant;
 import com.xzll.common.constant.MsgStatusEnum;
 import com.xzll.common.rocketmq.ClusterEvent;
+import com.xzll.common.util.msgId.SnowflakeIdService;
 import com.xzll.common.pojo.request.C2COffLineMsgAO;
 import com.xzll.common.pojo.request.C2CReceivedMsgAckAO;
 import com.xzll.common.pojo.request.C2CSendMsgAO;
 import com.xzll.common.pojo.request.C2CWithdrawMsgAO;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -57,6 +60,21 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
     @Resource
     private RocketMqProducerWrap rocketMqProducerWrap;
 
+    @Resource
+    private MessageStatsRollupService messageStatsRollupService;
+
+    /**
+     * 分页查询总数统计上限，超过上限的总数不再精确统计；为0时不执行count，只返回估算总数
+     */
+    @Value("${im.message.query.count-limit:10000}")
+    private long countLimit;
+
+    /**
+     * 页码分页允许的最大跳过条数，与 ES 的 max_result_window 对齐；更深的翻页直接返回空页，深翻请用游标接口
+     */
+    @Value("${im.message.query.max-offset:10000}")
+    private long maxOffset;
+
     /**
      * 保存C2C消息
      * 
@@ -89,6 +107,11 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
             
             log.info("C2C消息保存到MongoDB成功: chatId={}, msgId={}", dto.getChatId(), dto.getMsgId());
             
+            // 重试消息与首次发送是同一条消息（按主键覆盖写），不重复计数
+            if (!Objects.equals(dto.getRetryMsgFlag(), 1)) {
+                messageStatsRollupService.recordNewMessage(mongoEntity.getMsgFormat(), mongoEntity.getMsgStatus());
+            }
+            
             // 发送到RocketMQ进行数据同步（ES同步）
             sendToRocketMQ(dto);
             
@@ -121,7 +144,7 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
                     .set("msgStatus", dto.getMsgStatus())
                     .set("updateTime", new Date());
             
-            mongoTemplate.updateFirst(query, update, ImC2CMsgRecordMongo.class);
+            updateStatusAndRecordStats(query, update, dto.getMsgStatus());
             
             log.info("C2C消息离线状态更新成功: chatId={}, msgId={}, status={}", 
                     dto.getChatId(), dto.getMsgId(), dto.getMsgStatus());
@@ -157,7 +180,7 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
                     .set("msgStatus", dto.getMsgStatus())
                     .set("updateTime", new Date());
             
-            mongoTemplate.updateFirst(query, update, ImC2CMsgRecordMongo.class);
+            updateStatusAndRecordStats(query, update, dto.getMsgStatus());
             
             log.info("C2C消息接收状态更新成功: chatId={}, msgId={}, status={}", 
                     dto.getChatId(), dto.getMsgId(), dto.getMsgStatus());
@@ -192,11 +215,17 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
                     dto.getWithdrawFlag() : MsgStatusEnum.MsgWithdrawStatus.YES.getCode();
             
             Query query = new Query(Criteria.where("_id").is(documentId));
+            query.fields().include("withdrawFlag");
             Update update = new Update()
                     .set("withdrawFlag", withdrawFlag)
                     .set("updateTime", new Date());
             
-            mongoTemplate.updateFirst(query, update, ImC2CMsgRecordMongo.class);
+            // 取回更新前的撤回标志，只有真正从未撤回变为已撤回才计数
+            ImC2CMsgRecordMongo before = mongoTemplate.findAndModify(query, update, ImC2CMsgRecordMongo.class);
+            if (before != null && Objects.equals(withdrawFlag, MsgStatusEnum.MsgWithdrawStatus.YES.getCode())
+                    && !Objects.equals(before.getWithdrawFlag(), withdrawFlag)) {
+                messageStatsRollupService.recordWithdraw();
+            }
             
             log.info("C2C消息撤回状态更新成功: chatId={}, msgId={}, withdrawFlag={}", 
                     dto.getChatId(), dto.getMsgId(), withdrawFlag);
@@ -370,37 +399,30 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
 
         try {
             // 构建查询条件
-            Criteria criteria = Criteria.where("chatId").is(queryDTO.getChatId());
+            List<Criteria> conditions = new ArrayList<>();
+            conditions.add(Criteria.where("chatId").is(queryDTO.getChatId()));
             
             // 添加时间范围条件
             if (queryDTO.getStartTime() != null && queryDTO.getEndTime() != null) {
-                criteria.and("msgCreateTime").gte(queryDTO.getStartTime()).lte(queryDTO.getEndTime());
+                conditions.add(Criteria.where("msgCreateTime").gte(queryDTO.getStartTime()).lte(queryDTO.getEndTime()));
             } else if (queryDTO.getStartTime() != null) {
-                criteria.and("msgCreateTime").gte(queryDTO.getStartTime());
+                conditions.add(Criteria.where("msgCreateTime").gte(queryDTO.getStartTime()));
             } else if (queryDTO.getEndTime() != null) {
-                criteria.and("msgCreateTime").lte(queryDTO.getEndTime());
+                conditions.add(Criteria.where("msgCreateTime").lte(queryDTO.getEndTime()));
             }
             
-            // 游标分页：如果有lastMsgId，需要先查询该消息的时间，再基于时间过滤
+            // 游标分页：按 (msgCreateTime, msgId) 定位，同一毫秒的消息用 msgId 区分
             if (StringUtils.isNotBlank(queryDTO.getLastMsgId())) {
-                String lastDocId = queryDTO.getChatId() + "_" + queryDTO.getLastMsgId();
-                Optional<ImC2CMsgRecordMongo> lastMsg = mongoRepository.findById(lastDocId);
-                if (lastMsg.isPresent()) {
-                    Long lastMsgTime = lastMsg.get().getMsgCreateTime();
-                    if (queryDTO.getReverse()) {
-                        // 倒序查询：获取比 lastMsgTime 更早的消息
-                        criteria.and("msgCreateTime").lt(lastMsgTime);
-                    } else {
-                        // 正序查询：获取比 lastMsgTime 更新的消息
-                        criteria.and("msgCreateTime").gt(lastMsgTime);
-                    }
+                Long lastMsgTime = resolveCursorTime(queryDTO);
+                if (lastMsgTime != null) {
+                    conditions.add(keysetCriteria(lastMsgTime, queryDTO.getLastMsgId(), queryDTO.getReverse()));
                 }
             }
+            Criteria criteria = new Criteria().andOperator(conditions.toArray(new Criteria[0]));
             
             // 构建排序
-            Sort sort = queryDTO.getReverse() ? 
-                    Sort.by(Sort.Direction.DESC, "msgCreateTime") : 
-                    Sort.by(Sort.Direction.ASC, "msgCreateTime");
+            Sort.Direction direction = queryDTO.getReverse() ? Sort.Direction.DESC : Sort.Direction.ASC;
+            Sort sort = Sort.by(direction, "msgCreateTime").and(Sort.by(direction, "msgId"));
             
             // 多查询一条用于判断是否还有更多数据
             Pageable pageable = PageRequest.of(0, queryDTO.getPageSize() + 1, sort);
@@ -430,6 +452,7 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
             if (!messages.isEmpty() && response.getHasMore()) {
                 ChatHistoryResponseDTO.ChatMessageVO lastMsg = messages.get(messages.size() - 1);
                 response.setNextLastMsgId(lastMsg.getMsgId());
+                response.setNextLastMsgTime(lastMsg.getMsgCreateTime());
             }
             
             log.info("聊天历史查询完成: chatId={}, 查询到{}条记录, hasMore={}", 
@@ -445,6 +468,51 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
 
     // ==================== 私有辅助方法 ====================
 
+    /**
+     * 更新消息状态并累加状态统计
+     * findAndModify 取回更新前的状态：状态未变化（重复ACK、消息重投）不计数，变化时旧状态减一、新状态加一
+     */
+    private void updateStatusAndRecordStats(Query query, Update update, Integer newStatus) {
+        query.fields().include("msgStatus");
+        ImC2CMsgRecordMongo before = mongoTemplate.findAndModify(query, update, ImC2CMsgRecordMongo.class);
+        if (before != null && !Objects.equals(before.getMsgStatus(), newStatus)) {
+            messageStatsRollupService.recordStatusChange(before.getMsgStatus(), newStatus);
+        }
+    }
+
+    /**
+     * 解析游标时间：优先使用客户端回传的 lastMsgTime；
+     * 旧客户端只传 lastMsgId 时按主键回查一次，消息不存在（已被清理）时退化为雪花ID中的发号时间
+     */
+    private Long resolveCursorTime(ChatHistoryQueryDTO queryDTO) {
+        if (queryDTO.getLastMsgTime() != null) {
+            return queryDTO.getLastMsgTime();
+        }
+        String lastDocId = queryDTO.getChatId() + "_" + queryDTO.getLastMsgId();
+        Optional<ImC2CMsgRecordMongo> lastMsg = mongoRepository.findById(lastDocId);
+        if (lastMsg.isPresent()) {
+            return lastMsg.get().getMsgCreateTime();
+        }
+        Long idTime = SnowflakeIdService.extractTimestamp(queryDTO.getLastMsgId());
+        log.warn("游标消息不存在，使用消息ID中的发号时间定位: chatId={}, lastMsgId={}, idTime={}",
+                queryDTO.getChatId(), queryDTO.getLastMsgId(), idTime);
+        return idTime;
+    }
+
+    /**
+     * 键集分页条件：倒序取 (msgCreateTime, msgId) 小于游标的消息，正序取大于游标的消息
+     */
+    private Criteria keysetCriteria(long lastMsgTime, String lastMsgId, boolean reverse) {
+        if (reverse) {
+            return new Criteria().orOperator(
+                    Criteria.where("msgCreateTime").lt(lastMsgTime),
+                    Criteria.where("msgCreateTime").is(lastMsgTime).and("msgId").lt(lastMsgId));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("msgCreateTime").gt(lastMsgTime),
+                Criteria.where("msgCreateTime").is(lastMsgTime).and("msgId").gt(lastMsgId));
+    }
+
     /**
      * 将 C2CSendMsgAO 转换为 MongoDB 实体
      */
@@ -611,26 +679,13 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
             chatId, pageable.getPageNumber(), pageable.getPageSize());
 
         try {
-            Query query = new Query(Criteria.where("chatId").is(chatId));
-            query.with(org.springframework.data.domain.Sort.by(
-                org.springframework.data.domain.Sort.Direction.DESC, "msgCreateTime"));
-
-            // 添加分页
-            query.skip((long) pageable.getPageSize() * pageable.getPageNumber());
-            query.limit(pageable.getPageSize());
-
-            List<ImC2CMsgRecordMongo> mongoRecords = mongoTemplate.find(query, ImC2CMsgRecordMongo.class);
-            long total = mongoTemplate.count(query.skip(-1).limit(-1), ImC2CMsgRecordMongo.class);
-
-            // 转换为ES实体
-            List<ImC2CMsgRecordES> esRecords = mongoRecords.stream()
-                .map(this::convertMongoToES)
-                .collect(java.util.stream.Collectors.toList());
+            Criteria criteria = Criteria.where("chatId").is(chatId);
+            org.springframework.data.domain.Page<ImC2CMsgRecordES> page = pageQuery(criteria, pageable);
 
             log.info("MongoDB分页查询完成 - chatId: {}, 结果数: {}, 总数: {}",
-                chatId, esRecords.size(), total);
+                chatId, page.getNumberOfElements(), page.getTotalElements());
 
-            return new org.springframework.data.domain.PageImpl<>(esRecords, pageable, total);
+            return page;
 
         } catch (Exception e) {
             log.error("MongoDB分页查询失败 - chatId: {}", chatId, e);
@@ -648,24 +703,13 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
             fromUserId, pageable.getPageNumber(), pageable.getPageSize());
 
         try {
-            Query query = new Query(Criteria.where("fromUserId").is(fromUserId));
-            query.with(org.springframework.data.domain.Sort.by(
-                org.springframework.data.domain.Sort.Direction.DESC, "msgCreateTime"));
-
-            query.skip((long) pageable.getPageSize() * pageable.getPageNumber());
-            query.limit(pageable.getPageSize());
-
-            List<ImC2CMsgRecordMongo> mongoRecords = mongoTemplate.find(query, ImC2CMsgRecordMongo.class);
-            long total = mongoTemplate.count(query.skip(-1).limit(-1), ImC2CMsgRecordMongo.class);
-
-            List<ImC2CMsgRecordES> esRecords = mongoRecords.stream()
-                .map(this::convertMongoToES)
-                .collect(java.util.stream.Collectors.toList());
+            Criteria criteria = Criteria.where("fromUserId").is(fromUserId);
+            org.springframework.data.domain.Page<ImC2CMsgRecordES> page = pageQuery(criteria, pageable);
 
             log.info("MongoDB分页查询完成 - fromUserId: {}, 结果数: {}, 总数: {}",
-                fromUserId, esRecords.size(), total);
+                fromUserId, page.getNumberOfElements(), page.getTotalElements());
 
-            return new org.springframework.data.domain.PageImpl<>(esRecords, pageable, total);
+            return page;
 
         } catch (Exception e) {
             log.error("MongoDB分页查询失败 - fromUserId: {}", fromUserId, e);
@@ -683,24 +727,13 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
             toUserId, pageable.getPageNumber(), pageable.getPageSize());
 
         try {
-            Query query = new Query(Criteria.where("toUserId").is(toUserId));
-            query.with(org.springframework.data.domain.Sort.by(
-                org.springframework.data.domain.Sort.Direction.DESC, "msgCreateTime"));
-
-            query.skip((long) pageable.getPageSize() * pageable.getPageNumber());
-            query.limit(pageable.getPageSize());
-
-            List<ImC2CMsgRecordMongo> mongoRecords = mongoTemplate.find(query, ImC2CMsgRecordMongo.class);
-            long total = mongoTemplate.count(query.skip(-1).limit(-1), ImC2CMsgRecordMongo.class);
-
-            List<ImC2CMsgRecordES> esRecords = mongoRecords.stream()
-                .map(this::convertMongoToES)
-                .collect(java.util.stream.Collectors.toList());
+            Criteria criteria = Criteria.where("toUserId").is(toUserId);
+            org.springframework.data.domain.Page<ImC2CMsgRecordES> page = pageQuery(criteria, pageable);
 
             log.info("MongoDB分页查询完成 - toUserId: {}, 结果数: {}, 总数: {}",
-                toUserId, esRecords.size(), total);
+                toUserId, page.getNumberOfElements(), page.getTotalElements());
 
-            return new org.springframework.data.domain.PageImpl<>(esRecords, pageable, total);
+            return page;
 
         } catch (Exception e) {
             log.error("MongoDB分页查询失败 - toUserId: {}", toUserId, e);
@@ -720,24 +753,12 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
         try {
             // 使用正则表达式进行模糊搜索
             Criteria criteria = Criteria.where("msgContent").regex(content, "i"); // i表示不区分大小写
-            Query query = new Query(criteria);
-            query.with(org.springframework.data.domain.Sort.by(
-                org.springframework.data.domain.Sort.Direction.DESC, "msgCreateTime"));
-
-            query.skip((long) pageable.getPageSize() * pageable.getPageNumber());
-            query.limit(pageable.getPageSize());
-
-            List<ImC2CMsgRecordMongo> mongoRecords = mongoTemplate.find(query, ImC2CMsgRecordMongo.class);
-            long total = mongoTemplate.count(query.skip(-1).limit(-1), ImC2CMsgRecordMongo.class);
-
-            List<ImC2CMsgRecordES> esRecords = mongoRecords.stream()
-                .map(this::convertMongoToES)
-                .collect(java.util.stream.Collectors.toList());
+            org.springframework.data.domain.Page<ImC2CMsgRecordES> page = pageQuery(criteria, pageable);
 
             log.info("MongoDB分页查询完成 - content: {}, 结果数: {}, 总数: {}",
-                content, esRecords.size(), total);
+                content, page.getNumberOfElements(), page.getTotalElements());
 
-            return new org.springframework.data.domain.PageImpl<>(esRecords, pageable, total);
+            return page;
 
         } catch (Exception e) {
             log.error("MongoDB分页查询失败 - content: {}", content, e);
@@ -757,24 +778,12 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
         try {
             Criteria criteria = Criteria.where("chatId").is(chatId)
                 .and("msgContent").regex(content, "i");
-            Query query = new Query(criteria);
-            query.with(org.springframework.data.domain.Sort.by(
-                org.springframework.data.domain.Sort.Direction.DESC, "msgCreateTime"));
-
-            query.skip((long) pageable.getPageSize() * pageable.getPageNumber());
-            query.limit(pageable.getPageSize());
-
-            List<ImC2CMsgRecordMongo> mongoRecords = mongoTemplate.find(query, ImC2CMsgRecordMongo.class);
-            long total = mongoTemplate.count(query.skip(-1).limit(-1), ImC2CMsgRecordMongo.class);
-
-            List<ImC2CMsgRecordES> esRecords = mongoRecords.stream()
-                .map(this::convertMongoToES)
-                .collect(java.util.stream.Collectors.toList());
+            org.springframework.data.domain.Page<ImC2CMsgRecordES> page = pageQuery(criteria, pageable);
 
             log.info("MongoDB分页查询完成 - chatId: {}, content: {}, 结果数: {}, 总数: {}",
-                chatId, content, esRecords.size(), total);
+                chatId, content, page.getNumberOfElements(), page.getTotalElements());
 
-            return new org.springframework.data.domain.PageImpl<>(esRecords, pageable, total);
+            return page;
 
         } catch (Exception e) {
             log.error("MongoDB分页查询失败 - chatId: {}, content: {}", chatId, content, e);
@@ -801,24 +810,12 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
                 criteria.and("msgCreateTime").lte(endTime);
             }
 
-            Query query = new Query(criteria);
-            query.with(org.springframework.data.domain.Sort.by(
-                org.springframework.data.domain.Sort.Direction.DESC, "msgCreateTime"));
-
-            query.skip((long) pageable.getPageSize() * pageable.getPageNumber());
-            query.limit(pageable.getPageSize());
-
-            List<ImC2CMsgRecordMongo> mongoRecords = mongoTemplate.find(query, ImC2CMsgRecordMongo.class);
-            long total = mongoTemplate.count(query.skip(-1).limit(-1), ImC2CMsgRecordMongo.class);
-
-            List<ImC2CMsgRecordES> esRecords = mongoRecords.stream()
-                .map(this::convertMongoToES)
-                .collect(java.util.stream.Collectors.toList());
+            org.springframework.data.domain.Page<ImC2CMsgRecordES> page = pageQuery(criteria, pageable);
 
             log.info("MongoDB分页查询完成 - chatId: {}, 结果数: {}, 总数: {}",
-                chatId, esRecords.size(), total);
+                chatId, page.getNumberOfElements(), page.getTotalElements());
 
-            return new org.springframework.data.domain.PageImpl<>(esRecords, pageable, total);
+            return page;
 
         } catch (Exception e) {
             log.error("MongoDB分页查询失败 - chatId: {}, startTime: {}, endTime: {}",
@@ -839,24 +836,12 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
         try {
             Criteria criteria = Criteria.where("chatId").is(chatId)
                 .and("msgStatus").is(msgStatus);
-            Query query = new Query(criteria);
-            query.with(org.springframework.data.domain.Sort.by(
-                org.springframework.data.domain.Sort.Direction.DESC, "msgCreateTime"));
-
-            query.skip((long) pageable.getPageSize() * pageable.getPageNumber());
-            query.limit(pageable.getPageSize());
-
-            List<ImC2CMsgRecordMongo> mongoRecords = mongoTemplate.find(query, ImC2CMsgRecordMongo.class);
-            long total = mongoTemplate.count(query.skip(-1).limit(-1), ImC2CMsgRecordMongo.class);
-
-            List<ImC2CMsgRecordES> esRecords = mongoRecords.stream()
-                .map(this::convertMongoToES)
-                .collect(java.util.stream.Collectors.toList());
+            org.springframework.data.domain.Page<ImC2CMsgRecordES> page = pageQuery(criteria, pageable);
 
             log.info("MongoDB分页查询完成 - chatId: {}, msgStatus: {}, 结果数: {}, 总数: {}",
-                chatId, msgStatus, esRecords.size(), total);
+                chatId, msgStatus, page.getNumberOfElements(), page.getTotalElements());
 
-            return new org.springframework.data.domain.PageImpl<>(esRecords, pageable, total);
+            return page;
 
         } catch (Exception e) {
             log.error("MongoDB分页查询失败 - chatId: {}, msgStatus: {}", chatId, msgStatus, e);
@@ -907,23 +892,11 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
                 criteria = criteria.and("msgCreateTime").lte(endTime);
             }
 
-            Query query = new Query(criteria);
-            query.with(org.springframework.data.domain.Sort.by(
-                org.springframework.data.domain.Sort.Direction.DESC, "msgCreateTime"));
+            org.springframework.data.domain.Page<ImC2CMsgRecordES> page = pageQuery(criteria, pageable);
 
-            query.skip((long) pageable.getPageSize() * pageable.getPageNumber());
-            query.limit(pageable.getPageSize());
+            log.info("MongoDB分页查询完成（复合） - 结果数: {}, 总数: {}", page.getNumberOfElements(), page.getTotalElements());
 
-            List<ImC2CMsgRecordMongo> mongoRecords = mongoTemplate.find(query, ImC2CMsgRecordMongo.class);
-            long total = mongoTemplate.count(query.skip(-1).limit(-1), ImC2CMsgRecordMongo.class);
-
-            List<ImC2CMsgRecordES> esRecords = mongoRecords.stream()
-                .map(this::convertMongoToES)
-                .collect(java.util.stream.Collectors.toList());
-
-            log.info("MongoDB分页查询完成（复合） - 结果数: {}, 总数: {}", esRecords.size(), total);
-
-            return new org.springframework.data.domain.PageImpl<>(esRecords, pageable, total);
+            return page;
 
         } catch (Exception e) {
             log.error("MongoDB分页查询失败（复合）", e);
@@ -931,6 +904,49 @@ public class ImC2CMsgRecordMongoServiceImpl implements ImC2CMsgRecordService {
         }
     }
 
+    /**
+     * 分页查询公共逻辑
+     *
+     * - 这组接口按页码分页，与 ES 查询接口保持同一契约（MessageQueryRouter 在两者间切换），
+     *   无法回传游标，因此保留 skip；客户端聊天记录翻页走 queryChatHistory 的键集分页
+     * - skip 代价随页深线性增长，offset 超过 maxOffset 时不查库直接返回空页
+     * - 排序使用 (msgCreateTime, msgId) 双字段，同一毫秒的消息在翻页时顺序稳定，不会重复或遗漏
+     * - 多取一条判断是否有下一页；没有下一页时总数可直接算出，无需count
+     * - 有下一页时count最多统计到 countLimit 条，避免大会话/模糊搜索全量计数；countLimit 为0时返回估算总数
+     */
+    private org.springframework.data.domain.Page<ImC2CMsgRecordES> pageQuery(
+            Criteria criteria, org.springframework.data.domain.Pageable pageable) {
+        int pageSize = pageable.getPageSize();
+        long offset = pageable.getOffset();
+        if (offset > maxOffset) {
+            log.warn("MongoDB分页查询页码过深，直接返回空页 - offset: {}, maxOffset: {}", offset, maxOffset);
+            return new org.springframework.data.domain.PageImpl<>(new ArrayList<>(), pageable, offset);
+        }
+
+        Query query = new Query(criteria);
+        query.with(Sort.by(Sort.Direction.DESC, "msgCreateTime").and(Sort.by(Sort.Direction.DESC, "msgId")));
+        query.skip(offset);
+        query.limit(pageSize + 1);
+        List<ImC2CMsgRecordMongo> mongoRecords = mongoTemplate.find(query, ImC2CMsgRecordMongo.class);
+
+        boolean hasNext = mongoRecords.size() > pageSize;
+        if (hasNext) {
+            mongoRecords = mongoRecords.subList(0, pageSize);
+        }
+        long fetchedUpTo = offset + mongoRecords.size() + (hasNext ? 1 : 0);
+        long total = fetchedUpTo;
+        if (hasNext && countLimit > 0) {
+            long counted = mongoTemplate.count(new Query(criteria).limit((int) Math.min(countLimit, Integer.MAX_VALUE)),
+                    ImC2CMsgRecordMongo.class);
+            total = Math.max(counted, fetchedUpTo);
+        }
+
+        List<ImC2CMsgRecordES> esRecords = mongoRecords.stream()
+            .map(this::convertMongoToES)
+            .collect(java.util.stream.Collectors.toList());
+        return new org.springframework.data.domain.PageImpl<>(esRecords, pageable, total);
+    }
+
     /**
      * 将 MongoDB 实体转换为 ES 实体
      */
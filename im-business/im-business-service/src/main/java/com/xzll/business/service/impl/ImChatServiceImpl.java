@@ -8,19 +8,15 @@ import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.google.common.collect.Lists;
 import com.xzll.business.entity.mysql.ImChat;
 import com.xzll.business.entity.mysql.ImC2CMsgRecord;
-import com.xzll.business.entity.mysql.ImPersonalChatOpt;
 import com.xzll.business.mapper.ImChatMapper;
-import com.xzll.business.mapper.ImUserMapper;
 import com.xzll.business.service.ChatListService;
 import com.xzll.business.service.ImChatService;
 import com.xzll.business.service.ImPersonalChatOptService;
-import com.xzll.business.repository.ImC2CMsgRecordMongoRepository;
 import com.xzll.business.entity.mongo.ImC2CMsgRecordMongo;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.domain.Sort;
-import com.xzll.common.constant.ImConstant;
 import com.xzll.common.pojo.request.C2CSendMsgAO;
 import com.xzll.common.pojo.request.LastChatListAO;
 import com.xzll.common.pojo.response.LastChatListVO;
@@ -32,6 +28,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.annotation.Resource;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -57,6 +54,11 @@ public class ImChatServiceImpl implements ImChatService {
     @Resource
     private ChatListService chatListService;
 
+    /**
+     * 扫描最近会话索引时单次读取的最小条数，隐藏/删除的会话较多时减少往返次数
+     */
+    private static final int MIN_SCAN_CHUNK = 32;
+
     /**
      * 此方法为好友申请通过时调用。
      *
@@ -98,16 +100,17 @@ public class ImChatServiceImpl implements ImChatService {
 
 
     /**
-     * 查询最近会话列表（优化版：优先从Redis读取元数据）
+     * 查询最近会话列表（按最近会话索引分页）
      * 
-     * 新的查询流程：
-     * 1. 从 Redis 读取会话列表元数据（msgId + 未读数 + 时间戳）
-     * 2. 如果Redis为空，从MySQL查询用户的所有会话
-     * 3. 从 MongoDB 批量查询消息内容（根据chatId+msgId）
-     * 4. 查询用户对这些会话的个人操作（置顶、隐藏、删除等）
-     * 5. 在内存中组装数据并按最后消息时间排序
-     * 6. 处理置顶逻辑
-     * 7. 在内存中分页返回结果
+     * 查询流程：
+     * 1. 读取用户的会话个人操作位（置顶/隐藏/删除，直接查MySQL）
+     * 2. 按最后消息时间倒序扫描最近会话索引，跳过隐藏/删除/置顶的会话，凑满一页即停止
+     * 3. 首页额外返回全部置顶会话（按最后消息时间倒序排在最前）
+     * 4. 只对当前页的会话读取元数据（HMGET）和MongoDB消息内容
+     * 5. 索引和元数据都为空时，从MySQL查询用户会话兜底
+     * 
+     * 分页方式：传 cursorTime + cursorChatId（上一页最后一条的 lastMsgTime 和 chatId）为游标分页，
+     * 否则按 currentPage 分页（兼容旧客户端，页码越大扫描越多）
      * 
      * @param ao 查询参数
      * @return 会话列表
@@ -116,165 +119,186 @@ public class ImChatServiceImpl implements ImChatService {
     public List<LastChatListVO> findLastChatList(LastChatListAO ao) {
         log.info("查询最近会话列表_入参：{}", JSONUtil.toJsonStr(ao));
         
-        // 1. 【关键】从Redis读取会话列表元数据（msgId + 未读数 + 时间戳）
-        Map<String, String> chatMetadataMap = chatListService.getAllChatListMetadata(ao.getUserId());
+        String userId = ao.getUserId();
+        int pageSize = ao.getPageSize() == null || ao.getPageSize() <= 0 ? 20 : Math.min(ao.getPageSize(), 100);
+        int currentPage = ao.getCurrentPage() == null || ao.getCurrentPage() <= 0 ? 1 : ao.getCurrentPage();
+        boolean cursorMode = ao.getCursorTime() != null;
+        boolean firstPage = !cursorMode && currentPage == 1;
         
-        // 2. 如果Redis为空，从MySQL查询用户的所有会话（兜底逻辑）
-        List<String> chatIds;
-        if (chatMetadataMap.isEmpty()) {
-            log.info("用户{}Redis会话列表为空，从MySQL查询", ao.getUserId());
-            List<ImChat> userChats = getUserChats(ao.getUserId());
-            
-            if (CollectionUtils.isEmpty(userChats)) {
-                log.info("用户{}没有任何会话", ao.getUserId());
-                return Lists.newArrayList();
+        // 1. 会话个人操作位（置顶、隐藏、删除）
+        Map<String, Integer> optFlags = imPersonalChatOptService.getChatOptFlags(userId);
+        
+        // 2. 扫描最近会话索引，取当前页的普通会话
+        int toSkip = cursorMode ? 0 : (currentPage - 1) * pageSize;
+        int chunkSize = Math.max(pageSize * 2, MIN_SCAN_CHUNK);
+        int offset = 0;
+        int scanned = 0;
+        Map<String, Long> pageChats = new LinkedHashMap<>();
+        Map<String, Long> normalChats = new LinkedHashMap<>();
+        while (normalChats.size() < pageSize) {
+            Map<String, Long> chunk = chatListService.getRecentChats(userId, ao.getCursorTime(), offset, chunkSize);
+            scanned += chunk.size();
+            for (Map.Entry<String, Long> entry : chunk.entrySet()) {
+                String chatId = entry.getKey();
+                if (cursorMode && isAtOrBeforeCursor(entry.getValue(), chatId, ao.getCursorTime(), ao.getCursorChatId())) {
+                    continue;
+                }
+                int flag = optFlags.getOrDefault(chatId, 0);
+                if ((flag & (ImPersonalChatOptService.FLAG_UN_SHOW | ImPersonalChatOptService.FLAG_DEL_CHAT)) != 0) {
+                    log.debug("会话{}被用户{}隐藏或删除，跳过", chatId, userId);
+                    continue;
+                }
+                if ((flag & ImPersonalChatOptService.FLAG_TO_TOP) != 0) {
+                    continue;
+                }
+                if (toSkip > 0) {
+                    toSkip--;
+                    continue;
+                }
+                normalChats.put(chatId, entry.getValue());
+                if (normalChats.size() >= pageSize) {
+                    break;
+                }
             }
-            
-            chatIds = userChats.stream()
-                    .map(ImChat::getChatId)
-                    .collect(Collectors.toList());
-        } else {
-            chatIds = Lists.newArrayList(chatMetadataMap.keySet());
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            offset += chunkSize;
         }
         
-        log.info("用户{}共有{}个会话，开始查询消息内容和个人操作", ao.getUserId(), chatIds.size());
-        
-        // 3. 查询用户对这些会话的个人操作（置顶、隐藏、删除等）
-        ImPersonalChatOpt queryOpt = new ImPersonalChatOpt();
-        queryOpt.setUserId(ao.getUserId());
-        List<ImPersonalChatOpt> allPersonalChats = imPersonalChatOptService.findPersonalChatByUserId(queryOpt, null, null);
-        
-        // 4. 【关键】从MongoDB批量查询消息内容（根据chatId+msgId）
-        final Map<String, ImC2CMsgRecord> lastMsgMap;
-        if (!chatMetadataMap.isEmpty()) {
-            // 构建documentIds：chatId_msgId
-            List<String> documentIds = chatMetadataMap.entrySet().stream()
-                    .map(entry -> {
-                        String chatId = entry.getKey();
-                        JSONObject metadata = JSONUtil.parseObj(entry.getValue());
-                        String msgId = metadata.getStr("m");  // m = msgId
-                        return chatId + "_" + msgId;
-                    })
+        // 3. 首页：置顶会话排在最前
+        if (firstPage) {
+            List<String> topChatIds = optFlags.entrySet().stream()
+                    .filter(entry -> entry.getValue() == ImPersonalChatOptService.FLAG_TO_TOP)
+                    .map(Map.Entry::getKey)
                     .collect(Collectors.toList());
-            
-            log.info("从MongoDB批量查询消息内容，数量：{}", documentIds.size());
-            lastMsgMap = batchGetMessagesFromMongo(documentIds);
-        } else if (!chatIds.isEmpty()) {
-            // Redis为空，使用旧逻辑：查询每个会话的最后一条消息
-            log.info("Redis为空，使用旧逻辑查询最后一条消息");
-            lastMsgMap = batchGetLastMessagesFromMongo(chatIds);
-        } else {
-            log.warn("没有会话需要查询");
-            lastMsgMap = new HashMap<>();
+            chatListService.getRecentChatTimes(userId, topChatIds).entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .forEach(entry -> pageChats.put(entry.getKey(), entry.getValue()));
         }
+        pageChats.putAll(normalChats);
         
-        // 5. 创建个人操作映射，用于过滤隐藏/删除的会话
-        Map<String, ImPersonalChatOpt> personalChatMap = allPersonalChats.stream()
-                .collect(Collectors.toMap(ImPersonalChatOpt::getChatId, opt -> opt));
+        // 4. 索引为空，从MySQL兜底
+        if (scanned == 0 && pageChats.isEmpty() && !cursorMode) {
+            log.info("用户{}最近会话索引为空，从MySQL查询", userId);
+            return findLastChatListFromDb(userId, currentPage, pageSize, optFlags);
+        }
         
-        // 6. 组装返回结果，过滤隐藏和删除的会话
-        List<LastChatListVO> allChatListVOs = chatIds.stream()
-                .filter(chatId -> {
-                    ImPersonalChatOpt personalOpt = personalChatMap.get(chatId);
-                    
-                    // 如果用户对该会话有操作记录，检查是否隐藏或删除
-                    if (personalOpt != null) {
-                        // 过滤隐藏的会话
-                        if (ImConstant.CommonConstant.YES.equals(personalOpt.getUnShow())) {
-                            log.debug("会话{}被用户{}隐藏，跳过", chatId, ao.getUserId());
-                            return false;
-                        }
-                        // 过滤删除的会话
-                        if (ImConstant.CommonConstant.YES.equals(personalOpt.getDelChat())) {
-                            log.debug("会话{}被用户{}删除，跳过", chatId, ao.getUserId());
-                            return false;
-                        }
-                    }
-                    return true;
-                })
+        // 5. 只读取当前页会话的元数据和最后一条消息
+        Map<String, JSONObject> metadataMap = chatListService.getChatListMetadata(userId, pageChats.keySet());
+        List<String> documentIds = metadataMap.entrySet().stream()
+                .map(entry -> entry.getKey() + "_" + entry.getValue().getStr("m"))
+                .collect(Collectors.toList());
+        Map<String, ImC2CMsgRecord> lastMsgMap = batchGetMessagesFromMongo(documentIds);
+        
+        List<LastChatListVO> result = pageChats.keySet().stream()
                 .map(chatId -> {
-                    // 【关键】从Redis元数据获取未读数和时间戳
-                    JSONObject metadata = chatMetadataMap.containsKey(chatId) ? 
-                            JSONUtil.parseObj(chatMetadataMap.get(chatId)) : null;
-                    
-                    // 根据chatId+msgId构建rowKey查询MongoDB消息
-                    String rowKey = metadata != null ? (chatId + "_" + metadata.getStr("m")) : null;
-                    ImC2CMsgRecord lastMsg = rowKey != null ? lastMsgMap.get(rowKey) : null;
-                    
-                    LastChatListVO vo = new LastChatListVO();
-                    vo.setChatId(chatId);
-                    vo.setUserId(ao.getUserId());
-                    
-                    // 【轻量】只解析获取otherUserId，便于客户端缓存映射
-                    try {
-                        List<String> participantIds = ChatIdUtils.getParticipantUserIds(chatId);
-                        if (!participantIds.isEmpty()) {
-                            String otherUserId = participantIds.stream()
-                                    .filter(id -> !ao.getUserId().equals(id))
-                                    .findFirst()
-                                    .orElse(null);
-                            
-                            if (otherUserId != null) {
-                                vo.setOtherUserId(otherUserId);
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.warn("解析会话{}的otherUserId失败: {}", chatId, e.getMessage());
-                    }
-                    
-                    // 【关键】从Redis元数据获取未读数
-                    int unreadCount = metadata != null ? metadata.getInt("u", 0) : 0;  // u = unread
-                    vo.setUnReadCount(unreadCount);
-                    
-                    // 【关键】从Redis元数据获取时间戳
-                    long lastMsgTime = metadata != null ? metadata.getLong("t", 0L) : 0L;  // t = time
-                    
-                    // 设置最后消息信息
-                    if (lastMsg != null) {
-                        vo.setLastMsgFormat(lastMsg.getMsgFormat());
-                        vo.setLastMessageContent(lastMsg.getMsgContent());
-                        vo.setLastMsgId(lastMsg.getMsgId());
-                        vo.setLastMsgTime(lastMsg.getMsgCreateTime());
-                        vo.setMsgId(lastMsg.getMsgId());
-                        vo.setMsgCreateTime(lastMsg.getMsgCreateTime());
-                    } else if (metadata != null) {
-                        // MongoDB中没找到，但Redis有元数据，使用元数据中的时间和msgId
-                        log.warn("会话{}未找到消息记录，使用Redis元数据", chatId);
-                        vo.setLastMessageContent("[点击查看]");
-                        vo.setLastMsgFormat(0);
-                        vo.setLastMsgId(metadata.getStr("m", ""));
-                        vo.setLastMsgTime(lastMsgTime);
-                        vo.setMsgId(metadata.getStr("m", ""));
-                        vo.setMsgCreateTime(lastMsgTime);
-                    } else {
-                        // 既没有MongoDB数据也没有Redis元数据
-                        log.warn("会话{}既无消息记录也无元数据", chatId);
-                        vo.setLastMessageContent("");
-                        vo.setLastMsgFormat(0);
-                        vo.setLastMsgId("");
-                        vo.setLastMsgTime(System.currentTimeMillis());
-                        vo.setMsgId("");
-                        vo.setMsgCreateTime(System.currentTimeMillis());
-                    }
-                    
-                    vo.setUrl("/api/chat/lastChatList");
-                    return vo;
+                    JSONObject metadata = metadataMap.get(chatId);
+                    ImC2CMsgRecord lastMsg = metadata != null ? lastMsgMap.get(chatId + "_" + metadata.getStr("m")) : null;
+                    return buildLastChatListVO(userId, chatId, metadata, lastMsg);
                 })
                 .collect(Collectors.toList());
 
-        // 8. 按最后消息时间倒序排序
-        allChatListVOs.sort((a, b) -> Long.compare(b.getLastMsgTime(), a.getLastMsgTime()));
+        log.info("查询最近会话列表成功，用户ID:{}, 扫描索引{}条, 返回{}条记录", userId, scanned, result.size());
+        return result;
+    }
 
-        // 9. 处理置顶逻辑
-        allChatListVOs = sortChatListWithTopPriority(allChatListVOs, allPersonalChats);
+    /**
+     * 游标分页：时间早于游标的会话才属于下一页；同一毫秒的会话在索引中按 chatId 字典序倒序排列，
+     * chatId 不小于游标的已经在上一页返回过
+     */
+    private boolean isAtOrBeforeCursor(long time, String chatId, long cursorTime, String cursorChatId) {
+        if (time != cursorTime) {
+            return false;
+        }
+        return cursorChatId == null || chatId.compareTo(cursorChatId) >= 0;
+    }
 
-        // 10. 在内存中分页
-        List<LastChatListVO> result = applyPagination(allChatListVOs, ao.getCurrentPage(), ao.getPageSize());
+    /**
+     * Redis中没有任何会话数据时，从MySQL查询会话并分页，只查询当前页会话的最后一条消息
+     */
+    private List<LastChatListVO> findLastChatListFromDb(String userId, int currentPage, int pageSize,
+                                                        Map<String, Integer> optFlags) {
+        List<String> chatIds = getUserChats(userId).stream()
+                .map(ImChat::getChatId)
+                .filter(chatId -> (optFlags.getOrDefault(chatId, 0)
+                        & (ImPersonalChatOptService.FLAG_UN_SHOW | ImPersonalChatOptService.FLAG_DEL_CHAT)) == 0)
+                .collect(Collectors.toList());
+        if (CollectionUtils.isEmpty(chatIds)) {
+            log.info("用户{}没有任何会话", userId);
+            return Lists.newArrayList();
+        }
+
+        int start = (currentPage - 1) * pageSize;
+        if (start >= chatIds.size()) {
+            return Lists.newArrayList();
+        }
+        List<String> pageChatIds = chatIds.subList(start, Math.min(start + pageSize, chatIds.size()));
+        Map<String, ImC2CMsgRecord> lastMsgByChat = new HashMap<>();
+        batchGetLastMessagesFromMongo(pageChatIds).values()
+                .forEach(record -> lastMsgByChat.put(record.getChatId(), record));
+
+        return pageChatIds.stream()
+                .map(chatId -> buildLastChatListVO(userId, chatId, null, lastMsgByChat.get(chatId)))
+                .collect(Collectors.toList());
+    }
 
-        log.info("查询最近会话列表成功，用户ID:{}, 总会话数:{}, 返回{}条记录", 
-                ao.getUserId(), allChatListVOs.size(), result.size());
+    /**
+     * 组装单个会话
+     * @param userId 当前用户ID
+     * @param chatId 会话ID
+     * @param metadata Redis会话元数据（可为null）
+     * @param lastMsg MongoDB中的最后一条消息（可为null）
+     */
+    private LastChatListVO buildLastChatListVO(String userId, String chatId, JSONObject metadata, ImC2CMsgRecord lastMsg) {
+        LastChatListVO vo = new LastChatListVO();
+        vo.setChatId(chatId);
+        vo.setUserId(userId);
         
-        return result;
+        // 【轻量】只解析获取otherUserId，便于客户端缓存映射
+        try {
+            ChatIdUtils.getParticipantUserIds(chatId).stream()
+                    .filter(id -> !userId.equals(id))
+                    .findFirst()
+                    .ifPresent(vo::setOtherUserId);
+        } catch (Exception e) {
+            log.warn("解析会话{}的otherUserId失败: {}", chatId, e.getMessage());
+        }
+        
+        // 【关键】从Redis元数据获取未读数和时间戳
+        vo.setUnReadCount(metadata != null ? metadata.getInt("u", 0) : 0);  // u = unread
+        long lastMsgTime = metadata != null ? metadata.getLong("t", 0L) : 0L;  // t = time
+        
+        // 设置最后消息信息
+        if (lastMsg != null) {
+            vo.setLastMsgFormat(lastMsg.getMsgFormat());
+            vo.setLastMessageContent(lastMsg.getMsgContent());
+            vo.setLastMsgId(lastMsg.getMsgId());
+            vo.setLastMsgTime(lastMsg.getMsgCreateTime());
+            vo.setMsgId(lastMsg.getMsgId());
+            vo.setMsgCreateTime(lastMsg.getMsgCreateTime());
+        } else if (metadata != null) {
+            // MongoDB中没找到，但Redis有元数据，使用元数据中的时间和msgId
+            log.warn("会话{}未找到消息记录，使用Redis元数据", chatId);
+            vo.setLastMessageContent("[点击查看]");
+            vo.setLastMsgFormat(0);
+            vo.setLastMsgId(metadata.getStr("m", ""));
+            vo.setLastMsgTime(lastMsgTime);
+            vo.setMsgId(metadata.getStr("m", ""));
+            vo.setMsgCreateTime(lastMsgTime);
+        } else {
+            // 既没有MongoDB数据也没有Redis元数据
+            log.warn("会话{}既无消息记录也无元数据", chatId);
+            vo.setLastMessageContent("");
+            vo.setLastMsgFormat(0);
+            vo.setLastMsgId("");
+            vo.setLastMsgTime(System.currentTimeMillis());
+            vo.setMsgId("");
+            vo.setMsgCreateTime(System.currentTimeMillis());
+        }
+        
+        vo.setUrl("/api/chat/lastChatList");
+        return vo;
     }
 
     /**
@@ -306,82 +330,6 @@ public class ImChatServiceImpl implements ImChatService {
     }
 
 
-    /**
-     * 在内存中应用分页
-     * @param allChats 所有会话列表
-     * @param currentPage 当前页码
-     * @param pageSize 每页大小
-     * @return 分页后的结果
-     */
-    private List<LastChatListVO> applyPagination(List<LastChatListVO> allChats, Integer currentPage, Integer pageSize) {
-        if (CollectionUtils.isEmpty(allChats)) {
-            return Lists.newArrayList();
-        }
-
-        // 设置默认值
-        if (currentPage == null || currentPage <= 0) {
-            currentPage = 1;
-        }
-        if (pageSize == null || pageSize <= 0) {
-            pageSize = 20;
-        }
-
-        // 限制每页最大数量
-        if (pageSize > 100) {
-            pageSize = 100;
-        }
-
-        int start = (currentPage - 1) * pageSize;
-        int end = Math.min(start + pageSize, allChats.size());
-        
-        if (start >= allChats.size()) {
-            return Lists.newArrayList();
-        }
-        
-        return allChats.subList(start, end);
-    }
-
-    /**
-     * 处理置顶逻辑，将置顶的会话排到头部
-     * @param allChats 所有会话列表
-     * @param personalChats 个人操作记录
-     * @return 排序后的会话列表
-     */
-    private List<LastChatListVO> sortChatListWithTopPriority(List<LastChatListVO> allChats, List<ImPersonalChatOpt> personalChats) {
-        if (CollectionUtils.isEmpty(allChats)) {
-            return allChats;
-        }
-
-        // 创建个人操作映射
-        Map<String, ImPersonalChatOpt> personalChatMap = personalChats.stream()
-                .collect(Collectors.toMap(ImPersonalChatOpt::getChatId, opt -> opt));
-
-        // 分离置顶和非置顶会话
-        List<LastChatListVO> topChats = Lists.newArrayList();
-        List<LastChatListVO> normalChats = Lists.newArrayList();
-
-        for (LastChatListVO chat : allChats) {
-            ImPersonalChatOpt personalChat = personalChatMap.get(chat.getChatId());
-            if (personalChat != null && ImConstant.CommonConstant.YES.equals(personalChat.getToTop())) {
-                topChats.add(chat);
-            } else {
-                normalChats.add(chat);
-            }
-        }
-
-        // 分别对置顶和普通会话按最后消息时间倒序排序
-        topChats.sort((a, b) -> Long.compare(b.getLastMsgTime(), a.getLastMsgTime()));
-        normalChats.sort((a, b) -> Long.compare(b.getLastMsgTime(), a.getLastMsgTime()));
-
-        // 置顶会话在前，普通会话在后
-        List<LastChatListVO> result = Lists.newArrayList();
-        result.addAll(topChats);
-        result.addAll(normalChats);
-
-        log.info("置顶处理完成，置顶会话数:{}, 普通会话数:{}", topChats.size(), normalChats.size());
-        return result;
-    }
-
     /**
      * 从MongoDB批量查询消息
      * @param documentIds 文档ID列表（格式：chatId_msgId）
@@ -8,11 +8,15 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.google.common.collect.Lists;
 import com.xzll.business.entity.mysql.ImFriendRelation;
 import com.xzll.business.entity.mysql.ImFriendRequest;
+import com.xzll.business.entity.redis.FriendGraphCacheEntry;
 import com.xzll.business.mapper.ImFriendRelationMapper;
 import com.xzll.business.mapper.ImFriendRequestMapper;
+import com.xzll.business.entity.redis.UserProfileCacheEntry;
 import com.xzll.business.mapper.ImUserMapper;
+import com.xzll.business.service.FriendGraphCacheService;
 import com.xzll.business.service.ImFriendService;
 import com.xzll.business.service.FriendRequestPushService;
+import com.xzll.business.service.UserProfileCacheService;
 import com.xzll.common.pojo.entity.ImUserDO;
 import com.xzll.common.pojo.request.*;
 import com.xzll.common.pojo.response.FriendInfoVO;
@@ -25,11 +29,12 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import jakarta.annotation.Resource;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
-import org.springframework.beans.factory.annotation.Value;
 
 /**
  * @Author: hzz
@@ -52,9 +57,11 @@ public class ImFriendServiceImpl implements ImFriendService {
     @Resource
     private FriendRequestPushService friendRequestPushService;
 
-    // 文件服务基础URL配置
-    @Value("${minio.file.upload.base-url:http://localhost:8080/im-business/api/file/}")
-    private String fileBaseUrl;
+    @Resource
+    private UserProfileCacheService userProfileCacheService;
+
+    @Resource
+    private FriendGraphCacheService friendGraphCacheService;
 
     @Override
     @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
@@ -73,8 +80,8 @@ public class ImFriendServiceImpl implements ImFriendService {
                 throw new IllegalArgumentException("不能向自己发送好友申请");
             }
 
-            // 2. 检查是否已经是好友
-            if (isAlreadyFriend(ao.getFromUserId(), ao.getToUserId())) {
+            // 2. 检查是否已经是好友（好友关系缓存）
+            if (friendGraphCacheService.isFriend(ao.getFromUserId(), ao.getToUserId())) {
                 log.error("发送好友申请失败，{}和{}已经是好友关系", ao.getFromUserId(), ao.getToUserId());
                 throw new IllegalArgumentException("已经是好友关系，无需重复申请");
             }
@@ -180,6 +187,7 @@ public class ImFriendServiceImpl implements ImFriendService {
                     log.error("处理好友申请失败，建立好友关系失败");
                     throw new RuntimeException("建立好友关系失败");
                 }
+                friendGraphCacheService.refreshAfterCommit(friendRequest.getFromUserId(), friendRequest.getToUserId());
                 log.info("好友申请处理成功，{}和{}成为好友", friendRequest.getFromUserId(), friendRequest.getToUserId());
             } else {
                 log.info("好友申请被拒绝，申请ID:{}", ao.getRequestId());
@@ -253,9 +261,7 @@ public class ImFriendServiceImpl implements ImFriendService {
                 userIds.add(request.getToUserId());
             }
 
-            List<ImUserDO> userList = getUsersByIds(userIds);
-            Map<String, ImUserDO> userMap = userList.stream()
-                    .collect(Collectors.toMap(ImUserDO::getUserId, user -> user));
+            Map<String, UserProfileCacheEntry> userMap = userProfileCacheService.getProfiles(userIds);
 
             // 5. 组装返回结果
             List<FriendRequestVO> result = resultPage.getRecords().stream()
@@ -271,7 +277,7 @@ public class ImFriendServiceImpl implements ImFriendService {
                         vo.setCreateTime(request.getCreateTime());
 
                         // 设置申请人信息
-                        ImUserDO fromUser = userMap.get(request.getFromUserId());
+                        UserProfileCacheEntry fromUser = userMap.get(request.getFromUserId());
                         if (fromUser != null) {
                             vo.setFromUserName(fromUser.getUserFullName());
                             vo.setFromUserAvatar(fromUser.getHeadImage());
@@ -311,54 +317,34 @@ public class ImFriendServiceImpl implements ImFriendService {
                 ao.setPageSize(100);
             }
 
-            // 2. 查询好友关系
-            LambdaQueryWrapper<ImFriendRelation> queryWrapper = Wrappers.lambdaQuery(ImFriendRelation.class)
-                    .eq(ImFriendRelation::getUserId, ao.getUserId())
-                    .eq(ImFriendRelation::getDelFlag, false) // 未删除
-                    .orderByDesc(ImFriendRelation::getCreateTime);
-
-            Page<ImFriendRelation> page = new Page<>(ao.getCurrentPage(), ao.getPageSize());
-            Page<ImFriendRelation> resultPage = friendRelationMapper.selectPage(page, queryWrapper);
+            // 2. 从好友关系缓存分页（按成为好友时间倒序）
+            FriendGraphCacheEntry graph = friendGraphCacheService.getGraph(ao.getUserId());
+            List<String> friendIds = graph.page((ao.getCurrentPage() - 1) * ao.getPageSize(), ao.getPageSize());
 
-            if (CollectionUtils.isEmpty(resultPage.getRecords())) {
+            if (CollectionUtils.isEmpty(friendIds)) {
                 log.info("用户{}的好友列表为空", ao.getUserId());
                 return Lists.newArrayList();
             }
 
             // 3. 获取好友用户信息
-            List<String> friendIds = resultPage.getRecords().stream()
-                    .map(ImFriendRelation::getFriendId)
-                    .collect(Collectors.toList());
-
-            List<ImUserDO> friendUsers = getUsersByIds(friendIds);
-            Map<String, ImUserDO> userMap = friendUsers.stream()
-                    .collect(Collectors.toMap(ImUserDO::getUserId, user -> user));
+            Map<String, UserProfileCacheEntry> userMap = userProfileCacheService.getProfiles(friendIds);
 
             // 4. 组装返回结果
-            List<FriendInfoVO> result = resultPage.getRecords().stream()
-                    .map(relation -> {
+            List<FriendInfoVO> result = friendIds.stream()
+                    .map(friendId -> {
                         FriendInfoVO vo = new FriendInfoVO();
-                        vo.setFriendId(relation.getFriendId());
-                        vo.setBlackFlag(relation.getBlackFlag());
-                        vo.setCreateTime(relation.getCreateTime());
+                        vo.setFriendId(friendId);
+                        vo.setBlackFlag(graph.isBlocked(friendId));
+                        vo.setCreateTime(LocalDateTime.ofInstant(
+                                Instant.ofEpochMilli(graph.getFriendSince(friendId)), ZoneId.systemDefault()));
 
                         // 设置好友用户信息
-                        ImUserDO friendUser = userMap.get(relation.getFriendId());
+                        UserProfileCacheEntry friendUser = userMap.get(friendId);
                         if (friendUser != null) {
                             vo.setFriendName(friendUser.getUserName());
                             vo.setFriendFullName(friendUser.getUserFullName());
-                            
-                            // 转换头像路径为完整访问URL（短链接）
-                            if (StringUtils.hasText(friendUser.getHeadImage())) {
-                                String shortCode = generateShortCode(friendUser.getHeadImage());
-                                String fullAvatarUrl = fileBaseUrl + "s/" + shortCode;
-                                vo.setFriendAvatar(fullAvatarUrl);
-                                log.debug("好友头像URL转换 - 用户ID: {}, 原路径: {}, 短码: {}, 完整URL: {}", 
-                                    friendUser.getUserId(), friendUser.getHeadImage(), shortCode, fullAvatarUrl);
-                            } else {
-                                vo.setFriendAvatar(null);
-                            }
-                            
+                            // 头像完整访问URL（短链接）已在缓存加载时转换好
+                            vo.setFriendAvatar(friendUser.getAvatarUrl());
                             vo.setFriendSex(friendUser.getSex());
                         }
 
@@ -387,6 +373,7 @@ public class ImFriendServiceImpl implements ImFriendService {
 
             boolean success = result1 && result2;
             if (success) {
+                friendGraphCacheService.refreshAfterCommit(userId, friendId);
                 log.info("删除好友成功，用户ID:{}, 好友ID:{}", userId, friendId);
             } else {
                 log.error("删除好友失败，用户ID:{}, 好友ID:{}", userId, friendId);
@@ -406,24 +393,22 @@ public class ImFriendServiceImpl implements ImFriendService {
         log.info("{}好友，用户ID:{}, 好友ID:{}", blackFlag ? "拉黑" : "取消拉黑", userId, friendId);
 
         try {
-            LambdaQueryWrapper<ImFriendRelation> queryWrapper = Wrappers.lambdaQuery(ImFriendRelation.class)
-                    .eq(ImFriendRelation::getUserId, userId)
-                    .eq(ImFriendRelation::getFriendId, friendId)
-                    .eq(ImFriendRelation::getDelFlag, false);
-
-            ImFriendRelation relation = friendRelationMapper.selectOne(queryWrapper);
-            if (relation == null) {
+            if (!friendGraphCacheService.isFriend(userId, friendId)) {
                 log.error("{}好友失败，好友关系不存在", blackFlag ? "拉黑" : "取消拉黑");
                 throw new IllegalArgumentException("好友关系不存在");
             }
 
-            relation.setBlackFlag(blackFlag);
-            relation.setUpdateTime(LocalDateTime.now());
-
-            int updateResult = friendRelationMapper.updateById(relation);
+            // 直接按条件更新，不再先查后改
+            int updateResult = friendRelationMapper.update(null, Wrappers.lambdaUpdate(ImFriendRelation.class)
+                    .set(ImFriendRelation::getBlackFlag, blackFlag)
+                    .set(ImFriendRelation::getUpdateTime, LocalDateTime.now())
+                    .eq(ImFriendRelation::getUserId, userId)
+                    .eq(ImFriendRelation::getFriendId, friendId)
+                    .eq(ImFriendRelation::getDelFlag, false));
             boolean success = updateResult > 0;
 
             if (success) {
+                friendGraphCacheService.refreshAfterCommit(userId);
                 log.info("{}好友成功，用户ID:{}, 好友ID:{}", blackFlag ? "拉黑" : "取消拉黑", userId, friendId);
             } else {
                 log.error("{}好友失败，用户ID:{}, 好友ID:{}", blackFlag ? "拉黑" : "取消拉黑", userId, friendId);
@@ -437,18 +422,6 @@ public class ImFriendServiceImpl implements ImFriendService {
         }
     }
 
-    /**
-     * 检查是否已经是好友
-     */
-    private boolean isAlreadyFriend(String userId, String friendId) {
-        LambdaQueryWrapper<ImFriendRelation> queryWrapper = Wrappers.lambdaQuery(ImFriendRelation.class)
-                .eq(ImFriendRelation::getUserId, userId)
-                .eq(ImFriendRelation::getFriendId, friendId)
-                .eq(ImFriendRelation::getDelFlag, false);
-
-        return friendRelationMapper.selectCount(queryWrapper) > 0;
-    }
-
     /**
      * 获取已存在的待处理申请
      */
@@ -519,23 +492,6 @@ public class ImFriendServiceImpl implements ImFriendService {
         }
     }
 
-    /**
-     * 根据用户ID列表获取用户信息
-     */
-    private List<ImUserDO> getUsersByIds(List<String> userIds) {
-        if (CollectionUtils.isEmpty(userIds)) {
-            return Lists.newArrayList();
-        }
-
-        // 去重
-        List<String> distinctUserIds = userIds.stream().distinct().collect(Collectors.toList());
-
-        LambdaQueryWrapper<ImUserDO> queryWrapper = Wrappers.lambdaQuery(ImUserDO.class)
-                .in(ImUserDO::getUserId, distinctUserIds);
-
-        return userMapper.selectList(queryWrapper);
-    }
-
     /**
      * 根据用户ID获取用户信息
      */
@@ -571,11 +527,4 @@ public class ImFriendServiceImpl implements ImFriendService {
                 return "未知";
         }
     }
-
-    /**
-     * 生成短码（Base64编码文件路径）
-     */
-    private String generateShortCode(String filePath) {
-        return java.util.Base64.getEncoder().encodeToString(filePath.getBytes());
-    }
 }
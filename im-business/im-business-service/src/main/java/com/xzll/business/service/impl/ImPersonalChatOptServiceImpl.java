@@ -15,7 +15,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.Resource;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -81,4 +83,43 @@ public class ImPersonalChatOptServiceImpl implements ImPersonalChatOptService {
         return resultPage.getRecords();
     }
 
+    /**
+     * 查询用户所有会话的个人操作位
+     *
+     * @param userId
+     * @return
+     */
+    @Override
+    public Map<String, Integer> getChatOptFlags(String userId) {
+        return loadChatOptFlags(userId);
+    }
+
+    /**
+     * 从MySQL加载有置顶/不展示/删除操作的会话
+     */
+    private Map<String, Integer> loadChatOptFlags(String userId) {
+        LambdaQueryWrapper<ImPersonalChatOpt> queryWrapper = Wrappers.lambdaQuery(ImPersonalChatOpt.class)
+                .select(ImPersonalChatOpt::getChatId, ImPersonalChatOpt::getToTop,
+                        ImPersonalChatOpt::getUnShow, ImPersonalChatOpt::getDelChat)
+                .eq(ImPersonalChatOpt::getUserId, userId)
+                .and(query -> query.eq(ImPersonalChatOpt::getToTop, ImConstant.CommonConstant.YES)
+                        .or().eq(ImPersonalChatOpt::getUnShow, ImConstant.CommonConstant.YES)
+                        .or().eq(ImPersonalChatOpt::getDelChat, ImConstant.CommonConstant.YES));
+
+        Map<String, Integer> flags = new HashMap<>();
+        for (ImPersonalChatOpt opt : imPersonalChatOptMapper.selectList(queryWrapper)) {
+            int flag = 0;
+            if (ImConstant.CommonConstant.YES.equals(opt.getToTop())) {
+                flag |= FLAG_TO_TOP;
+            }
+            if (ImConstant.CommonConstant.YES.equals(opt.getUnShow())) {
+                flag |= FLAG_UN_SHOW;
+            }
+            if (ImConstant.CommonConstant.YES.equals(opt.getDelChat())) {
+                flag |= FLAG_DEL_CHAT;
+            }
+            flags.merge(opt.getChatId(), flag, (a, b) -> a | b);
+        }
+        return flags;
+    }
 }
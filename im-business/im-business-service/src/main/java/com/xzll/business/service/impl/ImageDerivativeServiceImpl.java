@@ -0,0 +1,351 @@
+package com.xzll.business.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.xzll.business.config.MinioConfig;
+import com.xzll.business.service.ImageDerivativeService;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 图片衍生图服务实现类
+ *
+ * 生成流程：statObject 校验大小 -> 只读图片头校验像素数 -> 按最大目标尺寸做解码降采样 -> 逐级缩放 -> JPEG 压缩写回 MinIO。
+ * 透明背景统一铺白；原图最长边不超过某规格时不生成该规格，访问时回退原图。
+ */
+@Slf4j
+@Service
+public class ImageDerivativeServiceImpl implements ImageDerivativeService {
+
+    private static final String TAG = "[图片衍生图]_";
+
+    private static final String DERIVATIVE_EXTENSION = ".jpg";
+    private static final String DERIVATIVE_CONTENT_TYPE = "image/jpeg";
+
+    @Resource
+    private MinioClient minioClient;
+
+    @Resource
+    private MinioConfig minioConfig;
+
+    @Value("${im.file.derivative.enabled:true}")
+    private boolean enabled;
+
+    @Value("${im.file.derivative.workers:2}")
+    private int workers;
+
+    @Value("${im.file.derivative.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${im.file.derivative.thumb-edge:200}")
+    private int thumbEdge;
+
+    @Value("${im.file.derivative.thumb-quality:0.8}")
+    private float thumbQuality;
+
+    @Value("${im.file.derivative.preview-edge:1080}")
+    private int previewEdge;
+
+    @Value("${im.file.derivative.preview-quality:0.75}")
+    private float previewQuality;
+
+    /**
+     * 超过该大小的原图不生成衍生图
+     */
+    @Value("${im.file.derivative.max-source-bytes:20971520}")
+    private long maxSourceBytes;
+
+    /**
+     * 超过该像素数的原图不解码，防止解压炸弹
+     */
+    @Value("${im.file.derivative.max-source-pixels:50000000}")
+    private long maxSourcePixels;
+
+    @Value("${im.file.derivative.availability-ttl-seconds:60}")
+    private long availabilityTtlSeconds;
+
+    /**
+     * 衍生图不存在的结论只短暂缓存：上传后异步生成完成时其它节点要尽快看到
+     */
+    @Value("${im.file.derivative.missing-ttl-seconds:5}")
+    private long missingTtlSeconds;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 已确认存在的衍生图，避免每次访问都 statObject
+     */
+    private Cache<String, Boolean> availability;
+
+    /**
+     * 已确认不存在（NoSuchKey）的衍生图；statObject 其它异常不缓存，下次访问重新检查
+     */
+    private Cache<String, Boolean> missing;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "image-derivative-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (r, e) -> log.warn("{}任务队列已满，放弃本次生成，访问时回退原图", TAG));
+        availability = CacheBuilder.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(availabilityTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        missing = CacheBuilder.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(missingTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        log.info("{}初始化完成, enabled: {}, workers: {}, queue: {}", TAG, enabled, workers, queueCapacity);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void submit(String objectPath) {
+        if (!enabled || !StringUtils.hasText(objectPath)) {
+            return;
+        }
+        executor.execute(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                int generated = generate(objectPath);
+                log.info("{}生成完成, objectPath: {}, 数量: {}, 耗时: {}ms",
+                        TAG, objectPath, generated, System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                log.error("{}生成失败, objectPath: {}", TAG, objectPath, e);
+            }
+        });
+    }
+
+    @Override
+    public String resolve(String objectPath, String size) {
+        DerivativeSize derivativeSize = DerivativeSize.of(size);
+        if (derivativeSize == null) {
+            return objectPath;
+        }
+        String path = derivativePath(objectPath, derivativeSize);
+        if (availability.getIfPresent(path) != null) {
+            return path;
+        }
+        if (missing.getIfPresent(path) != null) {
+            return objectPath;
+        }
+        Boolean exists = exists(path);
+        if (exists == null) {
+            return objectPath;
+        }
+        if (exists) {
+            availability.put(path, Boolean.TRUE);
+            return path;
+        }
+        missing.put(path, Boolean.TRUE);
+        return objectPath;
+    }
+
+    @Override
+    public String derivativePath(String objectPath, DerivativeSize size) {
+        int slash = objectPath.lastIndexOf('/');
+        int dot = objectPath.lastIndexOf('.');
+        String base = dot > slash ? objectPath.substring(0, dot) : objectPath;
+        return base + "_" + size.getCode() + DERIVATIVE_EXTENSION;
+    }
+
+    /**
+     * @return 生成的衍生图数量
+     */
+    private int generate(String objectPath) throws Exception {
+        StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                .bucket(minioConfig.getBucketName())
+                .object(objectPath)
+                .build());
+        if (stat.size() > maxSourceBytes) {
+            log.info("{}原图过大，跳过, objectPath: {}, size: {}", TAG, objectPath, stat.size());
+            return 0;
+        }
+
+        BufferedImage source;
+        int longestEdge;
+        try (InputStream in = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(minioConfig.getBucketName())
+                .object(objectPath)
+                .build());
+             ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                log.info("{}不支持的图片格式，跳过, objectPath: {}", TAG, objectPath);
+                return 0;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    log.info("{}原图像素过多，跳过, objectPath: {}, {}x{}", TAG, objectPath, width, height);
+                    return 0;
+                }
+                longestEdge = Math.max(width, height);
+                int largestTarget = 0;
+                for (DerivativeSize size : DerivativeSize.values()) {
+                    if (edgeOf(size) < longestEdge) {
+                        largestTarget = Math.max(largestTarget, edgeOf(size));
+                    }
+                }
+                if (largestTarget == 0) {
+                    return 0;
+                }
+                // 解码时降采样，保留至少两倍目标尺寸给后续缩放
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longestEdge / (largestTarget * 2));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        int generated = 0;
+        for (DerivativeSize size : DerivativeSize.values()) {
+            if (edgeOf(size) >= longestEdge) {
+                continue;
+            }
+            byte[] jpeg = encodeJpeg(scale(source, edgeOf(size)), qualityOf(size));
+            String path = derivativePath(objectPath, size);
+            minioClient.putObject(PutObjectArgs.builder()
+                    .bucket(minioConfig.getBucketName())
+                    .object(path)
+                    .stream(new ByteArrayInputStream(jpeg), jpeg.length, -1)
+                    .contentType(DERIVATIVE_CONTENT_TYPE)
+                    .build());
+            availability.put(path, Boolean.TRUE);
+            missing.invalidate(path);
+            generated++;
+        }
+        return generated;
+    }
+
+    /**
+     * 逐级减半缩放到最长边为 targetEdge，比一次性双线性缩放锯齿更少
+     */
+    private static BufferedImage scale(BufferedImage source, int targetEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double ratio = (double) targetEdge / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+        BufferedImage current = source;
+        while (width / 2 >= targetWidth && height / 2 >= targetHeight) {
+            width /= 2;
+            height /= 2;
+            current = draw(current, width, height);
+        }
+        return draw(current, targetWidth, targetHeight);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws Exception {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * @return true 存在，false 确认不存在，null 检查失败（结果未知）
+     */
+    private Boolean exists(String objectPath) {
+        try {
+            minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(minioConfig.getBucketName())
+                    .object(objectPath)
+                    .build());
+            return true;
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchObject".equals(code)) {
+                return false;
+            }
+            log.warn("{}检查衍生图失败，回退原图, objectPath: {}, code: {}", TAG, objectPath, code);
+            return null;
+        } catch (Exception e) {
+            log.warn("{}检查衍生图失败，回退原图, objectPath: {}", TAG, objectPath, e);
+            return null;
+        }
+    }
+
+    private int edgeOf(DerivativeSize size) {
+        return size == DerivativeSize.THUMB ? thumbEdge : previewEdge;
+    }
+
+    private float qualityOf(DerivativeSize size) {
+        return size == DerivativeSize.THUMB ? thumbQuality : previewQuality;
+    }
+}
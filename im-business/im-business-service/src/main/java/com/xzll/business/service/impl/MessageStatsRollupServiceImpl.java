@@ -0,0 +1,255 @@
+package com.xzll.business.service.impl;
+
+import com.xzll.business.service.MessageStatsRollupService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMapAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.xzll.common.constant.ImConstant.MsgStatsConstant.*;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 消息统计预聚合服务实现类
+ *
+ * 计数先累加到进程内 (key, field) -> AtomicLong，刷新线程按周期 getAndSet(0) 取出增量，
+ * 一个 RBatch 内完成所有 HINCRBY 与分桶过期设置；写 Redis 失败时把增量加回，下个周期重试。
+ * 过期分桶的计数器先 CAS 0 -> RETIRED 再移除，累加方看到 RETIRED 时重新取计数器，避免增量写进已移除的对象。
+ */
+@Slf4j
+@Service
+public class MessageStatsRollupServiceImpl implements MessageStatsRollupService {
+
+    private static final String TAG = "[消息统计预聚合]_";
+
+    /**
+     * 计数器已从 pending 移除的标记值
+     */
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final DateTimeFormatter MINUTE_FORMATTER = DateTimeFormatter.ofPattern(MINUTE_BUCKET_PATTERN).withZone(ZONE);
+    private static final DateTimeFormatter HOUR_FORMATTER = DateTimeFormatter.ofPattern(HOUR_BUCKET_PATTERN).withZone(ZONE);
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern(DAY_BUCKET_PATTERN).withZone(ZONE);
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Value("${im.message.stats.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${im.message.stats.minute-ttl-hours:48}")
+    private long minuteTtlHours;
+
+    @Value("${im.message.stats.hour-ttl-days:35}")
+    private long hourTtlDays;
+
+    @Value("${im.message.stats.day-ttl-days:400}")
+    private long dayTtlDays;
+
+    /**
+     * 待刷新的增量
+     */
+    private final Map<Counter, AtomicLong> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 当前分钟对应的分桶key，每分钟只格式化一次
+     */
+    private volatile Buckets currentBuckets = Buckets.of(System.currentTimeMillis());
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "msg-stats-rollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("{}启动完成, 刷新周期: {}ms", TAG, flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    @Override
+    public void recordNewMessage(Integer msgFormat, Integer msgStatus) {
+        Buckets buckets = buckets();
+        incrementBuckets(buckets, FIELD_TOTAL, 1);
+        increment(TOTAL_KEY, FIELD_TOTAL, 1);
+        if (msgFormat != null) {
+            incrementBuckets(buckets, FIELD_FORMAT_PREFIX + msgFormat, 1);
+            increment(TOTAL_KEY, FIELD_FORMAT_PREFIX + msgFormat, 1);
+        }
+        if (msgStatus != null) {
+            incrementBuckets(buckets, FIELD_STATUS_PREFIX + msgStatus, 1);
+            increment(TOTAL_KEY, FIELD_STATUS_PREFIX + msgStatus, 1);
+        }
+    }
+
+    @Override
+    public void recordStatusChange(Integer oldStatus, Integer newStatus) {
+        if (newStatus == null || newStatus.equals(oldStatus)) {
+            return;
+        }
+        incrementBuckets(buckets(), FIELD_STATUS_PREFIX + newStatus, 1);
+        increment(TOTAL_KEY, FIELD_STATUS_PREFIX + newStatus, 1);
+        if (oldStatus != null) {
+            increment(TOTAL_KEY, FIELD_STATUS_PREFIX + oldStatus, -1);
+        }
+    }
+
+    @Override
+    public void recordWithdraw() {
+        incrementBuckets(buckets(), FIELD_WITHDRAW, 1);
+        increment(TOTAL_KEY, FIELD_WITHDRAW, 1);
+    }
+
+    /**
+     * 把累积的增量写入 Redis
+     */
+    synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Counter, Long> deltas = new HashMap<>();
+        for (Map.Entry<Counter, AtomicLong> e : pending.entrySet()) {
+            long delta = e.getValue().getAndSet(0);
+            if (delta != 0) {
+                deltas.put(e.getKey(), delta);
+            } else if (!TOTAL_KEY.equals(e.getKey().key()) && !currentBuckets.contains(e.getKey().key())
+                    && e.getValue().compareAndSet(0, RETIRED)) {
+                // 已过去的分桶连续一个周期无增量，移除计数器；CAS 失败说明刚有增量，留到下个周期
+                pending.remove(e.getKey(), e.getValue());
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            RBatch batch = redissonClient.createBatch();
+            Map<String, RMapAsync<String, String>> maps = new HashMap<>();
+            for (Map.Entry<Counter, Long> e : deltas.entrySet()) {
+                String key = e.getKey().key();
+                RMapAsync<String, String> map = maps.computeIfAbsent(key, k -> batch.getMap(k, StringCodec.INSTANCE));
+                map.addAndGetAsync(e.getKey().field(), e.getValue());
+            }
+            maps.forEach((key, map) -> {
+                Duration ttl = ttlOf(key);
+                if (ttl != null) {
+                    map.expireAsync(ttl);
+                }
+            });
+            batch.execute();
+            log.debug("{}刷新完成, key数: {}, 计数项: {}", TAG, maps.size(), deltas.size());
+        } catch (Exception ex) {
+            // 增量加回，下个周期重试
+            deltas.forEach(this::add);
+            log.error("{}刷新到Redis失败, 计数项: {}, 下个周期重试", TAG, deltas.size(), ex);
+        }
+    }
+
+    private void incrementBuckets(Buckets buckets, String field, long delta) {
+        increment(buckets.minuteKey, field, delta);
+        increment(buckets.hourKey, field, delta);
+        increment(buckets.dayKey, field, delta);
+    }
+
+    private void increment(String key, String field, long delta) {
+        add(new Counter(key, field), delta);
+    }
+
+    private void add(Counter counter, long delta) {
+        while (true) {
+            AtomicLong value = pending.computeIfAbsent(counter, c -> new AtomicLong());
+            long current = value.get();
+            while (current != RETIRED) {
+                if (value.compareAndSet(current, current + delta)) {
+                    return;
+                }
+                current = value.get();
+            }
+            // 计数器已被刷新线程移除，换新的重试
+            pending.remove(counter, value);
+        }
+    }
+
+    private Buckets buckets() {
+        long now = System.currentTimeMillis();
+        Buckets buckets = currentBuckets;
+        if (now / 60_000L != buckets.minute) {
+            buckets = Buckets.of(now);
+            currentBuckets = buckets;
+        }
+        return buckets;
+    }
+
+    private Duration ttlOf(String key) {
+        if (key.startsWith(MINUTE_BUCKET_PREFIX)) {
+            return Duration.ofHours(minuteTtlHours);
+        }
+        if (key.startsWith(HOUR_BUCKET_PREFIX)) {
+            return Duration.ofDays(hourTtlDays);
+        }
+        if (key.startsWith(DAY_BUCKET_PREFIX)) {
+            return Duration.ofDays(dayTtlDays);
+        }
+        return null;
+    }
+
+    private record Counter(String key, String field) {
+    }
+
+    /**
+     * 某一分钟对应的三个分桶key
+     */
+    private static final class Buckets {
+        private final long minute;
+        private final String minuteKey;
+        private final String hourKey;
+        private final String dayKey;
+
+        private Buckets(long minute, String minuteKey, String hourKey, String dayKey) {
+            this.minute = minute;
+            this.minuteKey = minuteKey;
+            this.hourKey = hourKey;
+            this.dayKey = dayKey;
+        }
+
+        static Buckets of(long timeMillis) {
+            Instant instant = Instant.ofEpochMilli(timeMillis);
+            return new Buckets(timeMillis / 60_000L,
+                    MINUTE_BUCKET_PREFIX + MINUTE_FORMATTER.format(instant),
+                    HOUR_BUCKET_PREFIX + HOUR_FORMATTER.format(instant),
+                    DAY_BUCKET_PREFIX + DAY_FORMATTER.format(instant));
+        }
+
+        boolean contains(String key) {
+            return minuteKey.equals(key) || hourKey.equals(key) || dayKey.equals(key);
+        }
+    }
+}
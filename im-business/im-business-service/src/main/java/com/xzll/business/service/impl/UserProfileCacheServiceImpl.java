@@ -0,0 +1,333 @@
+package com.xzll.business.service.impl;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.xzll.business.entity.redis.UserProfileCacheEntry;
+import com.xzll.business.mapper.ImUserMapper;
+import com.xzll.business.service.UserProfileCacheService;
+import com.xzll.common.pojo.entity.ImUserDO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.xzll.common.constant.ImConstant.RedisKeyConstant.USER_PROFILE_CHANGE_TOPIC;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 用户资料多级缓存服务实现类
+ *
+ * 一致性说明：
+ * 1. im-business 内的资料修改会主动失效两级缓存
+ * 2. 其它服务（im-auth 登录时间、im-console 管理修改）直接写库，依赖条目内的写入时间做二级过期兜底，
+ *    最长不一致时间为 l2-ttl + l1-ttl
+ * 3. 失效时二级缓存写入短期删除标记（空值），回源写回用 SET NX，标记存活期间任何节点都无法把更新前读到的数据写回；
+ *    回源耗时超过标记存活时间时放弃写回，保证标记过期后也不会被旧数据覆盖
+ */
+@Slf4j
+@Service
+public class UserProfileCacheServiceImpl implements UserProfileCacheService {
+
+    private static final String TAG = "[用户资料缓存]_";
+
+    /**
+     * 二级缓存按用户一个 key：user:profile:cache:{userId}，value 为 UserProfileCacheEntry 二进制，带 l2-ttl 过期
+     */
+    private static final String USER_PROFILE_CACHE_KEY_PREFIX = "user:profile:cache:";
+
+    /**
+     * 删除标记：失效时写入的空值，读取时按未命中处理
+     */
+    private static final byte[] TOMBSTONE = new byte[0];
+
+    /**
+     * 回源时单条 IN 查询的最大ID数
+     */
+    private static final int DB_BATCH_SIZE = 500;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private ImUserMapper imUserMapper;
+
+    @Value("${minio.file.upload.base-url:http://localhost:8080/im-business/api/file/}")
+    private String fileBaseUrl;
+
+    @Value("${im.user-profile.cache.l1-max-size:100000}")
+    private long l1MaxSize;
+
+    @Value("${im.user-profile.cache.l1-ttl-seconds:60}")
+    private long l1TtlSeconds;
+
+    @Value("${im.user-profile.cache.l2-ttl-seconds:1800}")
+    private long l2TtlSeconds;
+
+    /**
+     * 等待其它线程回源结果的最长时间，超时后自行查库
+     */
+    @Value("${im.user-profile.cache.load-wait-ms:3000}")
+    private long loadWaitMs;
+
+    /**
+     * 删除标记存活时间，需大于一次回源查库的正常耗时
+     */
+    @Value("${im.user-profile.cache.tombstone-ttl-ms:10000}")
+    private long tombstoneTtlMs;
+
+    private Cache<String, UserProfileCacheEntry> localCache;
+
+    /**
+     * 正在回源的用户：userId -> 回源结果
+     */
+    private final Map<String, CompletableFuture<UserProfileCacheEntry>> inflightLoads = new ConcurrentHashMap<>();
+
+    private RTopic invalidateTopic;
+    private int invalidateListenerId = -1;
+
+    @PostConstruct
+    public void init() {
+        localCache = CacheBuilder.newBuilder()
+                .maximumSize(l1MaxSize)
+                .expireAfterWrite(l1TtlSeconds, TimeUnit.SECONDS)
+                .build();
+        try {
+            invalidateTopic = redissonClient.getTopic(USER_PROFILE_CHANGE_TOPIC, StringCodec.INSTANCE);
+            invalidateListenerId = invalidateTopic.addListener(String.class, (channel, userId) -> {
+                // 与本地失效顺序一致：先摘掉回源，再清一级缓存
+                inflightLoads.remove(userId);
+                localCache.invalidate(userId);
+                log.debug("{}收到失效广播, userId: {}", TAG, userId);
+            });
+        } catch (Exception e) {
+            // 订阅失败时一级缓存只能依赖TTL过期，不影响可用性
+            log.error("{}订阅失效广播失败, 一级缓存将仅按TTL过期", TAG, e);
+        }
+        log.info("{}初始化完成, l1MaxSize: {}, l1Ttl: {}s, l2Ttl: {}s", TAG, l1MaxSize, l1TtlSeconds, l2TtlSeconds);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (invalidateTopic != null && invalidateListenerId != -1) {
+            invalidateTopic.removeListener(invalidateListenerId);
+        }
+    }
+
+    @Override
+    public UserProfileCacheEntry getProfile(String userId) {
+        if (!StringUtils.hasText(userId)) {
+            return null;
+        }
+        return getProfiles(Collections.singletonList(userId)).get(userId);
+    }
+
+    @Override
+    public Map<String, UserProfileCacheEntry> getProfiles(Collection<String> userIds) {
+        Map<String, UserProfileCacheEntry> result = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) {
+            return result;
+        }
+
+        // 1. 一级缓存
+        Set<String> l1Missed = new LinkedHashSet<>();
+        for (String userId : userIds) {
+            if (!StringUtils.hasText(userId) || result.containsKey(userId)) {
+                continue;
+            }
+            UserProfileCacheEntry entry = localCache.getIfPresent(userId);
+            if (entry != null) {
+                result.put(userId, entry);
+            } else {
+                l1Missed.add(userId);
+            }
+        }
+        if (l1Missed.isEmpty()) {
+            return result;
+        }
+
+        // 2. 二级缓存，一次 MGET
+        List<String> l2Missed = new ArrayList<>(l1Missed.size());
+        Map<String, byte[]> l2Values = readL2(l1Missed);
+        long expireBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(l2TtlSeconds);
+        for (String userId : l1Missed) {
+            UserProfileCacheEntry entry = UserProfileCacheEntry.fromBytes(l2Values.get(userId));
+            if (entry != null && entry.getCachedAt() > expireBefore) {
+                localCache.put(userId, entry);
+                result.put(userId, entry);
+            } else {
+                l2Missed.add(userId);
+            }
+        }
+        if (l2Missed.isEmpty()) {
+            return result;
+        }
+
+        // 3. 回源
+        result.putAll(loadSingleFlight(l2Missed));
+        return result;
+    }
+
+    @Override
+    public void invalidate(String userId) {
+        if (!StringUtils.hasText(userId)) {
+            return;
+        }
+        // 先摘掉正在进行的回源，它读到的可能是更新前的数据，不能再写回缓存
+        inflightLoads.remove(userId);
+        localCache.invalidate(userId);
+        try {
+            redissonClient.getBucket(l2Key(userId), ByteArrayCodec.INSTANCE).set(TOMBSTONE, Duration.ofMillis(tombstoneTtlMs));
+            if (invalidateTopic != null) {
+                invalidateTopic.publish(userId);
+            }
+            log.debug("{}失效用户资料缓存, userId: {}", TAG, userId);
+        } catch (Exception e) {
+            log.error("{}失效二级缓存失败, userId: {}", TAG, userId, e);
+        }
+    }
+
+    /**
+     * 回源加载，同一用户同一时刻只有一个线程查库
+     */
+    private Map<String, UserProfileCacheEntry> loadSingleFlight(List<String> userIds) {
+        Map<String, UserProfileCacheEntry> result = new HashMap<>();
+        Map<String, CompletableFuture<UserProfileCacheEntry>> owned = new LinkedHashMap<>();
+        Map<String, CompletableFuture<UserProfileCacheEntry>> waiting = new LinkedHashMap<>();
+        for (String userId : userIds) {
+            CompletableFuture<UserProfileCacheEntry> future = new CompletableFuture<>();
+            CompletableFuture<UserProfileCacheEntry> existing = inflightLoads.putIfAbsent(userId, future);
+            if (existing == null) {
+                owned.put(userId, future);
+            } else {
+                waiting.put(userId, existing);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            try {
+                long loadStart = System.currentTimeMillis();
+                Map<String, UserProfileCacheEntry> loaded = loadFromDb(owned.keySet());
+                Map<String, byte[]> toL2 = new HashMap<>();
+                for (Map.Entry<String, CompletableFuture<UserProfileCacheEntry>> e : owned.entrySet()) {
+                    String userId = e.getKey();
+                    UserProfileCacheEntry entry = loaded.get(userId);
+                    // 回源期间被 invalidate 的用户只返回本次结果，不写缓存
+                    if (entry != null && inflightLoads.get(userId) == e.getValue()) {
+                        localCache.put(userId, entry);
+                        // put 与失效并发时再确认一次，失效先摘回源后清一级缓存，两者总有一个能看到对方
+                        if (inflightLoads.get(userId) == e.getValue()) {
+                            toL2.put(userId, entry.toBytes());
+                        } else {
+                            localCache.invalidate(userId);
+                        }
+                    }
+                    if (entry != null) {
+                        result.put(userId, entry);
+                    }
+                    e.getValue().complete(entry);
+                }
+                if (System.currentTimeMillis() - loadStart < tombstoneTtlMs) {
+                    writeL2(toL2);
+                } else {
+                    log.warn("{}回源耗时超过删除标记存活时间, 放弃写回二级缓存, 数量: {}", TAG, toL2.size());
+                }
+            } catch (RuntimeException ex) {
+                owned.values().forEach(f -> f.completeExceptionally(ex));
+                throw ex;
+            } finally {
+                owned.forEach(inflightLoads::remove);
+            }
+        }
+
+        if (!waiting.isEmpty()) {
+            List<String> fallback = new ArrayList<>();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(loadWaitMs);
+            for (Map.Entry<String, CompletableFuture<UserProfileCacheEntry>> e : waiting.entrySet()) {
+                try {
+                    long remaining = Math.max(0, deadline - System.nanoTime());
+                    UserProfileCacheEntry entry = e.getValue().get(remaining, TimeUnit.NANOSECONDS);
+                    if (entry != null) {
+                        result.put(e.getKey(), entry);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    fallback.add(e.getKey());
+                } catch (Exception ex) {
+                    fallback.add(e.getKey());
+                }
+            }
+            if (!fallback.isEmpty()) {
+                log.warn("{}等待其它线程回源失败或超时, 自行查库, 数量: {}", TAG, fallback.size());
+                result.putAll(loadFromDb(fallback));
+            }
+        }
+        return result;
+    }
+
+    private Map<String, UserProfileCacheEntry> loadFromDb(Collection<String> userIds) {
+        Map<String, UserProfileCacheEntry> loaded = new HashMap<>();
+        for (List<String> batch : Lists.partition(new ArrayList<>(userIds), DB_BATCH_SIZE)) {
+            List<ImUserDO> users = imUserMapper.selectList(Wrappers.lambdaQuery(ImUserDO.class)
+                    .in(ImUserDO::getUserId, batch));
+            for (ImUserDO user : users) {
+                loaded.put(user.getUserId(), UserProfileCacheEntry.from(user, fileBaseUrl));
+            }
+        }
+        log.debug("{}回源查库, 请求: {}, 命中: {}", TAG, userIds.size(), loaded.size());
+        return loaded;
+    }
+
+    /**
+     * 读取二级缓存，Redis 异常时按全部未命中处理
+     */
+    private Map<String, byte[]> readL2(Set<String> userIds) {
+        try {
+            String[] keys = userIds.stream().map(UserProfileCacheServiceImpl::l2Key).toArray(String[]::new);
+            Map<String, byte[]> byKey = redissonClient.getBuckets(ByteArrayCodec.INSTANCE).get(keys);
+            Map<String, byte[]> values = new HashMap<>(byKey.size());
+            byKey.forEach((key, value) -> values.put(key.substring(USER_PROFILE_CACHE_KEY_PREFIX.length()), value));
+            return values;
+        } catch (Exception e) {
+            log.warn("{}读取二级缓存失败, 直接回源, 数量: {}", TAG, userIds.size(), e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 回源结果写回二级缓存，SET NX 不覆盖删除标记与其它节点已写入的值
+     */
+    private void writeL2(Map<String, byte[]> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        try {
+            RBatch batch = redissonClient.createBatch();
+            Duration ttl = Duration.ofSeconds(l2TtlSeconds);
+            values.forEach((userId, value) -> batch.<byte[]>getBucket(l2Key(userId), ByteArrayCodec.INSTANCE).setIfAbsentAsync(value, ttl));
+            batch.execute();
+        } catch (Exception e) {
+            log.warn("{}写入二级缓存失败, 数量: {}", TAG, values.size(), e);
+        }
+    }
+
+    private static String l2Key(String userId) {
+        return USER_PROFILE_CACHE_KEY_PREFIX + userId;
+    }
+}
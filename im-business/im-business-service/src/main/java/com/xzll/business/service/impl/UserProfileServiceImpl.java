@@ -4,18 +4,18 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.xzll.business.mapper.ImUserMapper;
+import com.xzll.business.entity.redis.UserProfileCacheEntry;
+import com.xzll.business.service.UserProfileCacheService;
 import com.xzll.business.service.UserProfileService;
 import com.xzll.common.pojo.entity.ImUserDO;
 import com.xzll.common.pojo.request.UpdateUserProfileAO;
 import com.xzll.common.pojo.response.UserProfileVO;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import jakarta.annotation.Resource;
 import java.time.LocalDateTime;
-import org.springframework.beans.factory.annotation.Value;
 
 /**
  * 用户个人信息服务实现
@@ -26,10 +26,9 @@ public class UserProfileServiceImpl implements UserProfileService {
 
     @Resource
     private ImUserMapper imUserMapper;
-    
-    // 文件访问配置
-    @Value("${minio.file.upload.base-url:http://localhost:8080/im-business/api/file/}")
-    private String fileBaseUrl;
+
+    @Resource
+    private UserProfileCacheService userProfileCacheService;
 
     @Override
     public UserProfileVO getUserProfileByUserId(String userId) {
@@ -41,27 +40,23 @@ public class UserProfileServiceImpl implements UserProfileService {
                 throw new IllegalArgumentException("用户ID不能为空");
             }
             
-            // 2. 根据userId字段查询用户信息（不是主键查询）
-            LambdaQueryWrapper<ImUserDO> queryWrapper = Wrappers.lambdaQuery(ImUserDO.class)
-                    .eq(ImUserDO::getUserId, userId);
-            
-            ImUserDO userDO = imUserMapper.selectOne(queryWrapper);
-            if (userDO == null) {
+            // 2. 从多级缓存读取用户资料（未命中时按userId字段回源查询）
+            UserProfileCacheEntry profile = userProfileCacheService.getProfile(userId);
+            if (profile == null) {
                 throw new RuntimeException("用户不存在，userId：" + userId);
             }
             
-            // 3. 转换为VO对象
+            // 3. 转换为VO对象，头像使用缓存中已转换好的完整访问URL
             UserProfileVO userProfileVO = new UserProfileVO();
-            BeanUtils.copyProperties(userDO, userProfileVO);
-            
-            // 4. 转换头像路径为完整访问URL
-            if (StringUtils.hasText(userDO.getHeadImage())) {
-                String shortCode = generateShortCode(userDO.getHeadImage());
-                String fullAvatarUrl = fileBaseUrl + "s/" + shortCode;
-                userProfileVO.setHeadImage(fullAvatarUrl);
-                log.info("头像URL转换 - 原路径: {}, 短码: {}, 完整URL: {}", 
-                    userDO.getHeadImage(), shortCode, fullAvatarUrl);
-            }
+            userProfileVO.setUserId(profile.getUserId());
+            userProfileVO.setUserName(profile.getUserName());
+            userProfileVO.setUserFullName(profile.getUserFullName());
+            userProfileVO.setPhone(profile.getPhone());
+            userProfileVO.setEmail(profile.getEmail());
+            userProfileVO.setHeadImage(profile.getAvatarUrl());
+            userProfileVO.setSex(profile.getSex());
+            userProfileVO.setRegisterTime(profile.getRegisterTime());
+            userProfileVO.setLastLoginTime(profile.getLastLoginTime());
             
             log.info("获取用户个人信息成功，userId：{}", userId);
             return userProfileVO;
@@ -136,6 +131,7 @@ public class UserProfileServiceImpl implements UserProfileService {
             if (updateCount <= 0) {
                 throw new RuntimeException("更新用户信息失败，userId：" + userId);
             }
+            userProfileCacheService.invalidate(userId);
             
             // 6. 返回更新后的用户信息
             UserProfileVO result = getUserProfileByUserId(userId);
@@ -169,6 +165,7 @@ public class UserProfileServiceImpl implements UserProfileService {
                 log.error("更新用户头像失败，userId：{}", userId);
                 return false;
             }
+            userProfileCacheService.invalidate(userId);
             
             log.info("更新用户头像成功，userId：{}", userId);
             return true;
@@ -178,11 +175,4 @@ public class UserProfileServiceImpl implements UserProfileService {
             return false;
         }
     }
-    
-    /**
-     * 生成短码（Base64编码文件路径）
-     */
-    private String generateShortCode(String filePath) {
-        return java.util.Base64.getEncoder().encodeToString(filePath.getBytes());
-    }
 }
@@ -0,0 +1,292 @@
+package com.xzll.business.service.impl;
+
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.xzll.business.entity.es.ImUserSearchES;
+import com.xzll.business.mapper.ImUserMapper;
+import com.xzll.business.service.UserSearchIndexService;
+import com.xzll.common.pojo.entity.ImUserDO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RLock;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.xzll.common.constant.ImConstant.RedisKeyConstant.USER_PROFILE_CHANGE_TOPIC;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 用户搜索索引服务实现类
+ *
+ * 所有索引写入都在单个后台线程中执行，天然串行；文档ID为用户ID，重复写入幂等。
+ */
+@Slf4j
+@Service
+public class UserSearchIndexServiceImpl implements UserSearchIndexService {
+
+    private static final String TAG = "[用户搜索索引]_";
+
+    /**
+     * 增量同步水位：已写入索引的最大 im_user.id
+     */
+    private static final String SYNC_MAX_ID_KEY = "im:user:search:sync:maxId";
+
+    private static final String SYNC_LOCK_KEY = "im:user:search:sync:lock";
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    /**
+     * 深分页没有意义，超过后不再返回
+     */
+    private static final int MAX_RESULT_WINDOW = 500;
+
+    @Resource
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Resource
+    private ImUserMapper imUserMapper;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Value("${im.user-search.sync-interval-ms:10000}")
+    private long syncIntervalMs;
+
+    @Value("${im.user-search.batch-size:500}")
+    private int batchSize;
+
+    private ScheduledExecutorService executor;
+
+    private RTopic changeTopic;
+    private int changeListenerId = -1;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::ensureIndex);
+        executor.scheduleWithFixedDelay(this::syncNewUsers, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+        try {
+            // 每个实例都会收到广播并各自重建一次，文档按ID覆盖，重复写入无副作用
+            changeTopic = redissonClient.getTopic(USER_PROFILE_CHANGE_TOPIC, StringCodec.INSTANCE);
+            changeListenerId = changeTopic.addListener(String.class, (channel, userId) -> reindexUsers(List.of(userId)));
+        } catch (Exception e) {
+            log.error("{}订阅资料变更广播失败, 资料修改将在全量重建后才反映到索引", TAG, e);
+        }
+        log.info("{}初始化完成, 增量同步周期: {}ms", TAG, syncIntervalMs);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (changeTopic != null && changeListenerId != -1) {
+            changeTopic.removeListener(changeListenerId);
+        }
+        executor.shutdownNow();
+    }
+
+    @Override
+    public List<String> searchUserIds(String keyword, boolean exact, String excludeUserId, int currentPage, int pageSize) {
+        String kw = keyword.trim().toLowerCase(Locale.ROOT);
+        int from = (currentPage - 1) * pageSize;
+        if (from >= MAX_RESULT_WINDOW) {
+            return List.of();
+        }
+
+        Query query = BoolQuery.of(b -> {
+            if (StringUtils.hasText(excludeUserId)) {
+                b.mustNot(m -> m.term(t -> t.field("userId").value(excludeUserId)));
+            }
+            // 精确命中排在前面
+            b.should(s -> s.term(t -> t.field("userName.keyword").value(kw).boost(10f)));
+            b.should(s -> s.term(t -> t.field("userFullName.keyword").value(kw).boost(10f)));
+            b.should(s -> s.term(t -> t.field("phone.keyword").value(kw).boost(10f)));
+            b.should(s -> s.term(t -> t.field("email.keyword").value(kw).boost(10f)));
+            if (!exact) {
+                b.should(s -> s.match(m -> m.field("userName").query(kw).boost(3f)));
+                b.should(s -> s.match(m -> m.field("userFullName").query(kw).boost(2f)));
+                b.should(s -> s.match(m -> m.field("phone").query(kw)));
+                b.should(s -> s.match(m -> m.field("email").query(kw)));
+                // 超过 n-gram 最大长度的关键词按用户名/昵称前缀匹配
+                b.should(s -> s.prefix(p -> p.field("userName.keyword").value(kw)));
+                b.should(s -> s.prefix(p -> p.field("userFullName.keyword").value(kw)));
+            }
+            return b.minimumShouldMatch("1");
+        })._toQuery();
+
+        NativeQuery searchQuery = NativeQuery.builder()
+                .withQuery(query)
+                .withPageable(PageRequest.of(currentPage - 1, pageSize))
+                .withSort(s -> s.score(sc -> sc.order(SortOrder.Desc)))
+                .withSort(s -> s.field(f -> f.field("registerTime").order(SortOrder.Desc)))
+                .withTrackTotalHits(false)
+                .build();
+
+        return elasticsearchTemplate.search(searchQuery, ImUserSearchES.class).getSearchHits().stream()
+                .map(SearchHit::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void reindexUsers(Collection<String> userIds) {
+        if (CollectionUtils.isEmpty(userIds)) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(userIds);
+        executor.execute(() -> {
+            try {
+                List<ImUserDO> users = imUserMapper.selectList(Wrappers.lambdaQuery(ImUserDO.class)
+                        .select(ImUserDO::getId, ImUserDO::getUserId, ImUserDO::getUserName, ImUserDO::getUserFullName,
+                                ImUserDO::getPhone, ImUserDO::getEmail, ImUserDO::getRegisterTime)
+                        .in(ImUserDO::getUserId, ids));
+                save(users);
+                Set<String> found = users.stream().map(ImUserDO::getUserId).collect(Collectors.toSet());
+                for (String userId : ids) {
+                    if (!found.contains(userId)) {
+                        elasticsearchTemplate.delete(userId, ImUserSearchES.class);
+                    }
+                }
+                log.debug("{}重建用户文档, userIds: {}", TAG, ids);
+            } catch (Exception e) {
+                log.error("{}重建用户文档失败, userIds: {}", TAG, ids, e);
+            }
+        });
+    }
+
+    @Override
+    public long rebuild() {
+        RLock lock = redissonClient.getLock(SYNC_LOCK_KEY);
+        lock.lock();
+        try {
+            long start = System.currentTimeMillis();
+            long lastId = 0;
+            long total = 0;
+            List<ImUserDO> batch;
+            do {
+                batch = selectUsersAfter(lastId);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                save(batch);
+                total += batch.size();
+                lastId = batch.get(batch.size() - 1).getId();
+            } while (batch.size() == batchSize);
+            maxIdWatermark().set(lastId);
+            log.info("{}全量重建完成, 文档数: {}, maxId: {}, 耗时: {}ms", TAG, total, lastId, System.currentTimeMillis() - start);
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 索引不存在时按实体注解创建并全量重建
+     */
+    private void ensureIndex() {
+        try {
+            IndexOperations indexOps = elasticsearchTemplate.indexOps(ImUserSearchES.class);
+            if (indexOps.exists()) {
+                return;
+            }
+            indexOps.createWithMapping();
+            log.info("{}索引不存在，已创建，开始全量重建", TAG);
+            rebuild();
+        } catch (Exception e) {
+            log.error("{}初始化索引失败", TAG, e);
+        }
+    }
+
+    /**
+     * 按自增主键增量拉取新注册用户，只走主键范围扫描
+     */
+    private void syncNewUsers() {
+        RLock lock = redissonClient.getLock(SYNC_LOCK_KEY);
+        boolean locked = false;
+        try {
+            locked = lock.tryLock(0, 5, TimeUnit.MINUTES);
+            if (!locked) {
+                return;
+            }
+            RAtomicLong watermark = maxIdWatermark();
+            long lastId = watermark.get();
+            int synced = 0;
+            List<ImUserDO> batch;
+            do {
+                batch = selectUsersAfter(lastId);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                save(batch);
+                synced += batch.size();
+                lastId = batch.get(batch.size() - 1).getId();
+                watermark.set(lastId);
+            } while (batch.size() == batchSize);
+            if (synced > 0) {
+                log.info("{}增量同步新用户: {}, maxId: {}", TAG, synced, lastId);
+            }
+        } catch (Exception e) {
+            log.error("{}增量同步失败", TAG, e);
+        } finally {
+            if (locked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private List<ImUserDO> selectUsersAfter(long lastId) {
+        return imUserMapper.selectList(Wrappers.lambdaQuery(ImUserDO.class)
+                .select(ImUserDO::getId, ImUserDO::getUserId, ImUserDO::getUserName, ImUserDO::getUserFullName,
+                        ImUserDO::getPhone, ImUserDO::getEmail, ImUserDO::getRegisterTime)
+                .gt(ImUserDO::getId, lastId)
+                .orderByAsc(ImUserDO::getId)
+                .last("LIMIT " + batchSize));
+    }
+
+    private void save(List<ImUserDO> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        elasticsearchTemplate.save(users.stream().map(UserSearchIndexServiceImpl::toDocument).collect(Collectors.toList()));
+    }
+
+    private static ImUserSearchES toDocument(ImUserDO user) {
+        ImUserSearchES doc = new ImUserSearchES();
+        doc.setUserId(user.getUserId());
+        doc.setUserName(user.getUserName());
+        doc.setUserFullName(user.getUserFullName());
+        doc.setPhone(user.getPhone());
+        doc.setEmail(user.getEmail());
+        doc.setRegisterTime(user.getRegisterTime() == null ? null
+                : user.getRegisterTime().atZone(ZONE).toInstant().toEpochMilli());
+        return doc;
+    }
+
+    private RAtomicLong maxIdWatermark() {
+        return redissonClient.getAtomicLong(SYNC_MAX_ID_KEY);
+    }
+}
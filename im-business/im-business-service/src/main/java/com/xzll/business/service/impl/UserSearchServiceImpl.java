@@ -5,11 +5,13 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.google.common.collect.Lists;
-import com.xzll.business.entity.mysql.ImFriendRelation;
 import com.xzll.business.entity.mysql.ImFriendRequest;
-import com.xzll.business.mapper.ImFriendRelationMapper;
 import com.xzll.business.mapper.ImFriendRequestMapper;
+import com.xzll.business.entity.redis.UserProfileCacheEntry;
 import com.xzll.business.mapper.ImUserMapper;
+import com.xzll.business.service.FriendGraphCacheService;
+import com.xzll.business.service.UserProfileCacheService;
+import com.xzll.business.service.UserSearchIndexService;
 import com.xzll.business.service.UserSearchService;
 import com.xzll.common.pojo.entity.ImUserDO;
 import com.xzll.common.pojo.request.UserSearchAO;
@@ -22,7 +24,7 @@ import org.springframework.util.StringUtils;
 import jakarta.annotation.Resource;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -38,10 +40,16 @@ public class UserSearchServiceImpl implements UserSearchService {
     private ImUserMapper userMapper;
 
     @Resource
-    private ImFriendRelationMapper friendRelationMapper;
+    private ImFriendRequestMapper friendRequestMapper;
 
     @Resource
-    private ImFriendRequestMapper friendRequestMapper;
+    private FriendGraphCacheService friendGraphCacheService;
+
+    @Resource
+    private UserProfileCacheService userProfileCacheService;
+
+    @Resource
+    private UserSearchIndexService userSearchIndexService;
 
     @Override
     public List<UserSearchVO> searchUsers(UserSearchAO ao) {
@@ -54,12 +62,6 @@ public class UserSearchServiceImpl implements UserSearchService {
                 return Lists.newArrayList();
             }
 
-            // 关键词长度限制，防止性能问题
-            if (ao.getKeyword().length() < 2) {
-                log.warn("搜索用户失败，搜索关键词太短");
-                return Lists.newArrayList();
-            }
-
             // 设置默认值
             if (ao.getCurrentPage() == null || ao.getCurrentPage() <= 0) {
                 ao.setCurrentPage(1);
@@ -72,33 +74,26 @@ public class UserSearchServiceImpl implements UserSearchService {
                 ao.setPageSize(50);
             }
 
-            // 2. 搜索用户
-            List<ImUserDO> users = searchUsersByKeyword(ao);
-            
-            if (CollectionUtils.isEmpty(users)) {
-                log.info("搜索用户无结果，关键词:{}", ao.getKeyword());
-                return Lists.newArrayList();
-            }
-
-            // 3. 过滤掉当前用户自己
-            users = users.stream()
-                    .filter(user -> !ao.getCurrentUserId().equals(user.getUserId()))
+            // 2. 搜索用户（只查匹配的userId，资料从多级缓存批量读取）
+            List<String> targetUserIds = searchUserIdsByKeyword(ao).stream()
+                    .filter(userId -> !ao.getCurrentUserId().equals(userId)) // 3. 过滤掉当前用户自己
                     .collect(Collectors.toList());
 
-            if (CollectionUtils.isEmpty(users)) {
+            if (CollectionUtils.isEmpty(targetUserIds)) {
+                log.info("搜索用户无结果，关键词:{}", ao.getKeyword());
                 return Lists.newArrayList();
             }
 
-            // 4. 获取好友关系状态
-            List<String> targetUserIds = users.stream()
-                    .map(ImUserDO::getUserId)
-                    .collect(Collectors.toList());
+            Map<String, UserProfileCacheEntry> profileMap = userProfileCacheService.getProfiles(targetUserIds);
 
-            Map<String, Integer> friendStatusMap = getFriendStatusMap(ao.getCurrentUserId(), targetUserIds);
+            // 4. 获取好友关系状态（好友关系缓存）与待处理申请
+            Map<String, Integer> friendStatusMap = friendGraphCacheService.getRelationStates(ao.getCurrentUserId(), targetUserIds);
             Map<String, String> pendingRequestMap = getPendingRequestMap(ao.getCurrentUserId(), targetUserIds);
 
-            // 5. 构建返回结果
-            List<UserSearchVO> result = users.stream()
+            // 5. 构建返回结果，保持搜索排序
+            List<UserSearchVO> result = targetUserIds.stream()
+                    .map(profileMap::get)
+                    .filter(Objects::nonNull)
                     .map(user -> buildUserSearchVO(user, friendStatusMap, pendingRequestMap))
                     .collect(Collectors.toList());
 
@@ -114,78 +109,41 @@ public class UserSearchServiceImpl implements UserSearchService {
     }
 
     /**
-     * 根据关键词搜索用户
+     * 根据关键词搜索用户，只返回userId
+     * 走ES用户搜索索引；索引不可用时降级为MySQL精确匹配（不做 LIKE 扫表）
      */
-    private List<ImUserDO> searchUsersByKeyword(UserSearchAO ao) {
-        LambdaQueryWrapper<ImUserDO> queryWrapper = Wrappers.lambdaQuery(ImUserDO.class);
-
+    private List<String> searchUserIdsByKeyword(UserSearchAO ao) {
         String keyword = ao.getKeyword().trim();
-        
-        if (ao.getSearchType() != null && ao.getSearchType() == 1) {
-            // 精确搜索
-            queryWrapper.and(wrapper -> wrapper
-                    .eq(ImUserDO::getUserName, keyword)
-                    .or()
-                    .eq(ImUserDO::getUserFullName, keyword)
-                    .or()
-                    .eq(ImUserDO::getPhone, keyword)
-                    .or()
-                    .eq(ImUserDO::getEmail, keyword)
-            );
-        } else {
-            // 模糊搜索
-            queryWrapper.and(wrapper -> wrapper
-                    .like(ImUserDO::getUserName, keyword)
-                    .or()
-                    .like(ImUserDO::getUserFullName, keyword)
-                    .or()
-                    .like(ImUserDO::getPhone, keyword)
-                    .or()
-                    .like(ImUserDO::getEmail, keyword)
-            );
+        boolean exact = ao.getSearchType() != null && ao.getSearchType() == 1;
+        try {
+            return userSearchIndexService.searchUserIds(keyword, exact, ao.getCurrentUserId(),
+                    ao.getCurrentPage(), ao.getPageSize());
+        } catch (Exception e) {
+            log.error("用户搜索索引查询失败，降级为数据库精确匹配，关键词:{}", keyword, e);
         }
 
-        // 按注册时间倒序排列
-        queryWrapper.orderByDesc(ImUserDO::getRegisterTime);
+        LambdaQueryWrapper<ImUserDO> queryWrapper = Wrappers.lambdaQuery(ImUserDO.class)
+                .select(ImUserDO::getUserId)
+                .and(wrapper -> wrapper
+                        .eq(ImUserDO::getUserName, keyword)
+                        .or()
+                        .eq(ImUserDO::getUserFullName, keyword)
+                        .or()
+                        .eq(ImUserDO::getPhone, keyword)
+                        .or()
+                        .eq(ImUserDO::getEmail, keyword)
+                )
+                .orderByDesc(ImUserDO::getRegisterTime);
 
-        // 分页查询
         Page<ImUserDO> page = new Page<>(ao.getCurrentPage(), ao.getPageSize());
-        Page<ImUserDO> resultPage = userMapper.selectPage(page, queryWrapper);
-
-        return resultPage.getRecords();
-    }
-
-    /**
-     * 获取好友关系状态映射
-     */
-    private Map<String, Integer> getFriendStatusMap(String currentUserId, List<String> targetUserIds) {
-        if (CollectionUtils.isEmpty(targetUserIds)) {
-            return Map.of();
-        }
-
-        // 查询好友关系
-        LambdaQueryWrapper<ImFriendRelation> friendQuery = Wrappers.lambdaQuery(ImFriendRelation.class)
-                .eq(ImFriendRelation::getUserId, currentUserId)
-                .in(ImFriendRelation::getFriendId, targetUserIds)
-                .eq(ImFriendRelation::getDelFlag, false);
-
-        List<ImFriendRelation> friendRelations = friendRelationMapper.selectList(friendQuery);
-
-        return friendRelations.stream()
-                .collect(Collectors.toMap(
-                        ImFriendRelation::getFriendId,
-                        relation -> {
-                            if (relation.getBlackFlag()) {
-                                return 3; // 已被拉黑
-                            } else {
-                                return 1; // 已是好友
-                            }
-                        }
-                ));
+        page.setSearchCount(false);
+        return userMapper.selectPage(page, queryWrapper).getRecords().stream()
+                .map(ImUserDO::getUserId)
+                .collect(Collectors.toList());
     }
 
     /**
-     * 获取待处理的好友申请映射
+     * 获取当前用户发出的待处理申请
      */
     private Map<String, String> getPendingRequestMap(String currentUserId, List<String> targetUserIds) {
         if (CollectionUtils.isEmpty(targetUserIds)) {
@@ -211,7 +169,7 @@ public class UserSearchServiceImpl implements UserSearchService {
     /**
      * 构建用户搜索结果VO
      */
-    private UserSearchVO buildUserSearchVO(ImUserDO user, Map<String, Integer> friendStatusMap, 
+    private UserSearchVO buildUserSearchVO(UserProfileCacheEntry user, Map<String, Integer> friendStatusMap, 
                                           Map<String, String> pendingRequestMap) {
         UserSearchVO vo = new UserSearchVO();
         
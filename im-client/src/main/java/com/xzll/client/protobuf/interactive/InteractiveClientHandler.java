@@ -161,6 +161,22 @@ public class InteractiveClientHandler extends SimpleChannelInboundHandler<Object
                     handleFriendResponse(protoResponse);
                     break;
                 
+                case SERVER_RECONNECT:
+                    handleReconnect(protoResponse);
+                    break;
+                
+                case HEARTBEAT:
+                    // 应用层心跳应答，无需处理
+                    break;
+                
+                case HEARTBEAT_CONFIG:
+                    handleHeartbeatConfig(protoResponse);
+                    break;
+                
+                case GROUP_SYNC_REQUIRED:
+                    handleGroupSync(protoResponse);
+                    break;
+                
                 default:
                     System.out.println("[" + getTime() + "] ❓ 收到未知类型消息: " + msgType);
             }
@@ -362,6 +378,46 @@ public class InteractiveClientHandler extends SimpleChannelInboundHandler<Object
         }
     }
     
+    /**
+     * 处理重连通知（服务端节点下线前推送，随后服务端会关闭连接）
+     */
+    private void handleReconnect(ImProtoResponse protoResponse) {
+        try {
+            ReconnectPush push = ReconnectPush.parseFrom(protoResponse.getPayload());
+            System.out.println("[" + getTime() + "] 🔄 服务端要求重连, 原因: " + push.getReason()
+                    + ", 建议延迟: " + push.getDelayMs() + "ms");
+        } catch (InvalidProtocolBufferException e) {
+            System.err.println("[" + getTime() + "] ❌ 解析重连通知失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 处理心跳配置下发
+     */
+    private void handleHeartbeatConfig(ImProtoResponse protoResponse) {
+        try {
+            HeartbeatConfigPush push = HeartbeatConfigPush.parseFrom(protoResponse.getPayload());
+            System.out.println("[" + getTime() + "] 💓 心跳间隔调整为: " + push.getIntervalSeconds()
+                    + "s, 超时: " + push.getTimeoutSeconds() + "s");
+        } catch (InvalidProtocolBufferException e) {
+            System.err.println("[" + getTime() + "] ❌ 解析心跳配置失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 处理群消息同步通知（服务端合并了积压的群推送，需要拉取缺失消息）
+     */
+    private void handleGroupSync(ImProtoResponse protoResponse) {
+        try {
+            GroupSyncPush push = GroupSyncPush.parseFrom(protoResponse.getPayload());
+            System.out.println("[" + getTime() + "] 🔄 群消息需同步: groupId=" + ProtoConverterUtil.longToSnowflakeString(push.getGroupId())
+                    + ", lastMsgId=" + ProtoConverterUtil.longToSnowflakeString(push.getLastMsgId())
+                    + ", 未推送条数=" + push.getSkipped());
+        } catch (InvalidProtocolBufferException e) {
+            System.err.println("[" + getTime() + "] ❌ 解析群同步通知失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 处理好友响应（优化版：适配 fixed64）
      */
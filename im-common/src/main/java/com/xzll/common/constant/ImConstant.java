@@ -56,6 +56,11 @@ public interface ImConstant {
          * C2C消息记录表名/索引名（用于 MySQL、HBase、ES）
          */
         public static final String IM_C2C_MSG_RECORD = "im_c2c_msg_record";
+
+        /**
+         * 用户搜索索引名（ES），分词配置变更时升级版本号，启动时按新配置建索引并全量重建
+         */
+        public static final String IM_USER_SEARCH = "im_user_search_v2";
     }
 
     /**
@@ -150,6 +155,10 @@ public interface ImConstant {
          * 用户登录的token key
          */
         public static final String USER_TOKEN_KEY = "userLogin:token:";
+        /**
+         * Token 吊销广播频道（message: tokenMd5），登出/顶号删除 token 后发布，im-connect 收到后失效本地已验证 token 缓存
+         */
+        public static final String USER_TOKEN_REVOKE_TOPIC = "userLogin:token:revoke";
         /**
          * 路由信息前缀
          */
@@ -208,6 +217,51 @@ public interface ImConstant {
          */
         public static final String GROUP_OFFLINE_MSG_PREFIX = "group:offline:";
 
+        //=======================敏感词相关 key =======================
+        /**
+         * 已启用的敏感词全集（Set，StringCodec），由 im-console 刷新词库时整体发布
+         */
+        public static final String SENSITIVE_WORDS = "sensitive:words";
+
+        /**
+         * 敏感词库版本号（AtomicLong），im-connect 轮询此值判断是否需要重建自动机
+         */
+        public static final String SENSITIVE_WORDS_VERSION = "sensitive:words:version";
+
+        //=======================用户资料相关 key =======================
+        /**
+         * 用户资料变更广播频道（message: userId），资料缓存失效与用户搜索索引更新共用
+         */
+        public static final String USER_PROFILE_CHANGE_TOPIC = "user:profile:invalidate";
+
+        //=======================好友关系相关 key =======================
+        /**
+         * 好友集合（ZSet，StringCodec），member: 好友ID，score: 成为好友的时间戳（毫秒），占位符 %s 为用户ID
+         * 与拉黑集合使用相同 hash tag，保证 Lua 脚本在集群模式下可同时写入
+         */
+        public static final String FRIEND_IDS_KEY_FORMAT = "friend:{%s}:ids";
+
+        /**
+         * 用户拉黑的好友集合（Set，StringCodec），占位符 %s 为用户ID
+         */
+        public static final String FRIEND_BLOCKED_KEY_FORMAT = "friend:{%s}:blocked";
+
+        /**
+         * 好友关系版本号（String，StringCodec），关系变更提交后自增，占位符 %s 为用户ID
+         * 缓存未命中回填时比较版本号，期间有变更则放弃回填，避免旧快照覆盖新数据
+         */
+        public static final String FRIEND_GRAPH_VERSION_KEY_FORMAT = "friend:{%s}:ver";
+
+        /**
+         * 好友集合/拉黑集合中的占位成员，存在即表示该用户的好友关系已完整加载（用于区分"未缓存"与"为空"）
+         */
+        public static final String FRIEND_GRAPH_LOADED_MARKER = "#";
+
+        /**
+         * 好友关系变更广播频道（message: userId），各实例收到后失效本地近端缓存
+         */
+        public static final String FRIEND_GRAPH_CHANGE_TOPIC = "friend:graph:invalidate";
+
     }
 
     public static class ClusterEventTypeConstant {
@@ -245,6 +299,10 @@ public interface ImConstant {
          * 用户群组缓存重建
          */
         public static final int USER_GROUP_CACHE_REBUILD = 200;
+        /**
+         * 好友关系缓存重建（复用用户群组缓存重建 topic）
+         */
+        public static final int FRIEND_GRAPH_CACHE_REBUILD = 201;
         /**
          * 用户群组缓存已更新
          */
@@ -276,6 +334,54 @@ public interface ImConstant {
         }
     }
 
+    /**
+     * 消息统计预聚合（im-business 消费消息时写入，im-console 看板只读）
+     *
+     * 按分钟/小时/天分桶的 Redis Hash（StringCodec），key 为前缀 + 时间桶，field 见下方 FIELD_*：
+     * - 分桶内 total / format:{格式} / withdraw 为该时间段内新增数，status:{状态} 为该时间段内进入该状态的次数
+     * - TOTAL_KEY 为全量累计，status:{状态} 为当前处于该状态的消息数（状态变更时旧状态减一、新状态加一）
+     */
+    public static class MsgStatsConstant {
+
+        public static final String MINUTE_BUCKET_PREFIX = "im:stats:msg:minute:";
+        public static final String HOUR_BUCKET_PREFIX = "im:stats:msg:hour:";
+        public static final String DAY_BUCKET_PREFIX = "im:stats:msg:day:";
+        public static final String TOTAL_KEY = "im:stats:msg:total";
+
+        public static final String MINUTE_BUCKET_PATTERN = "yyyyMMddHHmm";
+        public static final String HOUR_BUCKET_PATTERN = "yyyyMMddHH";
+        public static final String DAY_BUCKET_PATTERN = "yyyyMMdd";
+
+        public static final String FIELD_TOTAL = "total";
+        public static final String FIELD_FORMAT_PREFIX = "format:";
+        public static final String FIELD_STATUS_PREFIX = "status:";
+        public static final String FIELD_WITHDRAW = "withdraw";
+    }
+
+    /**
+     * 在线与活跃用户统计（im-connect 写入，im-console 只读）
+     *
+     * - DAU_HLL_PREFIX + yyyyMMdd / MAU_HLL_PREFIX + yyyyMM：当天/当月建立过连接的用户 HyperLogLog
+     * - ACTIVE_BITMAP_PREFIX + yyyyMMdd：当天活跃用户位图，位下标为紧凑用户ID，用于留存计算
+     * - COMPACT_ID_KEY / COMPACT_ID_SEQ：userId -> 紧凑自增ID 映射及其序列
+     * - ONLINE_NODES_KEY：field 为连接节点 ip:port，value 为 "在线用户数:上报时间毫秒"
+     * - ONLINE_SAMPLES_PREFIX + yyyyMMdd：field 为 HHmm，value 为该分钟各节点在线用户数之和
+     */
+    public static class UserActivityConstant {
+
+        public static final String DAU_HLL_PREFIX = "im:stats:dau:";
+        public static final String MAU_HLL_PREFIX = "im:stats:mau:";
+        public static final String ACTIVE_BITMAP_PREFIX = "im:stats:active:bitmap:";
+        public static final String COMPACT_ID_KEY = "im:stats:user:compactId";
+        public static final String COMPACT_ID_SEQ = "im:stats:user:compactId:seq";
+        public static final String ONLINE_NODES_KEY = "im:stats:online:nodes";
+        public static final String ONLINE_SAMPLES_PREFIX = "im:stats:online:samples:";
+
+        public static final String DAY_PATTERN = "yyyyMMdd";
+        public static final String MONTH_PATTERN = "yyyyMM";
+        public static final String SAMPLE_MINUTE_PATTERN = "HHmm";
+    }
+
     /**
      * 消息状态更新条件，防止状态回退
      */
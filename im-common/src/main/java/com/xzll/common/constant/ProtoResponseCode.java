@@ -40,6 +40,11 @@ public final class ProtoResponseCode {
      */
     public static final int PUSH_FAILED = -4;
 
+    /**
+     * 已被对方拉黑，消息被拒收
+     */
+    public static final int BLOCKED = -5;
+
     private ProtoResponseCode() {
         // 工具类，禁止实例化
     }
@@ -18,6 +18,17 @@ public class LastChatListAO extends CommonMsgAO {
 
     private Integer pageSize;
 
+    /**
+     * 游标分页：上一页最后一条会话的 lastMsgTime，为空时按 currentPage 分页
+     * 首页（无游标且 currentPage=1）额外返回全部置顶会话，游标分页只翻非置顶会话
+     */
+    private Long cursorTime;
+
+    /**
+     * 游标分页：上一页最后一条会话的 chatId，用于区分同一毫秒的多个会话
+     */
+    private String cursorChatId;
+
 
     /**
      * 当前用户id 可不传，服务端根据channel也能获取userId
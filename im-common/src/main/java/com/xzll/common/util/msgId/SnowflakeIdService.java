@@ -3,8 +3,8 @@ package com.xzll.common.util.msgId;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.zip.CRC32;
 
 /**
@@ -21,14 +21,29 @@ import java.util.zip.CRC32;
  * 技术特点：
  * - 数据中心ID：基于集群名生成
  * - 工作节点ID：根据配置策略生成（MAC地址、Docker ID等）  
- * - ID池机制：批量生成提升性能
+ * - 无锁生成：CAS 推进 (时间戳, 序列号) 状态，无 synchronized、无 ID 池、无装箱
+ * - 时钟回拨：小幅回拨借用逻辑时钟继续发号，超出容忍范围才拒绝
  * - 严格自增：雪花算法保证时间有序
+ *
+ * 【版本升级说明 - 2026/10/19】
+ * - nextId() 由 synchronized + List<Long> ID池 改为 CAS 无锁实现，对外提供 long 原生接口
+ * - 新增 nextIds(long[]) 一次 CAS 预留一段连续ID，供批量发号使用；每次预留不超过一毫秒的序列号容量，
+ *   大批量分段预留，每段都受借用上限约束，逻辑时钟不会因单次大批量而无限领先系统时钟
  */
 public class SnowflakeIdService {
 
     public static final int ONCE_BATCH_COUNT = 1000;
+    /**
+     * 单次 CAS 最多预留的状态数，等于一毫秒的序列号容量（4096）
+     */
+    public static final int MAX_RESERVE_COUNT = 1 << 12;
+    /**
+     * 自定义的时间戳起点，与时间戳左移位数一起用于从ID反解生成时间
+     */
+    private static final long TWEPOCH = 1288834974657L;
+    private static final long TIMESTAMP_LEFT_SHIFT = 22L;
     // 定义 Snowflake 算法的参数
-    private final long twepoch = 1288834974657L; // 自定义的时间戳起点
+    private final long twepoch = TWEPOCH; // 自定义的时间戳起点
     private final long workerIdBits = 5L;       // 机器 ID 所占的位数
     private final long datacenterIdBits = 5L;   // 数据中心 ID 所占的位数
     private final long maxWorkerId = -1L ^ (-1L << workerIdBits);
@@ -39,19 +54,27 @@ public class SnowflakeIdService {
     private final long timestampLeftShift = sequenceBits + workerIdBits + datacenterIdBits;// 22
     private final long sequenceMask = -1L ^ (-1L << sequenceBits);// 4095
 
-    private final AtomicLong sequence = new AtomicLong(0);
+    /**
+     * 时钟回拨/借用未来时间的容忍上限（毫秒），超过则拒绝发号
+     */
+    private static final long MAX_BACKWARD_MS = 5000L;
+    /**
+     * 逻辑时钟最多领先系统时钟的毫秒数，超过后等待系统时钟追上
+     */
+    private static final long MAX_BORROW_MS = 10L;
+
     private long workerId;
     private long datacenterId;
-    private long lastTimestamp = -1L;
-
-
-    // 本地递增序列，用于确保严格递增
-    //private final AtomicLong localSequence = new AtomicLong(0);
-
-    // 缓存池
-    private final List<Long> idPool = new ArrayList<>();
 
-    private final AtomicInteger poolIndex = new AtomicInteger(0);
+    /**
+     * 发号状态：高位为 (timestamp - twepoch)，低 12 位为序列号。
+     * 序列号溢出时自然进位到时间戳（借用下一毫秒），因此只需一个 AtomicLong 即可 CAS 推进
+     */
+    private final AtomicLong lastState = new AtomicLong(0);
+    /**
+     * 数据中心ID + 工作节点ID 部分，构造后固定
+     */
+    private final long nodeBits;
 
 
     public SnowflakeIdService(Long workerId, String datacenterIdStr) {
@@ -66,6 +89,7 @@ public class SnowflakeIdService {
             throw new IllegalArgumentException(String.format("datacenter Id can't be greater than %d or less than 0", maxDatacenterId));
         }
         this.datacenterId = datacenterId;
+        this.nodeBits = (datacenterId << datacenterIdShift) | (workerId << workerIdShift);
     }
 
     public SnowflakeIdService() {
@@ -76,6 +100,7 @@ public class SnowflakeIdService {
             throw new IllegalArgumentException(String.format("datacenter Id can't be greater than %d or less than 0", maxDatacenterId));
         }
         this.datacenterId = datacenterId;
+        this.nodeBits = (datacenterId << datacenterIdShift) | (workerId << workerIdShift);
     }
 
 //    public MsgIdUtilsService() {
@@ -89,42 +114,75 @@ public class SnowflakeIdService {
     }
 
 
-    public synchronized long nextId() {
-        long timestamp = timeGen();
+    /**
+     * 生成下一个雪花ID（无锁）
+     *
+     * 同一毫秒内序列号递增；序列号用尽时借用下一毫秒；系统时钟小幅回拨时沿用逻辑时钟继续递增，
+     * 保证同一实例内严格单调递增且不重复
+     *
+     * @return 雪花ID
+     */
+    public long nextId() {
+        return toId(reserve(1));
+    }
 
-        //如果当前时间戳比上一次生成ID的时间戳小，说明系统时钟出现了回拨，抛出异常以避免生成重复ID
-        if (timestamp < lastTimestamp) {
-            throw new RuntimeException("Clock moved backwards. Refusing to generate id");
+    /**
+     * 批量生成雪花ID：按 MAX_RESERVE_COUNT 分段 CAS 预留连续状态，结果直接写入调用方数组（无装箱）
+     * 整体严格递增，段内连续；超过借用上限时等待系统时钟追上
+     *
+     * @param ids 结果数组
+     */
+    public void nextIds(long[] ids) {
+        int offset = 0;
+        while (offset < ids.length) {
+            int count = Math.min(ids.length - offset, MAX_RESERVE_COUNT);
+            long last = reserve(count);
+            long first = last - count + 1;
+            for (int i = 0; i < count; i++) {
+                ids[offset + i] = toId(first + i);
+            }
+            offset += count;
         }
+    }
 
-        //如果当前时间戳与上一次生成ID的时间戳相同，说明是在同一毫秒内生成多个ID
-
-        if (lastTimestamp == timestamp) {
-            //sequence.incrementAndGet() 用于获取并自增序列号，并通过 sequenceMask 掩码保证序列号不超过最大值（4095）
-            long seq = (sequence.incrementAndGet()) & sequenceMask;
-            if (seq == 0) {
-                //如果序列号达到最大值，进入下一毫秒（通过 tilNextMillis(lastTimestamp) 方法），以确保在同一毫秒内不会生成重复的序列号
-                timestamp = tilNextMillis(lastTimestamp);
+    /**
+     * CAS 推进发号状态，预留 count（不超过 MAX_RESERVE_COUNT）个连续状态，返回预留区间的最后一个状态
+     */
+    private long reserve(int count) {
+        while (true) {
+            long last = lastState.get();
+            long lastTs = last >>> sequenceBits;
+            long now = timeGen() - twepoch;
+            long next;
+            if (now > lastTs) {
+                // 进入新的毫秒，序列号从0开始
+                next = (now << sequenceBits) + count - 1;
+            } else {
+                long drift = lastTs - now;
+                if (drift > MAX_BACKWARD_MS) {
+                    //回拨超出容忍范围，拒绝发号以避免与历史ID冲突
+                    throw new IllegalStateException(String.format(
+                            "Clock moved backwards %dms. Refusing to generate id", drift));
+                }
+                if (drift > MAX_BORROW_MS) {
+                    // 逻辑时钟领先过多（高并发借用或时钟回拨），等待系统时钟追上
+                    LockSupport.parkNanos(100_000L);
+                    continue;
+                }
+                // 同一毫秒或小幅回拨：沿用逻辑时钟，序列号溢出自动进位到下一毫秒
+                next = last + count;
+            }
+            if (lastState.compareAndSet(last, next)) {
+                return next;
             }
-        } else {
-            //如果时间戳不同，重置序列号为0
-            sequence.set(0);
         }
-        //更新最后生成ID的时间戳
-        lastTimestamp = timestamp;
-        //生成唯一ID
-        return ((timestamp - twepoch) << timestampLeftShift) |
-                (datacenterId << datacenterIdShift) |
-                (workerId << workerIdShift) |
-                sequence.get();
     }
 
-    private long tilNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
-        }
-        return timestamp;
+    /**
+     * 发号状态转换为雪花ID
+     */
+    private long toId(long state) {
+        return ((state >>> sequenceBits) << timestampLeftShift) | nodeBits | (state & sequenceMask);
     }
 
     private long timeGen() {
@@ -155,23 +213,6 @@ public class SnowflakeIdService {
         return ids;
     }
 
-    private long getNextIdFromPool() {
-        synchronized (idPool) {
-            if (poolIndex.get() >= idPool.size()) {
-                refillIdPool();
-            }
-            return idPool.get(poolIndex.getAndIncrement());
-        }
-    }
-
-    private void refillIdPool() {
-        idPool.clear();
-        poolIndex.set(0);
-        for (int i = 0; i < ONCE_BATCH_COUNT; i++) {
-            idPool.add(nextId());
-        }
-    }
-
     //============================== 提供给外部的方法 ==============================
 
     /**
@@ -181,8 +222,7 @@ public class SnowflakeIdService {
      * @return 纯雪花算法ID字符串
      */
     public String generateSimpleMessageId() {
-        long id = getNextIdFromPool();
-        return String.valueOf(id);
+        return String.valueOf(nextId());
     }
 
     /**
@@ -192,9 +232,11 @@ public class SnowflakeIdService {
      * @return 消息ID列表
      */
     public List<String> generateBatchSimpleMessageId(int count) {
+        long[] longIds = new long[count];
+        nextIds(longIds);
         List<String> ids = new ArrayList<>(count);
-        for (int i = 0; i < count; i++) {
-            ids.add(generateSimpleMessageId());
+        for (long id : longIds) {
+            ids.add(String.valueOf(id));
         }
         return ids;
     }
@@ -209,7 +251,7 @@ public class SnowflakeIdService {
      */
     @Deprecated
     public String generateMessageId(long userId, boolean isGroupChat) {
-        long id = getNextIdFromPool();
+        long id = nextId();
         // 获取本地递增序列 雪花算法已经实现序列号 无需多此一举了
         //long localSeq = localSequence.incrementAndGet();
         Integer type = isGroupChat ? 2 : 1;
@@ -254,6 +296,34 @@ public class SnowflakeIdService {
         }
     }
 
+    /**
+     * 从雪花ID中取出发号时间（毫秒），只做位运算，无需查库
+     *
+     * @param id 雪花ID
+     * @return 发号时间戳（毫秒）
+     */
+    public static long extractTimestamp(long id) {
+        return (id >>> TIMESTAMP_LEFT_SHIFT) + TWEPOCH;
+    }
+
+    /**
+     * 从消息ID中取出发号时间（毫秒），兼容新旧两种格式
+     * 注意：单聊消息ID由客户端批量预取，发号时间早于（且可能远早于）消息的 msgCreateTime，只能作为近似值
+     *
+     * @param msgId 消息ID
+     * @return 发号时间戳（毫秒），无法解析时返回null
+     */
+    public static Long extractTimestamp(String msgId) {
+        if (msgId == null || msgId.isEmpty()) {
+            return null;
+        }
+        try {
+            return extractTimestamp(getSnowflakeId(msgId));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * 提供给外部，反解析雪花id
      *
@@ -0,0 +1,371 @@
+package com.xzll.common.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @Author: hzz
+ * @Date: 2026/10/19
+ * @Description: 基于数组的 Aho-Corasick 多模式匹配自动机（敏感词过滤专用）
+ *
+ * 设计要点：
+ * - 构建完成后不可变，可被任意线程并发读取；词库变化时整体重建并原子替换引用
+ * - 节点的子边按 char 升序存放在连续数组中（CSR 布局），二分查找转移，无 HashMap、无 Character 装箱
+ * - 每个节点预计算 maxLen（自身及失败链上最长的词长），屏蔽时一次扫描即可覆盖所有命中
+ * - 匹配只扫描一遍文本，时间复杂度 O(n)，与词库大小无关
+ */
+public final class AhoCorasickMatcher {
+
+    private static final AhoCorasickMatcher EMPTY = build(Collections.emptyList());
+
+    private static final int ROOT = 0;
+
+    /**
+     * 节点 i 的子边区间为 [childStart[i], childStart[i + 1])
+     */
+    private final int[] childStart;
+    private final char[] edgeChar;
+    private final int[] edgeTarget;
+    /**
+     * 失败指针
+     */
+    private final int[] fail;
+    /**
+     * 以该节点结尾的词长度，0 表示不是词尾
+     */
+    private final int[] wordLen;
+    /**
+     * 失败链上（含自身）最长的词长度
+     */
+    private final int[] maxLen;
+    /**
+     * 失败链上下一个词尾节点，-1 表示没有
+     */
+    private final int[] outputLink;
+
+    private final int wordCount;
+
+    private AhoCorasickMatcher(int[] childStart, char[] edgeChar, int[] edgeTarget, int[] fail,
+                               int[] wordLen, int[] maxLen, int[] outputLink, int wordCount) {
+        this.childStart = childStart;
+        this.edgeChar = edgeChar;
+        this.edgeTarget = edgeTarget;
+        this.fail = fail;
+        this.wordLen = wordLen;
+        this.maxLen = maxLen;
+        this.outputLink = outputLink;
+        this.wordCount = wordCount;
+    }
+
+    /**
+     * 空自动机，不匹配任何内容
+     */
+    public static AhoCorasickMatcher empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 根据词库构建自动机，空白词会被忽略
+     *
+     * @param words 敏感词集合
+     * @return 不可变的自动机
+     */
+    public static AhoCorasickMatcher build(Collection<String> words) {
+        // 1. 先用临时的链表结构构建 Trie，节点数量未知
+        TrieBuilder trie = new TrieBuilder();
+        int count = 0;
+        for (String word : words) {
+            if (word == null || word.isBlank()) {
+                continue;
+            }
+            if (trie.insert(word)) {
+                count++;
+            }
+        }
+        return trie.compile(count);
+    }
+
+    /**
+     * 词库中的词数量
+     */
+    public int wordCount() {
+        return wordCount;
+    }
+
+    /**
+     * 自动机节点数量（含根节点）
+     */
+    public int nodeCount() {
+        return fail.length;
+    }
+
+    /**
+     * 文本中是否包含任意敏感词
+     */
+    public boolean containsAny(CharSequence text) {
+        if (text == null || wordCount == 0) {
+            return false;
+        }
+        int state = ROOT;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            state = next(state, text.charAt(i));
+            if (maxLen[state] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 找出文本中出现的所有敏感词（去重，按首次出现的结束位置排序）
+     */
+    public List<String> findAll(String text) {
+        if (text == null || wordCount == 0) {
+            return Collections.emptyList();
+        }
+        Set<String> hits = null;
+        int state = ROOT;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            state = next(state, text.charAt(i));
+            if (maxLen[state] == 0) {
+                continue;
+            }
+            if (hits == null) {
+                hits = new LinkedHashSet<>();
+            }
+            for (int s = wordLen[state] > 0 ? state : outputLink[state]; s > 0; s = outputLink[s]) {
+                hits.add(text.substring(i + 1 - wordLen[s], i + 1));
+            }
+        }
+        return hits == null ? Collections.emptyList() : new ArrayList<>(hits);
+    }
+
+    /**
+     * 将文本中的敏感词替换为 mask 字符，未命中时返回原字符串（不产生新对象）
+     */
+    public String mask(String text, char mask) {
+        if (text == null || wordCount == 0) {
+            return text;
+        }
+        char[] chars = null;
+        int state = ROOT;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            state = next(state, text.charAt(i));
+            int len = maxLen[state];
+            if (len == 0) {
+                continue;
+            }
+            if (chars == null) {
+                chars = text.toCharArray();
+            }
+            // 失败链上更短的词都是它的后缀，屏蔽最长的即可覆盖
+            Arrays.fill(chars, i + 1 - len, i + 1, mask);
+        }
+        return chars == null ? text : new String(chars);
+    }
+
+    /**
+     * 状态转移：沿失败链回退直到找到 c 的子边或回到根节点
+     */
+    private int next(int state, char c) {
+        while (true) {
+            int target = child(state, c);
+            if (target >= 0) {
+                return target;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    private int child(int node, char c) {
+        int lo = childStart[node];
+        int hi = childStart[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char mc = edgeChar[mid];
+            if (mc < c) {
+                lo = mid + 1;
+            } else if (mc > c) {
+                hi = mid - 1;
+            } else {
+                return edgeTarget[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 构建期使用的 Trie，子边以单链表存放（int 数组模拟），compile 时压缩为 CSR 数组
+     */
+    private static final class TrieBuilder {
+
+        private int size = 1;
+        private int edgeSize = 0;
+        /**
+         * 节点的第一条边（-1 表示无）
+         */
+        private int[] firstEdge = filled(16);
+        /**
+         * 根节点扇出最大（CJK 词库可达数千），单独用直接寻址表，避免构建时遍历长链表
+         */
+        private final int[] rootChild = filled(Character.MAX_VALUE + 1);
+        private int[] nodeWordLen = new int[16];
+        /**
+         * 边：字符、目标节点、同一节点的下一条边
+         */
+        private char[] eChar = new char[16];
+        private int[] eTarget = new int[16];
+        private int[] eNext = new int[16];
+
+        boolean insert(String word) {
+            int node = ROOT;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                int target = find(node, c);
+                if (target < 0) {
+                    target = newNode();
+                    addEdge(node, c, target);
+                }
+                node = target;
+            }
+            if (nodeWordLen[node] > 0) {
+                return false;
+            }
+            nodeWordLen[node] = word.length();
+            return true;
+        }
+
+        private int find(int node, char c) {
+            if (node == ROOT) {
+                return rootChild[c];
+            }
+            for (int e = firstEdge[node]; e >= 0; e = eNext[e]) {
+                if (eChar[e] == c) {
+                    return eTarget[e];
+                }
+            }
+            return -1;
+        }
+
+        private int newNode() {
+            if (size == firstEdge.length) {
+                int cap = size << 1;
+                int old = firstEdge.length;
+                firstEdge = Arrays.copyOf(firstEdge, cap);
+                Arrays.fill(firstEdge, old, cap, -1);
+                nodeWordLen = Arrays.copyOf(nodeWordLen, cap);
+            }
+            return size++;
+        }
+
+        private void addEdge(int node, char c, int target) {
+            if (edgeSize == eChar.length) {
+                int cap = edgeSize << 1;
+                eChar = Arrays.copyOf(eChar, cap);
+                eTarget = Arrays.copyOf(eTarget, cap);
+                eNext = Arrays.copyOf(eNext, cap);
+            }
+            eChar[edgeSize] = c;
+            eTarget[edgeSize] = target;
+            eNext[edgeSize] = firstEdge[node];
+            if (node == ROOT) {
+                rootChild[c] = target;
+            }
+            firstEdge[node] = edgeSize++;
+        }
+
+        AhoCorasickMatcher compile(int wordCount) {
+            int n = size;
+            // 1. 压缩为 CSR：每个节点的子边按字符排序后连续存放
+            int[] childStart = new int[n + 1];
+            char[] edgeChar = new char[edgeSize];
+            int[] edgeTarget = new int[edgeSize];
+            int pos = 0;
+            long[] buf = new long[16];
+            for (int node = 0; node < n; node++) {
+                childStart[node] = pos;
+                int k = 0;
+                for (int e = firstEdge[node]; e >= 0; e = eNext[e]) {
+                    if (k == buf.length) {
+                        buf = Arrays.copyOf(buf, k << 1);
+                    }
+                    // 高位放字符、低位放目标节点，一次排序同时得到两个数组
+                    buf[k++] = ((long) eChar[e] << 32) | eTarget[e];
+                }
+                Arrays.sort(buf, 0, k);
+                for (int j = 0; j < k; j++) {
+                    edgeChar[pos] = (char) (buf[j] >>> 32);
+                    edgeTarget[pos] = (int) buf[j];
+                    pos++;
+                }
+            }
+            childStart[n] = pos;
+
+            // 2. BFS 计算失败指针、输出链和最长词长
+            int[] fail = new int[n];
+            int[] wordLen = Arrays.copyOf(nodeWordLen, n);
+            int[] maxLen = new int[n];
+            int[] outputLink = new int[n];
+            outputLink[ROOT] = -1;
+            int[] queue = new int[n];
+            int head = 0;
+            int tail = 0;
+            for (int e = childStart[ROOT]; e < childStart[ROOT + 1]; e++) {
+                int child = edgeTarget[e];
+                fail[child] = ROOT;
+                outputLink[child] = -1;
+                maxLen[child] = wordLen[child];
+                queue[tail++] = child;
+            }
+            while (head < tail) {
+                int node = queue[head++];
+                for (int e = childStart[node]; e < childStart[node + 1]; e++) {
+                    char c = edgeChar[e];
+                    int child = edgeTarget[e];
+                    int f = fail[node];
+                    int target;
+                    while ((target = childOf(childStart, edgeChar, edgeTarget, f, c)) < 0 && f != ROOT) {
+                        f = fail[f];
+                    }
+                    fail[child] = target < 0 ? ROOT : target;
+                    int fs = fail[child];
+                    outputLink[child] = wordLen[fs] > 0 ? fs : outputLink[fs];
+                    maxLen[child] = Math.max(wordLen[child], maxLen[fs]);
+                    queue[tail++] = child;
+                }
+            }
+            return new AhoCorasickMatcher(childStart, edgeChar, edgeTarget, fail, wordLen, maxLen, outputLink, wordCount);
+        }
+
+        private static int childOf(int[] childStart, char[] edgeChar, int[] edgeTarget, int node, char c) {
+            int lo = childStart[node];
+            int hi = childStart[node + 1] - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char mc = edgeChar[mid];
+                if (mc < c) {
+                    lo = mid + 1;
+                } else if (mc > c) {
+                    hi = mid - 1;
+                } else {
+                    return edgeTarget[mid];
+                }
+            }
+            return -1;
+        }
+
+        private static int[] filled(int len) {
+            int[] arr = new int[len];
+            Arrays.fill(arr, -1);
+            return arr;
+        }
+    }
+}
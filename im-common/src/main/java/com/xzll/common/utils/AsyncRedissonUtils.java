@@ -0,0 +1,248 @@
+package com.xzll.common.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: RedissonUtils 的异步版本，供 Netty IO 线程和网关响应式链路使用
+ *
+ * 1. 与 RedissonUtils 同名操作使用相同的编解码器，两边读写的数据完全互通
+ * 2. 所有操作统一超时（im.redis.async.timeout-ms），超时以 TimeoutException 结束，不会无限挂起调用方
+ * 3. 每个操作按 op/outcome 记录耗时（im.redis.async），MeterRegistry 不存在时不采集
+ *
+ * 注意：回调默认在 Redisson 的 Netty 线程上执行，Netty handler 中需要用 xxxAsync(fn, ctx.executor()) 切回 channel 所在的 EventLoop
+ */
+@Slf4j
+@Component
+public class AsyncRedissonUtils {
+
+    private static final String METRIC_NAME = "im.redis.async";
+
+    /**
+     * 原子计数：INCRBY 与过期设置在同一个脚本内完成，计数降到 0 及以下时删除key
+     * ARGV[1] 增量，ARGV[2] 过期毫秒（<=0 不设置），ARGV[3] 1=每次刷新过期时间 0=只在无过期时间时设置（固定窗口）
+     */
+    private static final String ADD_AND_GET_SCRIPT =
+            "local v = redis.call('INCRBY', KEYS[1], ARGV[1]) " +
+            "if v <= 0 then redis.call('DEL', KEYS[1]) return 0 end " +
+            "local ttl = tonumber(ARGV[2]) " +
+            "if ttl > 0 and (ARGV[3] == '1' or redis.call('PTTL', KEYS[1]) < 0) then redis.call('PEXPIRE', KEYS[1], ttl) end " +
+            "return v";
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private LuaScriptRegistry luaScriptRegistry;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    @Value("${im.redis.async.timeout-ms:1000}")
+    private long timeoutMs;
+
+    /**
+     * op:outcome -> Timer，热路径上避免每次构建 Timer
+     */
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * 计数脚本句柄，按 SHA 调用，避免每次发送脚本全文
+     */
+    private LuaScriptRegistry.LuaScript addAndGetScript;
+
+    @PostConstruct
+    public void init() {
+        addAndGetScript = luaScriptRegistry.register("async_add_and_get", ADD_AND_GET_SCRIPT);
+    }
+
+    // ==================== String类型操作 ====================
+
+    /**
+     * 获取字符串值（默认编解码器，与 RedissonUtils.getString 一致）
+     */
+    public CompletionStage<String> getString(String key) {
+        return execute("getString", () -> redissonClient.<String>getBucket(key).getAsync());
+    }
+
+    /**
+     * 设置字符串值
+     */
+    public CompletionStage<Void> setString(String key, String value) {
+        return execute("setString", () -> redissonClient.<String>getBucket(key).setAsync(value));
+    }
+
+    /**
+     * 设置字符串值并设置过期时间
+     */
+    public CompletionStage<Void> setString(String key, String value, long timeout, TimeUnit unit) {
+        return execute("setString", () -> redissonClient.<String>getBucket(key).setAsync(value, timeout, unit));
+    }
+
+    /**
+     * 删除字符串
+     */
+    public CompletionStage<Boolean> deleteString(String key) {
+        return execute("deleteString", () -> redissonClient.getBucket(key).deleteAsync());
+    }
+
+    /**
+     * 获取剩余过期时间（毫秒），-1 永不过期，-2 不存在
+     */
+    public CompletionStage<Long> getExpire(String key) {
+        return execute("getExpire", () -> redissonClient.getBucket(key).remainTimeToLiveAsync());
+    }
+
+    // ==================== 计数器操作（StringCodec，值为纯整数） ====================
+
+    /**
+     * 读取计数（GET），不存在时为 0
+     */
+    public CompletionStage<Long> getLong(String key) {
+        return execute("getLong", () -> redissonClient.getAtomicLong(key).getAsync());
+    }
+
+    /**
+     * 原子增减计数并刷新过期时间，返回增减后的值（降到 0 及以下时删除key并返回 0）
+     *
+     * @param timeout 过期时间，<=0 不设置
+     */
+    public CompletionStage<Long> addAndGetAsync(String key, long delta, long timeout, TimeUnit unit) {
+        return addAndGet("addAndGet", key, delta, timeout, unit, true);
+    }
+
+    /**
+     * 固定窗口计数：原子加1，只在窗口内首次计数时设置过期时间，返回窗口内的累计值
+     */
+    public CompletionStage<Long> incrementAsync(String key, long window, TimeUnit unit) {
+        return incrementAsync(key, 1, window, unit);
+    }
+
+    /**
+     * 固定窗口计数：原子增加 delta，只在窗口内首次计数时设置过期时间，返回窗口内的累计值
+     */
+    public CompletionStage<Long> incrementAsync(String key, long delta, long window, TimeUnit unit) {
+        return addAndGet("increment", key, delta, window, unit, false);
+    }
+
+    private CompletionStage<Long> addAndGet(String op, String key, long delta, long timeout, TimeUnit unit, boolean refreshTtl) {
+        long ttlMillis = timeout > 0 ? unit.toMillis(timeout) : 0;
+        return execute(op, () -> luaScriptRegistry.<Long>evalShaAsync(addAndGetScript, StringCodec.INSTANCE,
+                RScript.Mode.READ_WRITE, RScript.ReturnType.INTEGER, Collections.singletonList(key),
+                String.valueOf(delta), String.valueOf(ttlMillis), refreshTtl ? "1" : "0"));
+    }
+
+    // ==================== Hash类型操作 ====================
+
+    /**
+     * 获取Hash字段值（默认编解码器，与 RedissonUtils.getHash 一致）
+     */
+    public CompletionStage<Object> getHash(String key, String field) {
+        return execute("getHash", () -> redissonClient.getMap(key).getAsync(field));
+    }
+
+    /**
+     * 获取Hash所有字段名
+     */
+    public CompletionStage<Set<Object>> getHashKeys(String key) {
+        return execute("getHashKeys", () -> redissonClient.getMap(key).readAllKeySetAsync());
+    }
+
+    // ==================== 响应式适配 ====================
+
+    /**
+     * 获取字符串值（Mono）
+     */
+    public Mono<String> getStringMono(String key) {
+        return Mono.fromCompletionStage(() -> getString(key));
+    }
+
+    /**
+     * 获取Hash字段值（Mono）
+     */
+    public Mono<Object> getHashMono(String key, String field) {
+        return Mono.fromCompletionStage(() -> getHash(key, field));
+    }
+
+    /**
+     * 获取Hash所有字段名（Mono）
+     */
+    public Mono<Set<Object>> getHashKeysMono(String key) {
+        return Mono.fromCompletionStage(() -> getHashKeys(key));
+    }
+
+    /**
+     * 按模式扫描key（SCAN，非阻塞），仅用于带通配符的查询，精确key请直接 GET
+     */
+    public Flux<String> scanKeys(String pattern) {
+        long start = System.nanoTime();
+        return redissonClient.reactive().getKeys().getKeysByPattern(pattern)
+                .timeout(java.time.Duration.ofMillis(timeoutMs))
+                .doOnComplete(() -> record("scanKeys", "success", start))
+                .doOnError(e -> record("scanKeys", outcome(e), start));
+    }
+
+    // ==================== 公共逻辑 ====================
+
+    /**
+     * 统一超时与耗时统计
+     */
+    private <T> CompletionStage<T> execute(String op, Supplier<? extends CompletionStage<T>> command) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = command.get().toCompletableFuture();
+        } catch (Exception e) {
+            record(op, "error", start);
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((result, e) -> {
+                    record(op, e == null ? "success" : outcome(e), start);
+                    if (e != null) {
+                        log.warn("异步Redis操作失败: op={}, cause={}", op, e.toString());
+                    }
+                });
+    }
+
+    private static String outcome(Throwable e) {
+        Throwable cause = e instanceof java.util.concurrent.CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof TimeoutException ? "timeout" : "error";
+    }
+
+    private void record(String op, String outcome, long startNanos) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        timers.computeIfAbsent(op + ":" + outcome, k -> Timer.builder(METRIC_NAME)
+                        .description("异步Redis操作耗时")
+                        .tag("op", op)
+                        .tag("outcome", outcome)
+                        .register(registry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
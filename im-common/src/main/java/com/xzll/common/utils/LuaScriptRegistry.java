@@ -0,0 +1,301 @@
+package com.xzll.common.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: Lua脚本注册中心
+ *
+ * 脚本在注册时计算 SHA1 并 SCRIPT LOAD 一次，之后统一用 EVALSHA 调用，网络上只传 40 字节的摘要；
+ * Redis 重启 / 主从切换 / SCRIPT FLUSH 导致脚本缓存丢失时（NOSCRIPT），自动重新加载并重试一次，调用方无感知。
+ *
+ * 批量执行：多个脚本调用放进同一个 RBatch 一次 Pipeline 发出，只有返回 NOSCRIPT 的那几条会在重新加载后补发，
+ * 已经执行成功的命令不会被重复执行。
+ *
+ * 异步执行：evalShaAsync 全程不阻塞调用线程，NOSCRIPT 时异步 SCRIPT LOAD 后重试一次，适合 Netty IO 线程上的热路径。
+ */
+@Slf4j
+@Component
+public class LuaScriptRegistry {
+
+    private static final String NO_SCRIPT = "NOSCRIPT";
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    /**
+     * 脚本名称 -> 脚本
+     */
+    private final Map<String, LuaScript> scripts = new ConcurrentHashMap<>();
+
+    /**
+     * 注册classpath下的脚本文件，脚本名称即文件路径
+     *
+     * @param path classpath路径，如 lua/add_to_retry_queue.lua
+     * @return 脚本句柄
+     */
+    public LuaScript registerClasspath(String path) {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return register(path, IOUtils.toString(in, StandardCharsets.UTF_8));
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException("读取Lua脚本失败: " + path, e);
+        }
+    }
+
+    /**
+     * 注册脚本并预加载到Redis
+     * 预加载失败（如启动时Redis暂不可用）只记录日志，首次调用时由 NOSCRIPT 重试机制补加载
+     *
+     * @param name   脚本名称（用于日志与查找）
+     * @param script 脚本内容
+     * @return 脚本句柄
+     */
+    public LuaScript register(String name, String script) {
+        LuaScript luaScript = scripts.computeIfAbsent(name, n -> new LuaScript(n, script, DigestUtils.sha1Hex(script)));
+        if (!luaScript.getScript().equals(script)) {
+            throw new IllegalStateException("Lua脚本名称重复且内容不同: " + name);
+        }
+        try {
+            load(luaScript);
+        } catch (Exception e) {
+            log.warn("Lua脚本预加载失败，将在首次调用时重新加载: name={}, sha={}", name, luaScript.getSha(), e);
+        }
+        return luaScript;
+    }
+
+    /**
+     * 按名称获取已注册的脚本
+     */
+    public LuaScript get(String name) {
+        LuaScript luaScript = scripts.get(name);
+        if (luaScript == null) {
+            throw new IllegalArgumentException("Lua脚本未注册: " + name);
+        }
+        return luaScript;
+    }
+
+    /**
+     * EVALSHA 执行脚本，NOSCRIPT 时重新加载后重试一次
+     *
+     * @param luaScript  脚本句柄
+     * @param codec      参数与返回值编解码器，为null时使用客户端默认编解码器
+     * @param mode       读写模式
+     * @param returnType 返回值类型
+     * @param keys       KEYS
+     * @param args       ARGV
+     * @return 执行结果
+     */
+    public <R> R evalSha(LuaScript luaScript, Codec codec, RScript.Mode mode, RScript.ReturnType returnType,
+                         List<?> keys, Object... args) {
+        List<Object> keyObjects = new ArrayList<>(keys);
+        RScript rScript = codec == null ? redissonClient.getScript() : redissonClient.getScript(codec);
+        try {
+            return rScript.evalSha(mode, luaScript.getSha(), returnType, keyObjects, args);
+        } catch (Exception e) {
+            if (!isNoScript(e)) {
+                log.error("执行Lua脚本失败: name={}, keys={}, args={}", luaScript.getName(), keys, Arrays.toString(args), e);
+                throw e;
+            }
+            log.warn("Redis中Lua脚本缓存丢失，重新加载后重试: name={}, sha={}", luaScript.getName(), luaScript.getSha());
+            load(luaScript);
+            return rScript.evalSha(mode, luaScript.getSha(), returnType, keyObjects, args);
+        }
+    }
+
+    /**
+     * 异步 EVALSHA 执行脚本，NOSCRIPT 时异步重新加载后重试一次
+     *
+     * @param luaScript  脚本句柄
+     * @param codec      参数与返回值编解码器，为null时使用客户端默认编解码器
+     * @param mode       读写模式
+     * @param returnType 返回值类型
+     * @param keys       KEYS
+     * @param args       ARGV
+     * @return 执行结果
+     */
+    public <R> CompletionStage<R> evalShaAsync(LuaScript luaScript, Codec codec, RScript.Mode mode, RScript.ReturnType returnType,
+                                               List<?> keys, Object... args) {
+        List<Object> keyObjects = new ArrayList<>(keys);
+        RScript rScript = codec == null ? redissonClient.getScript() : redissonClient.getScript(codec);
+        CompletableFuture<R> result = new CompletableFuture<>();
+        rScript.<R>evalShaAsync(mode, luaScript.getSha(), returnType, keyObjects, args).whenComplete((res, e) -> {
+            if (e == null) {
+                result.complete(res);
+                return;
+            }
+            if (!isNoScript(e)) {
+                log.error("执行Lua脚本失败: name={}, keys={}, args={}", luaScript.getName(), keys, Arrays.toString(args), e);
+                result.completeExceptionally(e);
+                return;
+            }
+            log.warn("Redis中Lua脚本缓存丢失，重新加载后重试: name={}, sha={}", luaScript.getName(), luaScript.getSha());
+            loadAsync(luaScript)
+                    .thenCompose(v -> rScript.<R>evalShaAsync(mode, luaScript.getSha(), returnType, keyObjects, args))
+                    .whenComplete((retried, retryError) -> {
+                        if (retryError != null) {
+                            result.completeExceptionally(retryError);
+                        } else {
+                            result.complete(retried);
+                        }
+                    });
+        });
+        return result;
+    }
+
+    /**
+     * EVALSHA 执行脚本（StringCodec，返回Long类型）
+     */
+    public Long evalShaAsLong(LuaScript luaScript, List<?> keys, Object... args) {
+        return evalSha(luaScript, StringCodec.INSTANCE, RScript.Mode.READ_WRITE, RScript.ReturnType.INTEGER, keys, args);
+    }
+
+    /**
+     * Pipeline 批量 EVALSHA（StringCodec，返回Long类型）
+     * 结果顺序与任务顺序一致，非Long结果记为0
+     *
+     * @param tasks 批量任务，任务必须携带已注册的脚本句柄
+     * @return 每个任务的执行结果
+     */
+    public List<Long> evalShaBatch(List<RedissonUtils.LuaScriptTask> tasks) {
+        if (tasks == null || tasks.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Object[] responses = new Object[tasks.size()];
+        List<Integer> pending = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            pending.add(i);
+        }
+
+        List<Integer> noScript = executeBatch(tasks, pending, responses);
+        if (!noScript.isEmpty()) {
+            Set<LuaScript> reload = new LinkedHashSet<>();
+            for (int index : noScript) {
+                reload.add(tasks.get(index).getLuaScript());
+            }
+            log.warn("批量执行时Lua脚本缓存丢失，重新加载{}个脚本后补发{}条命令", reload.size(), noScript.size());
+            reload.forEach(this::load);
+            List<Integer> stillMissing = executeBatch(tasks, noScript, responses);
+            if (!stillMissing.isEmpty()) {
+                throw new IllegalStateException("重新加载后Lua脚本仍不存在, 失败命令数: " + stillMissing.size());
+            }
+        }
+
+        List<Long> results = new ArrayList<>(tasks.size());
+        for (Object res : responses) {
+            results.add(res instanceof Long ? (Long) res : 0L);
+        }
+        return results;
+    }
+
+    /**
+     * 执行一轮批量命令，成功的结果写入 responses，返回 NOSCRIPT 失败的任务下标
+     */
+    private List<Integer> executeBatch(List<RedissonUtils.LuaScriptTask> tasks, List<Integer> indexes, Object[] responses) {
+        RBatch batch = redissonClient.createBatch();
+        List<RFuture<Object>> futures = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            RedissonUtils.LuaScriptTask task = tasks.get(index);
+            futures.add(batch.getScript(StringCodec.INSTANCE).evalShaAsync(RScript.Mode.READ_WRITE,
+                    task.getLuaScript().getSha(), RScript.ReturnType.INTEGER, new ArrayList<>(task.getKeys()), task.getArgs()));
+        }
+
+        Exception batchError = null;
+        try {
+            batch.execute();
+        } catch (Exception e) {
+            batchError = e;
+        }
+
+        // 批量执行失败时逐条检查：只有 NOSCRIPT 可以补发，其它错误直接抛出
+        List<Integer> noScript = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            CompletableFuture<Object> future = futures.get(i).toCompletableFuture();
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                responses[indexes.get(i)] = future.getNow(null);
+                continue;
+            }
+            Throwable cause = future.isDone() ? future.handle((r, t) -> t).join() : batchError;
+            if (isNoScript(cause)) {
+                noScript.add(indexes.get(i));
+            } else {
+                log.error("批量执行Lua脚本失败: name={}, tasks count={}", tasks.get(indexes.get(i)).getLuaScript().getName(),
+                        tasks.size(), cause);
+                throw batchError instanceof RuntimeException ? (RuntimeException) batchError
+                        : new IllegalStateException("批量执行Lua脚本失败", cause);
+            }
+        }
+        return noScript;
+    }
+
+    private void load(LuaScript luaScript) {
+        onLoaded(luaScript, redissonClient.getScript(StringCodec.INSTANCE).scriptLoad(luaScript.getScript()));
+    }
+
+    private CompletionStage<Void> loadAsync(LuaScript luaScript) {
+        return redissonClient.getScript(StringCodec.INSTANCE).scriptLoadAsync(luaScript.getScript())
+                .thenAccept(sha -> onLoaded(luaScript, sha));
+    }
+
+    private void onLoaded(LuaScript luaScript, String sha) {
+        if (!luaScript.getSha().equalsIgnoreCase(sha)) {
+            // 本地摘要与服务端不一致只可能是编码问题，以服务端为准避免一直 NOSCRIPT
+            log.warn("Lua脚本SHA1不一致: name={}, local={}, server={}", luaScript.getName(), luaScript.getSha(), sha);
+            luaScript.sha = sha;
+        }
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains(NO_SCRIPT)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 已注册的Lua脚本句柄
+     */
+    public static final class LuaScript {
+        private final String name;
+        private final String script;
+        private volatile String sha;
+
+        private LuaScript(String name, String script, String sha) {
+            this.name = name;
+            this.script = script;
+            this.sha = sha;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getScript() {
+            return script;
+        }
+
+        public String getSha() {
+            return sha;
+        }
+    }
+}
@@ -19,6 +19,9 @@ public class RedissonUtils {
     @Autowired
     private RedissonClient redissonClient;
 
+    @Autowired
+    private LuaScriptRegistry luaScriptRegistry;
+
     // ==================== String类型操作 ====================
 
     /**
@@ -1074,6 +1077,7 @@ public class RedissonUtils {
     /**
      * 批量执行Lua脚本（使用Pipeline，减少网络往返）
      * 适用场景：用户上线时需要更新多个群的分片信息
+     * 任务全部携带已注册的脚本句柄时走 EVALSHA（见 LuaScriptRegistry），否则按原方式发送脚本全文
      *
      * @param tasks 批量任务列表，每个任务包含脚本、keys、args
      * @return 每个任务的执行结果列表
@@ -1083,6 +1087,9 @@ public class RedissonUtils {
             if (tasks == null || tasks.isEmpty()) {
                 return new ArrayList<>();
             }
+            if (tasks.stream().allMatch(task -> task.getLuaScript() != null)) {
+                return luaScriptRegistry.evalShaBatch(tasks);
+            }
 
             // 创建Batch对象
             RBatch batch = redissonClient.createBatch();
@@ -1125,11 +1132,23 @@ public class RedissonUtils {
      */
     public static class LuaScriptTask {
         private final String script;
+        private final LuaScriptRegistry.LuaScript luaScript;
         private final List<String> keys;
         private final Object[] args;
 
         public LuaScriptTask(String script, List<String> keys, Object... args) {
             this.script = script;
+            this.luaScript = null;
+            this.keys = keys;
+            this.args = args;
+        }
+
+        /**
+         * 使用已注册的脚本句柄，批量执行时走 EVALSHA
+         */
+        public LuaScriptTask(LuaScriptRegistry.LuaScript luaScript, List<String> keys, Object... args) {
+            this.script = luaScript.getScript();
+            this.luaScript = luaScript;
             this.keys = keys;
             this.args = args;
         }
@@ -1138,6 +1157,10 @@ public class RedissonUtils {
             return script;
         }
 
+        public LuaScriptRegistry.LuaScript getLuaScript() {
+            return luaScript;
+        }
+
         public List<String> getKeys() {
             return keys;
         }
@@ -0,0 +1,135 @@
+package com.xzll.common.util.msgId;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花ID多线程吞吐基准测试：CAS 无锁实现 vs 原 synchronized + List<Long> ID池实现
+ *
+ * 注意：雪花算法单节点理论上限为 4096 个/毫秒，长时间压测时无锁实现会被时钟追赶逻辑限速，
+ * 对比的重点是竞争下的单次调用开销和装箱分配
+ * 运行：直接执行 main 方法（分别以 1/4/8 线程运行）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnowflakeIdServiceBenchmark {
+
+    private SnowflakeIdService casService;
+    private LegacySnowflake legacyService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        casService = new SnowflakeIdService(1L, "benchmark");
+        legacyService = new LegacySnowflake(1L, 1L);
+    }
+
+    @State(Scope.Thread)
+    public static class BatchBuffer {
+        final long[] ids = new long[100];
+    }
+
+    @Benchmark
+    public long casNextId() {
+        return casService.nextId();
+    }
+
+    @Benchmark
+    public String casGenerateSimpleMessageId() {
+        return casService.generateSimpleMessageId();
+    }
+
+    @Benchmark
+    public long[] casNextIdsBatch100(BatchBuffer buffer) {
+        casService.nextIds(buffer.ids);
+        return buffer.ids;
+    }
+
+    @Benchmark
+    public long legacyPooledId() {
+        return legacyService.getNextIdFromPool();
+    }
+
+    /**
+     * 升级前的实现：synchronized nextId + synchronized(idPool) 装箱ID池
+     */
+    private static final class LegacySnowflake {
+
+        private final long twepoch = 1288834974657L;
+        private final long sequenceBits = 12L;
+        private final long workerIdShift = sequenceBits;
+        private final long datacenterIdShift = sequenceBits + 5L;
+        private final long timestampLeftShift = sequenceBits + 10L;
+        private final long sequenceMask = -1L ^ (-1L << sequenceBits);
+
+        private final AtomicLong sequence = new AtomicLong(0);
+        private final long workerId;
+        private final long datacenterId;
+        private long lastTimestamp = -1L;
+
+        private final List<Long> idPool = new ArrayList<>();
+        private final AtomicInteger poolIndex = new AtomicInteger(0);
+
+        LegacySnowflake(long workerId, long datacenterId) {
+            this.workerId = workerId;
+            this.datacenterId = datacenterId;
+        }
+
+        synchronized long nextId() {
+            long timestamp = System.currentTimeMillis();
+            if (timestamp < lastTimestamp) {
+                throw new RuntimeException("Clock moved backwards. Refusing to generate id");
+            }
+            if (lastTimestamp == timestamp) {
+                long seq = (sequence.incrementAndGet()) & sequenceMask;
+                if (seq == 0) {
+                    while (timestamp <= lastTimestamp) {
+                        timestamp = System.currentTimeMillis();
+                    }
+                }
+            } else {
+                sequence.set(0);
+            }
+            lastTimestamp = timestamp;
+            return ((timestamp - twepoch) << timestampLeftShift) |
+                    (datacenterId << datacenterIdShift) |
+                    (workerId << workerIdShift) |
+                    sequence.get();
+        }
+
+        long getNextIdFromPool() {
+            synchronized (idPool) {
+                if (poolIndex.get() >= idPool.size()) {
+                    idPool.clear();
+                    poolIndex.set(0);
+                    for (int i = 0; i < SnowflakeIdService.ONCE_BATCH_COUNT; i++) {
+                        idPool.add(nextId());
+                    }
+                }
+                return idPool.get(poolIndex.getAndIncrement());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 8}) {
+            Options options = new OptionsBuilder()
+                    .include(SnowflakeIdServiceBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
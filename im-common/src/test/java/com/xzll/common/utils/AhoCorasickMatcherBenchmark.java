@@ -0,0 +1,150 @@
+package com.xzll.common.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 敏感词匹配基准测试：Aho-Corasick 自动机 vs 原 im-console 的 HashMap DFA（逐位置重新匹配）
+ *
+ * 词库：5万个随机中文词（2~6字），消息：常见长度 16/64/256 字符，约 1/4 的消息含一个敏感词
+ * 运行：直接执行 main 方法，或 mvn test-compile 后用 JMH 命令行运行
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AhoCorasickMatcherBenchmark {
+
+    private static final int WORD_COUNT = 50_000;
+    private static final int MSG_COUNT = 1024;
+
+    @Param({"16", "64", "256"})
+    private int msgLength;
+
+    private AhoCorasickMatcher matcher;
+    private LegacyDfa legacyDfa;
+    private String[] messages;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(20261019L);
+        List<String> words = new ArrayList<>(WORD_COUNT);
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words.add(randomCjk(random, 2 + random.nextInt(5)));
+        }
+        matcher = AhoCorasickMatcher.build(words);
+        legacyDfa = new LegacyDfa(words);
+
+        messages = new String[MSG_COUNT];
+        for (int i = 0; i < MSG_COUNT; i++) {
+            StringBuilder sb = new StringBuilder(randomCjk(random, msgLength));
+            if (i % 4 == 0) {
+                String word = words.get(random.nextInt(WORD_COUNT));
+                int pos = random.nextInt(Math.max(1, msgLength - word.length()));
+                sb.replace(pos, Math.min(sb.length(), pos + word.length()), word);
+            }
+            messages[i] = sb.toString();
+        }
+    }
+
+    private String nextMessage() {
+        return messages[(cursor++) & (MSG_COUNT - 1)];
+    }
+
+    @Benchmark
+    public void ahoCorasickMask(Blackhole bh) {
+        bh.consume(matcher.mask(nextMessage(), '*'));
+    }
+
+    @Benchmark
+    public void legacyDfaFilter(Blackhole bh) {
+        bh.consume(legacyDfa.filter(nextMessage()));
+    }
+
+    @Benchmark
+    public void ahoCorasickContains(Blackhole bh) {
+        bh.consume(matcher.containsAny(nextMessage()));
+    }
+
+    /**
+     * 常用汉字区间内随机取字，字符分布与真实词库的首字扇出接近
+     */
+    private static String randomCjk(Random random, int len) {
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = (char) (0x4E00 + random.nextInt(3000));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 原 SensitiveWordServiceImpl 的实现：HashMap<Character, Object> 构成的 Trie，每个位置重新从根开始匹配
+     */
+    @SuppressWarnings("unchecked")
+    private static final class LegacyDfa {
+
+        private static final Character END_FLAG = 'i';
+
+        private final Map<Character, Object> root = new HashMap<>();
+
+        LegacyDfa(List<String> words) {
+            for (String word : words) {
+                Map<Character, Object> current = root;
+                for (int i = 0; i < word.length(); i++) {
+                    current = (Map<Character, Object>) current.computeIfAbsent(word.charAt(i), k -> new HashMap<>());
+                }
+                current.put(END_FLAG, Boolean.TRUE);
+            }
+        }
+
+        String filter(String text) {
+            StringBuilder result = new StringBuilder(text);
+            char[] chars = text.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                int length = check(chars, i);
+                if (length > 0) {
+                    for (int j = i; j < i + length; j++) {
+                        result.setCharAt(j, '*');
+                    }
+                    i += length - 1;
+                }
+            }
+            return result.toString();
+        }
+
+        private int check(char[] chars, int start) {
+            Map<Character, Object> current = root;
+            int matchLength = 0;
+            int lastMatchLength = 0;
+            for (int i = start; i < chars.length; i++) {
+                Object obj = current.get(chars[i]);
+                if (obj == null) {
+                    break;
+                }
+                matchLength++;
+                current = (Map<Character, Object>) obj;
+                if (current.containsKey(END_FLAG)) {
+                    lastMatchLength = matchLength;
+                }
+            }
+            return lastMatchLength;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AhoCorasickMatcherBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,73 @@
+package com.xzll.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Aho-Corasick 敏感词匹配测试：重叠词、嵌套词、屏蔽替换、空词库
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public class AhoCorasickMatcherTest {
+
+    @Test
+    public void testOverlappingWords() {
+        // "he" / "she" / "hers" 互相重叠，经典失败指针场景
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.build(Arrays.asList("he", "she", "his", "hers"));
+
+        assertEquals(4, matcher.wordCount());
+        assertTrue(matcher.containsAny("ushers"));
+        assertEquals(Arrays.asList("she", "he", "hers"), matcher.findAll("ushers"));
+        assertEquals("u*****", matcher.mask("ushers", '*'));
+    }
+
+    @Test
+    public void testNestedWords() {
+        // 短词是长词的前缀 / 后缀 / 中间部分
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.build(Arrays.asList("敏感", "敏感词", "感词过", "词"));
+
+        List<String> hits = matcher.findAll("这是敏感词过滤");
+        assertTrue(hits.containsAll(Arrays.asList("敏感", "敏感词", "词", "感词过")));
+        assertEquals(4, hits.size());
+        assertEquals("这是****滤", matcher.mask("这是敏感词过滤", '*'));
+    }
+
+    @Test
+    public void testReplacement() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.build(Arrays.asList("坏人", "坏"));
+
+        assertEquals("你是##吗，#了", matcher.mask("你是坏人吗，坏了", '#'));
+        assertEquals("**", matcher.mask("坏坏", '*'));
+
+        // 未命中时返回原字符串对象，不产生新对象
+        String clean = "正常消息";
+        assertSame(clean, matcher.mask(clean, '*'));
+        assertFalse(matcher.containsAny(clean));
+        assertTrue(matcher.findAll(clean).isEmpty());
+    }
+
+    @Test
+    public void testEmptyDictionary() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.build(Collections.emptyList());
+        assertEquals(0, matcher.wordCount());
+        assertFalse(matcher.containsAny("任何内容"));
+        assertEquals("任何内容", matcher.mask("任何内容", '*'));
+        assertTrue(matcher.findAll("任何内容").isEmpty());
+
+        // 空白词被忽略
+        AhoCorasickMatcher blank = AhoCorasickMatcher.build(Arrays.asList("", "  ", null));
+        assertEquals(0, blank.wordCount());
+        assertFalse(blank.containsAny("  "));
+
+        AhoCorasickMatcher empty = AhoCorasickMatcher.empty();
+        assertFalse(empty.containsAny("abc"));
+        assertNull(empty.mask(null, '*'));
+        assertFalse(empty.containsAny(null));
+    }
+}
@@ -1,5 +1,6 @@
 package com.xzll.connect;
 
+import com.xzll.connect.metrics.BufferLeakTracker;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -15,6 +16,8 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 public class IMConnectServiceApplication {
 
     public static void main(String[] args) {
+        // 需在任何 ByteBuf 类加载前安装，按最后持有的 Handler 统计泄漏
+        BufferLeakTracker.install();
         SpringApplication application = new SpringApplication(IMConnectServiceApplication.class);
         application.setWebApplicationType(WebApplicationType.NONE);
         application.run(args);
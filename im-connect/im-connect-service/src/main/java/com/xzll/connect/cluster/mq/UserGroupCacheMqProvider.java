@@ -37,6 +37,21 @@ public class UserGroupCacheMqProvider {
      * @return 发送结果
      */
     public boolean sendCacheRebuildMessage(String userId, String reason) {
+        return sendCacheRebuildMessage(userId, reason, ImConstant.ClusterEventTypeConstant.USER_GROUP_CACHE_REBUILD);
+    }
+
+    /**
+     * 发送好友关系缓存重建消息（与群组缓存重建共用 topic，按事件类型区分）
+     *
+     * @param userId 用户ID
+     * @param reason 触发原因
+     * @return 发送结果
+     */
+    public boolean sendFriendGraphRebuildMessage(String userId, String reason) {
+        return sendCacheRebuildMessage(userId, reason, ImConstant.ClusterEventTypeConstant.FRIEND_GRAPH_CACHE_REBUILD);
+    }
+
+    private boolean sendCacheRebuildMessage(String userId, String reason, int eventType) {
         boolean result = false;
         try {
             // 构建 MQ 消息
@@ -45,13 +60,13 @@ public class UserGroupCacheMqProvider {
             // 包装为 ClusterEvent
             ClusterEvent clusterEvent = new ClusterEvent();
             clusterEvent.setData(JSONUtil.toJsonStr(message));
-            clusterEvent.setClusterEventType(ImConstant.ClusterEventTypeConstant.USER_GROUP_CACHE_REBUILD);
+            clusterEvent.setClusterEventType(eventType);
 
             // 发送到 MQ
             result = rocketMqProducerWrap.sendClusterEvent(CACHE_REBUILD_TOPIC, clusterEvent, userId);
 
-            log.info("{}发送缓存重建消息 - userId:{}, reason:{}, result:{}",
-                    TAG, userId, reason, result);
+            log.info("{}发送缓存重建消息 - userId:{}, reason:{}, eventType:{}, result:{}",
+                    TAG, userId, reason, eventType, result);
 
         } catch (Exception e) {
             log.error("{}发送缓存重建消息失败 - userId:{}, reason:{}",
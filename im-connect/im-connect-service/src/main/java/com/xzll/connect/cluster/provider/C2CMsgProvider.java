@@ -9,6 +9,8 @@ import com.xzll.common.pojo.request.C2COffLineMsgAO;
 import com.xzll.common.pojo.request.C2CWithdrawMsgAO;
 import com.xzll.common.rocketmq.ClusterEvent;
 import com.xzll.connect.cluster.mq.RocketMqProducerWrap;
+import com.xzll.connect.metrics.PipelineMetrics;
+import com.xzll.grpc.MsgType;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -37,15 +39,22 @@ public class C2CMsgProvider {
      */
     public boolean sendC2CMsg(C2CSendMsgAO dto) {
         boolean result = false;
+        long start = System.nanoTime();
         try {
             ClusterEvent clusterEvent = new ClusterEvent();
             clusterEvent.setData(JSONUtil.toJsonStr(dto));
             clusterEvent.setClusterEventType(ImConstant.ClusterEventTypeConstant.C2C_SEND_MSG);
             result = rocketMqProducerWrap.sendClusterEvent(C2CMsgProvider.C2C_TOPIC, clusterEvent, dto.getMsgId());
-            log.info("往mq发送单聊消息结果:{}", result);
+            // 发送链路热点，成功时不输出日志
+            if (!result) {
+                log.warn("往mq发送单聊消息结果:{}, msgId:{}", false, dto.getMsgId());
+            } else if (log.isDebugEnabled()) {
+                log.debug("往mq发送单聊消息结果:{}, msgId:{}", true, dto.getMsgId());
+            }
         } catch (Exception e) {
             log.error("往mq发送单聊消息失败:", e);
         }
+        PipelineMetrics.record(MsgType.C2C_SEND, PipelineMetrics.Stage.MQ_SEND, result ? PipelineMetrics.OK : PipelineMetrics.ERROR, start);
         return result;
     }
 
@@ -57,15 +66,22 @@ public class C2CMsgProvider {
      */
     public boolean offLineMsg(C2COffLineMsgAO dto) {
         boolean result = false;
+        long start = System.nanoTime();
         try {
             ClusterEvent clusterEvent = new ClusterEvent();
             clusterEvent.setData(JSONUtil.toJsonStr(dto));
             clusterEvent.setClusterEventType(ImConstant.ClusterEventTypeConstant.C2C_OFF_LINE_MSG);
             result = rocketMqProducerWrap.sendClusterEvent(C2CMsgProvider.C2C_TOPIC, clusterEvent, dto.getMsgId());
-            log.info("往mq发送离线消息结果:{}", result);
+            // 发送链路热点，成功时不输出日志
+            if (!result) {
+                log.warn("往mq发送离线消息结果:{}, msgId:{}", false, dto.getMsgId());
+            } else if (log.isDebugEnabled()) {
+                log.debug("往mq发送离线消息结果:{}, msgId:{}", true, dto.getMsgId());
+            }
         } catch (Exception e) {
             log.error("往mq发送离线消息失败:", e);
         }
+        PipelineMetrics.record(MsgType.C2C_SEND, PipelineMetrics.Stage.MQ_SEND, result ? PipelineMetrics.OK : PipelineMetrics.ERROR, start);
         return result;
     }
 
@@ -77,6 +93,7 @@ public class C2CMsgProvider {
      */
     public boolean clientResponseAck(C2CReceivedMsgAckAO dto) {
         boolean result = false;
+        long start = System.nanoTime();
         try {
             ClusterEvent clusterEvent = new ClusterEvent();
             clusterEvent.setData(JSONUtil.toJsonStr(dto));
@@ -86,6 +103,7 @@ public class C2CMsgProvider {
         } catch (Exception e) {
             log.error("往mq发送客户端ack消息失败:", e);
         }
+        PipelineMetrics.record(MsgType.C2C_ACK, PipelineMetrics.Stage.MQ_SEND, result ? PipelineMetrics.OK : PipelineMetrics.ERROR, start);
         return result;
     }
 
@@ -97,6 +115,7 @@ public class C2CMsgProvider {
      */
     public boolean sendWithdrawMsg(C2CWithdrawMsgAO ao) {
         boolean result = false;
+        long start = System.nanoTime();
         try {
             ClusterEvent clusterEvent = new ClusterEvent();
             clusterEvent.setData(JSONUtil.toJsonStr(ao));
@@ -106,6 +125,7 @@ public class C2CMsgProvider {
         } catch (Exception e) {
             log.error("往mq发送客户端撤回消息失败:", e);
         }
+        PipelineMetrics.record(MsgType.C2C_WITHDRAW, PipelineMetrics.Stage.MQ_SEND, result ? PipelineMetrics.OK : PipelineMetrics.ERROR, start);
         return result;
     }
 }
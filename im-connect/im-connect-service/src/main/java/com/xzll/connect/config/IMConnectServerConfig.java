@@ -59,6 +59,32 @@ public class IMConnectServerConfig {
      * 服务端主动向客户端发送ping的间隔
      */
     private int activeHeartbeatInterval = 25;
+
+    // ==================== 自适应心跳配置 ====================
+
+    /**
+     * 是否启用自适应心跳 - 默认true
+     * 开启后每个连接的心跳间隔从 activeHeartbeatInterval 起步，持续按时收到数据则逐步延长，超时后缩短，
+     * 间隔通过 HEARTBEAT_CONFIG 下发给客户端；超时判定为 间隔 + (heartBeatTime - activeHeartbeatInterval)
+     * 关闭时沿用 IdleStateHandler(idleStateCheckInterval) + heartBeatTime 的固定检测
+     */
+    private boolean adaptiveHeartbeat = true;
+
+    /**
+     * 自适应心跳间隔上限（秒）- 默认240秒
+     * 需低于移动网络 NAT 映射的常见超时（约5分钟）
+     */
+    private int maxHeartbeatInterval = 240;
+
+    /**
+     * 每次延长的步长（秒）- 默认30秒
+     */
+    private int heartbeatIntervalStep = 30;
+
+    /**
+     * 连续多少个间隔都按时收到数据后延长一次 - 默认3
+     */
+    private int heartbeatGrowRounds = 3;
     
     // ==================== Netty 线程配置 ====================
     
@@ -75,7 +101,38 @@ public class IMConnectServerConfig {
      * 设置为0时自动计算：CPU核数 * 2
      */
     private int workerThreads = 0;
-    
+
+    // ==================== Netty 传输配置 ====================
+
+    /**
+     * 传输实现：auto / epoll / io_uring / nio - 默认auto（Linux 用 epoll，否则 NIO）
+     * io_uring 需内核 5.9+ 且未被 seccomp 禁用，不可用时自动回退到 auto
+     */
+    private String transport = "auto";
+
+    /**
+     * epoll 是否使用边缘触发 - 默认true（false 为水平触发）
+     */
+    private boolean epollEdgeTriggered = true;
+
+    /**
+     * SO_REUSEPORT 多 acceptor 数量 - 默认1（单端口单 acceptor）
+     * 大于1时（仅 epoll / io_uring）同一端口绑定多个 ServerChannel，由内核在各 Boss 线程间分发新连接，
+     * Boss 线程数自动不少于该值
+     */
+    private int reusePortAcceptors = 1;
+
+    /**
+     * Boss 线程绑定的 CPU 列表（如 "0-1"）- 默认空（不绑核）
+     */
+    private String bossCpuAffinity = "";
+
+    /**
+     * Worker 线程绑定的 CPU 列表（如 "2-15"）- 默认空（不绑核）
+     * 配置后 workerThreads=0 时 Worker 线程数取列表中的 CPU 数
+     */
+    private String workerCpuAffinity = "";
+
     // ==================== Netty 缓冲区配置（高QPS优化） ====================
     
     /**
@@ -99,6 +156,19 @@ public class IMConnectServerConfig {
      * 防止消息堆积导致OOM
      */
     private int writeBufferHighWaterMark = 128 * 1024;
+
+    /**
+     * 单连接不可写期间允许暂存的推送字节数 - 默认256KB
+     * 超过后判定为慢消费者，丢弃暂存的推送并断开连接（客户端重连后拉取离线消息）
+     */
+    private int maxParkedBytesPerChannel = 256 * 1024;
+
+    /**
+     * ByteBuf 泄漏检测级别（DISABLED / SIMPLE / ADVANCED / PARANOID）- 默认SIMPLE
+     * SIMPLE 只报告泄漏；排查时可通过 POST /admin/buffers?level=ADVANCED 临时调高，按最后持有的 Handler 统计泄漏
+     * 采样间隔通过 JVM 参数 -Dio.netty.leakDetection.samplingInterval 配置（默认128）
+     */
+    private String leakDetectionLevel = "SIMPLE";
     
     /**
      * 是否启用WebSocket压缩 - 默认false
@@ -107,6 +177,37 @@ public class IMConnectServerConfig {
      */
     private boolean enableCompression = false;
 
+    /**
+     * 压缩阈值（字节）- 默认1024
+     * 只压缩不小于该大小的数据帧（历史消息、好友列表等大推送），小的 protobuf 帧原样发送，不消耗 CPU
+     */
+    private int compressionThreshold = 1024;
+
+    /**
+     * 压缩级别（1-9）- 默认6
+     */
+    private int compressionLevel = 6;
+
+    /**
+     * 是否强制 server_no_context_takeover - 默认true
+     * 开启后每条消息独立压缩，压缩器用完即释放，空闲连接不再常驻 zlib 状态（每个约几百KB）
+     * 同时请求客户端 client_no_context_takeover，客户端接受时解压侧也不保留状态
+     */
+    private boolean compressionNoContextTakeover = true;
+
+    /**
+     * 预置字典路径（如 classpath:compression/im-proto.dict 或 file:/data/im-proto.dict）- 默认空（不启用）
+     * 字典由 ImProtoResponse 样本离线训练，常见片段放在末尾，超过32KB只取最后32KB；
+     * 配置后额外支持私有扩展 x-im-deflate（按字典 Adler-32 协商），标准 permessage-deflate 不受影响
+     */
+    private String compressionDictionaryPath = "";
+
+    /**
+     * 客户端压缩帧解压后的最大长度（字节）- 默认65536，防止压缩炸弹
+     * 对 permessage-deflate 与 x-im-deflate 都生效，分片消息按整条消息累计
+     */
+    private int compressionMaxInboundSize = 65536;
+
     /**
      * 配置验证：确保 idleStateCheckInterval < heartBeatTime
      * 启动时自动验证配置合理性，避免配置冲突
@@ -121,6 +222,14 @@ public class IMConnectServerConfig {
             throw new IllegalStateException(errorMsg);
         }
         
+        if (adaptiveHeartbeat && maxHeartbeatInterval < activeHeartbeatInterval) {
+            String errorMsg = String.format(
+                "❌ 心跳配置错误：maxHeartbeatInterval(%d秒) 必须 >= activeHeartbeatInterval(%d秒)，请检查配置！",
+                maxHeartbeatInterval, activeHeartbeatInterval);
+            log.error(errorMsg);
+            throw new IllegalStateException(errorMsg);
+        }
+        
         // 计算容错余量
         long tolerance = heartBeatTime - idleStateCheckInterval;
         log.info("✅ 心跳配置验证通过：idleStateCheckInterval={}秒, heartBeatTime={}秒, 容错余量={}秒",
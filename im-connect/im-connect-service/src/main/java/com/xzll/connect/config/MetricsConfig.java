@@ -4,9 +4,16 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.jvm.GarbageCollectorMetricSet;
 import com.codahale.metrics.jvm.MemoryUsageGaugeSet;
 import com.codahale.metrics.jvm.ThreadStatesGaugeSet;
+import cn.hutool.json.JSONUtil;
 import com.sun.management.OperatingSystemMXBean;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.xzll.connect.metrics.NettyBufferMetrics;
+import com.xzll.connect.service.ConnectionDrainService;
 import io.prometheus.client.hotspot.DefaultExports;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -17,7 +24,13 @@ import io.prometheus.client.dropwizard.DropwizardExports;
 import io.prometheus.client.exporter.HTTPServer;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
 
 
 
@@ -34,6 +47,22 @@ import jakarta.annotation.Resource;
 public class MetricsConfig {
     @Resource
     private IMConnectServerConfig imConnectServerConfig;
+    @Resource
+    private ConnectionDrainService connectionDrainService;
+    @Resource
+    private NettyBufferMetrics nettyBufferMetrics;
+
+    /**
+     * 运维接口口令，请求需携带 X-Admin-Token 头；未配置时不开放 /admin/*（该端口与 Prometheus 采集共用）
+     */
+    @Value("${im-server.admin.token:}")
+    private String adminToken;
+
+    /**
+     * 是否允许通过 /admin/buffers 开启 PARANOID（每次分配都跟踪，CPU 开销极大）- 默认false
+     */
+    @Value("${im-server.admin.allow-paranoid-leak-detection:false}")
+    private boolean allowParanoidLeakDetection;
 
     @Bean
     public MetricRegistry metricRegistry() {
@@ -62,11 +91,117 @@ public class MetricsConfig {
         // 注册 JVM 和线程等指标
         DefaultExports.initialize();
         try {
-            // 启动 HTTP 服务器来暴露指标
-            httpServer = new HTTPServer(imConnectServerConfig.getPrometheusPort());
+            // 启动 HTTP 服务器来暴露指标，同一端口挂载运维接口（im-connect 没有 web 容器，只有这一个内部 HTTP 端口）
+            HttpServer server = HttpServer.create(new InetSocketAddress(imConnectServerConfig.getPrometheusPort()), 3);
+            if (StringUtils.isNotBlank(adminToken)) {
+                server.createContext("/admin/drain", this::handleDrain);
+                server.createContext("/admin/buffers", this::handleBuffers);
+            } else {
+                log.warn("未配置 im-server.admin.token，不开放 /admin/drain、/admin/buffers 运维接口");
+            }
+            httpServer = new HTTPServer.Builder().withHttpServer(server).build();
         } catch (Exception e) {
             log.error("prometheus采集服务器创建失败e:", e);
         }
         return httpServer;
     }
+
+    /**
+     * 连接排空运维接口（滚动发布前调用），只接受 POST
+     * POST /admin/drain?reason=xxx 开始排空并返回进度；已在排空时重复调用只返回进度
+     */
+    private void handleDrain(HttpExchange exchange) throws IOException {
+        try {
+            int code = 200;
+            Map<String, Object> body;
+            if (!isAuthorized(exchange)) {
+                code = 403;
+                body = Map.of("message", "forbidden");
+            } else if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                String reason = queryParam(exchange, "reason");
+                boolean started = connectionDrainService.startDrain(reason);
+                log.info("运维接口触发连接排空, reason:{}, started:{}", reason, started);
+                code = started ? 202 : 200;
+                body = connectionDrainService.getStatus();
+            } else {
+                code = 405;
+                body = Map.of("message", "method not allowed");
+            }
+            writeJson(exchange, code, body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 池化内存运维接口
+     * GET /admin/buffers 查询分配器快照与泄漏最多的 Handler；POST /admin/buffers?level=ADVANCED 调整泄漏检测级别
+     * PARANOID 需显式开启 im-server.admin.allow-paranoid-leak-detection
+     */
+    private void handleBuffers(HttpExchange exchange) throws IOException {
+        try {
+            int code = 200;
+            Map<String, Object> body;
+            if (!isAuthorized(exchange)) {
+                code = 403;
+                body = Map.of("message", "forbidden");
+            } else if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                String level = queryParam(exchange, "level");
+                if (!allowParanoidLeakDetection && "PARANOID".equalsIgnoreCase(StringUtils.trim(level))) {
+                    code = 403;
+                    body = Map.of("message", "PARANOID is disabled, set im-server.admin.allow-paranoid-leak-detection=true");
+                } else if (nettyBufferMetrics.setLeakDetectionLevel(level)) {
+                    log.info("运维接口调整泄漏检测级别, level:{}", level);
+                    body = nettyBufferMetrics.snapshot();
+                } else {
+                    code = 400;
+                    body = Map.of("message", "level must be one of DISABLED, SIMPLE, ADVANCED, PARANOID");
+                }
+            } else if ("GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                body = nettyBufferMetrics.snapshot();
+            } else {
+                code = 405;
+                body = Map.of("message", "method not allowed");
+            }
+            writeJson(exchange, code, body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 口令校验：未配置口令一律拒绝，比较使用定长时间算法
+     */
+    private boolean isAuthorized(HttpExchange exchange) {
+        String token = exchange.getRequestHeaders().getFirst("X-Admin-Token");
+        return StringUtils.isNotBlank(adminToken) && token != null
+                && MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 读取并 URL 解码查询参数，不存在时返回 null
+     */
+    private static String queryParam(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            if (name.equals(URLDecoder.decode(key, StandardCharsets.UTF_8))) {
+                return eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void writeJson(HttpExchange exchange, int code, Map<String, Object> body) throws IOException {
+        byte[] bytes = JSONUtil.toJsonStr(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
 }
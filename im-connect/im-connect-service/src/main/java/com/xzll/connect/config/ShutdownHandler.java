@@ -1,22 +1,13 @@
 package com.xzll.connect.config;
 
-import com.xzll.common.constant.ImConstant;
-
-import com.xzll.common.util.NettyAttrUtil;
-import com.xzll.connect.netty.channel.LocalChannelManager;
-import com.xzll.connect.service.UserStatusManagerService;
+import com.xzll.connect.service.ConnectionDrainService;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextClosedEvent;
-import com.xzll.common.utils.RedissonUtils;
 import org.springframework.stereotype.Component;
-import org.springframework.util.CollectionUtils;
 
 import jakarta.annotation.Resource;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
 
 /**
  * @Author: hzz
@@ -28,9 +19,13 @@ import java.util.Set;
 public class ShutdownHandler implements ApplicationListener<ContextClosedEvent> {
 
     @Resource
-    private RedissonUtils redissonUtils;
-    @Resource
-    private UserStatusManagerService userStatusManagerService;
+    private ConnectionDrainService connectionDrainService;
+
+    /**
+     * 关闭时等待连接排空的最长时间（毫秒），超时后剩余连接随 EventLoopGroup 关闭
+     */
+    @Value("${im-server.drain.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
 
     /**
      * 监听 ContextClosedEvent 事件的方法
@@ -47,19 +42,9 @@ public class ShutdownHandler implements ApplicationListener<ContextClosedEvent>
      */
     private void cleanUpResources() {
         log.info("Spring Boot 应用正在关闭...");
-        // 清理登录状态
-        Set<String> allOnLineUserId = LocalChannelManager.getAllOnLineUserId();
-        if (CollectionUtils.isEmpty(allOnLineUserId)) {
-            return;
-        }
-        Map.Entry<String, Integer> ipPortMap = NettyAttrUtil.getIpPortMap();
-        if (Objects.nonNull(ipPortMap) && StringUtils.isNotBlank(ipPortMap.getKey())) {
-            redissonUtils.deleteHash(ImConstant.RedisKeyConstant.NETTY_IP_PORT, ipPortMap.getKey());
-        }
-        allOnLineUserId.forEach(uid -> {
-            //清除用户登录信息和状态  TODO 此处需要考虑： 如果客户端通过他的断线重连功能 连上其他实例 此处该如何处理？ 不能删了吧？ 那样的话 岂不是误删了？
-            userStatusManagerService.userDisconnectAfter(uid);
-        });
-        log.info("共计{}个用户登录信息清除完毕", allOnLineUserId.size());
+        // 注销节点、分批通知客户端重连并清理登录状态（只清理仍指向本节点的用户，已重连到其他节点的不会误删）
+        // 滚动发布时应先通过 /admin/drain 触发排空，这里只是兜底；已排空过的直接返回
+        boolean drained = connectionDrainService.drainAndWait(shutdownTimeoutMs);
+        log.info("用户登录信息清除{}, 排空进度: {}", drained ? "完毕" : "超时", connectionDrainService.getStatus());
     }
 }
@@ -6,8 +6,11 @@ import com.xzll.common.pojo.request.GroupSendMsgAO;
 import com.xzll.common.rocketmq.ClusterEvent;
 import com.xzll.common.util.ProtoConverterUtil;
 import com.xzll.connect.config.RocketMqConfig;
+import com.xzll.connect.metrics.PipelineMetrics;
 import com.xzll.connect.netty.channel.LocalChannelManager;
+import com.xzll.connect.netty.outbound.OutboundQueue;
 import com.xzll.connect.service.GroupServerMemberService;
+import com.xzll.connect.service.OutboundPushService;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
@@ -69,6 +72,8 @@ public class GroupMsgBroadcastConsumer implements InitializingBean {
     private RocketMqConfig rocketMqConfig;
     @Resource
     private GroupServerMemberService groupServerMemberService;
+    @Resource
+    private OutboundPushService outboundPushService;
 
     private DefaultMQPushConsumer consumer;
 
@@ -215,13 +220,16 @@ public class GroupMsgBroadcastConsumer implements InitializingBean {
             io.netty.util.AttributeKey<String> userIdKey = io.netty.util.AttributeKey.valueOf(ImConstant.USER_ID);
             String userId = channel.attr(userIdKey).get();
 
+            long msgId = ProtoConverterUtil.snowflakeStringToLong(packet.getMsgId());
+            long groupId = ProtoConverterUtil.snowflakeStringToLong(packet.getGroupId());
+
             // 构建 GroupMsgPush
             GroupMsgPush pushMsg = GroupMsgPush.newBuilder()
-                .setMsgId(ProtoConverterUtil.snowflakeStringToLong(packet.getMsgId()))
+                .setMsgId(msgId)
                 .setFrom(ProtoConverterUtil.snowflakeStringToLong(packet.getFromUserId()))
                 .setFromNickname(packet.getFromNickname() != null ? packet.getFromNickname() : "")
                 .setFromAvatar(packet.getFromAvatar() != null ? packet.getFromAvatar() : "")
-                .setGroupId(ProtoConverterUtil.snowflakeStringToLong(packet.getGroupId()))
+                .setGroupId(groupId)
                 .setGroupName(packet.getGroupName() != null ? packet.getGroupName() : "")
                 .setFormat(packet.getMsgFormat())
                 .setContent(packet.getMsgContent())
@@ -239,12 +247,21 @@ public class GroupMsgBroadcastConsumer implements InitializingBean {
             byte[] bytes = response.toByteArray();
             ByteBuf buf = Unpooled.wrappedBuffer(bytes);
 
-            // 异步推送
-            channel.writeAndFlush(new BinaryWebSocketFrame(buf))
+            // 异步推送（连接不可写时暂存，同一群的积压推送合并为同步通知）
+            long writeStart = System.nanoTime();
+            outboundPushService.pushGroup(channel, new BinaryWebSocketFrame(buf), groupId, msgId)
                 .addListener(future -> {
+                    PipelineMetrics.record(MsgType.GROUP_MSG_PUSH, PipelineMetrics.Stage.WRITE,
+                        future.isSuccess() ? PipelineMetrics.OK
+                            : future.cause() == OutboundQueue.COLLAPSED ? PipelineMetrics.REJECTED : PipelineMetrics.ERROR,
+                        writeStart);
                     if (future.isSuccess()) {
+                        PipelineMetrics.recordE2E(MsgType.GROUP_MSG_PUSH, packet.getMsgCreateTime());
                         log.debug("{}【推送成功】userId:{}, msgId:{}, groupId:{}",
                             TAG, userId, packet.getMsgId(), packet.getGroupId());
+                    } else if (future.cause() == OutboundQueue.COLLAPSED) {
+                        log.debug("{}【推送合并】慢连接积压，已合并为群同步通知 - userId:{}, msgId:{}, groupId:{}",
+                            TAG, userId, packet.getMsgId(), packet.getGroupId());
                     } else {
                         log.warn("{}【推送失败】userId:{}, msgId:{}, groupId:{}",
                             TAG, userId, packet.getMsgId(), packet.getGroupId());
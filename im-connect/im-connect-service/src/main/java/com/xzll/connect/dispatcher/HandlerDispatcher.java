@@ -2,7 +2,9 @@ package com.xzll.connect.dispatcher;
 
 
 
+import com.xzll.common.constant.answercode.AnswerCode;
 import com.xzll.common.pojo.base.WebBaseResponse;
+import com.xzll.connect.metrics.PipelineMetrics;
 import com.xzll.grpc.ImProtoRequest;
 import com.xzll.grpc.MsgType;
 import com.xzll.connect.strategy.ProtoMsgHandlerStrategy;
@@ -46,10 +48,15 @@ public class HandlerDispatcher implements ApplicationContextAware {
             log.warn("[客户端直连] 未找到 protobuf 消息处理器, msgType: {}", msgType);
             return;
         }
+        long start = System.nanoTime();
+        String outcome = PipelineMetrics.OK;
         try {
             handler.exchange(ctx, protoRequest);
         } catch (Exception e) {
+            outcome = PipelineMetrics.ERROR;
             log.error("[客户端直连] protobuf 消息处理异常, msgType: {}", msgType, e);
+        } finally {
+            PipelineMetrics.record(msgType, PipelineMetrics.Stage.HANDLE, outcome, start);
         }
     }
 
@@ -76,12 +83,20 @@ public class HandlerDispatcher implements ApplicationContextAware {
             return WebBaseResponse.returnResultError("无处理器");
         }
         
+        long start = System.nanoTime();
+        String outcome = PipelineMetrics.ERROR;
         try {
             // 调用处理器的跨服务器转发方法
-            return handler.receiveAndSendMsg(protoRequest);
+            WebBaseResponse response = handler.receiveAndSendMsg(protoRequest);
+            if (response != null && response.getCode() == AnswerCode.SUCCESS.getCode()) {
+                outcome = PipelineMetrics.OK;
+            }
+            return response;
         } catch (Exception e) {
             log.error("[跨服务器转发] 处理 Protobuf 消息异常, msgType: {}", msgType, e);
             return WebBaseResponse.returnResultError("处理失败: " + e.getMessage());
+        } finally {
+            PipelineMetrics.record(msgType, PipelineMetrics.Stage.RELAY_HANDLE, outcome, start);
         }
     }
 
@@ -8,6 +8,7 @@ import com.xzll.common.pojo.base.WebBaseResponse;
 import com.xzll.common.util.ProtoConverterUtil;
 import com.xzll.common.utils.RedissonUtils;
 import com.xzll.connect.netty.channel.LocalChannelManager;
+import com.xzll.connect.service.OutboundPushService;
 import com.xzll.connect.service.TransferC2CMsgService;
 import io.grpc.stub.StreamObserver;
 import io.netty.channel.Channel;
@@ -38,6 +39,9 @@ public class MessageServiceGrpcImpl extends com.xzll.grpc.MessageServiceGrpc.Mes
 
     @Resource
     private TransferC2CMsgService transferC2CMsgService;
+
+    @Resource
+    private OutboundPushService outboundPushService;
     
     @Resource
     private RedissonUtils redissonUtils;
@@ -245,7 +249,7 @@ public class MessageServiceGrpcImpl extends com.xzll.grpc.MessageServiceGrpc.Mes
             if (Objects.nonNull(channel)) {
                 byte[] bytes = response.toByteArray();
                 ByteBuf buf = Unpooled.wrappedBuffer(bytes);
-                channel.writeAndFlush(new BinaryWebSocketFrame(buf));
+                outboundPushService.push(channel, new BinaryWebSocketFrame(buf));
                 return true;
             }
             log.error("服务端发送protobuf_传入的channel为空，不发送!");
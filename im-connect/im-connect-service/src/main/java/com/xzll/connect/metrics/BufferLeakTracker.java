@@ -0,0 +1,125 @@
+package com.xzll.connect.metrics;
+
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.prometheus.client.Counter;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ByteBuf 泄漏统计：替换 Netty 的泄漏检测器工厂，泄漏照常打印 ERROR 日志，同时按"最后持有的 Handler"计数
+ *
+ * 最后持有者取自访问记录中最近的一条 pipeline 提示（'handlerName' will handle the message from this point.），
+ * 只有 ADVANCED / PARANOID 级别会记录访问轨迹；SIMPLE 级别的泄漏计为 untraced
+ *
+ * 工厂必须在 AbstractByteBuf 类加载前安装（启动类 main 方法第一行），采样间隔沿用 -Dio.netty.leakDetection.samplingInterval，
+ * 检测级别可在运行时通过 /admin/buffers 调整
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public final class BufferLeakTracker {
+
+    private static final String HINT_PREFIX = "Hint: '";
+    private static final String UNTRACED = "untraced";
+    private static final String UNKNOWN = "unknown";
+
+    private static final Counter LEAKS = Counter.build()
+            .name("im_connect_netty_buffer_leak_total")
+            .help("Leaked ByteBufs reported by the leak detector, by last handler that held them.")
+            .labelNames("handler")
+            .register();
+
+    /**
+     * Handler 名称 -> 泄漏次数（名称来自 pipeline 中的固定 Handler 名，数量有限）
+     */
+    private static final Map<String, LongAdder> LEAKS_BY_HANDLER = new ConcurrentHashMap<>();
+
+    private static volatile boolean installed;
+
+    private BufferLeakTracker() {
+    }
+
+    /**
+     * 安装泄漏检测器工厂
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        ResourceLeakDetectorFactory.setResourceLeakDetectorFactory(new TrackingDetectorFactory());
+        installed = true;
+    }
+
+    public static boolean isInstalled() {
+        return installed;
+    }
+
+    /**
+     * 泄漏次数最多的前 limit 个 Handler
+     */
+    public static Map<String, Long> topHolders(int limit) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        LEAKS_BY_HANDLER.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .forEach(e -> result.put(e.getKey(), e.getValue()));
+        return result;
+    }
+
+    static void record(String handler) {
+        LEAKS_BY_HANDLER.computeIfAbsent(handler, k -> new LongAdder()).increment();
+        LEAKS.labels(handler).inc();
+    }
+
+    /**
+     * 访问记录按时间倒序输出，第一条 pipeline 提示即最后接手该 ByteBuf 的 Handler
+     */
+    static String lastHolder(String records) {
+        int start = records.indexOf(HINT_PREFIX);
+        if (start < 0) {
+            return UNKNOWN;
+        }
+        start += HINT_PREFIX.length();
+        int end = records.indexOf('\'', start);
+        return end > start ? records.substring(start, end) : UNKNOWN;
+    }
+
+    private static final class TrackingDetectorFactory extends ResourceLeakDetectorFactory {
+
+        @Override
+        public <T> ResourceLeakDetector<T> newResourceLeakDetector(Class<T> resource, int samplingInterval) {
+            return new TrackingLeakDetector<>(resource, samplingInterval);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public <T> ResourceLeakDetector<T> newResourceLeakDetector(Class<T> resource, int samplingInterval, long maxActive) {
+            return new TrackingLeakDetector<>(resource, samplingInterval);
+        }
+    }
+
+    private static final class TrackingLeakDetector<T> extends ResourceLeakDetector<T> {
+
+        private TrackingLeakDetector(Class<?> resourceType, int samplingInterval) {
+            super(resourceType, samplingInterval);
+        }
+
+        @Override
+        protected void reportTracedLeak(String resourceType, String records) {
+            record(lastHolder(records));
+            super.reportTracedLeak(resourceType, records);
+        }
+
+        @Override
+        protected void reportUntracedLeak(String resourceType) {
+            record(UNTRACED);
+            super.reportUntracedLeak(resourceType);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.xzll.connect.metrics;
+
+import com.xzll.connect.config.IMConnectServerConfig;
+import com.xzll.connect.netty.buffer.InstrumentedPooledByteBufAllocator;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PoolChunkListMetric;
+import io.netty.buffer.PoolChunkMetric;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.internal.PlatformDependent;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 连接服务池化内存指标（直接内存是高连接数下最主要的 OOM 风险）
+ *
+ * 抓取时从 InstrumentedPooledByteBufAllocator 读取，按 type=direct/heap 导出：
+ * 已用/钉住内存、Arena 数、活跃 Chunk 数、活跃分配、申请次数与 Arena 分配次数（二者之差即线程缓存命中）
+ * 并在启动时按 im.netty.leakDetectionLevel 设置泄漏检测级别
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+@Component
+public class NettyBufferMetrics extends Collector {
+
+    private static final String TAG = "[池化内存]_";
+    private static final String PREFIX = "im_connect_netty_allocator_";
+    private static final List<String> TYPE = Collections.singletonList("type");
+    private static final int TOP_HOLDERS = 10;
+
+    @Resource
+    private IMConnectServerConfig imConnectServerConfig;
+
+    private final InstrumentedPooledByteBufAllocator allocator = InstrumentedPooledByteBufAllocator.INSTANCE;
+
+    @PostConstruct
+    public void init() {
+        setLeakDetectionLevel(imConnectServerConfig.getLeakDetectionLevel());
+        register();
+        log.info("{}指标已注册, leakDetectionLevel: {}, 泄漏统计: {}", TAG, ResourceLeakDetector.getLevel(),
+                BufferLeakTracker.isInstalled() ? "已启用" : "未安装");
+    }
+
+    /**
+     * 运行时调整泄漏检测级别（DISABLED / SIMPLE / ADVANCED / PARANOID）
+     *
+     * @return 是否设置成功
+     */
+    public boolean setLeakDetectionLevel(String level) {
+        if (StringUtils.isBlank(level)) {
+            return false;
+        }
+        try {
+            ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.valueOf(level.trim().toUpperCase()));
+            return true;
+        } catch (IllegalArgumentException e) {
+            log.warn("{}泄漏检测级别无效: {}", TAG, level);
+            return false;
+        }
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        PooledByteBufAllocatorMetric metric = allocator.metric();
+        ArenaStats direct = ArenaStats.of(metric.directArenas());
+        ArenaStats heap = ArenaStats.of(metric.heapArenas());
+
+        List<MetricFamilySamples> samples = new ArrayList<>();
+        samples.add(byType(new GaugeMetricFamily(PREFIX + "used_bytes",
+                "Memory reserved by the pooled allocator.", TYPE), metric.usedDirectMemory(), metric.usedHeapMemory()));
+        samples.add(byType(new GaugeMetricFamily(PREFIX + "pinned_bytes",
+                "Memory held by ByteBufs that have not been released.", TYPE),
+                allocator.pinnedDirectMemory(), allocator.pinnedHeapMemory()));
+        samples.add(byType(new GaugeMetricFamily(PREFIX + "arenas",
+                "Number of arenas.", TYPE), metric.numDirectArenas(), metric.numHeapArenas()));
+        samples.add(byType(new GaugeMetricFamily(PREFIX + "active_chunks",
+                "Number of chunks currently allocated in arenas.", TYPE), direct.chunks, heap.chunks));
+        samples.add(byType(new GaugeMetricFamily(PREFIX + "active_allocations",
+                "Number of live allocations.", TYPE), direct.activeAllocations, heap.activeAllocations));
+        samples.add(byType(new CounterMetricFamily(PREFIX + "requests",
+                "Buffer allocation requests.", TYPE), allocator.getDirectRequests(), allocator.getHeapRequests()));
+        samples.add(byType(new CounterMetricFamily(PREFIX + "arena_allocations",
+                "Allocations served by arenas (thread cache misses and huge buffers).", TYPE),
+                direct.allocations, heap.allocations));
+        samples.add(new GaugeMetricFamily(PREFIX + "thread_caches",
+                "Number of thread local caches.", metric.numThreadLocalCaches()));
+        samples.add(new GaugeMetricFamily(PREFIX + "chunk_size_bytes",
+                "Chunk size of the allocator.", metric.chunkSize()));
+        return samples;
+    }
+
+    /**
+     * 运维接口 /admin/buffers 的快照
+     */
+    public Map<String, Object> snapshot() {
+        PooledByteBufAllocatorMetric metric = allocator.metric();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("direct", typeSnapshot(metric.usedDirectMemory(), allocator.pinnedDirectMemory(),
+                metric.numDirectArenas(), ArenaStats.of(metric.directArenas()), allocator.getDirectRequests()));
+        result.put("heap", typeSnapshot(metric.usedHeapMemory(), allocator.pinnedHeapMemory(),
+                metric.numHeapArenas(), ArenaStats.of(metric.heapArenas()), allocator.getHeapRequests()));
+        result.put("threadCaches", metric.numThreadLocalCaches());
+        result.put("chunkSize", metric.chunkSize());
+        result.put("maxDirectMemory", PlatformDependent.maxDirectMemory());
+        result.put("leakDetectionLevel", ResourceLeakDetector.getLevel().name());
+        result.put("leakTrackerInstalled", BufferLeakTracker.isInstalled());
+        result.put("topLeakHolders", BufferLeakTracker.topHolders(TOP_HOLDERS));
+        return result;
+    }
+
+    private static Map<String, Object> typeSnapshot(long used, long pinned, int arenas, ArenaStats stats, long requests) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("usedBytes", used);
+        result.put("pinnedBytes", pinned);
+        result.put("arenas", arenas);
+        result.put("activeChunks", stats.chunks);
+        result.put("activeAllocations", stats.activeAllocations);
+        result.put("requests", requests);
+        result.put("arenaAllocations", stats.allocations);
+        result.put("threadCacheHitRatio", requests > 0 ? Math.max(0, 1 - (double) stats.allocations / requests) : 0);
+        return result;
+    }
+
+    private static MetricFamilySamples byType(GaugeMetricFamily family, double direct, double heap) {
+        family.addMetric(Collections.singletonList("direct"), direct);
+        family.addMetric(Collections.singletonList("heap"), heap);
+        return family;
+    }
+
+    private static MetricFamilySamples byType(CounterMetricFamily family, double direct, double heap) {
+        family.addMetric(Collections.singletonList("direct"), direct);
+        family.addMetric(Collections.singletonList("heap"), heap);
+        return family;
+    }
+
+    /**
+     * 按类型汇总各 Arena 的统计（遍历 Chunk 列表会短暂持有 Arena 锁，只在抓取时进行）
+     */
+    private static final class ArenaStats {
+        private long chunks;
+        private long allocations;
+        private long activeAllocations;
+
+        private static ArenaStats of(List<PoolArenaMetric> arenas) {
+            ArenaStats stats = new ArenaStats();
+            for (PoolArenaMetric arena : arenas) {
+                stats.allocations += arena.numAllocations();
+                stats.activeAllocations += arena.numActiveAllocations();
+                for (PoolChunkListMetric chunkList : arena.chunkLists()) {
+                    for (PoolChunkMetric ignored : chunkList) {
+                        stats.chunks++;
+                    }
+                }
+            }
+            return stats;
+        }
+    }
+}
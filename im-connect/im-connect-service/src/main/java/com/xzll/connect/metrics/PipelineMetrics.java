@@ -0,0 +1,101 @@
+package com.xzll.connect.metrics;
+
+import io.prometheus.client.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 长连接消息链路分阶段耗时指标
+ *
+ * 指标：im_connect_stage_latency_seconds{type, stage, outcome}
+ * - type：消息类型（MsgType 枚举名），取值有限；首次单聊推送记在 C2C_SEND 下，
+ *   重推记在 C2C_MSG_PUSH 下，群聊广播推送记在 GROUP_MSG_PUSH 下
+ * - stage：所处阶段，见 {@link Stage}
+ * - outcome：ok / miss（路由查询未找到接收方）/ error / rejected（线程池拒绝，或慢连接积压的群推送被合并为同步通知）
+ *
+ * 各阶段都在调用点用 System.nanoTime() 计时后记录；端到端耗时（E2E）用消息创建时间（C2CSendReq.time，
+ * 客户端未传时为服务端接收时间）到写入接收方 Socket 成功的毫秒差，客户端时钟偏差会体现在该值上，负值按 0 记录
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public final class PipelineMetrics {
+
+    public static final String OK = "ok";
+    public static final String MISS = "miss";
+    public static final String ERROR = "error";
+    public static final String REJECTED = "rejected";
+
+    public static final String UNKNOWN_TYPE = "UNKNOWN";
+
+    /**
+     * 链路阶段
+     */
+    public enum Stage {
+        /** protobuf 解码（Netty IO 线程） */
+        DECODE("decode"),
+        /** 从 IO 线程提交到业务线程池，到开始执行的排队时间 */
+        QUEUE_WAIT("queue_wait"),
+        /** 客户端上行消息的处理器执行时间（含下面各阶段） */
+        HANDLE("handle"),
+        /** 跨服务器转发过来的消息在本机的处理时间 */
+        RELAY_HANDLE("relay_handle"),
+        /** 发送 RocketMQ */
+        MQ_SEND("mq_send"),
+        /** 查询接收方路由与在线状态 */
+        ROUTE_LOOKUP("route_lookup"),
+        /** gRPC 跨服务器转发 */
+        GRPC_RELAY("grpc_relay"),
+        /** 调用 writeAndFlush 到写入 Socket 完成 */
+        WRITE("write"),
+        /** 消息创建到推送给接收方完成 */
+        E2E("e2e");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Histogram STAGE_LATENCY = Histogram.build()
+            .name("im_connect_stage_latency_seconds")
+            .help("IM connect pipeline latency by message type, stage and outcome.")
+            .labelNames("type", "stage", "outcome")
+            .buckets(0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10)
+            .register();
+
+    private PipelineMetrics() {
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     *
+     * @param type       消息类型
+     * @param stage      阶段
+     * @param outcome    结果
+     * @param startNanos 阶段开始时的 System.nanoTime()
+     */
+    public static void record(Object type, Stage stage, String outcome, long startNanos) {
+        observe(type, stage, outcome, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 记录消息创建到推送完成的端到端耗时
+     *
+     * @param type         消息类型
+     * @param createTimeMs 消息创建时间（毫秒时间戳）
+     */
+    public static void recordE2E(Object type, Long createTimeMs) {
+        if (createTimeMs == null || createTimeMs <= 0) {
+            return;
+        }
+        long costMs = Math.max(0, System.currentTimeMillis() - createTimeMs);
+        observe(type, Stage.E2E, OK, TimeUnit.MILLISECONDS.toNanos(costMs));
+    }
+
+    private static void observe(Object type, Stage stage, String outcome, long costNanos) {
+        STAGE_LATENCY.labels(type == null ? UNKNOWN_TYPE : type.toString(), stage.label, outcome)
+                .observe(costNanos / 1e9);
+    }
+}
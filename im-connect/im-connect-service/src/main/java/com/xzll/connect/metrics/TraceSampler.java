@@ -0,0 +1,73 @@
+package com.xzll.connect.metrics;
+
+import com.google.protobuf.ByteString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 按 clientMsgId 做头部采样（head-based）的链路追踪采样器
+ *
+ * 采样结果只取决于 clientMsgId 本身（UUID 的 128 位混合哈希），不依赖随机数：
+ * 发送方节点、gRPC 转发的目标节点对同一条消息得出相同结论，无需额外透传采样标记；
+ * 被采样的消息在业务线程上创建 SkyWalking 入口 Span，其后的 RocketMQ / gRPC 调用由 agent 插件透传上下文
+ *
+ * 未被采样的消息不创建 Span，发送/推送链路上的明细日志也只在采样或开启 debug 时输出
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+@Component
+public class TraceSampler {
+
+    private static final int SCALE = 10000;
+
+    /**
+     * 采样率 [0, 1]，0 关闭，1 全量
+     */
+    @Value("${im-server.trace.sample-rate:0.01}")
+    private double sampleRate;
+
+    private long threshold;
+
+    @PostConstruct
+    public void init() {
+        threshold = Math.round(Math.max(0, Math.min(1, sampleRate)) * SCALE);
+        log.info("[链路采样]_采样率: {}", sampleRate);
+    }
+
+    /**
+     * clientMsgId 为 proto 中的 16 字节 UUID
+     */
+    public boolean isSampled(ByteString clientMsgId) {
+        if (threshold <= 0 || clientMsgId == null || clientMsgId.size() != 16) {
+            return false;
+        }
+        if (threshold >= SCALE) {
+            return true;
+        }
+        return hit(readLong(clientMsgId, 0), readLong(clientMsgId, 8));
+    }
+
+    private boolean hit(long msb, long lsb) {
+        // murmur3 fmix64，UUID v4 的版本位集中在固定位置，混合后再取模
+        long h = msb ^ Long.rotateLeft(lsb, 31);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return Long.remainderUnsigned(h, SCALE) < threshold;
+    }
+
+    private static long readLong(ByteString bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes.byteAt(i) & 0xffL);
+        }
+        return value;
+    }
+}
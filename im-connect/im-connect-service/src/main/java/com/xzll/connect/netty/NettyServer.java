@@ -5,18 +5,20 @@ import com.xzll.common.constant.ImConstant;
 import com.xzll.common.util.NetUtils;
 import com.xzll.common.util.NettyAttrUtil;
 import com.xzll.connect.config.IMConnectServerConfig;
+import com.xzll.connect.netty.buffer.InstrumentedPooledByteBufAllocator;
 import com.xzll.connect.netty.channel.WebSocketChannelInitializer;
+import com.xzll.connect.netty.transport.AffinityThreadFactory;
+import com.xzll.connect.netty.transport.TransportType;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.epoll.Epoll;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollServerSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.unix.UnixChannelOption;
+import io.netty.util.concurrent.EventExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,12 +29,15 @@ import org.springframework.stereotype.Component;
 import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 
 /**
  * Netty服务器启动类
  * 优化内容：
- * 1. 支持Epoll/NIO自适应选择
+ * 1. 支持 io_uring / Epoll / NIO 传输选择，SO_REUSEPORT 多 acceptor，EventLoop 线程绑核
  * 2. 优化EventLoopGroup线程配置
  * 3. 完善TCP参数配置
  * 4. 增强异常处理和优雅关闭
@@ -60,7 +65,13 @@ public class NettyServer implements ApplicationRunner {
     // EventLoopGroup实例，用于优雅关闭
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
-    private Channel serverChannel;
+    private TransportType transport;
+    private int acceptors = 1;
+
+    /**
+     * 监听通道：未开启 SO_REUSEPORT 多 acceptor 时只有一个
+     */
+    private final List<Channel> serverChannels = new ArrayList<>();
 
     /**
      * 此逻辑最好在springboot项目都启动之后再启动，防止影响启动流程。 此前，我曾 在@PostConstruct、CommandLineRunner阶段启动此逻辑，将会遇到一些莫名问题
@@ -85,9 +96,11 @@ public class NettyServer implements ApplicationRunner {
             // 注册服务器信息到Redis
             registerServerInfo(bindIp, bindPort);
             
-            // 启动服务器
-            serverChannel = bootstrap.bind(new InetSocketAddress(bindPort)).sync().channel();
-            log.info("[NettyServer]_WebSocket服务器启动成功：{}:{}", bindIp, bindPort);
+            // 启动服务器（SO_REUSEPORT 时同一端口绑定多次，每个 ServerChannel 注册到不同的 Boss 线程）
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(bootstrap.bind(new InetSocketAddress(bindPort)).sync().channel());
+            }
+            log.info("[NettyServer]_WebSocket服务器启动成功：{}:{}, transport={}, acceptors={}", bindIp, bindPort, transport, acceptors);
             
             // 注册关闭监听器
             registerShutdownHook();
@@ -99,19 +112,22 @@ public class NettyServer implements ApplicationRunner {
     }
 
     /**
-     * 初始化EventLoopGroup，根据系统特性选择最优实现
+     * 初始化EventLoopGroup，根据配置与系统特性选择传输实现
      * 
      * 配置来源（优先级从高到低）：
-     * 1. Nacos配置：im.netty.bossThreads / im.netty.workerThreads
-     * 2. 自动计算：Boss=max(1,CPU/4), Worker=CPU*2
+     * 1. Nacos配置：im.netty.transport / bossThreads / workerThreads / bossCpuAffinity / workerCpuAffinity
+     * 2. 自动计算：Boss=max(1,CPU/4, acceptor数), Worker=绑核CPU数 或 CPU*2
      * 
      * 百万连接优化：
-     * - Boss线程：1-2个，只负责接受连接
-     * - Worker线程：CPU核心数 * 2，处理IO读写
-     * - 使用Epoll（Linux）获得最佳性能
+     * - Boss线程：1-2个，只负责接受连接；SO_REUSEPORT 多 acceptor 时每个 acceptor 一个
+     * - Worker线程：CPU核心数 * 2，处理IO读写；绑核时每个核一个
+     * - 使用Epoll/io_uring（Linux）获得最佳性能
      */
     private void initEventLoopGroups() {
         int cpuCores = Runtime.getRuntime().availableProcessors();
+        transport = TransportType.select(imConnectServerConfig.getTransport());
+        int[] bossCpus = AffinityThreadFactory.parseCpuList(imConnectServerConfig.getBossCpuAffinity());
+        int[] workerCpus = AffinityThreadFactory.parseCpuList(imConnectServerConfig.getWorkerCpuAffinity());
         
         // 从配置读取线程数，0表示自动计算
         int bossThreads = imConnectServerConfig.getBossThreads();
@@ -121,27 +137,35 @@ public class NettyServer implements ApplicationRunner {
         if (bossThreads <= 0) {
             bossThreads = Math.max(1, cpuCores / 4);
         }
+        acceptors = resolveAcceptors();
+        bossThreads = Math.max(bossThreads, acceptors);
         if (workerThreads <= 0) {
-            workerThreads = cpuCores * 2;
+            workerThreads = workerCpus.length > 0 ? workerCpus.length : cpuCores * 2;
         }
         
-        log.info("[NettyServer]_EventLoopGroup配置: CPU核心={}, Boss线程={}, Worker线程={} (来自Nacos配置)", 
-            cpuCores, bossThreads, workerThreads);
-        
-        // 在Linux环境下优先使用Epoll，性能更好（百万连接必须使用Epoll）
-        if (Epoll.isAvailable()) {
-            log.info("[NettyServer]_使用Epoll EventLoopGroup (Linux优化，支持百万连接)");
-            bossGroup = new EpollEventLoopGroup(bossThreads, 
-                new DefaultThreadFactory("netty-boss", Thread.MAX_PRIORITY));
-            workerGroup = new EpollEventLoopGroup(workerThreads, 
-                new DefaultThreadFactory("netty-worker", Thread.NORM_PRIORITY));
-        } else {
+        log.info("[NettyServer]_EventLoopGroup配置: transport={}, CPU核心={}, Boss线程={}, Worker线程={}, Boss绑核={}, Worker绑核={} (来自Nacos配置)",
+            transport, cpuCores, bossThreads, workerThreads,
+            imConnectServerConfig.getBossCpuAffinity(), imConnectServerConfig.getWorkerCpuAffinity());
+        if (transport == TransportType.NIO) {
             log.warn("[NettyServer]_使用NIO EventLoopGroup（非Linux环境，性能受限）");
-            bossGroup = new NioEventLoopGroup(bossThreads, 
-                new DefaultThreadFactory("netty-boss", Thread.MAX_PRIORITY));
-            workerGroup = new NioEventLoopGroup(workerThreads, 
-                new DefaultThreadFactory("netty-worker", Thread.NORM_PRIORITY));
         }
+        
+        bossGroup = transport.newEventLoopGroup(bossThreads,
+            new AffinityThreadFactory("netty-boss", Thread.MAX_PRIORITY, bossCpus));
+        workerGroup = transport.newEventLoopGroup(workerThreads,
+            new AffinityThreadFactory("netty-worker", Thread.NORM_PRIORITY, workerCpus));
+    }
+
+    /**
+     * 监听通道数量：只有原生传输支持 SO_REUSEPORT
+     */
+    private int resolveAcceptors() {
+        int configured = Math.max(1, imConnectServerConfig.getReusePortAcceptors());
+        if (configured > 1 && !transport.isNative()) {
+            log.warn("[NettyServer]_当前传输不支持 SO_REUSEPORT，忽略 reusePortAcceptors={}", configured);
+            return 1;
+        }
+        return configured;
     }
 
     /**
@@ -163,10 +187,14 @@ public class NettyServer implements ApplicationRunner {
         bootstrap.group(bossGroup, workerGroup);
         
         // 根据EventLoopGroup类型选择对应的Channel实现
-        if (Epoll.isAvailable()) {
-            bootstrap.channel(EpollServerSocketChannel.class);
-        } else {
-            bootstrap.channel(NioServerSocketChannel.class);
+        bootstrap.channel(transport.serverChannelClass());
+        if (acceptors > 1) {
+            bootstrap.option(UnixChannelOption.SO_REUSEPORT, true);
+        }
+        if (transport == TransportType.EPOLL) {
+            EpollMode epollMode = imConnectServerConfig.isEpollEdgeTriggered() ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+            bootstrap.option(EpollChannelOption.EPOLL_MODE, epollMode)
+                .childOption(EpollChannelOption.EPOLL_MODE, epollMode);
         }
         
         // ==================== 从 Nacos 配置读取参数 ====================
@@ -202,8 +230,8 @@ public class NettyServer implements ApplicationRunner {
             .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, 
                 new io.netty.channel.WriteBufferWaterMark(writeBufferLow, writeBufferHigh))
             
-            // 【关键】池化内存分配器 - 大幅提升高QPS性能
-            .childOption(ChannelOption.ALLOCATOR, io.netty.buffer.PooledByteBufAllocator.DEFAULT)
+            // 【关键】池化内存分配器 - 大幅提升高QPS性能（统计申请次数，指标见 NettyBufferMetrics）
+            .childOption(ChannelOption.ALLOCATOR, InstrumentedPooledByteBufAllocator.INSTANCE)
             
             // 自动读取（高QPS场景保持开启）
             .childOption(ChannelOption.AUTO_READ, true);
@@ -246,22 +274,46 @@ public class NettyServer implements ApplicationRunner {
         }
     }
 
+    /**
+     * 从Redis注销服务器信息，负载均衡不再把新连接分配到本节点
+     */
+    public void deregisterServerInfo() {
+        try {
+            Map.Entry<String, Integer> ipPort = NettyAttrUtil.getIpPortMap();
+            if (ipPort != null && StringUtils.isNotBlank(ipPort.getKey())) {
+                redissonUtils.deleteHash(ImConstant.RedisKeyConstant.NETTY_IP_PORT, ipPort.getKey());
+                log.info("[NettyServer]_服务器信息已从Redis注销: {}:{}", ipPort.getKey(), ipPort.getValue());
+            }
+        } catch (Exception e) {
+            log.error("[NettyServer]_从Redis注销服务器信息失败", e);
+        }
+    }
+
+    /**
+     * 暂停接收新连接（已建立的连接不受影响）
+     * 注意：不能直接关闭服务器通道，closeFuture 监听器会连带关闭 EventLoopGroup，已有连接将无法推送重连通知
+     */
+    public void pauseAccept() {
+        for (Channel serverChannel : serverChannels) {
+            if (serverChannel.isActive()) {
+                serverChannel.config().setAutoRead(false);
+            }
+        }
+        log.info("[NettyServer]_已暂停接收新连接");
+    }
+
     /**
      * 注册关闭钩子，确保优雅关闭
      */
     private void registerShutdownHook() {
-        if (serverChannel != null) {
-            serverChannel.closeFuture().addListener((ChannelFutureListener) channelFuture -> {
+        if (!serverChannels.isEmpty()) {
+            serverChannels.get(0).closeFuture().addListener((ChannelFutureListener) channelFuture -> {
                 log.info("[NettyServer]_服务器通道关闭，开始优雅关闭");
                 shutdownGracefully();
             });
         }
-        
-        // 注册JVM关闭钩子
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            log.info("[NettyServer]_接收到关闭信号，开始优雅关闭");
-            shutdownGracefully();
-        }, "netty-shutdown-hook"));
+        // 不再单独注册JVM关闭钩子：它与Spring的关闭流程并发执行，会在 ShutdownHandler 排空连接之前就关闭 EventLoopGroup，
+        // 进程关闭时由 Spring 先发布 ContextClosedEvent（排空），再回调 @PreDestroy 的 shutdownGracefully
     }
 
     /**
@@ -272,9 +324,17 @@ public class NettyServer implements ApplicationRunner {
         log.info("[NettyServer]_开始优雅关闭WebSocket服务器");
         
         try {
-            // 关闭服务器通道
-            if (serverChannel != null && serverChannel.isActive()) {
-                serverChannel.close().sync();
+            // 关闭服务器通道（由主通道的关闭监听触发时位于 Boss 线程上，不能阻塞等待）
+            List<ChannelFuture> closeFutures = new ArrayList<>();
+            for (Channel serverChannel : serverChannels) {
+                if (serverChannel.isActive()) {
+                    closeFutures.add(serverChannel.close());
+                }
+            }
+            if (!closeFutures.isEmpty() && !inBossEventLoop()) {
+                for (ChannelFuture closeFuture : closeFutures) {
+                    closeFuture.sync();
+                }
                 log.info("[NettyServer]_服务器通道已关闭");
             }
         } catch (InterruptedException e) {
@@ -306,19 +366,31 @@ public class NettyServer implements ApplicationRunner {
         log.info("[NettyServer]_WebSocket服务器优雅关闭完成");
     }
 
+    private boolean inBossEventLoop() {
+        if (bossGroup == null) {
+            return false;
+        }
+        for (EventExecutor executor : bossGroup) {
+            if (executor.inEventLoop()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 获取服务器运行状态
      */
     public boolean isRunning() {
-        return serverChannel != null && serverChannel.isActive();
+        return serverChannels.stream().anyMatch(Channel::isActive);
     }
 
     /**
      * 获取当前绑定的端口
      */
     public int getPort() {
-        if (serverChannel != null && serverChannel.localAddress() instanceof InetSocketAddress) {
-            return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+        if (!serverChannels.isEmpty() && serverChannels.get(0).localAddress() instanceof InetSocketAddress) {
+            return ((InetSocketAddress) serverChannels.get(0).localAddress()).getPort();
         }
         return -1;
     }
@@ -231,6 +231,13 @@ public class LocalChannelManager {
         return 0;
     }
 
+    /**
+     * 获取本机在线用户数（不做清理，O(1)）
+     */
+    public static int getOnlineUserCount() {
+        return userIdChannelMap.size();
+    }
+
     /**
      * 获取活跃连接数
      */
@@ -2,17 +2,19 @@ package com.xzll.connect.netty.channel;
 
 import cn.hutool.extra.spring.SpringUtil;
 import com.xzll.connect.config.IMConnectServerConfig;
+import com.xzll.connect.netty.compression.WebSocketCompressionSupport;
 import com.xzll.connect.netty.handler.AuthHandler;
 import com.xzll.connect.netty.handler.ConnectionLimitHandler;
 import com.xzll.connect.netty.handler.FlowControlHandler;
+import com.xzll.connect.netty.handler.HeartbeatFrameHandler;
 import com.xzll.connect.netty.handler.MetricsHandler;
+import com.xzll.connect.netty.handler.SlowConsumerHandler;
 import com.xzll.connect.netty.handler.WebSocketServerHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
@@ -44,17 +46,22 @@ public class WebSocketChannelInitializer extends ChannelInitializer<SocketChanne
         pipeline.addLast(new HttpObjectAggregator(65536));
         //用于大数据的分区传输
         pipeline.addLast(new ChunkedWriteHandler());
-        // WebSocket数据压缩（可通过Nacos配置开关）
-        // 高QPS场景建议关闭（im.netty.enableCompression=false），压缩消耗CPU
+        // WebSocket数据压缩（可通过Nacos配置开关）：只压缩不小于 compressionThreshold 的帧，小帧不消耗CPU
         if (imConnectServerConfig.isEnableCompression()) {
-            pipeline.addLast(new WebSocketServerCompressionHandler());
-            log.debug("WebSocket压缩已启用");
+            pipeline.addLast(SpringUtil.getBean(WebSocketCompressionSupport.class).newExtensionHandler());
+            log.debug("WebSocket选择性压缩已启用");
         }
-        //设置心跳 - 从配置读取IdleStateHandler检测周期
+        //设置心跳 - 启用自适应心跳时由 HeartbeatFrameHandler 按连接调度检测，否则从配置读取IdleStateHandler检测周期
         // 注意：idleStateCheckInterval < heartBeatTime，提供容错余量
-        int idleCheckInterval = imConnectServerConfig.getIdleStateCheckInterval();
-        pipeline.addLast("heart-notice", new IdleStateHandler(idleCheckInterval, 0, 0, TimeUnit.SECONDS));
-        log.debug("IdleStateHandler检测周期已设置为: {}秒", idleCheckInterval);
+        if (!imConnectServerConfig.isAdaptiveHeartbeat()) {
+            int idleCheckInterval = imConnectServerConfig.getIdleStateCheckInterval();
+            pipeline.addLast("heart-notice", new IdleStateHandler(idleCheckInterval, 0, 0, TimeUnit.SECONDS));
+            log.debug("IdleStateHandler检测周期已设置为: {}秒", idleCheckInterval);
+        }
+        // 心跳快速通道：ping/pong 与应用层心跳在这里直接应答，不经过流控（Redis）和业务处理器
+        pipeline.addLast("heartbeat", SpringUtil.getBean(HeartbeatFrameHandler.class));
+        // 慢消费者：连接恢复可写后补发暂存的推送
+        pipeline.addLast("slow-consumer", SpringUtil.getBean(SlowConsumerHandler.class));
 
         //添加安全和统计相关handler
         // 使用Spring管理的Bean，支持@Sharable单例模式
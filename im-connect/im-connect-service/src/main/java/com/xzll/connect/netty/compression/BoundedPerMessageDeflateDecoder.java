@@ -0,0 +1,137 @@
+package com.xzll.connect.netty.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 标准 permessage-deflate 解码器，解压过程中累计消息长度，超过 maxInboundSize 立即报错关闭连接
+ *
+ * Netty 4.1.108 的 PerMessageDeflateDecoder 没有解压上限（maxAllocation 重载 4.1.111 才有），且整帧解压完才交给后续 handler，
+ * 放在后面检查挡不住压缩炸弹的内存峰值，因此替换掉标准握手结果中的解码器，编码器与协商参数仍用 Netty 的实现
+ *
+ * 1. 支持分片消息：首帧 RSV1 置位，后续 Continuation 帧沿用同一解压上下文，上限按整条消息累计
+ * 2. 未协商 client_no_context_takeover 时客户端会跨消息复用滑动窗口，Inflater 按连接持有，连接关闭时释放
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public class BoundedPerMessageDeflateDecoder extends WebSocketExtensionDecoder {
+
+    private static final FastThreadLocal<byte[]> BUFFER = new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[8192];
+        }
+    };
+
+    private final boolean noContext;
+    private final int maxInboundSize;
+
+    private Inflater inflater;
+    private boolean decompressing;
+    private int messageSize;
+
+    public BoundedPerMessageDeflateDecoder(boolean noContext, int maxInboundSize) {
+        this.noContext = noContext;
+        this.maxInboundSize = maxInboundSize;
+    }
+
+    @Override
+    public boolean acceptInboundMessage(Object msg) throws Exception {
+        if (msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame) {
+            return (((WebSocketFrame) msg).rsv() & WebSocketExtension.RSV1) != 0;
+        }
+        return msg instanceof ContinuationWebSocketFrame && decompressing;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        if (!(msg instanceof ContinuationWebSocketFrame)) {
+            decompressing = true;
+            messageSize = 0;
+        }
+
+        ByteBuf content = msg.content();
+        int length = content.readableBytes();
+        int tailLength = msg.isFinalFragment() ? DictionaryDeflateEncoder.FRAME_TAIL.length : 0;
+        byte[] input = new byte[length + tailLength];
+        content.getBytes(content.readerIndex(), input, 0, length);
+        if (tailLength > 0) {
+            System.arraycopy(DictionaryDeflateEncoder.FRAME_TAIL, 0, input, length, tailLength);
+        }
+        inflater.setInput(input);
+
+        byte[] buffer = BUFFER.get();
+        ByteBuf decompressed = ctx.alloc().buffer(Math.min(Math.max(length * 2, 64), maxInboundSize));
+        try {
+            int n;
+            while ((n = inflater.inflate(buffer)) > 0) {
+                messageSize += n;
+                if (messageSize > maxInboundSize) {
+                    throw new TooLongFrameException("permessage-deflate message exceeds " + maxInboundSize + " bytes");
+                }
+                decompressed.writeBytes(buffer, 0, n);
+            }
+            if (inflater.needsDictionary()) {
+                throw new DecoderException("permessage-deflate unexpected preset dictionary");
+            }
+        } catch (DataFormatException e) {
+            decompressed.release();
+            throw new DecoderException("permessage-deflate invalid data", e);
+        } catch (RuntimeException e) {
+            decompressed.release();
+            throw e;
+        }
+
+        if (msg.isFinalFragment()) {
+            decompressing = false;
+            if (noContext) {
+                inflater.reset();
+            }
+        }
+
+        int rsv = msg instanceof ContinuationWebSocketFrame ? msg.rsv() : msg.rsv() & ~WebSocketExtension.RSV1;
+        if (msg instanceof TextWebSocketFrame) {
+            out.add(new TextWebSocketFrame(msg.isFinalFragment(), rsv, decompressed));
+        } else if (msg instanceof BinaryWebSocketFrame) {
+            out.add(new BinaryWebSocketFrame(msg.isFinalFragment(), rsv, decompressed));
+        } else {
+            out.add(new ContinuationWebSocketFrame(msg.isFinalFragment(), rsv, decompressed));
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        release();
+        super.handlerRemoved(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        release();
+        super.channelInactive(ctx);
+    }
+
+    private void release() {
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+}
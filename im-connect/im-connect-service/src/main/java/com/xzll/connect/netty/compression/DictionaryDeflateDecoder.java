@@ -0,0 +1,95 @@
+package com.xzll.connect.netty.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * x-im-deflate 解码器：解压 RSV1 置位的二进制帧，解压后超过 maxInboundSize 直接报错关闭连接
+ *
+ * Inflater 按 EventLoop 线程复用；客户端压缩帧不支持分片
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public class DictionaryDeflateDecoder extends WebSocketExtensionDecoder {
+
+    private static final FastThreadLocal<Inflater> INFLATER = new FastThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+
+        @Override
+        protected void onRemoval(Inflater inflater) {
+            inflater.end();
+        }
+    };
+
+    private static final FastThreadLocal<byte[]> BUFFER = new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[8192];
+        }
+    };
+
+    private final byte[] dictionary;
+    private final int maxInboundSize;
+
+    public DictionaryDeflateDecoder(byte[] dictionary, int maxInboundSize) {
+        this.dictionary = dictionary;
+        this.maxInboundSize = maxInboundSize;
+    }
+
+    @Override
+    public boolean acceptInboundMessage(Object msg) throws Exception {
+        return msg instanceof BinaryWebSocketFrame
+                && (((WebSocketFrame) msg).rsv() & WebSocketExtension.RSV1) != 0;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
+        if (!msg.isFinalFragment()) {
+            throw new DecoderException("x-im-deflate does not support fragmented messages");
+        }
+        ByteBuf content = msg.content();
+        int length = content.readableBytes();
+        byte[] input = new byte[length + DictionaryDeflateEncoder.FRAME_TAIL.length];
+        content.getBytes(content.readerIndex(), input, 0, length);
+        System.arraycopy(DictionaryDeflateEncoder.FRAME_TAIL, 0, input, length, DictionaryDeflateEncoder.FRAME_TAIL.length);
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setDictionary(dictionary);
+        inflater.setInput(input);
+
+        byte[] buffer = BUFFER.get();
+        ByteBuf decompressed = ctx.alloc().buffer(Math.min(length * 2, maxInboundSize));
+        try {
+            int n;
+            while ((n = inflater.inflate(buffer)) > 0) {
+                if (decompressed.readableBytes() + n > maxInboundSize) {
+                    throw new TooLongFrameException("x-im-deflate message exceeds " + maxInboundSize + " bytes");
+                }
+                decompressed.writeBytes(buffer, 0, n);
+            }
+        } catch (DataFormatException e) {
+            decompressed.release();
+            throw new DecoderException("x-im-deflate invalid data", e);
+        } catch (RuntimeException e) {
+            decompressed.release();
+            throw e;
+        }
+        out.add(new BinaryWebSocketFrame(true, msg.rsv() & ~WebSocketExtension.RSV1, decompressed));
+    }
+}
@@ -0,0 +1,100 @@
+package com.xzll.connect.netty.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * x-im-deflate 编码器：不小于阈值的完整二进制帧用预置字典压缩，压缩后不变小则原样发送
+ *
+ * Deflater 按 EventLoop 线程复用，每条消息前 reset 并重新设置字典，不持有连接级 zlib 状态
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public class DictionaryDeflateEncoder extends WebSocketExtensionEncoder {
+
+    /**
+     * SYNC_FLUSH 产生的空存储块，按 permessage-deflate 约定不发送
+     */
+    static final byte[] FRAME_TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+
+    private static final FastThreadLocal<Deflater> DEFLATER = new FastThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+
+        @Override
+        protected void onRemoval(Deflater deflater) {
+            deflater.end();
+        }
+    };
+
+    private static final FastThreadLocal<byte[]> BUFFER = new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[8192];
+        }
+    };
+
+    private final byte[] dictionary;
+    private final int compressionLevel;
+    private final int threshold;
+
+    public DictionaryDeflateEncoder(byte[] dictionary, int compressionLevel, int threshold) {
+        this.dictionary = dictionary;
+        this.compressionLevel = compressionLevel;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        if (!(msg instanceof BinaryWebSocketFrame)) {
+            return false;
+        }
+        WebSocketFrame frame = (WebSocketFrame) msg;
+        return frame.isFinalFragment()
+                && (frame.rsv() & WebSocketExtension.RSV1) == 0
+                && frame.content().readableBytes() >= threshold;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
+        ByteBuf content = msg.content();
+        int length = content.readableBytes();
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setLevel(compressionLevel);
+        deflater.setDictionary(dictionary);
+        deflater.setInput(content.nioBuffer());
+
+        byte[] buffer = BUFFER.get();
+        ByteBuf compressed = ctx.alloc().buffer(Math.min(length, buffer.length));
+        try {
+            int n;
+            do {
+                n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                compressed.writeBytes(buffer, 0, n);
+            } while (n == buffer.length);
+            compressed.writerIndex(compressed.writerIndex() - FRAME_TAIL.length);
+        } catch (RuntimeException e) {
+            compressed.release();
+            throw e;
+        }
+
+        if (compressed.readableBytes() >= length) {
+            compressed.release();
+            out.add(msg.retain());
+            return;
+        }
+        out.add(new BinaryWebSocketFrame(true, msg.rsv() | WebSocketExtension.RSV1, compressed));
+    }
+}
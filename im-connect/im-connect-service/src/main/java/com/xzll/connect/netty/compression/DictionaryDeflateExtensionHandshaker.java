@@ -0,0 +1,81 @@
+package com.xzll.connect.netty.compression;
+
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandshaker;
+
+import java.util.Collections;
+import java.util.zip.Adler32;
+
+/**
+ * 私有压缩扩展 x-im-deflate 的握手器
+ *
+ * 标准 permessage-deflate 无法协商预置字典，自有客户端可改为请求：
+ * Sec-WebSocket-Extensions: x-im-deflate; dict_id=<字典 Adler-32 十六进制>
+ * dict_id 与服务端字典一致时才接受（否则客户端可回退到同时请求的 permessage-deflate），帧格式与 permessage-deflate 相同：
+ * 1. RSV1 置位表示该消息为 raw deflate + 预置字典压缩，并去掉 SYNC_FLUSH 的 4 字节尾部
+ * 2. 每条消息独立压缩（不保留上下文），压缩器/解压器按 EventLoop 线程复用，内存与连接数无关
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public class DictionaryDeflateExtensionHandshaker implements WebSocketServerExtensionHandshaker {
+
+    public static final String EXTENSION_NAME = "x-im-deflate";
+    public static final String DICT_ID_PARAM = "dict_id";
+
+    private final byte[] dictionary;
+    private final String dictId;
+    private final int compressionLevel;
+    private final int threshold;
+    private final int maxInboundSize;
+
+    public DictionaryDeflateExtensionHandshaker(byte[] dictionary, int compressionLevel, int threshold, int maxInboundSize) {
+        this.dictionary = dictionary;
+        this.compressionLevel = compressionLevel;
+        this.threshold = threshold;
+        this.maxInboundSize = maxInboundSize;
+        Adler32 adler32 = new Adler32();
+        adler32.update(dictionary);
+        this.dictId = Long.toHexString(adler32.getValue());
+    }
+
+    public String getDictId() {
+        return dictId;
+    }
+
+    @Override
+    public WebSocketServerExtension handshakeExtension(WebSocketExtensionData extensionData) {
+        if (!EXTENSION_NAME.equals(extensionData.name())
+                || !dictId.equalsIgnoreCase(extensionData.parameters().get(DICT_ID_PARAM))) {
+            return null;
+        }
+        return new DictionaryDeflateExtension();
+    }
+
+    private final class DictionaryDeflateExtension implements WebSocketServerExtension {
+
+        @Override
+        public int rsv() {
+            return WebSocketExtension.RSV1;
+        }
+
+        @Override
+        public WebSocketExtensionEncoder newExtensionEncoder() {
+            return new DictionaryDeflateEncoder(dictionary, compressionLevel, threshold);
+        }
+
+        @Override
+        public WebSocketExtensionDecoder newExtensionDecoder() {
+            return new DictionaryDeflateDecoder(dictionary, maxInboundSize);
+        }
+
+        @Override
+        public WebSocketExtensionData newReponseData() {
+            return new WebSocketExtensionData(EXTENSION_NAME, Collections.singletonMap(DICT_ID_PARAM, dictId));
+        }
+    }
+}
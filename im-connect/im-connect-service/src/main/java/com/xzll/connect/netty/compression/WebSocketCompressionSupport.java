@@ -0,0 +1,187 @@
+package com.xzll.connect.netty.compression;
+
+import com.xzll.connect.config.IMConnectServerConfig;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WebSocket 选择性压缩（替代对所有帧压缩的 WebSocketServerCompressionHandler）
+ *
+ * 1. 标准 permessage-deflate：只压缩不小于 compressionThreshold 的 Text/Binary 帧，小帧原样发送（RSV1 不置位，协议允许）
+ * 2. 开启 compressionNoContextTakeover 时，即使客户端未请求也在响应中加上 server_no_context_takeover（RFC 7692 允许），
+ *    每条消息用完即释放压缩器，空闲连接不常驻 zlib 状态
+ * 3. 配置了预置字典时额外支持私有扩展 x-im-deflate，见 {@link DictionaryDeflateExtensionHandshaker}
+ * 4. 两种扩展的客户端压缩帧都按 compressionMaxInboundSize 限制解压长度；标准扩展的解码器替换为
+ *    {@link BoundedPerMessageDeflateDecoder}，编码器与协商参数仍用 Netty 的实现
+ *
+ * 握手器无状态、全局共享；WebSocketServerExtensionHandler 有连接级状态，每个连接新建
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+@Component
+public class WebSocketCompressionSupport {
+
+    private static final String TAG = "[WebSocket压缩]_";
+
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+    private static final String SERVER_NO_CONTEXT = "server_no_context_takeover";
+    private static final String CLIENT_NO_CONTEXT = "client_no_context_takeover";
+    private static final int MAX_WINDOW_SIZE = 15;
+
+    /**
+     * deflate 只使用最后 32KB 的字典
+     */
+    private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    @Resource
+    private IMConnectServerConfig imConnectServerConfig;
+
+    @Resource
+    private ResourceLoader resourceLoader;
+
+    private WebSocketServerExtensionHandshaker[] handshakers;
+
+    @PostConstruct
+    public void init() {
+        int threshold = imConnectServerConfig.getCompressionThreshold();
+        int level = imConnectServerConfig.getCompressionLevel();
+        boolean noContextTakeover = imConnectServerConfig.isCompressionNoContextTakeover();
+
+        // 小帧跳过压缩；其它帧（控制帧、分片的后续帧）交给编码器自行判断
+        WebSocketExtensionFilter skipSmallFrames = frame ->
+                (frame instanceof BinaryWebSocketFrame || frame instanceof TextWebSocketFrame)
+                        && frame.content().readableBytes() < threshold;
+        WebSocketExtensionFilterProvider filterProvider = new WebSocketExtensionFilterProvider() {
+            @Override
+            public WebSocketExtensionFilter encoderFilter() {
+                return skipSmallFrames;
+            }
+
+            @Override
+            public WebSocketExtensionFilter decoderFilter() {
+                return WebSocketExtensionFilter.NEVER_SKIP;
+            }
+        };
+
+        int maxInboundSize = imConnectServerConfig.getCompressionMaxInboundSize();
+        List<WebSocketServerExtensionHandshaker> list = new ArrayList<>(2);
+        byte[] dictionary = loadDictionary(imConnectServerConfig.getCompressionDictionaryPath());
+        if (dictionary != null) {
+            list.add(new DictionaryDeflateExtensionHandshaker(dictionary, level, threshold, maxInboundSize));
+        }
+        PerMessageDeflateServerExtensionHandshaker deflate = new PerMessageDeflateServerExtensionHandshaker(
+                level, true, MAX_WINDOW_SIZE, true, noContextTakeover, filterProvider);
+        list.add(data -> {
+            if (!PERMESSAGE_DEFLATE.equals(data.name())) {
+                return null;
+            }
+            WebSocketServerExtension extension = deflate.handshakeExtension(noContextTakeover ? withServerNoContext(data) : data);
+            return extension == null ? null : new BoundedInboundExtension(extension, maxInboundSize);
+        });
+        handshakers = list.toArray(new WebSocketServerExtensionHandshaker[0]);
+
+        log.info("{}初始化完成, threshold: {}B, level: {}, noContextTakeover: {}, dictionary: {}B, maxInbound: {}B",
+                TAG, threshold, level, noContextTakeover, dictionary == null ? 0 : dictionary.length, maxInboundSize);
+    }
+
+    /**
+     * 为新连接创建扩展协商处理器，需放在 HttpObjectAggregator 之后、WebSocket 握手之前
+     */
+    public WebSocketServerExtensionHandler newExtensionHandler() {
+        return new WebSocketServerExtensionHandler(handshakers);
+    }
+
+    /**
+     * 视作客户端请求了 server_no_context_takeover，由 Netty 的握手器生成无上下文的编码器并写入响应参数
+     */
+    private static WebSocketExtensionData withServerNoContext(WebSocketExtensionData data) {
+        if (data.parameters().containsKey(SERVER_NO_CONTEXT)) {
+            return data;
+        }
+        Map<String, String> parameters = new HashMap<>(data.parameters());
+        parameters.put(SERVER_NO_CONTEXT, null);
+        return new WebSocketExtensionData(data.name(), parameters);
+    }
+
+    /**
+     * 标准 permessage-deflate 协商结果：解码器换成有解压上限的实现，其余沿用 Netty
+     * 响应中带 client_no_context_takeover 时客户端每条消息独立压缩，解码器可在消息结束时重置上下文
+     */
+    private static final class BoundedInboundExtension implements WebSocketServerExtension {
+
+        private final WebSocketServerExtension delegate;
+        private final int maxInboundSize;
+
+        private BoundedInboundExtension(WebSocketServerExtension delegate, int maxInboundSize) {
+            this.delegate = delegate;
+            this.maxInboundSize = maxInboundSize;
+        }
+
+        @Override
+        public int rsv() {
+            return delegate.rsv();
+        }
+
+        @Override
+        public WebSocketExtensionEncoder newExtensionEncoder() {
+            return delegate.newExtensionEncoder();
+        }
+
+        @Override
+        public WebSocketExtensionDecoder newExtensionDecoder() {
+            boolean clientNoContext = delegate.newReponseData().parameters().containsKey(CLIENT_NO_CONTEXT);
+            return new BoundedPerMessageDeflateDecoder(clientNoContext, maxInboundSize);
+        }
+
+        @Override
+        public WebSocketExtensionData newReponseData() {
+            return delegate.newReponseData();
+        }
+    }
+
+    private byte[] loadDictionary(String path) {
+        if (StringUtils.isBlank(path)) {
+            return null;
+        }
+        try (InputStream in = resourceLoader.getResource(path).getInputStream()) {
+            byte[] dictionary = StreamUtils.copyToByteArray(in);
+            if (dictionary.length == 0) {
+                log.warn("{}预置字典为空，不启用 x-im-deflate, path: {}", TAG, path);
+                return null;
+            }
+            if (dictionary.length > MAX_DICTIONARY_SIZE) {
+                dictionary = Arrays.copyOfRange(dictionary, dictionary.length - MAX_DICTIONARY_SIZE, dictionary.length);
+            }
+            return dictionary;
+        } catch (IOException e) {
+            log.error("{}预置字典加载失败，不启用 x-im-deflate, path: {}", TAG, path, e);
+            return null;
+        }
+    }
+}
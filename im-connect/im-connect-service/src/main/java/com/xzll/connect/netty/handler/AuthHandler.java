@@ -9,16 +9,20 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
+import com.xzll.common.utils.AsyncRedissonUtils;
 import com.xzll.common.utils.RedissonUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import com.xzll.connect.util.TokenUtils;
+import com.xzll.connect.service.TokenVerifyService;
 
 import java.net.InetSocketAddress;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -32,6 +36,8 @@ import java.util.concurrent.TimeUnit;
  * 6. IP白名单支持（分布式）
  * 7. 多设备登录控制
  * 8. 修复静态初始化Bean获取问题
+ * 9. 握手认证的Redis访问改为异步（AsyncRedissonUtils），认证期间暂停读取，不阻塞IO线程
+ * 10. Token 本地验签并缓存验证结果，Redis 只用于吊销校验
  * 
  * @Author: hzz
  * @Date: 2022/6/8 17:26:24
@@ -42,9 +48,12 @@ import java.util.concurrent.TimeUnit;
 @ChannelHandler.Sharable
 public class AuthHandler extends ChannelInboundHandlerAdapter {
 
-    // 注入RedissonUtils，避免静态初始化问题
+    // 连接认证链路上的Redis访问全部异步，不阻塞IO线程
     @Autowired
-    private RedissonUtils redissonUtils;
+    private AsyncRedissonUtils asyncRedissonUtils;
+
+    @Autowired
+    private TokenVerifyService tokenVerifyService;
     
     // ============= Redis Key 前缀定义 =============
     private static final String AUTH_FAILURE_KEY_PREFIX = "im:auth:failure:";
@@ -57,10 +66,6 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
     @Value("${im.netty.auth.enabled:true}")
     private boolean authEnabled;
     
-    // Token过期时间检查
-    @Value("${im.netty.auth.token-expire-check:true}")
-    private boolean tokenExpireCheck;
-    
     // 最大认证失败次数
     @Value("${im.netty.auth.max-auth-failures:50}")
     private int maxAuthFailures;
@@ -80,29 +85,67 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
         FullHttpRequest request = (FullHttpRequest) msg;
         String clientIp = getClientIp(ctx);
         
-        try {
-            // 如果认证被禁用，使用测试模式
-            if (!authEnabled) {
-                handleTestMode(ctx, request, clientIp);
-                return;
+        // 如果认证被禁用，使用测试模式
+        if (!authEnabled) {
+            handleTestMode(ctx, request, clientIp);
+            return;
+        }
+        
+        // Redis 校验全部异步执行，期间暂停读取，结果回到 channel 所在的 EventLoop 再处理
+        ctx.channel().config().setAutoRead(false);
+        authenticate(request, clientIp)
+                .whenCompleteAsync((result, e) -> {
+                    if (e != null) {
+                        log.error("认证处理异常，IP：{}", clientIp, e);
+                        ReferenceCountUtil.release(request);
+                        handleAuthFailure(ctx, clientIp, "认证处理异常");
+                    } else {
+                        applyAuthResult(ctx, request, clientIp, result);
+                    }
+                    ctx.channel().config().setAutoRead(true);
+                }, ctx.executor());
+    }
+
+    /**
+     * 认证流程：IP锁定 -> IP白名单 -> Token校验，不在 IO 线程上等待 Redis
+     */
+    private CompletionStage<AuthResult> authenticate(FullHttpRequest request, String clientIp) {
+        return isIpLocked(clientIp).<AuthResult>thenCompose(locked -> {
+            if (locked) {
+                return CompletableFuture.completedFuture(AuthResult.LOCKED);
             }
-            
-            // 检查IP是否被锁定
-            if (isIpLocked(clientIp)) {
+            return isIpWhitelisted(clientIp).<AuthResult>thenCompose(whitelisted -> whitelisted
+                    ? CompletableFuture.completedFuture(AuthResult.WHITELISTED)
+                    : performAuthentication(request, clientIp));
+        });
+    }
+
+    /**
+     * 在 EventLoop 上根据认证结果调整 pipeline
+     */
+    private void applyAuthResult(ChannelHandlerContext ctx, FullHttpRequest request, String clientIp, AuthResult result) {
+        if (!ctx.channel().isActive()) {
+            ReferenceCountUtil.release(request);
+            return;
+        }
+        switch (result.outcome) {
+            case LOCKED:
                 log.warn("IP认证被锁定，拒绝连接：{}", clientIp);
+                ReferenceCountUtil.release(request);
                 ctx.channel().close();
-                return;
-            }
-            
-            // 检查IP白名单
-            if (isIpWhitelisted(clientIp)) {
+                break;
+            case WHITELISTED:
                 log.info("IP在白名单中，跳过认证：{}", clientIp);
                 handleWhitelistAccess(ctx, request, clientIp);
-                return;
-            }
-            
-            // 执行正常认证流程
-            if (performAuthentication(ctx, request, clientIp)) {
+                break;
+            case SUCCESS:
+                // 【重要】只设置Channel属性，不设置LocalChannelManager映射
+                // 原因：此时还是HTTP阶段，WebSocket握手还未完成，握手可能失败
+                // LocalChannelManager映射将在握手成功后统一设置，确保状态一致性
+                // 多设备登录的处理也在LocalChannelManager.addUserChannel中完成
+                ctx.channel().attr(ImConstant.USER_ID_KEY).setIfAbsent(result.uid);
+                log.info("认证成功：IP={}, uid={}", clientIp, result.uid);
+                
                 // 认证成功，重置失败计数
                 resetAuthFailures(clientIp);
                 
@@ -110,115 +153,55 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
                 ctx.pipeline().remove(this);
                 
                 // 继续处理请求
-                ctx.fireChannelRead(msg);
-            }
-            
-        } catch (Exception e) {
-            log.error("认证处理异常，IP：{}", clientIp, e);
-            handleAuthFailure(ctx, clientIp, "认证处理异常");
+                ctx.fireChannelRead(request);
+                break;
+            default:
+                ReferenceCountUtil.release(request);
+                handleAuthFailure(ctx, clientIp, result.reason);
+                break;
         }
     }
 
     /**
      * 执行认证逻辑
      */
-    private boolean performAuthentication(ChannelHandlerContext ctx, FullHttpRequest request, String clientIp) {
+    private CompletionStage<AuthResult> performAuthentication(FullHttpRequest request, String clientIp) {
         HttpHeaders headers = request.headers();
         
         // 检查必需的认证头
         if (Objects.isNull(headers) || headers.isEmpty()) {
             log.warn("请求头为空，认证失败：{}", clientIp);
-            handleAuthFailure(ctx, clientIp, "请求头为空");
-            return false;
+            return CompletableFuture.completedFuture(AuthResult.failed("请求头为空"));
         }
         
         String token = headers.get(ImConstant.TOKEN);
         if (StringUtils.isEmpty(token)) {
             log.warn("Token为空，认证失败：{}", clientIp);
-            handleAuthFailure(ctx, clientIp, "Token为空");
-            return false;
+            return CompletableFuture.completedFuture(AuthResult.failed("Token为空"));
         }
         
         // 验证Token并获取用户ID
-        String uid = validateToken(token);
-        if (StringUtils.isBlank(uid)) {
-            log.warn("Token无效，认证失败：{}, token: {}", clientIp, token);
-            handleAuthFailure(ctx, clientIp, "Token无效");
-            return false;
-        }
-        
-        // 检查用户状态
-        if (!isUserValid(uid)) {
-            log.warn("用户状态异常，认证失败：{}, uid: {}", clientIp, uid);
-            handleAuthFailure(ctx, clientIp, "用户状态异常");
-            return false;
-        }
-        
-        // 【重要】只设置Channel属性，不设置LocalChannelManager映射
-        // 原因：此时还是HTTP阶段，WebSocket握手还未完成，握手可能失败
-        // LocalChannelManager映射将在握手成功后统一设置，确保状态一致性
-        // 多设备登录的处理也在LocalChannelManager.addUserChannel中完成
-        ctx.channel().attr(ImConstant.USER_ID_KEY).setIfAbsent(uid);
-        
-        log.info("认证成功：IP={}, uid={}, token={}", clientIp, uid, token);
-        return true;
+        return validateToken(token).thenApply(uid -> {
+            if (StringUtils.isBlank(uid)) {
+                log.warn("Token无效，认证失败：{}, token: {}", clientIp, token);
+                return AuthResult.failed("Token无效");
+            }
+            
+            // 检查用户状态
+            if (!isUserValid(uid)) {
+                log.warn("用户状态异常，认证失败：{}, uid: {}", clientIp, uid);
+                return AuthResult.failed("用户状态异常");
+            }
+            return AuthResult.success(uid);
+        });
     }
 
     /**
      * 验证Token（新版本 - 支持设备类型和MD5）
+     * 本地验签 + 已验证缓存，未命中时只查一次 Redis 做吊销校验，见 {@link TokenVerifyService}
      */
-    private String validateToken(String token) {
-        try {
-            // 验证Token格式
-            if (!TokenUtils.isValidJwtFormat(token)) {
-                log.warn("Token格式无效，不是有效的JWT格式：{}", token);
-                return null;
-            }
-            
-            // 解析Token获取用户信息
-            TokenUtils.TokenInfo tokenInfo = TokenUtils.parseTokenInfo(token);
-            
-            if (tokenInfo == null) {
-                log.warn("无法解析Token信息：{}", token);
-                return null;
-            }
-            
-            // 构建Redis Key：USER_TOKEN_KEY + userId + ":" + deviceType + ":" + tokenMd5
-            String redisKey = tokenInfo.buildRedisKey(ImConstant.RedisKeyConstant.USER_TOKEN_KEY);
-            
-            // 从Redis获取存储的用户ID
-            String storedUid = redissonUtils.getString(redisKey);
-            
-            if (StringUtils.isNotBlank(storedUid)) {
-                // 验证存储的用户ID与Token中解析的用户ID是否一致
-                if (!storedUid.equals(tokenInfo.getUserId())) {
-                    log.warn("Token中的用户ID与Redis存储的不一致：token_uid={}, stored_uid={}", 
-                        tokenInfo.getUserId(), storedUid);
-                    return null;
-                }
-                
-                // 如果启用了Token过期检查，验证Redis key的过期时间
-                if (tokenExpireCheck) {
-                    Long expireTime = redissonUtils.getExpire(redisKey, TimeUnit.MILLISECONDS);
-                    if (expireTime != null && expireTime < 0) {
-                        log.warn("Token已过期：redisKey={}, tokenInfo={}", redisKey, tokenInfo);
-                        return null;
-                    }
-                }
-                
-                log.debug("Token验证成功：userId={}, deviceType={}, redisKey={}", 
-                    tokenInfo.getUserId(), tokenInfo.getDeviceType().getDescription(), redisKey);
-                
-                return tokenInfo.getUserId();
-            } else {
-                log.warn("Redis中未找到Token记录：redisKey={}, tokenInfo={}", redisKey, tokenInfo);
-            }
-            
-        } catch (Exception e) {
-            log.error("Token验证异常：token={}", token, e);
-        }
-        
-        return null;
+    private CompletionStage<String> validateToken(String token) {
+        return tokenVerifyService.verify(token);
     }
 
     /**
@@ -285,33 +268,25 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
 
     /**
      * 处理认证失败（Redis版本）
+     * 立即关闭连接，失败计数与锁定异步更新
      */
     private void handleAuthFailure(ChannelHandlerContext ctx, String clientIp, String reason) {
-        try {
-            // 获取当前失败次数
-            String failureKey = AUTH_FAILURE_KEY_PREFIX + clientIp;
-            String currentFailuresStr = redissonUtils.getString(failureKey);
-            int currentFailures = StringUtils.isNotBlank(currentFailuresStr) ? 
-                Integer.parseInt(currentFailuresStr) : 0;
-            
-            // 增加失败计数
-            currentFailures++;
-            
-            // 设置失败计数，过期时间为锁定时长的2倍（确保计数不会无限累积）
-            redissonUtils.setString(failureKey, String.valueOf(currentFailures), 
-                lockoutDurationMinutes * 2, TimeUnit.MINUTES);
-            
-            log.warn("认证失败：IP={}, 原因={}, 失败次数={}", clientIp, reason, currentFailures);
-            
-            // 检查是否需要锁定IP
-            if (currentFailures >= maxAuthFailures) {
-                lockIp(clientIp);
-                log.warn("IP认证失败次数过多，已锁定：{}, 锁定时长：{}分钟", clientIp, lockoutDurationMinutes);
-            }
-            
-        } catch (Exception e) {
-            log.error("处理认证失败异常：{}", clientIp, e);
-        }
+        String failureKey = AUTH_FAILURE_KEY_PREFIX + clientIp;
+        // 原子计数，过期时间为锁定时长的2倍（确保计数不会无限累积），并发失败不会少计
+        asyncRedissonUtils.incrementAsync(failureKey, lockoutDurationMinutes * 2L, TimeUnit.MINUTES)
+                .<Void>thenCompose(currentFailures -> {
+                    log.warn("认证失败：IP={}, 原因={}, 失败次数={}", clientIp, reason, currentFailures);
+
+                    // 检查是否需要锁定IP
+                    if (currentFailures >= maxAuthFailures) {
+                        log.warn("IP认证失败次数过多，已锁定：{}, 锁定时长：{}分钟", clientIp, lockoutDurationMinutes);
+                        return lockIp(clientIp);
+                    }
+                    return CompletableFuture.completedFuture(null);
+                }).exceptionally(e -> {
+                    log.error("处理认证失败异常：{}", clientIp, e);
+                    return null;
+                });
         
         // 关闭连接
         ctx.channel().close();
@@ -320,58 +295,50 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
     /**
      * 检查IP是否被锁定（Redis版本）
      */
-    private boolean isIpLocked(String ip) {
-        try {
-            String lockKey = IP_LOCKED_KEY_PREFIX + ip;
-            String lockValue = redissonUtils.getString(lockKey);
-            return StringUtils.isNotBlank(lockValue);
-        } catch (Exception e) {
-            log.error("检查IP锁定状态异常：{}", ip, e);
-            return false; // 异常时不锁定，避免误伤
-        }
+    private CompletionStage<Boolean> isIpLocked(String ip) {
+        String lockKey = IP_LOCKED_KEY_PREFIX + ip;
+        return asyncRedissonUtils.getString(lockKey)
+                .thenApply(StringUtils::isNotBlank)
+                .exceptionally(e -> {
+                    log.error("检查IP锁定状态异常：{}", ip, e);
+                    return false; // 异常时不锁定，避免误伤
+                });
     }
 
     /**
      * 锁定IP（Redis版本）
      */
-    private void lockIp(String ip) {
-        try {
-            String lockKey = IP_LOCKED_KEY_PREFIX + ip;
-            String lockValue = String.valueOf(System.currentTimeMillis());
-            
-            // 设置锁定标记，过期时间为配置的锁定时长
-            redissonUtils.setString(lockKey, lockValue, lockoutDurationMinutes, TimeUnit.MINUTES);
-            
-            log.info("IP已锁定：{}, 锁定时长：{}分钟", ip, lockoutDurationMinutes);
-        } catch (Exception e) {
-            log.error("锁定IP异常：{}", ip, e);
-        }
+    private CompletionStage<Void> lockIp(String ip) {
+        String lockKey = IP_LOCKED_KEY_PREFIX + ip;
+        String lockValue = String.valueOf(System.currentTimeMillis());
+        
+        // 设置锁定标记，过期时间为配置的锁定时长
+        return asyncRedissonUtils.setString(lockKey, lockValue, lockoutDurationMinutes, TimeUnit.MINUTES)
+                .thenRun(() -> log.info("IP已锁定：{}, 锁定时长：{}分钟", ip, lockoutDurationMinutes));
     }
 
     /**
      * 检查IP是否在白名单中（Redis版本）
      */
-    private boolean isIpWhitelisted(String ip) {
-        try {
-            String whitelistKey = IP_WHITELIST_KEY_PREFIX + ip;
-            String whitelistValue = redissonUtils.getString(whitelistKey);
-            return StringUtils.isNotBlank(whitelistValue);
-        } catch (Exception e) {
-            log.error("检查IP白名单状态异常：{}", ip, e);
-            return false;
-        }
+    private CompletionStage<Boolean> isIpWhitelisted(String ip) {
+        String whitelistKey = IP_WHITELIST_KEY_PREFIX + ip;
+        return asyncRedissonUtils.getString(whitelistKey)
+                .thenApply(StringUtils::isNotBlank)
+                .exceptionally(e -> {
+                    log.error("检查IP白名单状态异常：{}", ip, e);
+                    return false;
+                });
     }
 
     /**
      * 重置认证失败计数（Redis版本）
      */
     private void resetAuthFailures(String ip) {
-        try {
-            String failureKey = AUTH_FAILURE_KEY_PREFIX + ip;
-            redissonUtils.deleteString(failureKey);
-        } catch (Exception e) {
+        String failureKey = AUTH_FAILURE_KEY_PREFIX + ip;
+        asyncRedissonUtils.deleteString(failureKey).exceptionally(e -> {
             log.error("重置认证失败计数异常：{}", ip, e);
-        }
+            return null;
+        });
     }
 
     /**
@@ -386,6 +353,35 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * 认证结果
+     */
+    private static final class AuthResult {
+        
+        enum Outcome { SUCCESS, FAILED, LOCKED, WHITELISTED }
+        
+        static final AuthResult LOCKED = new AuthResult(Outcome.LOCKED, null, null);
+        static final AuthResult WHITELISTED = new AuthResult(Outcome.WHITELISTED, null, null);
+        
+        final Outcome outcome;
+        final String uid;
+        final String reason;
+        
+        private AuthResult(Outcome outcome, String uid, String reason) {
+            this.outcome = outcome;
+            this.uid = uid;
+            this.reason = reason;
+        }
+        
+        static AuthResult success(String uid) {
+            return new AuthResult(Outcome.SUCCESS, uid, null);
+        }
+        
+        static AuthResult failed(String reason) {
+            return new AuthResult(Outcome.FAILED, null, reason);
+        }
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         String clientIp = getClientIp(ctx);
@@ -481,8 +477,8 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
             if (redissonUtils == null) return 0;
             
             String failureKey = AUTH_FAILURE_KEY_PREFIX + ip;
-            String failureCountStr = redissonUtils.getString(failureKey);
-            return StringUtils.isNotBlank(failureCountStr) ? Integer.parseInt(failureCountStr) : 0;
+            // 计数由 incrementAsync 以纯整数写入，按原子计数读取
+            return (int) redissonUtils.getAtomicLong(failureKey).get();
         } catch (Exception e) {
             log.error("获取认证失败次数异常：{}", ip, e);
             return 0;
@@ -1,9 +1,11 @@
 package com.xzll.connect.netty.handler;
 
+import com.xzll.common.utils.AsyncRedissonUtils;
 import com.xzll.common.utils.RedissonUtils;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +13,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -20,6 +24,7 @@ import java.util.concurrent.TimeUnit;
  * 2. 限制全局最大连接数（分布式）
  * 3. 连接频率限制（分布式）
  * 4. 支持分布式部署，所有数据存储在Redis中
+ * 5. 准入检查异步执行，检查完成前暂停读取，不阻塞IO线程
  */
 @Slf4j
 @Component
@@ -27,9 +32,10 @@ import java.util.concurrent.TimeUnit;
 public class ConnectionLimitHandler extends ChannelInboundHandlerAdapter {
 
     // ============= Redis Key 前缀定义 =============
-    private static final String IP_CONNECTION_COUNT_KEY_PREFIX = "im:limit:conn:";
-    private static final String IP_CONNECTION_RATE_KEY_PREFIX = "im:limit:rate:";
-    private static final String GLOBAL_CONNECTION_COUNT_KEY = "im:limit:global:count";
+    // 计数器以纯整数（StringCodec）存储，通过 INCRBY 原子增减
+    private static final String IP_CONNECTION_COUNT_KEY_PREFIX = "im:limit:counter:conn:";
+    private static final String IP_CONNECTION_RATE_KEY_PREFIX = "im:limit:counter:rate:";
+    private static final String GLOBAL_CONNECTION_COUNT_KEY = "im:limit:counter:global";
     private static final String IP_BLOCKED_KEY_PREFIX = "im:limit:blocked:";
     
     // ============= 配置参数 =============
@@ -46,69 +52,50 @@ public class ConnectionLimitHandler extends ChannelInboundHandlerAdapter {
     @Value("${im.netty.security.max-connections-per-minute:6000}")
     private int maxConnectionsPerMinute;
     
-    // 注入RedissonUtils，避免静态初始化问题
+    // 通过准入检查、已计入计数器的连接标记
+    private static final AttributeKey<Boolean> ADMITTED_KEY = AttributeKey.valueOf("connectionLimitAdmitted");
+    
+    // 准入检查的Redis访问全部异步，不阻塞IO线程
     @Autowired
-    private RedissonUtils redissonUtils;
+    private AsyncRedissonUtils asyncRedissonUtils;
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         String clientIp = getClientIp(ctx);
         
-        try {
-            // 检查IP是否被手动封禁
-            if (isIpBlocked(clientIp)) {
-                log.warn("IP已被封禁，拒绝连接：{}", clientIp);
+        // 准入检查异步执行，结果出来之前不读取任何数据，也不向后传播 channelActive
+        ctx.channel().config().setAutoRead(false);
+        checkAdmission(clientIp).whenCompleteAsync((admitted, e) -> {
+            if (e != null) {
+                log.error("连接限制检查异常：{}", clientIp, e);
+                // 异常时为了安全起见，拒绝连接
                 ctx.close();
                 return;
             }
-            
-            // 检查全局连接数限制
-            if (!checkGlobalConnectionLimit()) {
-                log.warn("全局连接数超过限制，拒绝连接：{}, 限制：{}", clientIp, maxTotalConnections);
+            if (!admitted) {
                 ctx.close();
                 return;
             }
-            
-            // 检查单IP连接数限制
-            if (!checkIpConnectionLimit(clientIp)) {
-                log.warn("IP连接数超过限制，拒绝连接：{}, 限制：{}", clientIp, maxConnectionsPerIp);
-                ctx.close();
+            if (!ctx.channel().isActive()) {
+                // 检查期间客户端已断开，计数器已增加，需要回退
+                decrementConnectionCounters(clientIp);
                 return;
             }
-            
-            // 检查连接频率限制
-            if (!checkIpConnectionRate(clientIp)) {
-                log.warn("IP连接频率超过限制，拒绝连接：{}, 限制：{}/分钟", clientIp, maxConnectionsPerMinute);
-                ctx.close();
-                return;
-            }
-            
-            // 通过所有检查，增加计数器
-            incrementConnectionCounters(clientIp);
-            
+            ctx.channel().attr(ADMITTED_KEY).set(Boolean.TRUE);
             log.debug("连接通过限制检查：{}", clientIp);
-            
-        } catch (Exception e) {
-            log.error("连接限制检查异常：{}", clientIp, e);
-            // 异常时为了安全起见，拒绝连接
-            ctx.close();
-            return;
-        }
-        
-        super.channelActive(ctx);
+            ctx.fireChannelActive();
+            ctx.channel().config().setAutoRead(true);
+        }, ctx.executor());
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         String clientIp = getClientIp(ctx);
         
-        try {
-            // 减少连接计数
+        // 只有通过准入检查的连接才计入过计数器
+        if (Boolean.TRUE.equals(ctx.channel().attr(ADMITTED_KEY).getAndSet(null))) {
             decrementConnectionCounters(clientIp);
             log.debug("连接断开，更新计数器：{}", clientIp);
-            
-        } catch (Exception e) {
-            log.error("更新连接计数器异常：{}", clientIp, e);
         }
         
         super.channelInactive(ctx);
@@ -124,121 +111,92 @@ public class ConnectionLimitHandler extends ChannelInboundHandlerAdapter {
     // ============= Redis 分布式限制功能 =============
 
     /**
-     * 检查全局连接数限制
+     * 准入检查：封禁状态读取与全局连接数、单IP连接数、连接频率三个计数器的原子自增并行发出，一次往返完成判断；
+     * 自增后超过限制则回退连接计数（频率计数保留，被拒绝的连接尝试同样计入频率）
      */
-    private boolean checkGlobalConnectionLimit() {
-        try {
-            String countStr = redissonUtils.getString(GLOBAL_CONNECTION_COUNT_KEY);
-            int currentCount = StringUtils.isNotBlank(countStr) ? Integer.parseInt(countStr) : 0;
-            
-            return currentCount < maxTotalConnections;
-        } catch (Exception e) {
-            log.error("检查全局连接数限制异常", e);
-            return true; // 异常时不限制，避免误伤
-        }
-    }
-
-    /**
-     * 检查IP连接数限制
-     */
-    private boolean checkIpConnectionLimit(String ip) {
-        try {
-            String connectionKey = IP_CONNECTION_COUNT_KEY_PREFIX + ip;
-            String countStr = redissonUtils.getString(connectionKey);
-            int currentCount = StringUtils.isNotBlank(countStr) ? Integer.parseInt(countStr) : 0;
+    private CompletionStage<Boolean> checkAdmission(String clientIp) {
+        String connectionKey = IP_CONNECTION_COUNT_KEY_PREFIX + clientIp;
+        String rateKey = IP_CONNECTION_RATE_KEY_PREFIX + clientIp;
+        
+        CompletableFuture<Boolean> blockedFuture = isIpBlocked(clientIp).toCompletableFuture();
+        CompletableFuture<Long> globalFuture = addCount(GLOBAL_CONNECTION_COUNT_KEY, 1, 0, TimeUnit.SECONDS, "增加全局连接计数异常").toCompletableFuture();
+        CompletableFuture<Long> ipFuture = addCount(connectionKey, 1, 1, TimeUnit.HOURS, "增加IP连接计数异常").toCompletableFuture();
+        CompletableFuture<Long> rateFuture = asyncRedissonUtils.incrementAsync(rateKey, 1, TimeUnit.MINUTES)
+                .exceptionally(e -> {
+                    log.error("增加IP连接频率计数异常：{}", rateKey, e);
+                    return null;
+                }).toCompletableFuture();
+        
+        return CompletableFuture.allOf(blockedFuture, globalFuture, ipFuture, rateFuture).thenApply(v -> {
+            // 自增异常时为 null：不限制（避免误伤），也无需回退
+            Long globalCount = globalFuture.join();
+            Long ipCount = ipFuture.join();
+            Long rate = rateFuture.join();
             
-            return currentCount < maxConnectionsPerIp;
-        } catch (Exception e) {
-            log.error("检查IP连接数限制异常：{}", ip, e);
-            return true; // 异常时不限制，避免误伤
-        }
-    }
-
-    /**
-     * 检查IP连接频率限制
-     */
-    private boolean checkIpConnectionRate(String ip) {
-        try {
-            String rateKey = IP_CONNECTION_RATE_KEY_PREFIX + ip;
-            String countStr = redissonUtils.getString(rateKey);
-            int currentRate = StringUtils.isNotBlank(countStr) ? Integer.parseInt(countStr) : 0;
+            boolean admitted = true;
+            // 检查IP是否被手动封禁
+            if (blockedFuture.join()) {
+                log.warn("IP已被封禁，拒绝连接：{}", clientIp);
+                admitted = false;
+            } else if (globalCount != null && globalCount > maxTotalConnections) {
+                // 检查全局连接数限制（计数已包含本连接）
+                log.warn("全局连接数超过限制，拒绝连接：{}, 限制：{}", clientIp, maxTotalConnections);
+                admitted = false;
+            } else if (ipCount != null && ipCount > maxConnectionsPerIp) {
+                // 检查单IP连接数限制
+                log.warn("IP连接数超过限制，拒绝连接：{}, 限制：{}", clientIp, maxConnectionsPerIp);
+                admitted = false;
+            } else if (rate != null && rate > maxConnectionsPerMinute) {
+                // 检查连接频率限制
+                log.warn("IP连接频率超过限制，拒绝连接：{}, 限制：{}/分钟", clientIp, maxConnectionsPerMinute);
+                admitted = false;
+            }
             
-            return currentRate < maxConnectionsPerMinute;
-        } catch (Exception e) {
-            log.error("检查IP连接频率限制异常：{}", ip, e);
-            return true; // 异常时不限制，避免误伤
-        }
+            if (!admitted) {
+                // 回退本次已成功的连接计数
+                if (globalCount != null) {
+                    addCount(GLOBAL_CONNECTION_COUNT_KEY, -1, 0, TimeUnit.SECONDS, "回退全局连接计数异常");
+                }
+                if (ipCount != null) {
+                    addCount(connectionKey, -1, 1, TimeUnit.HOURS, "回退IP连接计数异常");
+                }
+            }
+            return admitted;
+        });
     }
 
     /**
-     * 增加连接计数器
+     * 原子增减连接计数（同时刷新过期时间，降到0时删除key），异常时返回 null
      */
-    private void incrementConnectionCounters(String ip) {
-        try {
-            // 增加全局连接计数
-            String globalCountStr = redissonUtils.getString(GLOBAL_CONNECTION_COUNT_KEY);
-            int globalCount = StringUtils.isNotBlank(globalCountStr) ? Integer.parseInt(globalCountStr) : 0;
-            redissonUtils.setString(GLOBAL_CONNECTION_COUNT_KEY, String.valueOf(globalCount + 1));
-            
-            // 增加IP连接计数（设置较长的过期时间，防止内存泄漏）
-            String connectionKey = IP_CONNECTION_COUNT_KEY_PREFIX + ip;
-            String countStr = redissonUtils.getString(connectionKey);
-            int count = StringUtils.isNotBlank(countStr) ? Integer.parseInt(countStr) : 0;
-            redissonUtils.setString(connectionKey, String.valueOf(count + 1), 1, TimeUnit.HOURS);
-            
-            // 增加IP连接频率计数（1分钟过期）
-            String rateKey = IP_CONNECTION_RATE_KEY_PREFIX + ip;
-            String rateStr = redissonUtils.getString(rateKey);
-            int rate = StringUtils.isNotBlank(rateStr) ? Integer.parseInt(rateStr) : 0;
-            redissonUtils.setString(rateKey, String.valueOf(rate + 1), 1, TimeUnit.MINUTES);
-            
-        } catch (Exception e) {
-            log.error("增加连接计数器异常：{}", ip, e);
-        }
+    private CompletionStage<Long> addCount(String key, long delta, long timeout, TimeUnit unit, String errorMessage) {
+        return asyncRedissonUtils.addAndGetAsync(key, delta, timeout, unit)
+                .exceptionally(e -> {
+                    log.error("{}：{}", errorMessage, key, e);
+                    return null;
+                });
     }
 
     /**
-     * 减少连接计数器
+     * 减少连接计数器，写入不等待结果
      */
     private void decrementConnectionCounters(String ip) {
-        try {
-            // 减少全局连接计数
-            String globalCountStr = redissonUtils.getString(GLOBAL_CONNECTION_COUNT_KEY);
-            int globalCount = StringUtils.isNotBlank(globalCountStr) ? Integer.parseInt(globalCountStr) : 0;
-            if (globalCount > 0) {
-                redissonUtils.setString(GLOBAL_CONNECTION_COUNT_KEY, String.valueOf(globalCount - 1));
-            }
-            
-            // 减少IP连接计数
-            String connectionKey = IP_CONNECTION_COUNT_KEY_PREFIX + ip;
-            String countStr = redissonUtils.getString(connectionKey);
-            int count = StringUtils.isNotBlank(countStr) ? Integer.parseInt(countStr) : 0;
-            if (count > 0) {
-                if (count == 1) {
-                    // 如果计数为1，直接删除key
-                    redissonUtils.deleteString(connectionKey);
-                } else {
-                    redissonUtils.setString(connectionKey, String.valueOf(count - 1), 1, TimeUnit.HOURS);
-                }
-            }
-            
-        } catch (Exception e) {
-            log.error("减少连接计数器异常：{}", ip, e);
-        }
+        // 减少全局连接计数
+        addCount(GLOBAL_CONNECTION_COUNT_KEY, -1, 0, TimeUnit.SECONDS, "减少全局连接计数异常");
+        // 减少IP连接计数（设置较长的过期时间，防止内存泄漏）
+        addCount(IP_CONNECTION_COUNT_KEY_PREFIX + ip, -1, 1, TimeUnit.HOURS, "减少IP连接计数异常");
     }
 
     /**
      * 检查IP是否被封禁
      */
-    private boolean isIpBlocked(String ip) {
-        try {
-            String blockedKey = IP_BLOCKED_KEY_PREFIX + ip;
-            String blockedValue = redissonUtils.getString(blockedKey);
-            return StringUtils.isNotBlank(blockedValue);
-        } catch (Exception e) {
-            log.error("检查IP封禁状态异常：{}", ip, e);
-            return false;
-        }
+    private CompletionStage<Boolean> isIpBlocked(String ip) {
+        String blockedKey = IP_BLOCKED_KEY_PREFIX + ip;
+        return asyncRedissonUtils.getString(blockedKey)
+                .thenApply(StringUtils::isNotBlank)
+                .exceptionally(e -> {
+                    log.error("检查IP封禁状态异常：{}", ip, e);
+                    return false;
+                });
     }
 
     /**
@@ -278,8 +236,7 @@ public class ConnectionLimitHandler extends ChannelInboundHandlerAdapter {
             RedissonUtils redissonUtils = getRedissonUtils();
             if (redissonUtils == null) return 0;
             
-            String countStr = redissonUtils.getString(GLOBAL_CONNECTION_COUNT_KEY);
-            return StringUtils.isNotBlank(countStr) ? Integer.parseInt(countStr) : 0;
+            return (int) redissonUtils.getAtomicLong(GLOBAL_CONNECTION_COUNT_KEY).get();
         } catch (Exception e) {
             log.error("获取全局连接数异常", e);
             return 0;
@@ -295,8 +252,7 @@ public class ConnectionLimitHandler extends ChannelInboundHandlerAdapter {
             if (redissonUtils == null) return 0;
             
             String connectionKey = IP_CONNECTION_COUNT_KEY_PREFIX + ip;
-            String countStr = redissonUtils.getString(connectionKey);
-            return StringUtils.isNotBlank(countStr) ? Integer.parseInt(countStr) : 0;
+            return (int) redissonUtils.getAtomicLong(connectionKey).get();
         } catch (Exception e) {
             log.error("获取IP连接数异常：{}", ip, e);
             return 0;
@@ -312,8 +268,7 @@ public class ConnectionLimitHandler extends ChannelInboundHandlerAdapter {
             if (redissonUtils == null) return 0;
             
             String rateKey = IP_CONNECTION_RATE_KEY_PREFIX + ip;
-            String rateStr = redissonUtils.getString(rateKey);
-            return StringUtils.isNotBlank(rateStr) ? Integer.parseInt(rateStr) : 0;
+            return (int) redissonUtils.getAtomicLong(rateKey).get();
         } catch (Exception e) {
             log.error("获取IP连接频率异常：{}", ip, e);
             return 0;
@@ -1,10 +1,13 @@
 package com.xzll.connect.netty.handler;
 
+import com.xzll.common.utils.AsyncRedissonUtils;
 import com.xzll.common.utils.RedissonUtils;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +15,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -22,6 +27,7 @@ import java.util.concurrent.TimeUnit;
  * 3. 带宽控制（分布式）
  * 4. 自动限流和恢复（分布式）
  * 5. 支持分布式部署，所有数据存储在Redis中
+ * 6. Redis访问异步化：同一连接的消息按序串行检查，检查积压时暂停读取
  */
 @Slf4j
 @Component
@@ -29,8 +35,9 @@ import java.util.concurrent.TimeUnit;
 public class FlowControlHandler extends ChannelInboundHandlerAdapter {
 
     // ============= Redis Key 前缀定义 =============
-    private static final String IP_MESSAGE_COUNT_KEY_PREFIX = "im:flow:msg:";
-    private static final String IP_BYTE_COUNT_KEY_PREFIX = "im:flow:byte:";
+    // 计数器以纯整数（StringCodec）存储，1秒固定窗口内通过 INCRBY 原子累加
+    private static final String IP_MESSAGE_COUNT_KEY_PREFIX = "im:flow:counter:msg:";
+    private static final String IP_BYTE_COUNT_KEY_PREFIX = "im:flow:counter:byte:";
     private static final String IP_THROTTLED_KEY_PREFIX = "im:flow:throttled:";
     
     // ============= 配置参数 =============
@@ -51,154 +58,157 @@ public class FlowControlHandler extends ChannelInboundHandlerAdapter {
     @Value("${im.netty.flow-control.throttle-duration-minutes:1}")
     private int throttleDurationMinutes;
     
-    // 注入RedissonUtils，避免静态初始化问题
+    // 单连接允许积压的未完成流控检查数，超过后暂停读取
+    private static final int MAX_PENDING_CHECKS = 64;
+    
+    private static final AttributeKey<FlowState> FLOW_STATE_KEY = AttributeKey.valueOf("flowControlState");
+    
+    // 消息链路上的Redis访问全部异步，不阻塞IO线程
     @Autowired
-    private RedissonUtils redissonUtils;
+    private AsyncRedissonUtils asyncRedissonUtils;
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         String clientIp = getClientIp(ctx);
+        int messageSize = msg instanceof TextWebSocketFrame
+                ? ((TextWebSocketFrame) msg).content().readableBytes() : -1;
         
-        // 检查是否被限流
-        if (isThrottled(clientIp)) {
-            log.debug("IP被限流，丢弃消息：{}", clientIp);
-            return;
+        // 流控检查异步执行；同一连接的消息按到达顺序串行检查、按顺序放行
+        FlowState state = flowState(ctx);
+        if (++state.pending >= MAX_PENDING_CHECKS) {
+            // 检查积压过多时暂停读取，由 TCP 反压到客户端
+            ctx.channel().config().setAutoRead(false);
         }
-        
-        if (msg instanceof TextWebSocketFrame) {
-            TextWebSocketFrame frame = (TextWebSocketFrame) msg;
-            String text = frame.text();
-            int messageSize = text.getBytes().length;
+        state.tail = state.tail
+                .thenCompose(v -> checkFlow(clientIp, messageSize))
+                .handleAsync((passed, e) -> {
+                    if (--state.pending < MAX_PENDING_CHECKS && !ctx.channel().config().isAutoRead()) {
+                        ctx.channel().config().setAutoRead(true);
+                    }
+                    if (e != null) {
+                        log.error("流量控制检查异常：IP={}", clientIp, e);
+                        passed = Boolean.FALSE;
+                    }
+                    if (Boolean.TRUE.equals(passed)) {
+                        ctx.fireChannelRead(msg);
+                    } else {
+                        ReferenceCountUtil.release(msg);
+                    }
+                    return null;
+                }, ctx.executor());
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        String clientIp = getClientIp(ctx);
+        log.error("流量控制处理器异常：{}", clientIp, cause);
+        super.exceptionCaught(ctx, cause);
+    }
+
+    /**
+     * 单条消息的流控检查，返回是否放行
+     *
+     * @param messageSize 文本帧字节数，非文本消息为 -1（只检查限流状态）
+     */
+    private CompletionStage<Boolean> checkFlow(String clientIp, int messageSize) {
+        // 检查是否被限流
+        return isThrottled(clientIp).thenCompose(throttled -> {
+            if (throttled) {
+                log.debug("IP被限流，丢弃消息：{}", clientIp);
+                return CompletableFuture.completedFuture(false);
+            }
+            if (messageSize < 0) {
+                return CompletableFuture.completedFuture(true);
+            }
             
-            try {
-                // 检查消息大小限制
-                if (messageSize > maxMessageSize) {
-                    log.warn("消息大小超过限制，限流处理：IP={}, 大小={}字节, 限制={}字节", 
-                        clientIp, messageSize, maxMessageSize);
-                    throttleIp(clientIp, "消息大小超限");
-                    return;
-                }
-                
+            // 检查消息大小限制
+            if (messageSize > maxMessageSize) {
+                log.warn("消息大小超过限制，限流处理：IP={}, 大小={}字节, 限制={}字节", 
+                    clientIp, messageSize, maxMessageSize);
+                throttleIp(clientIp, "消息大小超限");
+                return CompletableFuture.completedFuture(false);
+            }
+            
+            // 消息计数与字节计数并行原子累加（窗口内首次计数时设置1秒过期），按累加后的值判断
+            String messageKey = IP_MESSAGE_COUNT_KEY_PREFIX + clientIp;
+            String byteKey = IP_BYTE_COUNT_KEY_PREFIX + clientIp;
+            CompletableFuture<Long> countFuture = asyncRedissonUtils.incrementAsync(messageKey, 1, TimeUnit.SECONDS).toCompletableFuture();
+            CompletableFuture<Long> byteFuture = asyncRedissonUtils.incrementAsync(byteKey, messageSize, 1, TimeUnit.SECONDS).toCompletableFuture();
+            return countFuture.thenCombine(byteFuture, (count, bytes) -> {
                 // 检查消息频率限制
-                if (!checkMessageFrequency(clientIp)) {
+                if (count > maxMessagesPerSecond) {
                     log.warn("消息频率超过限制，限流处理：IP={}, 限制={}/秒", clientIp, maxMessagesPerSecond);
                     throttleIp(clientIp, "消息频率超限");
-                    return;
+                    return false;
                 }
                 
                 // 检查带宽限制
-                if (!checkBandwidthLimit(clientIp, messageSize)) {
+                if (bytes > maxBytesPerSecond) {
                     log.warn("带宽超过限制，限流处理：IP={}, 限制={}字节/秒", clientIp, maxBytesPerSecond);
                     throttleIp(clientIp, "带宽超限");
-                    return;
+                    return false;
                 }
                 
-                // 更新计数器
-                updateCounters(clientIp, messageSize);
-                
                 log.debug("消息通过流控检查：IP={}, 大小={}字节", clientIp, messageSize);
-                
-            } catch (Exception e) {
+                return true;
+            }).exceptionally(e -> {
                 log.error("流量控制检查异常：IP={}", clientIp, e);
                 // 异常时为了安全起见，限流处理
                 throttleIp(clientIp, "流控检查异常");
-                return;
-            }
-        }
-        
-        super.channelRead(ctx, msg);
-    }
-
-    @Override
-    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        String clientIp = getClientIp(ctx);
-        log.error("流量控制处理器异常：{}", clientIp, cause);
-        super.exceptionCaught(ctx, cause);
+                return false;
+            });
+        });
     }
 
     // ============= Redis 分布式流控功能 =============
 
     /**
-     * 检查消息频率限制
-     */
-    private boolean checkMessageFrequency(String ip) {
-        try {
-            String messageKey = IP_MESSAGE_COUNT_KEY_PREFIX + ip;
-            String countStr = redissonUtils.getString(messageKey);
-            int currentCount = StringUtils.isNotBlank(countStr) ? Integer.parseInt(countStr) : 0;
-            
-            return currentCount < maxMessagesPerSecond;
-        } catch (Exception e) {
-            log.error("检查消息频率限制异常：{}", ip, e);
-            return false; // 异常时限制，保护系统
-        }
-    }
-
-    /**
-     * 检查带宽限制
+     * 检查IP是否被限流
      */
-    private boolean checkBandwidthLimit(String ip, int messageSize) {
-        try {
-            String byteKey = IP_BYTE_COUNT_KEY_PREFIX + ip;
-            String byteStr = redissonUtils.getString(byteKey);
-            long currentBytes = StringUtils.isNotBlank(byteStr) ? Long.parseLong(byteStr) : 0;
-            
-            return (currentBytes + messageSize) <= maxBytesPerSecond;
-        } catch (Exception e) {
-            log.error("检查带宽限制异常：{}", ip, e);
-            return false; // 异常时限制，保护系统
-        }
+    private CompletionStage<Boolean> isThrottled(String ip) {
+        String throttledKey = IP_THROTTLED_KEY_PREFIX + ip;
+        return asyncRedissonUtils.getString(throttledKey)
+                .thenApply(StringUtils::isNotBlank)
+                .exceptionally(e -> {
+                    log.error("检查IP限流状态异常：{}", ip, e);
+                    return false;
+                });
     }
 
     /**
-     * 更新计数器
+     * 限流指定IP
      */
-    private void updateCounters(String ip, int messageSize) {
-        try {
-            // 更新消息计数（每秒重置）
-            String messageKey = IP_MESSAGE_COUNT_KEY_PREFIX + ip;
-            String countStr = redissonUtils.getString(messageKey);
-            int count = StringUtils.isNotBlank(countStr) ? Integer.parseInt(countStr) : 0;
-            redissonUtils.setString(messageKey, String.valueOf(count + 1), 1, TimeUnit.SECONDS);
-            
-            // 更新字节计数（每秒重置）
-            String byteKey = IP_BYTE_COUNT_KEY_PREFIX + ip;
-            String byteStr = redissonUtils.getString(byteKey);
-            long bytes = StringUtils.isNotBlank(byteStr) ? Long.parseLong(byteStr) : 0;
-            redissonUtils.setString(byteKey, String.valueOf(bytes + messageSize), 1, TimeUnit.SECONDS);
-            
-        } catch (Exception e) {
-            log.error("更新流控计数器异常：{}", ip, e);
-        }
+    private void throttleIp(String ip, String reason) {
+        String throttledKey = IP_THROTTLED_KEY_PREFIX + ip;
+        String throttledValue = reason + ":" + System.currentTimeMillis();
+        
+        asyncRedissonUtils.setString(throttledKey, throttledValue, throttleDurationMinutes, TimeUnit.MINUTES)
+                .whenComplete((v, e) -> {
+                    if (e != null) {
+                        log.error("限流IP异常：{}", ip, e);
+                    } else {
+                        log.info("IP被限流：{}, 原因：{}, 限流时长：{}分钟", ip, reason, throttleDurationMinutes);
+                    }
+                });
     }
 
-    /**
-     * 检查IP是否被限流
-     */
-    private boolean isThrottled(String ip) {
-        try {
-            String throttledKey = IP_THROTTLED_KEY_PREFIX + ip;
-            String throttledValue = redissonUtils.getString(throttledKey);
-            return StringUtils.isNotBlank(throttledValue);
-        } catch (Exception e) {
-            log.error("检查IP限流状态异常：{}", ip, e);
-            return false;
+    private FlowState flowState(ChannelHandlerContext ctx) {
+        FlowState state = ctx.channel().attr(FLOW_STATE_KEY).get();
+        if (state == null) {
+            state = new FlowState();
+            ctx.channel().attr(FLOW_STATE_KEY).set(state);
         }
+        return state;
     }
 
     /**
-     * 限流指定IP
+     * 连接级流控状态，只在 channel 所在的 EventLoop 上读写
      */
-    private void throttleIp(String ip, String reason) {
-        try {
-            String throttledKey = IP_THROTTLED_KEY_PREFIX + ip;
-            String throttledValue = reason + ":" + System.currentTimeMillis();
-            
-            redissonUtils.setString(throttledKey, throttledValue, throttleDurationMinutes, TimeUnit.MINUTES);
-            log.info("IP被限流：{}, 原因：{}, 限流时长：{}分钟", ip, reason, throttleDurationMinutes);
-        } catch (Exception e) {
-            log.error("限流IP异常：{}", ip, e);
-        }
+    private static final class FlowState {
+        // 上一条消息的检查链尾，保证同一连接的消息按序放行
+        CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        // 尚未完成检查的消息数
+        int pending;
     }
 
     /**
@@ -290,8 +300,7 @@ public class FlowControlHandler extends ChannelInboundHandlerAdapter {
             if (redissonUtils == null) return 0;
             
             String messageKey = IP_MESSAGE_COUNT_KEY_PREFIX + ip;
-            String countStr = redissonUtils.getString(messageKey);
-            return StringUtils.isNotBlank(countStr) ? Integer.parseInt(countStr) : 0;
+            return (int) redissonUtils.getAtomicLong(messageKey).get();
         } catch (Exception e) {
             log.error("获取IP消息频率异常：{}", ip, e);
             return 0;
@@ -307,8 +316,7 @@ public class FlowControlHandler extends ChannelInboundHandlerAdapter {
             if (redissonUtils == null) return 0;
             
             String byteKey = IP_BYTE_COUNT_KEY_PREFIX + ip;
-            String byteStr = redissonUtils.getString(byteKey);
-            return StringUtils.isNotBlank(byteStr) ? Long.parseLong(byteStr) : 0;
+            return redissonUtils.getAtomicLong(byteKey).get();
         } catch (Exception e) {
             log.error("获取IP带宽使用异常：{}", ip, e);
             return 0;
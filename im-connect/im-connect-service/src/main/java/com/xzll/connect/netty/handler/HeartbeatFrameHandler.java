@@ -0,0 +1,129 @@
+package com.xzll.connect.netty.handler;
+
+import com.xzll.common.constant.ProtoResponseCode;
+import com.xzll.connect.netty.heart.AdaptiveHeartbeatPolicy;
+import com.xzll.connect.netty.heart.HeartbeatState;
+import com.xzll.grpc.ImProtoResponse;
+import com.xzll.grpc.MsgType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.Resource;
+
+/**
+ * 心跳快速通道，放在流控、认证和业务处理器之前
+ *
+ * 1. 任意 WebSocket 帧都只更新 {@link HeartbeatState} 中的读取时间（long），不再转字符串写 Channel 属性
+ * 2. Ping 直接用共享的空 Pong 应答（payload 非空时按协议原样回显），Pong 只记录时间，二者都不再向后传递
+ * 3. 应用层心跳（ImProtoRequest{type=HEARTBEAT}，编码固定为 2 字节）按字节识别，用预编码的响应应答，不做 protobuf 解析
+ * 4. 心跳应答只 write，在 channelReadComplete 中统一 flush，一次读取中的多个心跳合并为一次系统调用
+ * 5. 启用自适应心跳时负责驱动 {@link AdaptiveHeartbeatPolicy}（连接建立/关闭、按读取调整间隔）
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Component
+@ChannelHandler.Sharable
+public class HeartbeatFrameHandler extends ChannelInboundHandlerAdapter {
+
+    /**
+     * ImProtoRequest{type=HEARTBEAT} 的完整编码：field 1 varint tag + 枚举值
+     */
+    private static final byte TYPE_FIELD_TAG = 0x08;
+    private static final byte HEARTBEAT_TYPE = (byte) MsgType.HEARTBEAT_VALUE;
+
+    /**
+     * 空 Pong 帧：内容为不可释放的空缓冲区，编码时不修改帧本身，可在所有连接间共享
+     */
+    private static final PongWebSocketFrame SHARED_PONG =
+            new PongWebSocketFrame(Unpooled.unreleasableBuffer(Unpooled.EMPTY_BUFFER));
+
+    /**
+     * 预编码的应用层心跳响应，每次写出时 duplicate 一份独立的读写索引
+     */
+    private static final ByteBuf HEARTBEAT_RESPONSE = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(
+            ImProtoResponse.newBuilder()
+                    .setType(MsgType.HEARTBEAT)
+                    .setCode(ProtoResponseCode.SUCCESS)
+                    .build()
+                    .toByteArray()));
+
+    @Resource
+    private AdaptiveHeartbeatPolicy adaptiveHeartbeatPolicy;
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (adaptiveHeartbeatPolicy.isEnabled()) {
+            adaptiveHeartbeatPolicy.onActive(ctx);
+        }
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        adaptiveHeartbeatPolicy.onInactive(ctx.channel());
+        // 连接关闭时归还失败计数，否则心跳失败中断开的连接会让失败连接数只增不减
+        HeartbeatState.of(ctx.channel()).resetFailures();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof WebSocketFrame)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        HeartbeatState state = HeartbeatState.of(ctx.channel());
+        long now = System.currentTimeMillis();
+        state.touch(now);
+        adaptiveHeartbeatPolicy.onRead(ctx, state, now);
+
+        if (msg instanceof PingWebSocketFrame) {
+            PingWebSocketFrame ping = (PingWebSocketFrame) msg;
+            if (ping.content().isReadable()) {
+                ctx.write(new PongWebSocketFrame(ping.content().retain()), ctx.voidPromise());
+            } else {
+                ctx.write(SHARED_PONG, ctx.voidPromise());
+            }
+            ReferenceCountUtil.release(msg);
+            state.markFlushPending();
+            return;
+        }
+        if (msg instanceof PongWebSocketFrame) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (msg instanceof BinaryWebSocketFrame && ((BinaryWebSocketFrame) msg).isFinalFragment()
+                && isHeartbeatRequest(((BinaryWebSocketFrame) msg).content())) {
+            ReferenceCountUtil.release(msg);
+            ctx.write(new BinaryWebSocketFrame(HEARTBEAT_RESPONSE.duplicate()), ctx.voidPromise());
+            state.markFlushPending();
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (HeartbeatState.of(ctx.channel()).takeFlushPending()) {
+            ctx.flush();
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    private static boolean isHeartbeatRequest(ByteBuf content) {
+        int index = content.readerIndex();
+        return content.readableBytes() == 2
+                && content.getByte(index) == TYPE_FIELD_TAG
+                && content.getByte(index + 1) == HEARTBEAT_TYPE;
+    }
+}
@@ -0,0 +1,37 @@
+package com.xzll.connect.netty.handler;
+
+import com.xzll.connect.service.OutboundPushService;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.Resource;
+
+/**
+ * 慢消费者处理器：出站缓冲回落到低水位（WRITE_BUFFER_WATER_MARK）后补发暂存的推送，连接关闭时丢弃
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Component
+@ChannelHandler.Sharable
+public class SlowConsumerHandler extends ChannelInboundHandlerAdapter {
+
+    @Resource
+    private OutboundPushService outboundPushService;
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            outboundPushService.onWritable(ctx.channel());
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        outboundPushService.onInactive(ctx.channel());
+        ctx.fireChannelInactive();
+    }
+}
@@ -5,8 +5,12 @@ import com.xzll.common.constant.ImConstant;
 import com.xzll.common.util.NettyAttrUtil;
 import com.xzll.connect.config.ImMsgConfig;
 import com.xzll.connect.dispatcher.HandlerDispatcher;
+import com.xzll.connect.metrics.PipelineMetrics;
 import com.xzll.connect.netty.channel.LocalChannelManager;
+import com.xzll.connect.netty.heart.AdaptiveHeartbeatPolicy;
 import com.xzll.connect.netty.heart.HeartBeatHandler;
+import com.xzll.connect.service.ConnectionDrainService;
+import com.xzll.connect.service.UserActivityService;
 import com.xzll.connect.service.UserStatusManagerService;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
@@ -20,7 +24,6 @@ import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.skywalking.apm.toolkit.trace.TraceContext;
-import org.apache.skywalking.apm.toolkit.trace.Tracer;
 import com.xzll.common.utils.RedissonUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -72,6 +75,15 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<Object>
     @Autowired
     private UserStatusManagerService userStatusManagerService;
 
+    @Autowired
+    private UserActivityService userActivityService;
+
+    @Autowired
+    private ConnectionDrainService connectionDrainService;
+
+    @Autowired
+    private AdaptiveHeartbeatPolicy adaptiveHeartbeatPolicy;
+
     // 使用LongAdder替代AtomicInteger，在高并发场景下性能更好
     private static final LongAdder connectionCount = new LongAdder();
     
@@ -141,7 +153,7 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<Object>
             // 清理心跳失败计数，防止误杀重连用户
             if (heartBeatHandler instanceof com.xzll.connect.netty.heart.NettyServerHeartBeatHandlerImpl) {
                 ((com.xzll.connect.netty.heart.NettyServerHeartBeatHandlerImpl) heartBeatHandler)
-                    .cleanup(channelId);
+                    .cleanup(ctx.channel());
                 log.debug("已清理channelId={}的心跳数据", channelId);
             }
             
@@ -169,6 +181,12 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<Object>
                     // 清理LocalChannelManager映射
                     LocalChannelManager.removeUserChannel(uid);
                     
+                    // 节点排空中：Redis状态由排空流程按批清理，这里不再逐个执行
+                    if (connectionDrainService.isDraining()) {
+                        log.debug("节点排空中，用户{}的Redis状态由排空流程统一清理", uid);
+                        return;
+                    }
+
                     // 清理Redis状态
                     userStatusManagerService.userDisconnectAfter(uid);
                     
@@ -195,25 +213,18 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<Object>
      */
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
-        // 使用try-with-resources确保span正确关闭
-        try {
-            Tracer.createEntrySpan("Netty/ChannelRead", null);
-            log.debug("当前 Trace ID: {}", TraceContext.traceId());
-            
-            // 传统的HTTP接入
-            if (msg instanceof FullHttpRequest) {
-                log.debug("=========处理Http请求接入=========");
-                handleHttpRequest(ctx, ((FullHttpRequest) msg));
-            }
-            // WebSocket接入 PooledUnsafeDirectByteBuf
-            else if (msg instanceof WebSocketFrame) {
-                log.debug("=========处理websocket请求=========");
-                handleWebSocketFrame(ctx, (WebSocketFrame) msg);
-            } else {
-                log.debug("=========其他类型=========");
-            }
-        } finally {
-            Tracer.stopSpan();
+        // 不再对每一帧（含 ping/pong）创建 Span：链路追踪按 clientMsgId 采样，在业务线程的消息处理器中创建（见 TraceSampler）
+        // 传统的HTTP接入
+        if (msg instanceof FullHttpRequest) {
+            log.debug("=========处理Http请求接入=========");
+            handleHttpRequest(ctx, ((FullHttpRequest) msg));
+        }
+        // WebSocket接入 PooledUnsafeDirectByteBuf
+        else if (msg instanceof WebSocketFrame) {
+            log.debug("=========处理websocket请求=========");
+            handleWebSocketFrame(ctx, (WebSocketFrame) msg);
+        } else {
+            log.debug("=========其他类型=========");
         }
     }
 
@@ -266,6 +277,13 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<Object>
             handshake.addListener(future -> {
                 if (future.isSuccess()) {
                     log.info("WebSocket握手成功, uid: {}", uidStr);
+
+                    // 节点排空中（暂停接收前已接入的连接），不再登记，直接关闭让客户端重连其他节点
+                    if (connectionDrainService.isDraining()) {
+                        log.info("节点排空中，关闭新握手的连接, uid: {}", uidStr);
+                        ctx.close();
+                        return;
+                    }
                     
                     // 【重要】同步设置用户状态，确保后续心跳和消息处理时状态已就绪
                     // 顺序：先设置LocalChannelManager，再设置Redis状态
@@ -277,6 +295,12 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<Object>
                         // 2. 设置Redis在线状态和路由信息
                         userStatusManagerService.userConnectSuccessAfter(ImConstant.UserStatus.ON_LINE.getValue(), uidStr);
                         log.debug("用户{}Redis在线状态设置完成", uidStr);
+
+                        // 3. 记入当天活跃（本地去重，后台批量写入）
+                        userActivityService.markActive(uidStr);
+
+                        // 4. 下发心跳间隔（自适应心跳）
+                        adaptiveHeartbeatPolicy.onHandshakeComplete(ctx.channel());
                     } catch (Exception e) {
                         log.error("设置用户{}在线状态失败", uidStr, e);
                         // 状态设置失败，清理已设置的映射，关闭连接让用户重连
@@ -328,42 +352,7 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<Object>
             return;
         }
         
-        //判断是否为ping消息
-        if (frame instanceof PingWebSocketFrame) {
-            long currentTime = System.currentTimeMillis();
-            Long lastReadTime = NettyAttrUtil.getReaderTime(ctx.channel());
-            long timeSinceLastRead = lastReadTime != null ? (currentTime - lastReadTime) : 0;
-            
-            log.debug("[WebSocketServerHandler]_消息类型: ping, 距离上次读取={}ms", timeSinceLastRead);
-            
-            NettyAttrUtil.updateReaderTime(ctx.channel(), currentTime);
-            // 记录心跳响应（客户端主动发送ping）
-            if (heartBeatHandler instanceof com.xzll.connect.netty.heart.NettyServerHeartBeatHandlerImpl) {
-                ((com.xzll.connect.netty.heart.NettyServerHeartBeatHandlerImpl) heartBeatHandler)
-                    .recordHeartbeatResponse(ctx, "ping");
-            }
-            // 修复内存泄漏：使用try-with-resources或者手动管理引用计数
-            try {
-                ctx.writeAndFlush(new PongWebSocketFrame(frame.content().retain()));
-            } catch (Exception e) {
-                // 如果发送失败，需要释放retain的内容
-                ReferenceCountUtil.release(frame.content());
-                log.error("发送Pong消息失败", e);
-            }
-            return;
-        }
-        
-        // 处理客户端回复的Pong消息（服务器发送Ping后，客户端回复Pong）
-        if (frame instanceof PongWebSocketFrame) {
-            log.debug("[WebSocketServerHandler]_消息类型: pong");
-            NettyAttrUtil.updateReaderTime(ctx.channel(), System.currentTimeMillis());
-            // 记录心跳响应（客户端回复pong）
-            if (heartBeatHandler instanceof com.xzll.connect.netty.heart.NettyServerHeartBeatHandlerImpl) {
-                ((com.xzll.connect.netty.heart.NettyServerHeartBeatHandlerImpl) heartBeatHandler)
-                    .recordHeartbeatResponse(ctx, "pong");
-            }
-            return;
-        }
+        // ping/pong 与应用层心跳已由 HeartbeatFrameHandler 处理并更新读取时间，不会到达这里
         
         // JSON 格式已废弃，仅支持 Protobuf 二进制消息
         if ((frame instanceof TextWebSocketFrame)) {
@@ -376,9 +365,6 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<Object>
         if (frame instanceof BinaryWebSocketFrame) {
             log.debug("[WebSocketServerHandler]_消息类型: protobuf 二进制");
             
-            // 更新读取时间（任何消息都应该更新，包括业务消息）
-            NettyAttrUtil.updateReaderTime(ctx.channel(), System.currentTimeMillis());
-            
             ByteBuf content = ((BinaryWebSocketFrame) frame).content();
             
             // 消息长度检查
@@ -389,25 +375,34 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<Object>
                 return;
             }
             
+            long decodeStart = System.nanoTime();
             try {
                 // 解析 protobuf 消息
                 byte[] bytes = new byte[readableBytes];
                 content.getBytes(content.readerIndex(), bytes);
                 com.xzll.grpc.ImProtoRequest protoRequest = com.xzll.grpc.ImProtoRequest.parseFrom(bytes);
+                PipelineMetrics.record(protoRequest.getType(), PipelineMetrics.Stage.DECODE, PipelineMetrics.OK, decodeStart);
                 
                 if (log.isDebugEnabled()) {
                     log.debug("[WebSocketServerHandler]_protobuf消息: type={}", protoRequest.getType());
                 }
+                // 带了额外字段的应用层心跳未被快速通道识别，读取时间已更新，无需分发
+                if (protoRequest.getType() == com.xzll.grpc.MsgType.HEARTBEAT) {
+                    return;
+                }
                 
                 // 检查线程池状态，避免任务堆积
                 ThreadPoolExecutor executor = threadPoolTaskExecutor.getThreadPoolExecutor();
+                long enqueueTime = System.nanoTime();
                 if (executor.getQueue().size() > MAX_QUEUE_SIZE) {
                     log.warn("线程池队列过长，拒绝处理protobuf消息: {}", executor.getQueue().size());
+                    PipelineMetrics.record(protoRequest.getType(), PipelineMetrics.Stage.QUEUE_WAIT, PipelineMetrics.REJECTED, enqueueTime);
                     return;
                 }
                 
                 // 分发&处理 protobuf 消息，业务和netty线程隔离
                 CompletableFuture.runAsync(() -> {
+                    PipelineMetrics.record(protoRequest.getType(), PipelineMetrics.Stage.QUEUE_WAIT, PipelineMetrics.OK, enqueueTime);
                     try {
                         handlerDispatcher.dispatcher(ctx, protoRequest);
                     } catch (Exception e) {
@@ -415,6 +410,9 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<Object>
                     }
                 }, threadPoolTaskExecutor);
                 
+            } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+                PipelineMetrics.record(null, PipelineMetrics.Stage.DECODE, PipelineMetrics.ERROR, decodeStart);
+                log.error("[WebSocketServerHandler]_解析protobuf消息失败!", e);
             } catch (Exception e) {
                 log.error("[WebSocketServerHandler]_解析protobuf消息失败!", e);
             }
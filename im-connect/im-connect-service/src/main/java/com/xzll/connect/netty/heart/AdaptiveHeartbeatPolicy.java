@@ -0,0 +1,209 @@
+package com.xzll.connect.netty.heart;
+
+import com.xzll.common.constant.ImConstant;
+import com.xzll.common.constant.ProtoResponseCode;
+import com.xzll.connect.config.IMConnectServerConfig;
+import com.xzll.grpc.HeartbeatConfigPush;
+import com.xzll.grpc.ImProtoResponse;
+import com.xzll.grpc.MsgType;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.prometheus.client.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应心跳策略（替代固定周期的 IdleStateHandler 检测）
+ *
+ * 1. 连接建立后以 activeHeartbeatInterval 为间隔，握手成功后通过 HEARTBEAT_CONFIG 下发给客户端
+ * 2. 连续 heartbeatGrowRounds 个间隔都按时收到数据（心跳或业务消息），间隔延长 heartbeatIntervalStep，直到 maxHeartbeatInterval
+ * 3. 超过 间隔 + 宽限期 未收到数据：间隔减半并记下上限（此后不再延长到该值），发送 Ping 探测，
+ *    之后每个宽限期探测一次，连续 maxHeartbeatFailures 次无响应则关闭连接
+ *
+ * 宽限期 = heartBeatTime - activeHeartbeatInterval；每个连接只有一个检测定时任务，按最后读取时间顺延
+ * 状态保存在 {@link HeartbeatState} 中，只在 Channel 所在的 EventLoop 上读写
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+@Component
+public class AdaptiveHeartbeatPolicy {
+
+    private static final String TAG = "[自适应心跳]_";
+
+    private static final int MIN_GRACE_SECONDS = 5;
+
+    private static final Counter INTERVAL_CHANGES = Counter.build()
+            .name("im_connect_heartbeat_interval_change_total")
+            .help("Adaptive heartbeat interval changes by direction.")
+            .labelNames("direction")
+            .register();
+
+    @Resource
+    private IMConnectServerConfig imConnectServerConfig;
+
+    public boolean isEnabled() {
+        return imConnectServerConfig.isAdaptiveHeartbeat();
+    }
+
+    /**
+     * 连接建立：以最小间隔开始检测（握手前超时直接关闭）
+     */
+    public void onActive(ChannelHandlerContext ctx) {
+        HeartbeatState state = HeartbeatState.of(ctx.channel());
+        long now = System.currentTimeMillis();
+        state.touch(now);
+        state.intervalSeconds = (short) imConnectServerConfig.getActiveHeartbeatInterval();
+        state.roundStart = now;
+        schedule(ctx, state, timeoutMs(state));
+    }
+
+    /**
+     * 连接关闭：取消检测任务
+     */
+    public void onInactive(Channel channel) {
+        HeartbeatState state = HeartbeatState.of(channel);
+        if (state.checkTask != null) {
+            state.checkTask.cancel(false);
+            state.checkTask = null;
+        }
+    }
+
+    /**
+     * 握手成功：下发当前心跳间隔（在 EventLoop 上调用）
+     */
+    public void onHandshakeComplete(Channel channel) {
+        HeartbeatState state = HeartbeatState.of(channel);
+        if (state.intervalSeconds == 0) {
+            // 连接建立时未启用自适应心跳，仍由 IdleStateHandler 检测
+            return;
+        }
+        state.negotiated = true;
+        state.roundStart = System.currentTimeMillis();
+        channel.writeAndFlush(configFrame(state), channel.voidPromise());
+    }
+
+    /**
+     * 收到数据（读取时间已更新）：每个间隔最多计一轮，连续按时则延长间隔
+     * 新配置只 write，由 HeartbeatFrameHandler 在 channelReadComplete 中 flush
+     */
+    public void onRead(ChannelHandlerContext ctx, HeartbeatState state, long now) {
+        if (!state.negotiated) {
+            return;
+        }
+        long intervalMs = TimeUnit.SECONDS.toMillis(state.intervalSeconds);
+        // 客户端定时器存在抖动，提前 1/4 个间隔到达也计为一轮
+        if (now - state.roundStart < intervalMs - intervalMs / 4) {
+            return;
+        }
+        state.roundStart = now;
+        if (++state.stableRounds < imConnectServerConfig.getHeartbeatGrowRounds()) {
+            return;
+        }
+        state.stableRounds = 0;
+
+        int limit = imConnectServerConfig.getMaxHeartbeatInterval();
+        if (state.ceilingSeconds > 0) {
+            limit = Math.min(limit, state.ceilingSeconds);
+        }
+        int next = Math.min(state.intervalSeconds + imConnectServerConfig.getHeartbeatIntervalStep(), limit);
+        if (next <= state.intervalSeconds) {
+            return;
+        }
+        state.intervalSeconds = (short) next;
+        INTERVAL_CHANGES.labels("grow").inc();
+        ctx.write(configFrame(state), ctx.voidPromise());
+        state.markFlushPending();
+        log.debug("{}延长心跳间隔：channelId={}, interval={}s", TAG, ctx.channel().id().asShortText(), next);
+    }
+
+    private void schedule(ChannelHandlerContext ctx, HeartbeatState state, long delayMs) {
+        state.checkTask = ctx.executor().schedule(() -> check(ctx, state), Math.max(delayMs, 1), TimeUnit.MILLISECONDS);
+    }
+
+    private void check(ChannelHandlerContext ctx, HeartbeatState state) {
+        state.checkTask = null;
+        Channel channel = ctx.channel();
+        if (!channel.isActive()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long timeoutMs = timeoutMs(state);
+        long idleMs = now - state.getLastReadTime();
+        if (idleMs < timeoutMs) {
+            // 期间收到过数据（包括探测的应答），顺延到新的截止时间
+            schedule(ctx, state, timeoutMs - idleMs);
+            return;
+        }
+
+        String userId = channel.attr(ImConstant.USER_ID_KEY).get();
+        if (!state.negotiated) {
+            log.warn("{}未完成握手的连接空闲{}ms，关闭连接：channelId={}", TAG, idleMs, channel.id().asShortText());
+            channel.close();
+            return;
+        }
+
+        int failures = state.incrementFailures();
+        int maxFailures = imConnectServerConfig.getMaxHeartbeatFailures();
+        if (failures >= maxFailures) {
+            log.warn("{}客户端[{}]心跳超时{}ms，连续探测{}次无响应，关闭连接！channelId={}",
+                    TAG, userId, idleMs, failures, channel.id().asShortText());
+            channel.close();
+            return;
+        }
+
+        boolean shrunk = failures == 1 && shrink(state);
+        log.info("{}心跳超时，发送探测：userId={}, idle={}ms, 失败次数={}/{}, interval={}s",
+                TAG, userId, idleMs, failures, maxFailures, state.intervalSeconds);
+        if (shrunk) {
+            ctx.write(configFrame(state), ctx.voidPromise());
+        }
+        ctx.writeAndFlush(new PingWebSocketFrame(), ctx.voidPromise());
+        schedule(ctx, state, TimeUnit.SECONDS.toMillis(graceSeconds()));
+    }
+
+    /**
+     * 超时后缩短间隔：减半（不低于最小间隔），并把超时前的间隔减一个步长记为上限
+     */
+    private boolean shrink(HeartbeatState state) {
+        state.stableRounds = 0;
+        int min = imConnectServerConfig.getActiveHeartbeatInterval();
+        int current = state.intervalSeconds;
+        if (current <= min) {
+            return false;
+        }
+        state.ceilingSeconds = (short) Math.max(min, current - imConnectServerConfig.getHeartbeatIntervalStep());
+        state.intervalSeconds = (short) Math.max(min, current / 2);
+        INTERVAL_CHANGES.labels("shrink").inc();
+        return true;
+    }
+
+    private long timeoutMs(HeartbeatState state) {
+        return TimeUnit.SECONDS.toMillis(state.intervalSeconds + graceSeconds());
+    }
+
+    private int graceSeconds() {
+        long grace = imConnectServerConfig.getHeartBeatTime() - imConnectServerConfig.getActiveHeartbeatInterval();
+        return (int) Math.max(MIN_GRACE_SECONDS, grace);
+    }
+
+    private BinaryWebSocketFrame configFrame(HeartbeatState state) {
+        HeartbeatConfigPush push = HeartbeatConfigPush.newBuilder()
+                .setIntervalSeconds(state.intervalSeconds)
+                .setTimeoutSeconds(state.intervalSeconds + graceSeconds())
+                .build();
+        ImProtoResponse response = ImProtoResponse.newBuilder()
+                .setType(MsgType.HEARTBEAT_CONFIG)
+                .setPayload(push.toByteString())
+                .setCode(ProtoResponseCode.SUCCESS)
+                .build();
+        return new BinaryWebSocketFrame(Unpooled.wrappedBuffer(response.toByteArray()));
+    }
+}
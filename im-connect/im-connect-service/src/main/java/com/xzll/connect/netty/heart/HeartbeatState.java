@@ -0,0 +1,134 @@
+package com.xzll.connect.netty.heart;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接级心跳状态，挂在 Channel 属性上，替代按 channelId 字符串索引的全局 Map 和字符串形式的读取时间
+ *
+ * 写入只发生在 Channel 所在的 EventLoop 上（收到帧、空闲检测、连接关闭），发送链路等业务线程只读
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public final class HeartbeatState {
+
+    private static final AttributeKey<HeartbeatState> KEY = AttributeKey.valueOf("heartbeatState");
+
+    /**
+     * 心跳失败次数大于 0 的连接数
+     */
+    private static final AtomicInteger FAILING_CHANNELS = new AtomicInteger();
+
+    /**
+     * 最后一次收到客户端数据的时间（毫秒），0 表示尚未记录
+     */
+    private volatile long lastReadTime;
+
+    private volatile int failureCount;
+
+    /**
+     * 本轮读取中是否写出了未 flush 的心跳应答（仅 EventLoop 访问）
+     */
+    private boolean flushPending;
+
+    // ============= 自适应心跳（仅 EventLoop 访问，见 AdaptiveHeartbeatPolicy） =============
+
+    /**
+     * 当前心跳间隔（秒）
+     */
+    short intervalSeconds;
+
+    /**
+     * 超时后记下的间隔上限（秒），之后不再延长到该值以上，0 表示尚未遇到超时
+     */
+    short ceilingSeconds;
+
+    /**
+     * 当前间隔下连续按时收到数据的轮数
+     */
+    byte stableRounds;
+
+    /**
+     * 是否已向客户端下发心跳配置（握手完成后才下发）
+     */
+    boolean negotiated;
+
+    /**
+     * 本轮开始时间（毫秒）
+     */
+    long roundStart;
+
+    ScheduledFuture<?> checkTask;
+
+    private HeartbeatState() {
+    }
+
+    public static HeartbeatState of(Channel channel) {
+        Attribute<HeartbeatState> attr = channel.attr(KEY);
+        HeartbeatState state = attr.get();
+        if (state == null) {
+            state = new HeartbeatState();
+            HeartbeatState old = attr.setIfAbsent(state);
+            if (old != null) {
+                state = old;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * 收到客户端数据：更新读取时间并清零失败次数
+     */
+    public void touch(long now) {
+        lastReadTime = now;
+        if (failureCount != 0) {
+            resetFailures();
+        }
+    }
+
+    public long getLastReadTime() {
+        return lastReadTime;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public int incrementFailures() {
+        int count = failureCount + 1;
+        if (count == 1) {
+            FAILING_CHANNELS.incrementAndGet();
+        }
+        failureCount = count;
+        return count;
+    }
+
+    public void resetFailures() {
+        if (failureCount != 0) {
+            failureCount = 0;
+            FAILING_CHANNELS.decrementAndGet();
+        }
+    }
+
+    public void markFlushPending() {
+        flushPending = true;
+    }
+
+    /**
+     * 取出并清除待 flush 标记
+     */
+    public boolean takeFlushPending() {
+        boolean pending = flushPending;
+        flushPending = false;
+        return pending;
+    }
+
+    public static int getFailingChannelCount() {
+        return FAILING_CHANNELS.get();
+    }
+}
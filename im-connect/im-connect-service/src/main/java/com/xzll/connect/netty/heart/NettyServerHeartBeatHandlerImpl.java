@@ -1,8 +1,8 @@
 package com.xzll.connect.netty.heart;
 
 import com.xzll.common.constant.ImConstant;
-import com.xzll.common.util.NettyAttrUtil;
 import com.xzll.connect.config.IMConnectServerConfig;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
 import io.netty.util.concurrent.ScheduledFuture;
@@ -22,6 +22,7 @@ import java.util.concurrent.TimeUnit;
  * 3. 心跳失败重试机制
  * 4. 心跳统计和监控
  * 5. 优化心跳间隔策略
+ * 6. 读取时间与失败次数改存 Channel 上的 HeartbeatState，收到心跳时不再按 channelId 字符串查全局 Map
  * 
  * @Author: hzz
  * @Date: 2024/6/1 17:30:01
@@ -34,9 +35,6 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
     @Resource
     private IMConnectServerConfig imConnectServerConfig;
 
-    // 存储每个连接的心跳失败次数
-    private static final ConcurrentHashMap<String, Integer> heartbeatFailureCount = new ConcurrentHashMap<>();
-    
     // 存储每个连接的主动心跳任务
     private static final ConcurrentHashMap<String, ScheduledFuture<?>> activeHeartbeatTasks = new ConcurrentHashMap<>();
 
@@ -50,12 +48,13 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
             long heartBeatTimeMs = imConnectServerConfig.getHeartBeatTime() * 1000;
             
             // 获取最后读取时间
-            Long lastReadTime = NettyAttrUtil.getReaderTime(ctx.channel());
+            HeartbeatState state = HeartbeatState.of(ctx.channel());
+            long lastReadTime = state.getLastReadTime();
             long currentTime = System.currentTimeMillis();
             
-            if (lastReadTime == null) {
+            if (lastReadTime == 0) {
                 // 如果没有读取时间记录，设置当前时间并返回
-                NettyAttrUtil.updateReaderTime(ctx.channel(), currentTime);
+                state.touch(currentTime);
                 log.debug("首次心跳检测，设置读取时间：channelId={}, userId={}", channelId, userId);
                 return;
             }
@@ -64,10 +63,10 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
             
             // 检查是否超时
             if (timeSinceLastRead > heartBeatTimeMs) {
-                handleHeartbeatTimeout(ctx, userId, channelId, timeSinceLastRead);
+                handleHeartbeatTimeout(ctx, state, userId, channelId, timeSinceLastRead);
             } else {
                 // 重置失败计数
-                heartbeatFailureCount.remove(channelId);
+                state.resetFailures();
                 
                 // 如果距离超时还有一段时间，可以主动发送ping
                 long timeUntilTimeout = heartBeatTimeMs - timeSinceLastRead;
@@ -87,20 +86,19 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
     /**
      * 处理心跳超时
      */
-    private void handleHeartbeatTimeout(ChannelHandlerContext ctx, String userId, String channelId, long timeSinceLastRead) {
+    private void handleHeartbeatTimeout(ChannelHandlerContext ctx, HeartbeatState state, String userId, String channelId, long timeSinceLastRead) {
         // 获取配置的最大失败次数
         int maxFailures = imConnectServerConfig.getMaxHeartbeatFailures();
         
         // 增加失败计数
-        int failureCount = heartbeatFailureCount.getOrDefault(channelId, 0) + 1;
-        heartbeatFailureCount.put(channelId, failureCount);
+        int failureCount = state.incrementFailures();
         
         log.warn("心跳超时检测：channelId={}, userId={}, 超时时长={}ms, 失败次数={}/{}", 
             channelId, userId, timeSinceLastRead, failureCount, maxFailures);
         
         if (failureCount >= maxFailures) {
             // 超过最大失败次数，关闭连接
-            closeConnectionDueToHeartbeatFailure(ctx, userId, channelId, timeSinceLastRead);
+            closeConnectionDueToHeartbeatFailure(ctx, state, userId, channelId, timeSinceLastRead);
         } else {
             // 尝试主动发送心跳
             sendActiveHeartbeat(ctx, userId, channelId);
@@ -110,21 +108,21 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
     /**
      * 由于心跳失败关闭连接
      */
-    private void closeConnectionDueToHeartbeatFailure(ChannelHandlerContext ctx, String userId, String channelId, long timeSinceLastRead) {
+    private void closeConnectionDueToHeartbeatFailure(ChannelHandlerContext ctx, HeartbeatState state, String userId, String channelId, long timeSinceLastRead) {
         int maxFailures = imConnectServerConfig.getMaxHeartbeatFailures();
         
         // 【重要】关闭前再次确认是否真的超时，防止误杀刚重连的用户
-        Long lastReadTime = NettyAttrUtil.getReaderTime(ctx.channel());
+        long lastReadTime = state.getLastReadTime();
         long currentTime = System.currentTimeMillis();
         long heartBeatTimeMs = imConnectServerConfig.getHeartBeatTime() * 1000;
         
-        if (lastReadTime != null) {
+        if (lastReadTime != 0) {
             long actualTimeSinceLastRead = currentTime - lastReadTime;
             if (actualTimeSinceLastRead < heartBeatTimeMs) {
                 // 用户可能刚重连，取消关闭，重置失败计数
                 log.info("检测到用户{}可能刚重连（实际超时{}ms < {}ms），取消关闭连接，channelId={}", 
                     userId, actualTimeSinceLastRead, heartBeatTimeMs, channelId);
-                heartbeatFailureCount.remove(channelId);
+                state.resetFailures();
                 return;
             }
         }
@@ -138,7 +136,7 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
         }
         
         // 清理相关数据
-        cleanup(channelId);
+        cleanup(ctx.channel());
         
         // 关闭连接
         ctx.channel().close();
@@ -221,11 +219,8 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
         String channelId = ctx.channel().id().asLongText();
         String userId = ctx.channel().attr(ImConstant.USER_ID_KEY).get();
         
-        // 更新读取时间
-        NettyAttrUtil.updateReaderTime(ctx.channel(), System.currentTimeMillis());
-        
-        // 重置失败计数
-        heartbeatFailureCount.remove(channelId);
+        // 更新读取时间并重置失败计数
+        HeartbeatState.of(ctx.channel()).touch(System.currentTimeMillis());
         
         // 【简化】心跳只负责保活，状态管理交给握手阶段
         // 原因：握手阶段已同步设置状态，正常情况下不需要心跳恢复
@@ -252,8 +247,9 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
     /**
      * 清理连接相关的心跳数据
      */
-    public void cleanup(String channelId) {
-        heartbeatFailureCount.remove(channelId);
+    public void cleanup(Channel channel) {
+        String channelId = channel.id().asLongText();
+        HeartbeatState.of(channel).resetFailures();
         stopActiveHeartbeat(channelId);
         
         log.debug("清理心跳数据：channelId={}", channelId);
@@ -262,8 +258,8 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
     /**
      * 获取连接的心跳失败次数
      */
-    public int getHeartbeatFailureCount(String channelId) {
-        return heartbeatFailureCount.getOrDefault(channelId, 0);
+    public int getHeartbeatFailureCount(Channel channel) {
+        return HeartbeatState.of(channel).getFailureCount();
     }
 
     /**
@@ -273,27 +269,19 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
         StringBuilder sb = new StringBuilder();
         sb.append("=== 心跳统计信息 ===\n");
         sb.append("活跃心跳任务数: ").append(activeHeartbeatTasks.size()).append("\n");
-        sb.append("心跳失败连接数: ").append(heartbeatFailureCount.size()).append("\n");
+        sb.append("心跳失败连接数: ").append(HeartbeatState.getFailingChannelCount()).append("\n");
         sb.append("心跳超时时间: ").append(imConnectServerConfig.getHeartBeatTime()).append("秒\n");
         sb.append("最大失败次数: ").append(imConnectServerConfig.getMaxHeartbeatFailures()).append("\n");
         sb.append("主动心跳间隔: ").append(imConnectServerConfig.getActiveHeartbeatInterval()).append("秒\n");
         
-        if (!heartbeatFailureCount.isEmpty()) {
-            sb.append("\n失败连接详情:\n");
-            heartbeatFailureCount.forEach((channelId, count) -> {
-                sb.append("  ChannelId: ").append(channelId)
-                  .append(", 失败次数: ").append(count).append("\n");
-            });
-        }
-        
         return sb.toString();
     }
 
     /**
      * 检查连接的心跳健康状态
      */
-    public boolean isHeartbeatHealthy(String channelId) {
-        int failureCount = heartbeatFailureCount.getOrDefault(channelId, 0);
+    public boolean isHeartbeatHealthy(Channel channel) {
+        int failureCount = HeartbeatState.of(channel).getFailureCount();
         int maxFailures = imConnectServerConfig.getMaxHeartbeatFailures();
         return failureCount < maxFailures;
     }
@@ -302,8 +290,8 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
      * 强制清理所有心跳数据（用于服务关闭）
      */
     public void cleanupAll() {
-        log.info("清理所有心跳数据，任务数：{}，失败记录数：{}", 
-            activeHeartbeatTasks.size(), heartbeatFailureCount.size());
+        log.info("清理所有心跳数据，任务数：{}，失败连接数：{}", 
+            activeHeartbeatTasks.size(), HeartbeatState.getFailingChannelCount());
         
         // 取消所有主动心跳任务
         activeHeartbeatTasks.values().forEach(task -> {
@@ -313,7 +301,6 @@ public class NettyServerHeartBeatHandlerImpl implements HeartBeatHandler {
         });
         
         activeHeartbeatTasks.clear();
-        heartbeatFailureCount.clear();
         
         log.info("心跳数据清理完成");
     }
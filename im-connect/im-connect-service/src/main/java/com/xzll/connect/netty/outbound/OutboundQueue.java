@@ -0,0 +1,224 @@
+package com.xzll.connect.netty.outbound;
+
+import com.xzll.common.constant.ProtoResponseCode;
+import com.xzll.grpc.GroupSyncPush;
+import com.xzll.grpc.ImProtoResponse;
+import com.xzll.grpc.MsgType;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 连接级推送暂存队列，挂在 Channel 属性上，只在连接第一次不可写时创建
+ *
+ * 1. 普通推送按序暂存
+ * 2. 同一群在队列中最多一条：第二条到达时，原推送与新推送都被释放，合并为一条 GROUP_SYNC_REQUIRED 通知（位置不变）
+ *
+ * 只在 Channel 所在的 EventLoop 上读写，预算、指标与线程切换见 OutboundPushServiceImpl
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public final class OutboundQueue {
+
+    private static final AttributeKey<OutboundQueue> KEY = AttributeKey.valueOf("outboundQueue");
+
+    /**
+     * 同步通知按固定大小计入暂存字节数
+     */
+    private static final int SYNC_MARKER_BYTES = 32;
+
+    /**
+     * 同一群的积压推送被合并为同步通知
+     */
+    public static final SlowConsumerException COLLAPSED = new SlowConsumerException("group push collapsed into sync marker");
+
+    /**
+     * 连接关闭或超出暂存预算，暂存的推送被丢弃
+     */
+    public static final SlowConsumerException DISCARDED = new SlowConsumerException("parked push discarded");
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    /**
+     * 群ID -> 队列中该群的推送
+     */
+    private final Map<Long, Entry> groupEntries = new HashMap<>();
+
+    private long parkedBytes;
+
+    /**
+     * 已丢弃（连接关闭或超出预算），不再接收新推送
+     */
+    private boolean discarded;
+
+    private OutboundQueue() {
+    }
+
+    /**
+     * 获取队列，不存在时返回 null（不创建）
+     */
+    public static OutboundQueue peek(Channel channel) {
+        return channel.attr(KEY).get();
+    }
+
+    public static OutboundQueue of(Channel channel) {
+        Attribute<OutboundQueue> attr = channel.attr(KEY);
+        OutboundQueue queue = attr.get();
+        if (queue == null) {
+            queue = new OutboundQueue();
+            attr.set(queue);
+        }
+        return queue;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public boolean isDiscarded() {
+        return discarded;
+    }
+
+    public long getParkedBytes() {
+        return parkedBytes;
+    }
+
+    /**
+     * 暂存推送
+     *
+     * @param groupId 群ID，0 表示不可合并
+     * @return 暂存字节数的变化量，合并时可能为负
+     */
+    public long park(WebSocketFrame frame, ChannelPromise promise, long groupId, long msgId) {
+        if (groupId != 0) {
+            Entry existing = groupEntries.get(groupId);
+            if (existing != null) {
+                return collapse(existing, frame, promise, msgId);
+            }
+        }
+        Entry entry = new Entry(frame, promise, groupId, msgId, frame.content().readableBytes());
+        entries.addLast(entry);
+        if (groupId != 0) {
+            groupEntries.put(groupId, entry);
+        }
+        parkedBytes += entry.bytes;
+        return entry.bytes;
+    }
+
+    /**
+     * 连接可写期间按序写出暂存的推送并 flush
+     *
+     * @return 写出的暂存字节数
+     */
+    public long drain(Channel channel) {
+        long drained = 0;
+        Entry entry;
+        while (channel.isWritable() && (entry = entries.pollFirst()) != null) {
+            if (entry.groupId != 0) {
+                groupEntries.remove(entry.groupId);
+            }
+            drained += entry.bytes;
+            WebSocketFrame frame = entry.isSyncMarker() ? syncFrame(entry) : entry.frame;
+            channel.write(frame, entry.promise != null ? entry.promise : channel.voidPromise());
+        }
+        parkedBytes -= drained;
+        if (drained > 0) {
+            channel.flush();
+        }
+        return drained;
+    }
+
+    /**
+     * 丢弃全部暂存推送，此后 park 的调用方应直接拒绝
+     *
+     * @return 丢弃的暂存字节数
+     */
+    public long discard() {
+        discarded = true;
+        long dropped = parkedBytes;
+        Entry entry;
+        while ((entry = entries.pollFirst()) != null) {
+            ReferenceCountUtil.release(entry.frame);
+            if (entry.promise != null) {
+                entry.promise.tryFailure(DISCARDED);
+            }
+        }
+        groupEntries.clear();
+        parkedBytes = 0;
+        return dropped;
+    }
+
+    private long collapse(Entry existing, WebSocketFrame frame, ChannelPromise promise, long msgId) {
+        ReferenceCountUtil.release(frame);
+        promise.tryFailure(COLLAPSED);
+        existing.lastMsgId = Math.max(existing.lastMsgId, msgId);
+        existing.skipped++;
+        if (existing.isSyncMarker()) {
+            return 0;
+        }
+        // 第一次合并：原推送也不再发送，改为同步通知
+        ReferenceCountUtil.release(existing.frame);
+        existing.frame = null;
+        existing.promise.tryFailure(COLLAPSED);
+        existing.promise = null;
+        existing.skipped++;
+        long delta = SYNC_MARKER_BYTES - existing.bytes;
+        existing.bytes = SYNC_MARKER_BYTES;
+        parkedBytes += delta;
+        return delta;
+    }
+
+    private static BinaryWebSocketFrame syncFrame(Entry entry) {
+        GroupSyncPush push = GroupSyncPush.newBuilder()
+                .setGroupId(entry.groupId)
+                .setLastMsgId(entry.lastMsgId)
+                .setSkipped(entry.skipped)
+                .build();
+        ImProtoResponse response = ImProtoResponse.newBuilder()
+                .setType(MsgType.GROUP_SYNC_REQUIRED)
+                .setPayload(push.toByteString())
+                .setCode(ProtoResponseCode.SUCCESS)
+                .build();
+        return new BinaryWebSocketFrame(Unpooled.wrappedBuffer(response.toByteArray()));
+    }
+
+    private static final class Entry {
+        private WebSocketFrame frame;
+        private ChannelPromise promise;
+        private final long groupId;
+        private long lastMsgId;
+        private int skipped;
+        private int bytes;
+
+        private Entry(WebSocketFrame frame, ChannelPromise promise, long groupId, long msgId, int bytes) {
+            this.frame = frame;
+            this.promise = promise;
+            this.groupId = groupId;
+            this.lastMsgId = msgId;
+            this.bytes = bytes;
+        }
+
+        /**
+         * 已合并为同步通知（原推送已释放，发送时再生成通知帧）
+         */
+        private boolean isSyncMarker() {
+            return frame == null;
+        }
+    }
+
+    public static final class SlowConsumerException extends RuntimeException {
+        private SlowConsumerException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
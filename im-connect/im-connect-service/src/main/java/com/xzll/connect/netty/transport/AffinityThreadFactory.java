@@ -0,0 +1,79 @@
+package com.xzll.connect.netty.transport;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import net.openhft.affinity.Affinity;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EventLoop 线程工厂：按配置的 CPU 列表把线程依次绑定到各个核上（线程数多于核数时循环分配）
+ *
+ * CPU 列表为空时与 DefaultThreadFactory 相同；绑核失败（非 Linux、容器 cpuset 不包含该核等）只记录告警，线程照常运行
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+public class AffinityThreadFactory extends DefaultThreadFactory {
+
+    private static final String TAG = "[NettyServer]_";
+
+    private final int[] cpus;
+    private final AtomicInteger nextCpu = new AtomicInteger();
+
+    public AffinityThreadFactory(String poolName, int priority, int[] cpus) {
+        super(poolName, priority);
+        this.cpus = cpus;
+    }
+
+    @Override
+    protected Thread newThread(Runnable r, String name) {
+        if (cpus.length == 0) {
+            return super.newThread(r, name);
+        }
+        int cpu = cpus[Math.floorMod(nextCpu.getAndIncrement(), cpus.length)];
+        return super.newThread(() -> {
+            bind(cpu, name);
+            r.run();
+        }, name);
+    }
+
+    private static void bind(int cpu, String name) {
+        try {
+            Affinity.setAffinity(cpu);
+            log.info("{}线程 {} 已绑定到 CPU {}", TAG, name, cpu);
+        } catch (Throwable t) {
+            log.warn("{}线程 {} 绑定 CPU {} 失败：{}", TAG, name, cpu, t.toString());
+        }
+    }
+
+    /**
+     * 解析 CPU 列表，格式同 taskset/cpuset：如 "2-7,10,12-13"；空串返回空数组
+     */
+    public static int[] parseCpuList(String cpuList) {
+        if (StringUtils.isBlank(cpuList)) {
+            return new int[0];
+        }
+        Set<Integer> cpus = new LinkedHashSet<>();
+        for (String part : cpuList.split(",")) {
+            String range = part.trim();
+            if (range.isEmpty()) {
+                continue;
+            }
+            int dash = range.indexOf('-');
+            int from = Integer.parseInt((dash < 0 ? range : range.substring(0, dash)).trim());
+            int to = dash < 0 ? from : Integer.parseInt(range.substring(dash + 1).trim());
+            if (from < 0 || to < from) {
+                throw new IllegalArgumentException("invalid cpu range: " + range);
+            }
+            for (int cpu = from; cpu <= to; cpu++) {
+                cpus.add(cpu);
+            }
+        }
+        return cpus.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,158 @@
+package com.xzll.connect.netty.transport;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.incubator.channel.uring.IOUring;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringServerSocketChannel;
+import io.netty.incubator.channel.uring.IOUringSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Netty 传输实现（im.netty.transport）
+ *
+ * auto：Linux 下用 epoll，否则 NIO；io_uring 需显式配置，内核不支持（< 5.9、seccomp 禁用等）时回退到 auto
+ * epoll 与 io_uring 支持 SO_REUSEPORT 多 acceptor 绑定
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+public enum TransportType {
+
+    IO_URING {
+        @Override
+        public boolean isAvailable() {
+            return IOUring.isAvailable();
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new IOUringEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return IOUringServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return IOUringSocketChannel.class;
+        }
+
+        @Override
+        Throwable unavailabilityCause() {
+            return IOUring.unavailabilityCause();
+        }
+    },
+
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        Throwable unavailabilityCause() {
+            return Epoll.unavailabilityCause();
+        }
+    },
+
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new NioEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        public boolean isNative() {
+            return false;
+        }
+
+        @Override
+        Throwable unavailabilityCause() {
+            return null;
+        }
+    };
+
+    private static final String TAG = "[NettyServer]_";
+
+    public abstract boolean isAvailable();
+
+    public abstract EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory);
+
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    public abstract Class<? extends SocketChannel> socketChannelClass();
+
+    abstract Throwable unavailabilityCause();
+
+    /**
+     * 是否为原生传输（支持 SO_REUSEPORT）
+     */
+    public boolean isNative() {
+        return true;
+    }
+
+    /**
+     * 按配置选择可用的传输
+     *
+     * @param configured auto / io_uring / epoll / nio（忽略大小写，空视为 auto）
+     */
+    public static TransportType select(String configured) {
+        String name = configured == null ? "" : configured.trim().toUpperCase();
+        if (!name.isEmpty() && !"AUTO".equals(name)) {
+            try {
+                TransportType type = valueOf(name);
+                if (type.isAvailable()) {
+                    return type;
+                }
+                log.warn("{}传输 {} 不可用，回退到 auto，原因：{}", TAG, type, String.valueOf(type.unavailabilityCause()));
+            } catch (IllegalArgumentException e) {
+                log.warn("{}未知的传输配置 {}，使用 auto", TAG, configured);
+            }
+        }
+        return EPOLL.isAvailable() ? EPOLL : NIO;
+    }
+}
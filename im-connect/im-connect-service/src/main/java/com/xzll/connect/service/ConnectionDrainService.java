@@ -0,0 +1,46 @@
+package com.xzll.connect.service;
+
+import java.util.Map;
+
+/**
+ * 连接排空服务接口（滚动发布时让本节点平滑下线）
+ *
+ * 排空流程：
+ * 1. 从 imServer:nettyIpPort: 注销本节点，暂停接收新连接
+ * 2. 按批（wave）给在线客户端推送 SERVER_RECONNECT 并关闭连接，批与批之间间隔，重连延迟带随机抖动，避免其他节点瞬时承压
+ * 3. 每批结束后按批清理路由与登录状态，只清理仍指向本节点的用户（客户端已重连到其他节点的不动）
+ * 4. 全部结束后一次性删除这些用户所在群分片中本节点的 Field
+ *
+ * 排空期间连接断开不再逐个清理 Redis 状态，由排空流程按批统一清理
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public interface ConnectionDrainService {
+
+    /**
+     * 异步开始排空，重复调用只会执行一次
+     *
+     * @param reason 排空原因，随重连通知下发给客户端
+     * @return true-本次调用触发了排空，false-已在排空或已排空
+     */
+    boolean startDrain(String reason);
+
+    /**
+     * 开始排空（若尚未开始）并等待结束，用于进程关闭前
+     *
+     * @param timeoutMs 最长等待时间（毫秒）
+     * @return 是否在超时前排空完成
+     */
+    boolean drainAndWait(long timeoutMs);
+
+    /**
+     * 是否已进入排空状态
+     */
+    boolean isDraining();
+
+    /**
+     * 排空进度
+     */
+    Map<String, Object> getStatus();
+}
@@ -0,0 +1,21 @@
+package com.xzll.connect.service;
+
+/**
+ * 好友拉黑校验服务接口
+ * 单聊发送链路上判断接收方是否拉黑了发送方，只读 im-business 维护的拉黑集合（friend:{userId}:blocked），不查数据库
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public interface FriendBlockCheckService {
+
+    /**
+     * 接收方是否拉黑了发送方
+     * 拉黑集合未加载时放行，并通知 im-business 异步重建
+     *
+     * @param receiverId 接收方用户ID
+     * @param senderId   发送方用户ID
+     * @return true-已被拉黑
+     */
+    boolean isBlocked(String receiverId, String senderId);
+}
@@ -1,5 +1,6 @@
 package com.xzll.connect.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -87,6 +88,16 @@ public interface GroupServerMemberService {
      */
     List<String> getUserGroupIdsFromCache(String userId);
 
+    /**
+     * 节点下线时，从这批用户所在群的分片中整体删除本节点的 Field
+     * 节点下线后该 Field 下的成员都已离线，无需逐个用户执行移除脚本
+     *
+     * @param userIds 本节点的在线用户
+     * @param serverIp 服务器IP（格式：ip:port）
+     * @return 删除了 Field 的群数量
+     */
+    int removeServerFromUserGroups(Collection<String> userIds, String serverIp);
+
     /**
      * 清理过期的群分片信息（可选，定期任务调用）
      */
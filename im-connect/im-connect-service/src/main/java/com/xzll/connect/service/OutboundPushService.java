@@ -0,0 +1,51 @@
+package com.xzll.connect.service;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * 下行推送服务接口（慢消费者策略）
+ *
+ * 1. 连接可写且没有暂存推送时直接 writeAndFlush
+ * 2. 连接不可写（出站缓冲超过 writeBufferHighWaterMark）时暂存到连接级队列，channelWritabilityChanged 后按序补发
+ * 3. 同一群的积压推送合并为一条 GROUP_SYNC_REQUIRED 通知，被合并的推送以 OutboundQueue.COLLAPSED 失败
+ * 4. 暂存字节数超过 maxParkedBytesPerChannel 时丢弃队列并断开连接，客户端重连后拉取离线消息
+ *
+ * 对客户端请求的直接应答（ack、错误响应等）仍走 ctx.writeAndFlush，不经过该服务
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public interface OutboundPushService {
+
+    /**
+     * 推送不可合并的消息（单聊、重试、好友通知等）
+     *
+     * @param channel 目标连接
+     * @param frame   推送帧（由该服务负责释放）
+     * @return 写入结果，暂存的推送在补发完成后才完成
+     */
+    ChannelFuture push(Channel channel, WebSocketFrame frame);
+
+    /**
+     * 推送群消息，连接不可写期间同一群的多条推送会被合并
+     *
+     * @param channel 目标连接
+     * @param frame   推送帧（由该服务负责释放）
+     * @param groupId 群ID
+     * @param msgId   消息ID
+     * @return 写入结果
+     */
+    ChannelFuture pushGroup(Channel channel, WebSocketFrame frame, long groupId, long msgId);
+
+    /**
+     * 连接恢复可写：按序补发暂存的推送（在 EventLoop 上调用）
+     */
+    void onWritable(Channel channel);
+
+    /**
+     * 连接关闭：丢弃暂存的推送（在 EventLoop 上调用）
+     */
+    void onInactive(Channel channel);
+}
@@ -0,0 +1,26 @@
+package com.xzll.connect.service;
+
+/**
+ * 敏感词过滤服务接口
+ * 在单聊/群聊发送链路上对文本消息做实时过滤，词库由 im-console 发布到 Redis
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public interface SensitiveWordFilterService {
+
+    /**
+     * 过滤消息内容，命中的敏感词替换为掩码字符
+     * 非文本消息或未命中时原样返回
+     *
+     * @param msgFormat  消息格式
+     * @param msgContent 消息内容
+     * @return 过滤后的内容
+     */
+    String filter(Integer msgFormat, String msgContent);
+
+    /**
+     * 检查词库版本，有变化时异步重建自动机并原子替换
+     */
+    void refreshIfChanged();
+}
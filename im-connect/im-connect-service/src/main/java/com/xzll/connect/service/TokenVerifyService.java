@@ -0,0 +1,35 @@
+package com.xzll.connect.service;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 握手 Token 校验服务接口
+ *
+ * 校验流程：
+ * 1. 本地已验证缓存命中（按 tokenMd5，TTL 较短且不超过 token 的 exp）直接通过，不访问 Redis
+ * 2. 未命中时用 im-auth 公钥（/rsa/publicKey）在本地验证 RS256 签名与 exp
+ * 3. 只查一次 Redis 的 token 记录作为吊销校验（登出/顶号会删除该记录），通过后写入本地缓存
+ *
+ * im-auth 删除 token 记录后通过 userLogin:token:revoke 广播 tokenMd5，各节点收到后失效本地缓存；
+ * 广播丢失时最长不一致时间为缓存 TTL
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public interface TokenVerifyService {
+
+    /**
+     * 校验 Token
+     *
+     * @param token 握手请求头中的 token
+     * @return 校验通过返回用户ID，否则返回 null（不会异常完成）
+     */
+    CompletionStage<String> verify(String token);
+
+    /**
+     * 失效本地已验证缓存
+     *
+     * @param tokenMd5 token 的 MD5
+     */
+    void invalidate(String tokenMd5);
+}
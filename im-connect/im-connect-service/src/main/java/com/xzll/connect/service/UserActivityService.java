@@ -0,0 +1,22 @@
+package com.xzll.connect.service;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 在线与活跃用户统计
+ *
+ * 功能说明：
+ * 1. 握手成功的用户记入当天活跃：本地去重后定时批量写入 DAU/MAU HyperLogLog 与当天活跃位图
+ * 2. 每分钟上报本节点在线用户数：节点实时值 + 按分钟累加的在线采样（用于同时在线峰值）
+ * 3. 跨天时把仍在线的用户记入新一天的活跃
+ * 4. 全部写入由后台线程完成，连接建立路径上只有一次本地集合操作
+ */
+public interface UserActivityService {
+
+    /**
+     * 记录用户活跃（握手成功后调用）
+     *
+     * @param userId 用户ID
+     */
+    void markActive(String userId);
+}
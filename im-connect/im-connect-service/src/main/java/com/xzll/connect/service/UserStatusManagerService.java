@@ -1,5 +1,6 @@
 package com.xzll.connect.service;
 
+import java.util.Collection;
 
 /**
  * @Author: hzz
@@ -12,4 +13,13 @@ public interface UserStatusManagerService {
     public void userConnectSuccessAfter(Integer status, String uidStr);
 
     public void userDisconnectAfter(String uid);
+
+    /**
+     * 节点下线时批量清除用户登录和机器信息，只清理路由仍指向 serverIp 的用户（已重连到其他节点的不动）
+     *
+     * @param uids     用户id
+     * @param serverIp 当前节点（ip:port）
+     * @return 实际清理的用户数
+     */
+    public int clearUserStatusOnServer(Collection<String> uids, String serverIp);
 }
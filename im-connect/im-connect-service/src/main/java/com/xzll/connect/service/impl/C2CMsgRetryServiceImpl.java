@@ -8,10 +8,13 @@ import com.xzll.common.pojo.request.C2COffLineMsgAO;
 import com.xzll.common.pojo.request.C2CSendMsgAO;
 import com.xzll.common.util.ProtoConverterUtil;
 import com.xzll.common.utils.CompressionUtil;
+import com.xzll.common.utils.LuaScriptRegistry;
 import com.xzll.common.utils.RedissonUtils;
 import com.xzll.connect.cluster.provider.C2CMsgProvider;
+import com.xzll.connect.metrics.PipelineMetrics;
 import com.xzll.connect.netty.channel.LocalChannelManager;
 import com.xzll.connect.service.C2CMsgRetryService;
+import com.xzll.connect.service.OutboundPushService;
 import com.xzll.connect.service.dto.C2CMsgRetryEvent;
 import com.xzll.grpc.C2CMsgPush;
 import com.xzll.grpc.ImProtoResponse;
@@ -21,16 +24,12 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -57,9 +56,15 @@ public class C2CMsgRetryServiceImpl implements C2CMsgRetryService {
     @Resource
     private RedissonUtils redissonUtils;
     
+    @Resource
+    private LuaScriptRegistry luaScriptRegistry;
+    
     @Resource
     private C2CMsgProvider c2CMsgProvider;
     
+    @Resource
+    private OutboundPushService outboundPushService;
+    
     // 基础配置
     @Value("${im-server.c2c.retry.enabled:true}")
     private boolean retryEnabled;
@@ -86,8 +91,8 @@ public class C2CMsgRetryServiceImpl implements C2CMsgRetryService {
     private static final String LUA_ADD_TO_RETRY_QUEUE = "lua/add_to_retry_queue.lua";
     private static final String LUA_REMOVE_FROM_RETRY_QUEUE = "lua/remove_from_retry_queue.lua";
     
-    private String addToRetryQueueScript;
-    private String removeFromRetryQueueScript;
+    private LuaScriptRegistry.LuaScript addToRetryQueueScript;
+    private LuaScriptRegistry.LuaScript removeFromRetryQueueScript;
     
     /**
      * 初始化配置参数和Lua脚本
@@ -109,10 +114,10 @@ public class C2CMsgRetryServiceImpl implements C2CMsgRetryService {
             maxRetries = retryDelays.length;
         }
         
-        // 加载Lua脚本
+        // 注册Lua脚本（SCRIPT LOAD 后按 SHA 调用）
         try {
-            addToRetryQueueScript = loadLuaScript(LUA_ADD_TO_RETRY_QUEUE);
-            removeFromRetryQueueScript = loadLuaScript(LUA_REMOVE_FROM_RETRY_QUEUE);
+            addToRetryQueueScript = luaScriptRegistry.registerClasspath(LUA_ADD_TO_RETRY_QUEUE);
+            removeFromRetryQueueScript = luaScriptRegistry.registerClasspath(LUA_REMOVE_FROM_RETRY_QUEUE);
             log.info("{}Lua脚本加载完成", TAG);
         } catch (Exception e) {
             log.error("{}Lua脚本加载失败", TAG, e);
@@ -123,15 +128,6 @@ public class C2CMsgRetryServiceImpl implements C2CMsgRetryService {
             TAG, maxRetries, Arrays.toString(retryDelays), batchSize, scanInterval);
     }
     
-    /**
-     * 加载Lua脚本
-     */
-    private String loadLuaScript(String path) throws Exception {
-        ClassPathResource resource = new ClassPathResource(path);
-        InputStream in = resource.getInputStream();
-        return IOUtils.toString(in, StandardCharsets.UTF_8);
-    }
-    
     /**
      * 添加消息到延迟队列（等待客户端（接收方）ACK）
      * 使用Lua脚本保证原子性：同时添加到ZSet和Hash
@@ -158,7 +154,7 @@ public class C2CMsgRetryServiceImpl implements C2CMsgRetryService {
             // 使用Lua脚本原子性添加（StringCodec性能更优）：
             // 1. ZSet存msgId（轻量级索引，~20字节）
             // 2. Hash存LZ4压缩后的完整数据（减少50-70%体积）
-            Long result = redissonUtils.executeLuaScriptAsLongUseStringCodec(
+            Long result = luaScriptRegistry.evalShaAsLong(
                 addToRetryQueueScript,
                 Arrays.asList(
                     ImConstant.RedisKeyConstant.C2C_MSG_RETRY_QUEUE,
@@ -198,7 +194,7 @@ public class C2CMsgRetryServiceImpl implements C2CMsgRetryService {
         try {
             // 使用Lua脚本原子性删除（同时从ZSet和Hash删除）
             // 使用StringCodec性能更优
-            Long result = redissonUtils.executeLuaScriptAsLongUseStringCodec(
+            Long result = luaScriptRegistry.evalShaAsLong(
                 removeFromRetryQueueScript,
                 Arrays.asList(
                     ImConstant.RedisKeyConstant.C2C_MSG_RETRY_QUEUE,
@@ -391,7 +387,7 @@ public class C2CMsgRetryServiceImpl implements C2CMsgRetryService {
                             TAG, nextRetryCount, retryEvent.getClientMsgId(), retryEvent.getMsgId());
                         
                         // 1. 从延迟队列中移除
-                        redissonUtils.executeLuaScriptAsLongUseStringCodec(
+                        luaScriptRegistry.evalShaAsLong(
                             removeFromRetryQueueScript,
                             Arrays.asList(
                                 ImConstant.RedisKeyConstant.C2C_MSG_RETRY_QUEUE,
@@ -412,7 +408,7 @@ public class C2CMsgRetryServiceImpl implements C2CMsgRetryService {
                     // 使用Lua脚本原子性重新添加（StringCodec性能更优）
                     String jsonValue = JSONUtil.toJsonStr(retryEvent);
                     String compressedValue = CompressionUtil.compressToBase64(jsonValue);
-                    redissonUtils.executeLuaScriptAsLongUseStringCodec(
+                    luaScriptRegistry.evalShaAsLong(
                         addToRetryQueueScript,
                         Arrays.asList(
                             ImConstant.RedisKeyConstant.C2C_MSG_RETRY_QUEUE,
@@ -527,9 +523,13 @@ public class C2CMsgRetryServiceImpl implements C2CMsgRetryService {
             byte[] bytes = response.toByteArray();
             ByteBuf buf = Unpooled.wrappedBuffer(bytes);
             
-            channel.writeAndFlush(new BinaryWebSocketFrame(buf))
+            long writeStart = System.nanoTime();
+            outboundPushService.push(channel, new BinaryWebSocketFrame(buf))
                 .addListener(future -> {
+                    PipelineMetrics.record(MsgType.C2C_MSG_PUSH, PipelineMetrics.Stage.WRITE,
+                        future.isSuccess() ? PipelineMetrics.OK : PipelineMetrics.ERROR, writeStart);
                     if (future.isSuccess()) {
+                        PipelineMetrics.recordE2E(MsgType.C2C_MSG_PUSH, retryEvent.getMsgCreateTime());
                         log.debug("{}【重试发送成功】消息发送到客户端成功 - clientMsgId: {}, msgId: {}, to: {}",
                             TAG, retryEvent.getClientMsgId(), retryEvent.getMsgId(), retryEvent.getToUserId());
                     } else {
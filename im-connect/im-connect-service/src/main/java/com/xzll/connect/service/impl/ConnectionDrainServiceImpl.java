@@ -0,0 +1,237 @@
+package com.xzll.connect.service.impl;
+
+import com.xzll.common.constant.ProtoResponseCode;
+import com.xzll.connect.netty.NettyServer;
+import com.xzll.connect.netty.channel.LocalChannelManager;
+import com.xzll.connect.service.ConnectionDrainService;
+import com.xzll.connect.service.GroupServerMemberService;
+import com.xzll.connect.service.UserStatusManagerService;
+import com.xzll.grpc.ImProtoResponse;
+import com.xzll.grpc.MsgType;
+import com.xzll.grpc.ReconnectPush;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接排空服务实现类
+ * 排空在独立线程中串行执行；排空开始前已在握手中的连接可能在快照之后才注册，最多补扫 MAX_ROUNDS 轮
+ * 进程关闭时等待超时，则停止分批，剩余用户的路由与登录状态一次性清理（排空期间连接断开不会逐个清理）
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+@Service
+public class ConnectionDrainServiceImpl implements ConnectionDrainService {
+
+    private static final String TAG = "[连接排空]_";
+
+    private static final int MAX_ROUNDS = 3;
+
+    @Resource
+    private NettyServer nettyServer;
+
+    @Resource
+    private UserStatusManagerService userStatusManagerService;
+
+    @Resource
+    private GroupServerMemberService groupServerMemberService;
+
+    /**
+     * 每批推送重连通知的连接数
+     */
+    @Value("${im-server.drain.wave-size:2000}")
+    private int waveSize;
+
+    /**
+     * 两批之间的间隔（毫秒）
+     */
+    @Value("${im-server.drain.wave-interval-ms:1000}")
+    private long waveIntervalMs;
+
+    /**
+     * 客户端重连延迟的随机抖动上限（毫秒）
+     */
+    @Value("${im-server.drain.reconnect-jitter-ms:3000}")
+    private int reconnectJitterMs;
+
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    private final CompletableFuture<Void> drainFuture = new CompletableFuture<>();
+
+    /**
+     * 已清理过路由与状态的用户
+     */
+    private final Set<String> drained = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 关闭等待超时后置位，排空线程不再发起新的批次
+     */
+    private volatile boolean abandoned;
+
+    private final AtomicInteger notifiedCount = new AtomicInteger();
+    private final AtomicInteger clearedCount = new AtomicInteger();
+
+    private volatile String reason;
+    private volatile long startTime;
+    private volatile long finishTime;
+    private volatile int totalCount;
+
+    @Override
+    public boolean startDrain(String reason) {
+        if (!draining.compareAndSet(false, true)) {
+            return false;
+        }
+        this.reason = StringUtils.defaultIfBlank(reason, "DEPLOY");
+        this.startTime = System.currentTimeMillis();
+        Thread thread = new Thread(this::drain, "connection-drain");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    @Override
+    public boolean drainAndWait(long timeoutMs) {
+        startDrain("SHUTDOWN");
+        try {
+            drainFuture.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("{}等待排空超时, timeout:{}ms, 已通知:{}/{}", TAG, timeoutMs, notifiedCount.get(), totalCount);
+            clearRemaining();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("{}等待排空异常", TAG, e);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isDraining() {
+        return draining.get();
+    }
+
+    @Override
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", !draining.get() ? "RUNNING" : (drainFuture.isDone() ? "DRAINED" : "DRAINING"));
+        status.put("reason", reason);
+        status.put("startTime", startTime);
+        status.put("finishTime", finishTime);
+        status.put("total", totalCount);
+        status.put("notified", notifiedCount.get());
+        status.put("cleared", clearedCount.get());
+        status.put("remaining", LocalChannelManager.getOnlineUserCount());
+        return status;
+    }
+
+    private void drain() {
+        String serverIp = groupServerMemberService.getServerIp();
+        log.info("{}开始排空, server:{}, reason:{}, waveSize:{}, waveInterval:{}ms", TAG, serverIp, reason, waveSize, waveIntervalMs);
+        try {
+            // 1. 注销节点并暂停接收新连接，之后负载均衡不会再分配连接到本节点
+            nettyServer.deregisterServerInfo();
+            nettyServer.pauseAccept();
+
+            // 2. 分批推送重连通知并清理路由与状态
+            for (int round = 0; round < MAX_ROUNDS && !abandoned; round++) {
+                List<String> pending = new ArrayList<>(LocalChannelManager.getAllOnLineUserId());
+                pending.removeAll(drained);
+                if (pending.isEmpty()) {
+                    break;
+                }
+                totalCount += pending.size();
+                for (int from = 0; from < pending.size() && !abandoned; from += waveSize) {
+                    if (from > 0) {
+                        TimeUnit.MILLISECONDS.sleep(waveIntervalMs);
+                    }
+                    List<String> wave = pending.subList(from, Math.min(from + waveSize, pending.size()));
+                    for (String uid : wave) {
+                        sendReconnect(uid);
+                    }
+                    clearedCount.addAndGet(userStatusManagerService.clearUserStatusOnServer(wave, serverIp));
+                    drained.addAll(wave);
+                    log.info("{}完成一批, round:{}, 本批:{}, 已通知:{}, 已清理:{}", TAG, round, wave.size(), notifiedCount.get(), clearedCount.get());
+                }
+            }
+
+            // 3. 本节点的连接已全部关闭，整体删除群分片中本节点的 Field
+            groupServerMemberService.removeServerFromUserGroups(drained, serverIp);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("{}排空被中断", TAG);
+        } catch (Exception e) {
+            log.error("{}排空异常", TAG, e);
+        } finally {
+            finishTime = System.currentTimeMillis();
+            drainFuture.complete(null);
+            log.info("{}排空结束, server:{}, 总数:{}, 已通知:{}, 已清理:{}, 耗时:{}ms", TAG, serverIp, totalCount,
+                    notifiedCount.get(), clearedCount.get(), finishTime - startTime);
+        }
+    }
+
+    /**
+     * 关闭等待超时：停止分批，把尚未轮到的用户一次性清理掉
+     * 排空期间连接断开不会逐个清理，且排空线程是守护线程，不在这里清理的话这些用户的路由与登录状态会残留到下次登录
+     */
+    private void clearRemaining() {
+        abandoned = true;
+        String serverIp = groupServerMemberService.getServerIp();
+        List<String> remaining = new ArrayList<>(LocalChannelManager.getAllOnLineUserId());
+        remaining.removeAll(drained);
+        if (remaining.isEmpty()) {
+            return;
+        }
+        try {
+            int cleared = userStatusManagerService.clearUserStatusOnServer(remaining, serverIp);
+            clearedCount.addAndGet(cleared);
+            groupServerMemberService.removeServerFromUserGroups(remaining, serverIp);
+            drained.addAll(remaining);
+            log.warn("{}超时后一次性清理剩余用户, server:{}, 剩余:{}, 已清理:{}", TAG, serverIp, remaining.size(), cleared);
+        } catch (Exception e) {
+            log.error("{}超时后清理剩余用户异常, server:{}, 剩余:{}", TAG, serverIp, remaining.size(), e);
+        }
+    }
+
+    /**
+     * 推送重连通知后关闭连接；客户端不识别该消息时也会因连接关闭走自身的断线重连
+     */
+    private void sendReconnect(String uid) {
+        Channel channel = LocalChannelManager.getChannelByUserId(uid);
+        if (channel == null || !channel.isActive()) {
+            return;
+        }
+        ReconnectPush push = ReconnectPush.newBuilder()
+                .setDelayMs(reconnectJitterMs > 0 ? ThreadLocalRandom.current().nextInt(reconnectJitterMs) : 0)
+                .setReason(reason)
+                .build();
+        ImProtoResponse response = ImProtoResponse.newBuilder()
+                .setType(MsgType.SERVER_RECONNECT)
+                .setPayload(push.toByteString())
+                .setCode(ProtoResponseCode.SUCCESS)
+                .build();
+        channel.write(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(response.toByteArray())));
+        channel.writeAndFlush(new CloseWebSocketFrame(WebSocketCloseStatus.ENDPOINT_UNAVAILABLE))
+                .addListener(ChannelFutureListener.CLOSE);
+        notifiedCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,134 @@
+package com.xzll.connect.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.xzll.connect.cluster.mq.UserGroupCacheMqProvider;
+import com.xzll.connect.service.FriendBlockCheckService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.xzll.common.constant.ImConstant.RedisKeyConstant.FRIEND_BLOCKED_KEY_FORMAT;
+import static com.xzll.common.constant.ImConstant.RedisKeyConstant.FRIEND_GRAPH_CHANGE_TOPIC;
+import static com.xzll.common.constant.ImConstant.RedisKeyConstant.FRIEND_GRAPH_LOADED_MARKER;
+
+/**
+ * 好友拉黑校验服务实现类
+ * 每个接收方的拉黑集合在本地缓存一份，判断是一次哈希查找；im-business 重建缓存后广播失效。
+ * 拉黑集合未加载（过期或从未加载）时放行而不是拒绝，避免缓存冷启动时单聊整体不可用，同时发 MQ 让 im-business 重建
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+@Service
+public class FriendBlockCheckServiceImpl implements FriendBlockCheckService {
+
+    private static final String TAG = "[好友拉黑校验]";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private UserGroupCacheMqProvider userGroupCacheMqProvider;
+
+    @Value("${im-server.friend-block.enabled:true}")
+    private boolean enabled;
+
+    @Value("${im-server.friend-block.local-max-size:100000}")
+    private long localMaxSize;
+
+    @Value("${im-server.friend-block.local-ttl-seconds:30}")
+    private long localTtlSeconds;
+
+    /**
+     * 同一用户的重建请求间隔，避免缓存未加载期间每条消息都发 MQ
+     */
+    @Value("${im-server.friend-block.rebuild-interval-seconds:10}")
+    private long rebuildIntervalSeconds;
+
+    private Cache<String, Set<String>> blockedCache;
+
+    private Cache<String, Boolean> rebuildRequested;
+
+    private RTopic changeTopic;
+    private int changeListenerId = -1;
+
+    @PostConstruct
+    public void init() {
+        blockedCache = CacheBuilder.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        rebuildRequested = CacheBuilder.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(rebuildIntervalSeconds, TimeUnit.SECONDS)
+                .build();
+        try {
+            changeTopic = redissonClient.getTopic(FRIEND_GRAPH_CHANGE_TOPIC, StringCodec.INSTANCE);
+            changeListenerId = changeTopic.addListener(String.class, (channel, userId) -> blockedCache.invalidate(userId));
+        } catch (Exception e) {
+            log.error("{}订阅好友关系变更广播失败, 本地缓存将仅按TTL过期", TAG, e);
+        }
+        log.info("{}初始化完成, enabled: {}, localTtl: {}s", TAG, enabled, localTtlSeconds);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (changeTopic != null && changeListenerId != -1) {
+            changeTopic.removeListener(changeListenerId);
+        }
+    }
+
+    @Override
+    public boolean isBlocked(String receiverId, String senderId) {
+        if (!enabled || StringUtils.isAnyBlank(receiverId, senderId)) {
+            return false;
+        }
+        Set<String> blocked = blockedCache.getIfPresent(receiverId);
+        if (blocked == null) {
+            blocked = load(receiverId);
+            if (blocked == null) {
+                return false;
+            }
+        }
+        return blocked.contains(senderId);
+    }
+
+    /**
+     * @return 拉黑集合未加载或读取失败时返回null
+     */
+    private Set<String> load(String receiverId) {
+        try {
+            Set<String> blocked = redissonClient.<String>getSet(String.format(FRIEND_BLOCKED_KEY_FORMAT, receiverId),
+                    StringCodec.INSTANCE).readAll();
+            if (!blocked.remove(FRIEND_GRAPH_LOADED_MARKER)) {
+                requestRebuild(receiverId);
+                return null;
+            }
+            blockedCache.put(receiverId, blocked);
+            return blocked;
+        } catch (Exception e) {
+            log.warn("{}读取拉黑集合失败，放行 - receiverId: {}", TAG, receiverId, e);
+            return null;
+        }
+    }
+
+    private void requestRebuild(String userId) {
+        if (rebuildRequested.asMap().putIfAbsent(userId, Boolean.TRUE) != null) {
+            return;
+        }
+        log.debug("{}拉黑集合未加载，请求重建 - userId: {}", TAG, userId);
+        userGroupCacheMqProvider.sendFriendGraphRebuildMessage(userId, "CACHE_MISS");
+    }
+}
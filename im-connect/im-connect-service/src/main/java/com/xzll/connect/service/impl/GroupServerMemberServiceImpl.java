@@ -1,27 +1,26 @@
 package com.xzll.connect.service.impl;
 
 import cn.hutool.json.JSONUtil;
+import com.xzll.common.utils.LuaScriptRegistry;
 import com.xzll.common.utils.RedissonUtils;
 import com.xzll.common.util.NettyAttrUtil;
 import com.xzll.connect.cluster.mq.UserGroupCacheMqProvider;
 import com.xzll.connect.netty.channel.LocalChannelManager;
 import com.xzll.connect.service.GroupServerMemberService;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
 import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RScript;
 import org.redisson.api.RedissonClient;
 import org.redisson.client.codec.StringCodec;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.Resource;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
-import org.apache.commons.io.IOUtils;
-import org.springframework.core.io.ClassPathResource;
-
 /**
  * @Author: hzz
  * @Date: 2026-02-04
@@ -48,6 +47,7 @@ import org.springframework.core.io.ClassPathResource;
  * - 零本地内存：完全依赖Redis
  * - 原子更新：Lua脚本避免并发问题
  * - 批量优化：Pipeline批量更新多个群
+ * - EVALSHA：脚本注册到 LuaScriptRegistry，登录时每个群只传脚本摘要，不再重复发送脚本全文
  */
 @Slf4j
 @Service
@@ -57,14 +57,19 @@ public class GroupServerMemberServiceImpl implements GroupServerMemberService, o
     private static final String GROUP_SERVER_PREFIX = "group:server:";
     private static final String USER_GROUPS_CACHE_PREFIX = "user:groups:"; // 用户群列表缓存前缀
     private static final int CACHE_TTL = 3600; // 1小时
+    private static final int DRAIN_BATCH_SIZE = 500; // 节点下线时单个Pipeline的命令数
 
     // Lua脚本路径
     private static final String LUA_ADD_MEMBER = "lua/update_group_server_member_add.lua";
     private static final String LUA_REMOVE_MEMBER = "lua/update_group_server_member_remove.lua";
 
-    // Lua脚本内容
-    private String addMemberScript;
-    private String removeMemberScript;
+    // 本地成员查询脚本
+    private static final String LUA_GET_SERVER_MEMBERS = "return redis.call('HGET', KEYS[1], ARGV[1])";
+
+    // 已注册的Lua脚本
+    private LuaScriptRegistry.LuaScript addMemberScript;
+    private LuaScriptRegistry.LuaScript removeMemberScript;
+    private LuaScriptRegistry.LuaScript getServerMembersScript;
 
     @Resource
     private RedissonUtils redissonUtils;
@@ -78,23 +83,18 @@ public class GroupServerMemberServiceImpl implements GroupServerMemberService, o
     @Resource
     private RedissonClient redissonClient;
 
+    @Resource
+    private LuaScriptRegistry luaScriptRegistry;
+
     @Override
     public void afterPropertiesSet() throws Exception {
-        // 加载Lua脚本
-        addMemberScript = loadLuaScript(LUA_ADD_MEMBER);
-        removeMemberScript = loadLuaScript(LUA_REMOVE_MEMBER);
+        // 注册Lua脚本（SCRIPT LOAD 后按 SHA 调用）
+        addMemberScript = luaScriptRegistry.registerClasspath(LUA_ADD_MEMBER);
+        removeMemberScript = luaScriptRegistry.registerClasspath(LUA_REMOVE_MEMBER);
+        getServerMembersScript = luaScriptRegistry.register("group_server_member_get", LUA_GET_SERVER_MEMBERS);
         log.info("{}群成员分片Lua脚本加载完成", TAG);
     }
 
-    /**
-     * 加载Lua脚本
-     */
-    private String loadLuaScript(String path) throws Exception {
-        ClassPathResource resource = new ClassPathResource(path);
-        InputStream in = resource.getInputStream();
-        return IOUtils.toString(in, StandardCharsets.UTF_8);
-    }
-
     /**
      * 查询用户加入的群ID列表（优先从Redis缓存查询）
      *
@@ -214,11 +214,11 @@ public class GroupServerMemberServiceImpl implements GroupServerMemberService, o
             String hashKey = GROUP_SERVER_PREFIX + groupId;
 
             // 准备Lua脚本参数
-            String script = isOnline ? addMemberScript : removeMemberScript;
+            LuaScriptRegistry.LuaScript script = isOnline ? addMemberScript : removeMemberScript;
             List<String> keys = Collections.singletonList(hashKey);
 
             // 执行Lua脚本（原子操作）
-            Long result = redissonUtils.executeLuaScriptAsLongWithStringCodec(
+            Long result = luaScriptRegistry.evalShaAsLong(
                 script,
                 keys,
                 serverIp,  // ARGV[1]
@@ -258,7 +258,7 @@ public class GroupServerMemberServiceImpl implements GroupServerMemberService, o
 
         try {
             // 准备批量任务
-            String script = isOnline ? addMemberScript : removeMemberScript;
+            LuaScriptRegistry.LuaScript script = isOnline ? addMemberScript : removeMemberScript;
             List<RedissonUtils.LuaScriptTask> tasks = groupIds.stream()
                 .map(groupId -> {
                     String hashKey = GROUP_SERVER_PREFIX + groupId;
@@ -273,7 +273,7 @@ public class GroupServerMemberServiceImpl implements GroupServerMemberService, o
                 })
                 .collect(Collectors.toList());
 
-            // 批量执行（Pipeline）
+            // 批量执行（Pipeline + EVALSHA）
             long startTime = System.currentTimeMillis();
             List<Long> results = redissonUtils.executeLuaScriptsBatch(tasks);
             long cost = System.currentTimeMillis() - startTime;
@@ -298,6 +298,67 @@ public class GroupServerMemberServiceImpl implements GroupServerMemberService, o
         }
     }
 
+    /**
+     * 节点下线，从用户所在群的分片中删除本节点的 Field（Pipeline 批量读取群列表 + 批量 HDEL）
+     *
+     * @param userIds 本节点的在线用户
+     * @param serverIp 服务器IP
+     * @return 删除了 Field 的群数量
+     */
+    public int removeServerFromUserGroups(Collection<String> userIds, String serverIp) {
+        if (userIds == null || userIds.isEmpty()) {
+            return 0;
+        }
+        long startTime = System.currentTimeMillis();
+        List<String> users = new ArrayList<>(userIds);
+        Set<String> groupIds = new HashSet<>();
+
+        // 1. 分批读取用户群列表，取并集
+        for (int from = 0; from < users.size(); from += DRAIN_BATCH_SIZE) {
+            List<String> slice = users.subList(from, Math.min(from + DRAIN_BATCH_SIZE, users.size()));
+            try {
+                RBatch batch = redissonClient.createBatch();
+                List<RFuture<Collection<String>>> futures = new ArrayList<>(slice.size());
+                for (String userId : slice) {
+                    futures.add(batch.<String>getScoredSortedSet(USER_GROUPS_CACHE_PREFIX + userId, StringCodec.INSTANCE).readAllAsync());
+                }
+                batch.execute();
+                for (RFuture<Collection<String>> future : futures) {
+                    groupIds.addAll(future.toCompletableFuture().join());
+                }
+            } catch (Exception e) {
+                log.error("{}【节点下线】读取用户群列表失败 - server:{}, users:{}", TAG, serverIp, slice.size(), e);
+            }
+        }
+
+        // 2. 分批删除群分片中本节点的 Field
+        List<String> groups = new ArrayList<>(groupIds);
+        int removed = 0;
+        for (int from = 0; from < groups.size(); from += DRAIN_BATCH_SIZE) {
+            List<String> slice = groups.subList(from, Math.min(from + DRAIN_BATCH_SIZE, groups.size()));
+            try {
+                RBatch batch = redissonClient.createBatch();
+                List<RFuture<Long>> futures = new ArrayList<>(slice.size());
+                for (String groupId : slice) {
+                    futures.add(batch.<String, String>getMap(GROUP_SERVER_PREFIX + groupId, StringCodec.INSTANCE).fastRemoveAsync(serverIp));
+                }
+                batch.execute();
+                for (RFuture<Long> future : futures) {
+                    Long count = future.toCompletableFuture().join();
+                    if (count != null && count > 0) {
+                        removed++;
+                    }
+                }
+            } catch (Exception e) {
+                log.error("{}【节点下线】删除群分片失败 - server:{}, groups:{}", TAG, serverIp, slice.size(), e);
+            }
+        }
+
+        log.info("{}【节点下线】群分片清理完成 - server:{}, users:{}, groups:{}, removed:{}, cost:{}ms",
+            TAG, serverIp, users.size(), groups.size(), removed, System.currentTimeMillis() - startTime);
+        return removed;
+    }
+
     /**
      * 获取本地服务器的群成员（Hash分片查询）
      *
@@ -312,11 +373,11 @@ public class GroupServerMemberServiceImpl implements GroupServerMemberService, o
             String hashKey = GROUP_SERVER_PREFIX + groupId;
 
             // 直接使用 HGET 命令，确保使用 StringCodec（避免 RMap 缓存导致的 Codec 不一致问题）
-            String membersJson = (String) redissonClient.getScript(StringCodec.INSTANCE)
-                .eval(
-                    org.redisson.api.RScript.Mode.READ_ONLY,
-                    "return redis.call('HGET', KEYS[1], ARGV[1])",
-                    org.redisson.api.RScript.ReturnType.VALUE,
+            String membersJson = luaScriptRegistry.evalSha(
+                    getServerMembersScript,
+                    StringCodec.INSTANCE,
+                    RScript.Mode.READ_ONLY,
+                    RScript.ReturnType.VALUE,
                     Collections.singletonList(hashKey),
                     serverIp
                 );
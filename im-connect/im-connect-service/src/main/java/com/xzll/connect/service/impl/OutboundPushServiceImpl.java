@@ -0,0 +1,152 @@
+package com.xzll.connect.service.impl;
+
+import com.xzll.common.constant.ImConstant;
+import com.xzll.connect.config.IMConnectServerConfig;
+import com.xzll.connect.netty.outbound.OutboundQueue;
+import com.xzll.connect.service.OutboundPushService;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 下行推送服务实现类
+ *
+ * 所有队列操作切换到 Channel 所在的 EventLoop 上执行（与 writeAndFlush 在业务线程上的调用开销相同），保证推送顺序
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+@Service
+public class OutboundPushServiceImpl implements OutboundPushService {
+
+    private static final String TAG = "[慢消费者]_";
+
+    private static final ClosedChannelException CHANNEL_CLOSED = new ClosedChannelException();
+
+    private static final Gauge PARKED_BYTES = Gauge.build()
+            .name("im_connect_outbound_parked_bytes")
+            .help("Bytes of pushes parked on non-writable channels of this node.")
+            .register();
+
+    private static final Gauge PARKED_CHANNELS = Gauge.build()
+            .name("im_connect_outbound_parked_channels")
+            .help("Channels of this node with parked pushes.")
+            .register();
+
+    private static final Counter SLOW_CONSUMER_EVENTS = Counter.build()
+            .name("im_connect_outbound_slow_consumer_total")
+            .help("Slow consumer events by action (parked, collapsed, drained, disconnected).")
+            .labelNames("action")
+            .register();
+
+    @Resource
+    private IMConnectServerConfig imConnectServerConfig;
+
+    @Override
+    public ChannelFuture push(Channel channel, WebSocketFrame frame) {
+        return enqueue(channel, frame, 0L, 0L);
+    }
+
+    @Override
+    public ChannelFuture pushGroup(Channel channel, WebSocketFrame frame, long groupId, long msgId) {
+        return enqueue(channel, frame, groupId, msgId);
+    }
+
+    @Override
+    public void onWritable(Channel channel) {
+        OutboundQueue queue = OutboundQueue.peek(channel);
+        if (queue != null && !queue.isEmpty()) {
+            drain(channel, queue);
+        }
+    }
+
+    @Override
+    public void onInactive(Channel channel) {
+        OutboundQueue queue = OutboundQueue.peek(channel);
+        if (queue != null && !queue.isDiscarded()) {
+            discard(queue);
+        }
+    }
+
+    private ChannelFuture enqueue(Channel channel, WebSocketFrame frame, long groupId, long msgId) {
+        ChannelPromise promise = channel.newPromise();
+        if (channel.eventLoop().inEventLoop()) {
+            offer(channel, frame, promise, groupId, msgId);
+            return promise;
+        }
+        try {
+            channel.eventLoop().execute(() -> offer(channel, frame, promise, groupId, msgId));
+        } catch (RejectedExecutionException e) {
+            ReferenceCountUtil.release(frame);
+            promise.tryFailure(e);
+        }
+        return promise;
+    }
+
+    private void offer(Channel channel, WebSocketFrame frame, ChannelPromise promise, long groupId, long msgId) {
+        OutboundQueue queue = OutboundQueue.peek(channel);
+        if (!channel.isActive() || (queue != null && queue.isDiscarded())) {
+            ReferenceCountUtil.release(frame);
+            promise.tryFailure(CHANNEL_CLOSED);
+            return;
+        }
+        if ((queue == null || queue.isEmpty()) && channel.isWritable()) {
+            channel.writeAndFlush(frame, promise);
+            return;
+        }
+
+        if (queue == null) {
+            queue = OutboundQueue.of(channel);
+        }
+        boolean wasEmpty = queue.isEmpty();
+        long delta = queue.park(frame, promise, groupId, msgId);
+        PARKED_BYTES.inc(delta);
+        if (wasEmpty) {
+            PARKED_CHANNELS.inc();
+        }
+        SLOW_CONSUMER_EVENTS.labels(promise.isDone() ? "collapsed" : "parked").inc();
+
+        if (queue.getParkedBytes() > imConnectServerConfig.getMaxParkedBytesPerChannel()) {
+            log.warn("{}连接暂存推送超出预算，断开连接：userId={}, channelId={}, parkedBytes={}",
+                    TAG, channel.attr(ImConstant.USER_ID_KEY).get(), channel.id().asShortText(), queue.getParkedBytes());
+            discard(queue);
+            SLOW_CONSUMER_EVENTS.labels("disconnected").inc();
+            channel.close();
+            return;
+        }
+        // 队列非空时连接已恢复可写（补发被中断），立即继续补发
+        if (channel.isWritable()) {
+            drain(channel, queue);
+        }
+    }
+
+    private void drain(Channel channel, OutboundQueue queue) {
+        long drained = queue.drain(channel);
+        if (drained > 0) {
+            PARKED_BYTES.dec(drained);
+            SLOW_CONSUMER_EVENTS.labels("drained").inc();
+        }
+        if (queue.isEmpty()) {
+            PARKED_CHANNELS.dec();
+        }
+    }
+
+    private void discard(OutboundQueue queue) {
+        boolean hadEntries = !queue.isEmpty();
+        PARKED_BYTES.dec(queue.discard());
+        if (hadEntries) {
+            PARKED_CHANNELS.dec();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.xzll.connect.service.impl;
+
+import com.xzll.common.constant.ImConstant;
+import com.xzll.common.constant.MsgFormatEnum;
+import com.xzll.common.utils.AhoCorasickMatcher;
+import com.xzll.common.utils.RedissonUtils;
+import com.xzll.connect.service.SensitiveWordFilterService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 敏感词过滤服务实现类
+ * 使用 Aho-Corasick 自动机，单次扫描完成匹配；词库版本变化时在独立线程重建，构建完成后原子替换，
+ * 发送链路读取的始终是一个完整、不可变的自动机
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+@Service
+public class SensitiveWordFilterServiceImpl implements SensitiveWordFilterService {
+
+    private static final String TAG = "[敏感词过滤服务]";
+
+    @Resource
+    private RedissonUtils redissonUtils;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Value("${im-server.sensitive-word.enabled:true}")
+    private boolean filterEnabled;
+
+    @Value("${im-server.sensitive-word.mask-char:*}")
+    private char maskChar;
+
+    /**
+     * 当前生效的自动机，构建完成后整体替换
+     */
+    private volatile AhoCorasickMatcher matcher = AhoCorasickMatcher.empty();
+
+    /**
+     * 当前自动机对应的词库版本
+     */
+    private volatile long loadedVersion = -1L;
+
+    /**
+     * 是否有重建任务在执行，避免版本频繁变化时堆积任务
+     */
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    // 自动机构建线程，不占用 IO 线程和定时任务线程
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "sensitive-word-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        if (!filterEnabled) {
+            log.info("{}敏感词过滤未启用", TAG);
+            return;
+        }
+        refreshIfChanged();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        buildExecutor.shutdownNow();
+    }
+
+    @Override
+    public String filter(Integer msgFormat, String msgContent) {
+        if (!filterEnabled || StringUtils.isEmpty(msgContent)
+                || !Objects.equals(MsgFormatEnum.TEXT_MSG.getCode(), msgFormat)) {
+            return msgContent;
+        }
+        return matcher.mask(msgContent, maskChar);
+    }
+
+    /**
+     * 定时检查词库版本（默认每10秒）
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${im-server.sensitive-word.refresh-interval:10000}")
+    public void refreshIfChanged() {
+        if (!filterEnabled) {
+            return;
+        }
+        try {
+            long version = redissonUtils.getAtomicLong(ImConstant.RedisKeyConstant.SENSITIVE_WORDS_VERSION).get();
+            if (version == loadedVersion || !rebuilding.compareAndSet(false, true)) {
+                return;
+            }
+            buildExecutor.execute(() -> rebuild(version));
+        } catch (Exception e) {
+            log.error("{}检查敏感词库版本失败", TAG, e);
+        }
+    }
+
+    private void rebuild(long version) {
+        try {
+            long start = System.currentTimeMillis();
+            Set<String> words = redissonClient.<String>getSet(ImConstant.RedisKeyConstant.SENSITIVE_WORDS,
+                    StringCodec.INSTANCE).readAll();
+            AhoCorasickMatcher newMatcher = AhoCorasickMatcher.build(words);
+            matcher = newMatcher;
+            loadedVersion = version;
+            log.info("{}敏感词自动机重建完成 - 版本: {}, 词数: {}, 节点数: {}, 耗时: {}ms",
+                    TAG, version, newMatcher.wordCount(), newMatcher.nodeCount(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("{}敏感词自动机重建失败，继续使用旧词库 - 版本: {}", TAG, version, e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+}
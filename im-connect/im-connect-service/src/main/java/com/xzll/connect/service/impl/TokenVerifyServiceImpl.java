@@ -0,0 +1,303 @@
+package com.xzll.connect.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.SignedJWT;
+import com.xzll.common.constant.ImConstant;
+import com.xzll.common.utils.AsyncRedissonUtils;
+import com.xzll.connect.service.TokenVerifyService;
+import com.xzll.connect.util.TokenUtils;
+import io.prometheus.client.Counter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 握手 Token 校验服务实现类
+ *
+ * 公钥在启动时异步从 im-auth 拉取，拉取失败或遇到未知 kid 时按间隔重试；公钥未就绪期间只做 exp + Redis 校验（与原逻辑一致）
+ * 断网恢复后的集中重连中，同一 token 的并发校验合并为一次
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+@Service
+public class TokenVerifyServiceImpl implements TokenVerifyService {
+
+    private static final String TAG = "[Token校验]_";
+
+    private static final int JWK_TIMEOUT_MS = 3000;
+    private static final int JWK_SIZE_LIMIT = 51200;
+
+    private static final Counter VERIFY_TOTAL = Counter.build()
+            .name("im_connect_token_verify_total")
+            .help("WebSocket handshake token verifications by result.")
+            .labelNames("result")
+            .register();
+
+    @Resource
+    private AsyncRedissonUtils asyncRedissonUtils;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    /**
+     * im-auth 公钥地址（KeyPairController，JWKSet 格式）
+     */
+    @Value("${im-server.auth.jwk-set-uri:http://im-auth:8082/rsa/publicKey}")
+    private String jwkSetUri;
+
+    /**
+     * 公钥拉取失败后的最小重试间隔（秒）
+     */
+    @Value("${im-server.auth.jwk-reload-interval-seconds:30}")
+    private long jwkReloadIntervalSeconds;
+
+    /**
+     * 已验证 token 本地缓存的存活时间（秒），即吊销广播丢失时的最长不一致时间
+     */
+    @Value("${im-server.auth.token-cache-ttl-seconds:60}")
+    private long tokenCacheTtlSeconds;
+
+    @Value("${im-server.auth.token-cache-max-size:200000}")
+    private long tokenCacheMaxSize;
+
+    @Value("${im.netty.auth.token-expire-check:true}")
+    private boolean tokenExpireCheck;
+
+    /**
+     * 已验证 token：tokenMd5 -> 用户ID 与 token 过期时间
+     */
+    private Cache<String, VerifiedToken> verifiedCache;
+
+    /**
+     * 正在校验的 token：tokenMd5 -> 校验结果
+     */
+    private final Map<String, CompletableFuture<String>> inflightVerifies = new ConcurrentHashMap<>();
+
+    private volatile SigningKey signingKey;
+    private volatile long lastKeyLoadTime;
+    private final AtomicBoolean keyLoading = new AtomicBoolean(false);
+    private ExecutorService keyLoader;
+
+    private RTopic revokeTopic;
+    private int revokeListenerId = -1;
+
+    @PostConstruct
+    public void init() {
+        verifiedCache = CacheBuilder.newBuilder()
+                .maximumSize(tokenCacheMaxSize)
+                .expireAfterWrite(tokenCacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        keyLoader = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "jwk-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            revokeTopic = redissonClient.getTopic(ImConstant.RedisKeyConstant.USER_TOKEN_REVOKE_TOPIC, StringCodec.INSTANCE);
+            revokeListenerId = revokeTopic.addListener(String.class, (channel, tokenMd5) -> invalidate(tokenMd5));
+        } catch (Exception e) {
+            // 订阅失败时本地缓存只能依赖TTL过期
+            log.error("{}订阅吊销广播失败, 本地缓存将仅按TTL过期", TAG, e);
+        }
+        reloadSigningKeyAsync();
+        log.info("{}初始化完成, jwkSetUri: {}, cacheTtl: {}s, cacheMaxSize: {}", TAG, jwkSetUri, tokenCacheTtlSeconds, tokenCacheMaxSize);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (revokeTopic != null && revokeListenerId != -1) {
+            revokeTopic.removeListener(revokeListenerId);
+        }
+        if (keyLoader != null) {
+            keyLoader.shutdownNow();
+        }
+    }
+
+    @Override
+    public CompletionStage<String> verify(String token) {
+        if (!TokenUtils.isValidJwtFormat(token)) {
+            log.warn("{}Token格式无效，不是有效的JWT格式：{}", TAG, token);
+            return reject();
+        }
+        TokenUtils.TokenInfo tokenInfo = TokenUtils.parseTokenInfo(token);
+        if (tokenInfo == null) {
+            log.warn("{}无法解析Token信息：{}", TAG, token);
+            return reject();
+        }
+
+        String tokenMd5 = tokenInfo.getTokenMd5();
+        VerifiedToken cached = verifiedCache.getIfPresent(tokenMd5);
+        if (cached != null) {
+            if (!tokenExpireCheck || cached.expireAt > System.currentTimeMillis()) {
+                VERIFY_TOTAL.labels("cache_hit").inc();
+                return CompletableFuture.completedFuture(cached.userId);
+            }
+            verifiedCache.invalidate(tokenMd5);
+        }
+
+        // 同一 token 的并发握手共用一次校验
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = inflightVerifies.putIfAbsent(tokenMd5, future);
+        if (existing != null) {
+            return existing;
+        }
+        doVerify(token, tokenInfo).whenComplete((uid, e) -> {
+            inflightVerifies.remove(tokenMd5, future);
+            if (e != null) {
+                log.error("{}Token验证异常：token={}", TAG, token, e);
+                VERIFY_TOTAL.labels("error").inc();
+                future.complete(null);
+            } else {
+                future.complete(uid);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void invalidate(String tokenMd5) {
+        if (StringUtils.isBlank(tokenMd5)) {
+            return;
+        }
+        verifiedCache.invalidate(tokenMd5);
+        log.debug("{}收到吊销广播, tokenMd5: {}", TAG, tokenMd5);
+    }
+
+    /**
+     * 本地验证签名与过期时间，通过后只查一次 Redis 做吊销校验
+     */
+    private CompletionStage<String> doVerify(String token, TokenUtils.TokenInfo tokenInfo) {
+        long expireAt = Long.MAX_VALUE;
+        try {
+            SignedJWT jwt = SignedJWT.parse(token.replace("Bearer ", "").trim());
+
+            SigningKey key = signingKey;
+            if (key == null || !Objects.equals(key.keyId, jwt.getHeader().getKeyID())) {
+                // 公钥未就绪或已轮换，本次只做 exp + Redis 校验
+                reloadSigningKeyAsync();
+            } else if (!jwt.verify(key.verifier)) {
+                log.warn("{}Token签名无效：tokenInfo={}", TAG, tokenInfo);
+                return reject();
+            }
+
+            Date exp = jwt.getJWTClaimsSet().getExpirationTime();
+            if (exp != null) {
+                expireAt = exp.getTime();
+                if (tokenExpireCheck && expireAt <= System.currentTimeMillis()) {
+                    log.warn("{}Token已过期：tokenInfo={}", TAG, tokenInfo);
+                    return reject();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("{}Token解析或验签失败：tokenInfo={}, error={}", TAG, tokenInfo, e.getMessage());
+            return reject();
+        }
+
+        // 登出/顶号会删除该记录，记录存在即未吊销；key 随 token 过期，不再额外查询 TTL
+        String redisKey = tokenInfo.buildRedisKey(ImConstant.RedisKeyConstant.USER_TOKEN_KEY);
+        long tokenExpireAt = expireAt;
+        return asyncRedissonUtils.getString(redisKey).thenApply(storedUid -> {
+            if (StringUtils.isBlank(storedUid)) {
+                log.warn("{}Redis中未找到Token记录，可能已登出：redisKey={}, tokenInfo={}", TAG, redisKey, tokenInfo);
+                VERIFY_TOTAL.labels("rejected").inc();
+                return null;
+            }
+            if (!storedUid.equals(tokenInfo.getUserId())) {
+                log.warn("{}Token中的用户ID与Redis存储的不一致：token_uid={}, stored_uid={}", TAG, tokenInfo.getUserId(), storedUid);
+                VERIFY_TOTAL.labels("rejected").inc();
+                return null;
+            }
+            verifiedCache.put(tokenInfo.getTokenMd5(), new VerifiedToken(storedUid, tokenExpireAt));
+            VERIFY_TOTAL.labels("verified").inc();
+            log.debug("{}Token验证成功：userId={}, deviceType={}", TAG, storedUid, tokenInfo.getDeviceType().getDescription());
+            return storedUid;
+        });
+    }
+
+    private static CompletionStage<String> reject() {
+        VERIFY_TOTAL.labels("rejected").inc();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 异步拉取公钥，按 jwk-reload-interval-seconds 限制频率，不在 IO 线程上发起 HTTP 请求
+     */
+    private void reloadSigningKeyAsync() {
+        long now = System.currentTimeMillis();
+        if (now - lastKeyLoadTime < TimeUnit.SECONDS.toMillis(jwkReloadIntervalSeconds)
+                || !keyLoading.compareAndSet(false, true)) {
+            return;
+        }
+        lastKeyLoadTime = now;
+        try {
+            keyLoader.execute(() -> {
+                try {
+                    loadSigningKey();
+                } finally {
+                    keyLoading.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            keyLoading.set(false);
+        }
+    }
+
+    private void loadSigningKey() {
+        try {
+            JWKSet jwkSet = JWKSet.load(URI.create(jwkSetUri).toURL(), JWK_TIMEOUT_MS, JWK_TIMEOUT_MS, JWK_SIZE_LIMIT);
+            for (JWK jwk : jwkSet.getKeys()) {
+                if (jwk instanceof RSAKey) {
+                    RSAKey rsaKey = (RSAKey) jwk;
+                    signingKey = new SigningKey(rsaKey.getKeyID(), new RSASSAVerifier(rsaKey));
+                    log.info("{}公钥加载成功, kid: {}", TAG, rsaKey.getKeyID());
+                    return;
+                }
+            }
+            log.warn("{}公钥集合中没有RSA公钥, jwkSetUri: {}", TAG, jwkSetUri);
+        } catch (Exception e) {
+            log.warn("{}公钥加载失败，暂时只做Redis校验, jwkSetUri: {}, error: {}", TAG, jwkSetUri, e.getMessage());
+        }
+    }
+
+    private static final class SigningKey {
+        private final String keyId;
+        private final JWSVerifier verifier;
+
+        private SigningKey(String keyId, JWSVerifier verifier) {
+            this.keyId = keyId;
+            this.verifier = verifier;
+        }
+    }
+
+    private static final class VerifiedToken {
+        private final String userId;
+        private final long expireAt;
+
+        private VerifiedToken(String userId, long expireAt) {
+            this.userId = userId;
+            this.expireAt = expireAt;
+        }
+    }
+}
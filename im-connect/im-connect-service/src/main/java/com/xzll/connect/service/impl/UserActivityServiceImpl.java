@@ -0,0 +1,226 @@
+package com.xzll.connect.service.impl;
+
+import com.xzll.common.util.NettyAttrUtil;
+import com.xzll.common.utils.LuaScriptRegistry;
+import com.xzll.common.utils.RedissonUtils;
+import com.xzll.connect.netty.channel.LocalChannelManager;
+import com.xzll.connect.service.UserActivityService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMapAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.xzll.common.constant.ImConstant.UserActivityConstant.*;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 在线与活跃用户统计实现类
+ */
+@Slf4j
+@Service
+public class UserActivityServiceImpl implements UserActivityService {
+
+    private static final String TAG = "[用户活跃统计]_";
+
+    private static final String LUA_MARK_USER_ACTIVE = "lua/mark_user_active.lua";
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern(DAY_PATTERN).withZone(ZONE);
+    private static final DateTimeFormatter SAMPLE_FORMATTER = DateTimeFormatter.ofPattern(SAMPLE_MINUTE_PATTERN).withZone(ZONE);
+
+    @Resource
+    private RedissonUtils redissonUtils;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private LuaScriptRegistry luaScriptRegistry;
+
+    @Value("${im.user-activity.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    /**
+     * 单次写入的最大用户数（一条 PFADD / 一次脚本调用）
+     */
+    @Value("${im.user-activity.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    @Value("${im.user-activity.dau-ttl-days:40}")
+    private long dauTtlDays;
+
+    @Value("${im.user-activity.mau-ttl-days:400}")
+    private long mauTtlDays;
+
+    @Value("${im.user-activity.bitmap-ttl-days:120}")
+    private long bitmapTtlDays;
+
+    @Value("${im.user-activity.samples-ttl-days:40}")
+    private long samplesTtlDays;
+
+    private LuaScriptRegistry.LuaScript markActiveScript;
+
+    /**
+     * 当天已记录过的用户，本地去重，跨天清空
+     */
+    private final Set<String> seenToday = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 待写入 Redis 的活跃用户
+     */
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+    private volatile String currentDay;
+    private String expiredDay;
+    private long lastSampleMinute = -1;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        markActiveScript = luaScriptRegistry.registerClasspath(LUA_MARK_USER_ACTIVE);
+        currentDay = DAY_FORMATTER.format(Instant.now());
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-activity-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("{}启动完成, 刷新周期: {}ms", TAG, flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        flushActive(currentDay);
+        String node = NettyAttrUtil.getIpPortStr();
+        if (node != null) {
+            try {
+                redissonClient.getMap(ONLINE_NODES_KEY, StringCodec.INSTANCE).fastRemove(node);
+            } catch (Exception e) {
+                log.warn("{}移除节点在线数失败, node: {}", TAG, node, e);
+            }
+        }
+    }
+
+    @Override
+    public void markActive(String userId) {
+        if (userId != null && seenToday.add(userId)) {
+            pending.offer(userId);
+        }
+    }
+
+    private void tick() {
+        try {
+            Instant now = Instant.now();
+            String day = DAY_FORMATTER.format(now);
+            // 先把前一天积压的写完，再切换到新的一天
+            flushActive(currentDay);
+            if (!day.equals(currentDay)) {
+                currentDay = day;
+                seenToday.clear();
+                // 跨天仍在线的用户也算新一天的活跃
+                LocalChannelManager.getAllOnLineUserId().forEach(this::markActive);
+                log.info("{}跨天切换, day: {}, 在线用户: {}", TAG, day, pending.size());
+                flushActive(day);
+            }
+            sampleOnline(now, day);
+        } catch (Exception e) {
+            log.error("{}定时任务执行异常", TAG, e);
+        }
+    }
+
+    /**
+     * 批量写入活跃用户：DAU/MAU HyperLogLog + 当天活跃位图
+     */
+    private void flushActive(String day) {
+        if (pending.isEmpty() || day == null) {
+            return;
+        }
+        String month = day.substring(0, MONTH_PATTERN.length());
+        String dauKey = DAU_HLL_PREFIX + day;
+        String mauKey = MAU_HLL_PREFIX + month;
+        String bitmapKey = ACTIVE_BITMAP_PREFIX + day;
+        long bitmapTtlSeconds = TimeUnit.DAYS.toSeconds(bitmapTtlDays);
+
+        List<String> batch = new ArrayList<>(flushBatchSize);
+        while (true) {
+            batch.clear();
+            String userId;
+            while (batch.size() < flushBatchSize && (userId = pending.poll()) != null) {
+                batch.add(userId);
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            try {
+                String[] userIds = batch.toArray(new String[0]);
+                redissonUtils.addToHyperLogLog(dauKey, userIds);
+                redissonUtils.addToHyperLogLog(mauKey, userIds);
+
+                Object[] args = new Object[userIds.length + 1];
+                args[0] = String.valueOf(bitmapTtlSeconds);
+                System.arraycopy(userIds, 0, args, 1, userIds.length);
+                luaScriptRegistry.evalShaAsLong(markActiveScript,
+                        Arrays.asList(COMPACT_ID_KEY, COMPACT_ID_SEQ, bitmapKey), args);
+            } catch (Exception e) {
+                // 放回队列，下个周期重试（HyperLogLog 与位图重复写入是幂等的）
+                pending.addAll(batch);
+                log.error("{}写入活跃用户失败, 数量: {}, 下个周期重试", TAG, batch.size(), e);
+                return;
+            }
+        }
+
+        if (!day.equals(expiredDay)) {
+            redissonUtils.expire(dauKey, dauTtlDays, TimeUnit.DAYS);
+            redissonUtils.expire(mauKey, mauTtlDays, TimeUnit.DAYS);
+            expiredDay = day;
+        }
+    }
+
+    /**
+     * 每分钟上报一次本节点在线用户数
+     */
+    private void sampleOnline(Instant now, String day) {
+        long minute = now.toEpochMilli() / 60_000L;
+        if (minute == lastSampleMinute) {
+            return;
+        }
+        String node = NettyAttrUtil.getIpPortStr();
+        if (node == null) {
+            return;
+        }
+        lastSampleMinute = minute;
+        int online = LocalChannelManager.getOnlineUserCount();
+
+        RBatch batch = redissonClient.createBatch();
+        batch.<String, String>getMap(ONLINE_NODES_KEY, StringCodec.INSTANCE)
+                .fastPutAsync(node, online + ":" + now.toEpochMilli());
+        RMapAsync<String, String> samples = batch.getMap(ONLINE_SAMPLES_PREFIX + day, StringCodec.INSTANCE);
+        samples.addAndGetAsync(SAMPLE_FORMATTER.format(now), online);
+        samples.expireAsync(Duration.ofDays(samplesTtlDays));
+        batch.execute();
+    }
+}
@@ -6,15 +6,16 @@ import com.xzll.common.util.NettyAttrUtil;
 import com.xzll.connect.service.UserStatusManagerService;
 import com.xzll.connect.service.GroupServerMemberService;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
+import org.redisson.api.RScript;
 import org.springframework.beans.factory.InitializingBean;
-import org.springframework.core.io.ClassPathResource;
-import com.xzll.common.utils.RedissonUtils;
+import com.xzll.common.utils.LuaScriptRegistry;
 import org.springframework.stereotype.Service;
+import org.springframework.beans.factory.annotation.Value;
 import jakarta.annotation.Resource;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * @Author: hzz
@@ -30,12 +31,20 @@ public class UserStatusManagerServiceImpl implements UserStatusManagerService, I
 
     private static final String LUA_CLEAR_USER_STATUS_DISCONNECT_AFTER_LUA = "lua/clear_user_status_disconnect_after.lua";
     private static final String LUA_SET_USER_STATUS_CONNECT_AFTER_LUA = "lua/set_user_status_connect_after.lua";
+    private static final String LUA_CLEAR_USER_STATUS_DRAIN_LUA = "lua/clear_user_status_drain.lua";
 
-    private String clearUserStatusScript;
-    private String setUserStatusScript;
+    private LuaScriptRegistry.LuaScript clearUserStatusScript;
+    private LuaScriptRegistry.LuaScript setUserStatusScript;
+    private LuaScriptRegistry.LuaScript drainClearUserStatusScript;
+
+    /**
+     * 批量清理时单次 EVALSHA 携带的用户数，过大会长时间阻塞 Redis
+     */
+    @Value("${im-server.drain.clear-batch-size:500}")
+    private int clearBatchSize;
 
     @Resource
-    private RedissonUtils redissonUtils;
+    private LuaScriptRegistry luaScriptRegistry;
 
     @Resource
     private GroupServerMemberService groupServerMemberService;
@@ -47,15 +56,10 @@ public class UserStatusManagerServiceImpl implements UserStatusManagerService, I
      */
     @Override
     public void afterPropertiesSet() throws Exception {
-        // 加载 Lua 脚本
-        clearUserStatusScript = loadLuaScript(LUA_CLEAR_USER_STATUS_DISCONNECT_AFTER_LUA);
-        setUserStatusScript = loadLuaScript(LUA_SET_USER_STATUS_CONNECT_AFTER_LUA);
-    }
-
-    private String loadLuaScript(String path) throws Exception {
-        ClassPathResource resource = new ClassPathResource(path);
-        InputStream in = resource.getInputStream();
-        return IOUtils.toString(in, StandardCharsets.UTF_8);
+        // 注册 Lua 脚本（SCRIPT LOAD 后按 SHA 调用）
+        clearUserStatusScript = luaScriptRegistry.registerClasspath(LUA_CLEAR_USER_STATUS_DISCONNECT_AFTER_LUA);
+        setUserStatusScript = luaScriptRegistry.registerClasspath(LUA_SET_USER_STATUS_CONNECT_AFTER_LUA);
+        drainClearUserStatusScript = luaScriptRegistry.registerClasspath(LUA_CLEAR_USER_STATUS_DRAIN_LUA);
     }
 
     /**
@@ -67,7 +71,8 @@ public class UserStatusManagerServiceImpl implements UserStatusManagerService, I
     @Override
     public void userConnectSuccessAfter(Integer status, String uidStr) {
         try {
-            Long execute = redissonUtils.executeLuaScriptAsLong(setUserStatusScript,
+            // 路由信息由 RedissonUtils.getHash 以默认编解码器读取，这里保持默认编解码器
+            Long execute = luaScriptRegistry.evalSha(setUserStatusScript, null, RScript.Mode.READ_WRITE, RScript.ReturnType.INTEGER,
                     Arrays.asList(ImConstant.RedisKeyConstant.ROUTE_PREFIX, ImConstant.RedisKeyConstant.LOGIN_STATUS_PREFIX),
                     uidStr, NettyAttrUtil.getIpPortStr(), status.toString());
             log.info("客户端握手成功后设置用户状态结果:{}", execute);
@@ -95,7 +100,7 @@ public class UserStatusManagerServiceImpl implements UserStatusManagerService, I
     @Override
     public void userDisconnectAfter(String uid) {
         try {
-            Long execute = redissonUtils.executeLuaScriptAsLong(clearUserStatusScript,
+            Long execute = luaScriptRegistry.evalSha(clearUserStatusScript, null, RScript.Mode.READ_WRITE, RScript.ReturnType.INTEGER,
                     Arrays.asList(ImConstant.RedisKeyConstant.ROUTE_PREFIX, ImConstant.RedisKeyConstant.LOGIN_STATUS_PREFIX), uid);
             log.info("客户端断连后清除用户状态结果:{}", execute);
 
@@ -111,4 +116,47 @@ public class UserStatusManagerServiceImpl implements UserStatusManagerService, I
             log.error("客户端断连后清除用户状态异常:", e);
         }
     }
+
+    /**
+     * 节点下线时按批清除用户登录和机器信息
+     * 路由与状态以默认编解码器写入，这里同样使用默认编解码器，保证 HGET 结果与 ARGV 中的 ip:port 可直接比较
+     *
+     * @param uids     用户id
+     * @param serverIp 当前节点（ip:port）
+     * @return 实际清理的用户数
+     */
+    @Override
+    public int clearUserStatusOnServer(Collection<String> uids, String serverIp) {
+        if (uids == null || uids.isEmpty()) {
+            return 0;
+        }
+        List<String> keys = Arrays.asList(ImConstant.RedisKeyConstant.ROUTE_PREFIX, ImConstant.RedisKeyConstant.LOGIN_STATUS_PREFIX);
+        List<Object> args = new ArrayList<>(Math.min(uids.size(), clearBatchSize) + 1);
+        int cleared = 0;
+        for (String uid : uids) {
+            if (args.isEmpty()) {
+                args.add(serverIp);
+            }
+            args.add(uid);
+            if (args.size() > clearBatchSize) {
+                cleared += evalDrainClear(keys, args);
+                args.clear();
+            }
+        }
+        if (args.size() > 1) {
+            cleared += evalDrainClear(keys, args);
+        }
+        return cleared;
+    }
+
+    private int evalDrainClear(List<String> keys, List<Object> args) {
+        try {
+            Long execute = luaScriptRegistry.evalSha(drainClearUserStatusScript, null, RScript.Mode.READ_WRITE, RScript.ReturnType.INTEGER,
+                    keys, args.toArray());
+            return execute == null ? 0 : execute.intValue();
+        } catch (Exception e) {
+            log.error("节点下线批量清除用户状态异常, 本批用户数:{}", args.size() - 1, e);
+            return 0;
+        }
+    }
 }
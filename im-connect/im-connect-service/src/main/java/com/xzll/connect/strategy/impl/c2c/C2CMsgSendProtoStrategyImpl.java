@@ -14,9 +14,13 @@ import com.xzll.common.utils.RedissonUtils;
 import com.xzll.common.config.GrpcClientConfig;
 import com.xzll.common.grpc.SmartGrpcClientManager;
 import com.xzll.connect.cluster.provider.C2CMsgProvider;
+import com.xzll.connect.metrics.PipelineMetrics;
+import com.xzll.connect.metrics.TraceSampler;
 import com.xzll.connect.netty.channel.LocalChannelManager;
 import com.xzll.connect.pojo.dto.ReceiveUserDataDTO;
-import com.xzll.connect.pojo.dto.ServerInfoDTO;
+import com.xzll.connect.service.FriendBlockCheckService;
+import com.xzll.connect.service.OutboundPushService;
+import com.xzll.connect.service.SensitiveWordFilterService;
 import com.xzll.connect.strategy.MsgHandlerCommonAbstract;
 import com.xzll.connect.strategy.ProtoMsgHandlerStrategy;
 import com.xzll.grpc.C2CSendReq;
@@ -31,6 +35,8 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.skywalking.apm.toolkit.trace.ActiveSpan;
+import org.apache.skywalking.apm.toolkit.trace.Tracer;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
@@ -66,6 +72,14 @@ public class C2CMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract implem
     private SnowflakeIdService snowflakeIdService;
     @Resource
     private com.xzll.connect.service.C2CMsgRetryService c2CMsgRetryService;
+    @Resource
+    private SensitiveWordFilterService sensitiveWordFilterService;
+    @Resource
+    private FriendBlockCheckService friendBlockCheckService;
+    @Resource
+    private TraceSampler traceSampler;
+    @Resource
+    private OutboundPushService outboundPushService;
 
     @Override
     public MsgType supportMsgType() {
@@ -78,114 +92,144 @@ public class C2CMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract implem
      * 职责：
      * 1. 保存消息到数据库
      * 2. 查找接收人并推送/转发
+     *
+     * 链路追踪按 clientMsgId 采样：被采样的消息在业务线程上创建入口 Span，MQ 发送与 gRPC 转发由 agent 透传上下文
      */
     @Override
     public void exchange(ChannelHandlerContext ctx, ImProtoRequest protoRequest) {
-        log.debug("{}客户端发送单聊消息_开始", TAG);
-        
+        C2CSendReq req;
         try {
-            // 打印 ImProtoRequest 详细信息
-            log.info("{}收到客户端消息 - 消息类型: {}, Payload大小: {} bytes", 
-                TAG, protoRequest.getType(), protoRequest.getPayload().size());
-            
-            // 解析 C2CSendReq
-            C2CSendReq req = C2CSendReq.parseFrom(protoRequest.getPayload());
-            
-            // 打印消息详细内容（优化后：chatId已删除，ID改为long）
-            log.debug("{}【步骤1-接收消息】clientMsgId(UUID bytes): {}, msgId: {}, from: {}, to: {}, format: {}, time: {}, contentLength: {}",
-                TAG, ProtoConverterUtil.bytesToUuidString(req.getClientMsgId()), req.getMsgId(), req.getFrom(), req.getTo(), req.getFormat(), 
-                req.getTime(), req.getContent().length());
-            
-            C2CSendMsgAO packet = convertToAO(req);
-            
-            // 打印转换后的AO对象信息
-            log.debug("{}【步骤2-转换完成】转换后AO - clientMsgId: {}, msgId: {}, fromUserId: {}, toUserId: {}, chatId: {}",
-                TAG, packet.getClientMsgId(), packet.getMsgId(), packet.getFromUserId(), packet.getToUserId(), packet.getChatId());
-            
-            //1. 更新会话记录并保存消息记录
-            c2CMsgProvider.sendC2CMsg(packet);
-            
-            //2. 获取接收人登录，服务信息，根据状态进行处理
-            ReceiveUserDataDTO receiveUserData = super.getReceiveUserDataTemplate(
-                packet.getToUserId(), this.redissonUtils);
-            
-            String channelIdByUserId = receiveUserData.getChannelIdByUserId();
-            Channel targetChannel = receiveUserData.getTargetChannel();
-            String ipPortStr = receiveUserData.getRouteAddress();
-            String userStatus = receiveUserData.getUserStatus();
-            ServerInfoDTO serverInfoDTO = receiveUserData.getServerInfoDTO();
-            log.info("{}接收者id:{},在线状态:{},channelId:{},serverInfo:{}", 
-                TAG, packet.getToUserId(), userStatus, channelIdByUserId, serverInfoDTO);
-            
-            //3. 根据接收人状态做对应的处理
-            if (null != targetChannel && Objects.equals(ImConstant.UserStatus.ON_LINE.getValue().toString(), userStatus)) {
-                // 直接发送
-                log.debug("{}【步骤3-本地发送】用户{}在线且在本台机器上,将直接发送 - clientMsgId: {}, msgId: {}",
+            req = C2CSendReq.parseFrom(protoRequest.getPayload());
+        } catch (InvalidProtocolBufferException e) {
+            log.error("{}解析 protobuf 消息失败", TAG, e);
+            return;
+        }
+        boolean traced = traceSampler.isSampled(req.getClientMsgId());
+        if (traced) {
+            Tracer.createEntrySpan("C2C/Send", null);
+            ActiveSpan.tag("clientMsgId", ProtoConverterUtil.bytesToUuidString(req.getClientMsgId()));
+        }
+        try {
+            send(ctx, protoRequest, req, traced);
+        } finally {
+            if (traced) {
+                Tracer.stopSpan();
+            }
+        }
+    }
+
+    /**
+     * 发送单聊消息
+     * 明细日志只在消息被采样或开启 debug 时输出，未采样的消息不做任何参数转换和字符串格式化
+     */
+    private void send(ChannelHandlerContext ctx, ImProtoRequest protoRequest, C2CSendReq req, boolean traced) {
+        boolean verbose = traced || log.isDebugEnabled();
+        if (verbose) {
+            log.info("{}【步骤1-接收消息】clientMsgId: {}, msgId: {}, from: {}, to: {}, format: {}, time: {}, contentLength: {}, payloadSize: {} bytes",
+                TAG, ProtoConverterUtil.bytesToUuidString(req.getClientMsgId()), req.getMsgId(), req.getFrom(), req.getTo(), req.getFormat(),
+                req.getTime(), req.getContent().length(), protoRequest.getPayload().size());
+        }
+
+        // 服务端msgId以long贯穿整个链路，只在写入AO（MQ持久化）时转换一次字符串
+        long msgId = resolveMsgId(req.getMsgId());
+        C2CSendMsgAO packet = convertToAO(req, msgId);
+        // 接收方已拉黑发送方：不入库、不推送，直接告知发送方（只读本地/Redis 拉黑集合，不查库）
+        if (friendBlockCheckService.isBlocked(packet.getToUserId(), packet.getFromUserId())) {
+            log.info("{}接收方已拉黑发送方，拒收 - from: {}, to: {}, clientMsgId: {}",
+                TAG, packet.getFromUserId(), packet.getToUserId(), packet.getClientMsgId());
+            sendBlockedResponse(ctx, protoRequest);
+            return;
+        }
+        // 敏感词过滤（仅文本消息，入库和推送使用过滤后的内容）
+        packet.setMsgContent(sensitiveWordFilterService.filter(packet.getMsgFormat(), packet.getMsgContent()));
+
+        //1. 更新会话记录并保存消息记录
+        c2CMsgProvider.sendC2CMsg(packet);
+
+        //2. 获取接收人登录，服务信息，根据状态进行处理
+        long routeStart = System.nanoTime();
+        ReceiveUserDataDTO receiveUserData;
+        try {
+            receiveUserData = super.getReceiveUserDataTemplate(packet.getToUserId(), this.redissonUtils);
+        } catch (RuntimeException e) {
+            PipelineMetrics.record(MsgType.C2C_SEND, PipelineMetrics.Stage.ROUTE_LOOKUP, PipelineMetrics.ERROR, routeStart);
+            throw e;
+        }
+
+        Channel targetChannel = receiveUserData.getTargetChannel();
+        String ipPortStr = receiveUserData.getRouteAddress();
+        String userStatus = receiveUserData.getUserStatus();
+        PipelineMetrics.record(MsgType.C2C_SEND, PipelineMetrics.Stage.ROUTE_LOOKUP,
+            targetChannel == null && userStatus == null ? PipelineMetrics.MISS : PipelineMetrics.OK, routeStart);
+        if (verbose) {
+            log.info("{}【步骤2-接收者状态】clientMsgId: {}, msgId: {}, 接收者id: {}, 在线状态: {}, channelId: {}, route: {}",
+                TAG, packet.getClientMsgId(), packet.getMsgId(), packet.getToUserId(), userStatus,
+                receiveUserData.getChannelIdByUserId(), ipPortStr);
+        }
+
+        //3. 根据接收人状态做对应的处理
+        if (null != targetChannel && Objects.equals(ImConstant.UserStatus.ON_LINE.getValue().toString(), userStatus)) {
+            // 直接发送
+            if (verbose) {
+                log.info("{}【步骤3-本地发送】用户{}在线且在本台机器上,将直接发送 - clientMsgId: {}, msgId: {}",
                     TAG, packet.getToUserId(), packet.getClientMsgId(), packet.getMsgId());
-                sendProtoMsg(targetChannel, buildPushMsgResp(packet), packet);
-                
-                // 新增：发送到redis Zset （等待客户端ACK）
-                c2CMsgRetryService.addToRetryQueue(packet);
-                
-            } else if (null == userStatus && null == targetChannel) {
-                log.debug("{}【步骤3-离线处理】用户{}不在线，将消息保存至离线表中 - clientMsgId: {}, msgId: {}",
+            }
+            sendProtoMsg(targetChannel, buildPushMsgResp(req, msgId, packet), packet, verbose);
+
+            // 新增：发送到redis Zset （等待客户端ACK）
+            c2CMsgRetryService.addToRetryQueue(packet);
+
+        } else if (null == userStatus && null == targetChannel) {
+            if (verbose) {
+                log.info("{}【步骤3-离线处理】用户{}不在线，将消息保存至离线表中 - clientMsgId: {}, msgId: {}",
                     TAG, packet.getToUserId(), packet.getClientMsgId(), packet.getMsgId());
-                // 发送mq消息，记录离线消息并更新db中消息状态为离线
-                c2CMsgProvider.offLineMsg(buildOffLineMsgDTO(packet));
-                
-            } else if (Objects.isNull(targetChannel) && Objects.equals(ImConstant.UserStatus.ON_LINE.toString(), userStatus)
-                    && StringUtils.isNotBlank(ipPortStr)) {
-                log.debug("{}【步骤3-跨服务器转发】用户{}在线但是不在该机器上,跨服务器转发,目标服务器:{} - clientMsgId: {}, msgId: {}",
-                    TAG, packet.getToUserId(), ipPortStr, packet.getClientMsgId(), packet.getMsgId());
-                
-                // 【优化】通过 gRPC 跨服务器转发（直接传递 ImProtoRequest，最小化体积）
-                String targetIp = NettyAttrUtil.getIpStr(ipPortStr);
-                int targetPort = grpcClientConfig.getDefaultPort();
-                try {
-                    SmartGrpcClientManager.GrpcStubWrapper stubWrapper = grpcClientManager.getStubByIP(targetIp, targetPort);
-                    MessageServiceGrpc.MessageServiceBlockingStub stub = MessageServiceGrpc.newBlockingStub(
-                        stubWrapper.getChannelInfo().getChannel());
-                    
-                    // 构建 C2CSendReq（优化后：使用fixed64和bytes，chatId已删除）
-                    C2CSendReq c2cReq = C2CSendReq.newBuilder()
-                        .setClientMsgId(ProtoConverterUtil.uuidStringToBytes(packet.getClientMsgId())) // UUID -> bytes
-                        .setMsgId(ProtoConverterUtil.snowflakeStringToLong(packet.getMsgId())) // string -> fixed64
-                        .setFrom(ProtoConverterUtil.snowflakeStringToLong(packet.getFromUserId())) // string -> fixed64
-                        .setTo(ProtoConverterUtil.snowflakeStringToLong(packet.getToUserId())) // string -> fixed64
-                        .setFormat(packet.getMsgFormat())
-                        .setContent(packet.getMsgContent())
-                        .setTime(packet.getMsgCreateTime())
-                        // chatId 已删除，服务端根据from+to动态拼接
-                        .build();
-                    
-                    log.info("{}【跨服务器转发-构建请求】目标IP: {}, 转发数据 - clientMsgId: {}, msgId: {}, from: {}, to: {}", 
-                        TAG, targetIp, packet.getClientMsgId(), packet.getMsgId(), packet.getFromUserId(), packet.getToUserId());
-                    
-                    // 构建 ImProtoRequest（直接传递，无额外包装）
-                    ImProtoRequest forwardRequest = ImProtoRequest.newBuilder()
-                        .setType(MsgType.C2C_SEND)
-                        .setPayload(com.google.protobuf.ByteString.copyFrom(c2cReq.toByteArray()))
-                        .build();
-                    
-                    // 调用目标服务器的 transferC2CMsg 直接传递protobuf对象
-                    com.xzll.grpc.WebBaseResponse response = stub.transferC2CMsg(forwardRequest);
-                    log.info("{}【跨服务器转发-结果】gRPC转发消息结果: code={}, msg={} - clientMsgId: {}, msgId: {}", 
-                        TAG, response.getCode(), response.getMessage(), packet.getClientMsgId(), packet.getMsgId());
-                    
-                } catch (Exception e) {
-                    log.error("{}【跨服务器转发-异常】gRPC转发消息失败 - clientMsgId: {}, msgId: {}, error: {}", 
-                        TAG, packet.getClientMsgId(), packet.getMsgId(), e.getMessage(), e);
+            }
+            // 发送mq消息，记录离线消息并更新db中消息状态为离线
+            c2CMsgProvider.offLineMsg(buildOffLineMsgDTO(packet));
+
+        } else if (Objects.isNull(targetChannel) && Objects.equals(ImConstant.UserStatus.ON_LINE.toString(), userStatus)
+                && StringUtils.isNotBlank(ipPortStr)) {
+            // 【优化】通过 gRPC 跨服务器转发（直接传递 ImProtoRequest，最小化体积）
+            String targetIp = NettyAttrUtil.getIpStr(ipPortStr);
+            int targetPort = grpcClientConfig.getDefaultPort();
+            long relayStart = System.nanoTime();
+            try {
+                SmartGrpcClientManager.GrpcStubWrapper stubWrapper = grpcClientManager.getStubByIP(targetIp, targetPort);
+                MessageServiceGrpc.MessageServiceBlockingStub stub = MessageServiceGrpc.newBlockingStub(
+                    stubWrapper.getChannelInfo().getChannel());
+
+                // 直接复用客户端上行的 C2CSendReq，只补齐服务端确定的字段（msgId、时间、过滤后的内容）
+                C2CSendReq c2cReq = req.toBuilder()
+                    .setMsgId(msgId)
+                    .setContent(packet.getMsgContent())
+                    .setTime(packet.getMsgCreateTime())
+                    .build();
+
+                // 构建 ImProtoRequest（直接传递，无额外包装）
+                ImProtoRequest forwardRequest = ImProtoRequest.newBuilder()
+                    .setType(MsgType.C2C_SEND)
+                    .setPayload(com.google.protobuf.ByteString.copyFrom(c2cReq.toByteArray()))
+                    .build();
+
+                // 调用目标服务器的 transferC2CMsg 直接传递protobuf对象
+                com.xzll.grpc.WebBaseResponse response = stub.transferC2CMsg(forwardRequest);
+                PipelineMetrics.record(MsgType.C2C_SEND, PipelineMetrics.Stage.GRPC_RELAY,
+                    response.getSuccess() ? PipelineMetrics.OK : PipelineMetrics.ERROR, relayStart);
+                if (verbose) {
+                    log.info("{}【步骤3-跨服务器转发】目标服务器: {}, 结果: code={}, msg={} - clientMsgId: {}, msgId: {}",
+                        TAG, ipPortStr, response.getCode(), response.getMessage(), packet.getClientMsgId(), packet.getMsgId());
                 }
-            } else {
-                // 【新增】捕获异常状态，帮助诊断问题
-                log.warn("{}【步骤3-异常状态】用户{}状态不一致 - targetChannel: {}, userStatus: {}, ipPortStr: {} - clientMsgId: {}, msgId: {}",
-                    TAG, packet.getToUserId(), (targetChannel != null ? "存在" : "null"), 
-                    userStatus, ipPortStr, packet.getClientMsgId(), packet.getMsgId());
+
+            } catch (Exception e) {
+                PipelineMetrics.record(MsgType.C2C_SEND, PipelineMetrics.Stage.GRPC_RELAY, PipelineMetrics.ERROR, relayStart);
+                log.error("{}【跨服务器转发-异常】gRPC转发消息失败 - clientMsgId: {}, msgId: {}, error: {}", 
+                    TAG, packet.getClientMsgId(), packet.getMsgId(), e.getMessage(), e);
             }
-            
-            log.debug("{}客户端发送单聊消息_结束", TAG);
-        } catch (InvalidProtocolBufferException e) {
-            log.error("{}解析 protobuf 消息失败", TAG, e);
+        } else {
+            // 【新增】捕获异常状态，帮助诊断问题
+            log.warn("{}【步骤3-异常状态】用户{}状态不一致 - targetChannel: {}, userStatus: {}, ipPortStr: {} - clientMsgId: {}, msgId: {}",
+                TAG, packet.getToUserId(), (targetChannel != null ? "存在" : "null"), 
+                userStatus, ipPortStr, packet.getClientMsgId(), packet.getMsgId());
         }
     }
     
@@ -196,81 +240,109 @@ public class C2CMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract implem
      * 1. 不保存消息（避免重复，消息已在源服务器保存）
      * 2. 二次校验接收人在线状态
      * 3. 直接推送给本地客户端
+     *
+     * 采样结论由 clientMsgId 决定，与源服务器一致
      */
     @Override
     public WebBaseResponse receiveAndSendMsg(ImProtoRequest protoRequest) {
-        log.debug("{}【receiveAndSendMsg开始】目标服务器接收并转发消息", TAG);
-        
+        C2CSendReq req;
         try {
-            // 解析 C2CSendReq
-            C2CSendReq req = C2CSendReq.parseFrom(protoRequest.getPayload());
-            log.info("{}【receiveAndSendMsg-解析】接收到转发消息 - clientMsgId: {}, msgId: {}, from: {}, to: {}", 
-                TAG, ProtoConverterUtil.bytesToUuidString(req.getClientMsgId()), req.getMsgId(), req.getFrom(), req.getTo());
-            
-            C2CSendMsgAO packet = convertToAO(req);
-            
-            // 获取本地接收人 Channel
-            Channel targetChannel = LocalChannelManager.getChannelByUserId(packet.getToUserId());
-            String userStatus = redissonUtils.getHash(ImConstant.RedisKeyConstant.LOGIN_STATUS_PREFIX, packet.getToUserId());
-            
-            log.debug("{}【receiveAndSendMsg-状态检查】用户: {}, 在线状态: {}, 本地Channel: {} - clientMsgId: {}, msgId: {}",
-                TAG, packet.getToUserId(), userStatus, (targetChannel != null ? "存在" : "不存在"), 
-                packet.getClientMsgId(), packet.getMsgId());
-            
-            // 二次校验接收人在线状态
-            if (StringUtils.isNotBlank(userStatus) && null != targetChannel) {
-                // 心跳异常检测：如果接收人心跳ping异常，第一时间感知
-                // 注意：消息已经在exchange方法中入库（初始状态为"未读"），这里不应该再次保存为离线消息
-                // 应该直接返回，不推送，让服务端重推机制来处理（延迟队列会重试推送）
-                String channelId = targetChannel.id().asLongText();
-                if (isUserHeartbeatAbnormal(targetChannel, channelId, packet.getToUserId())) {
-                    // 心跳异常，不推送，加入redis zset等待重推机制处理，重推机制重试3次后 仍旧收不到接收方ack，则判定为离线消息
-                    log.warn("{}【receiveAndSendMsg-心跳异常检测】用户{}心跳异常，跳过推送，等待重推机制处理 - clientMsgId: {}, msgId: {}, channelId: {}",
-                        TAG, packet.getToUserId(), packet.getClientMsgId(), packet.getMsgId(), channelId);
-                }
-                
-                log.debug("{}【receiveAndSendMsg-本地发送】跳转后用户{}在线,将直接发送消息 - clientMsgId: {}, msgId: {}",
-                    TAG, packet.getToUserId(), packet.getClientMsgId(), packet.getMsgId());
-                sendProtoMsg(targetChannel, buildPushMsgResp(packet), packet);
-                
-                // 新增：发送到redis Zset（等待客户端ACK）
-                c2CMsgRetryService.addToRetryQueue(packet);
-            } else {
-                log.debug("{}【receiveAndSendMsg-离线处理】跳转后用户{}不在线,将消息保存至离线表中 - clientMsgId: {}, msgId: {}",
-                    TAG, packet.getToUserId(), packet.getClientMsgId(), packet.getMsgId());
-                // 发送mq消息，记录离线消息并更新db中消息状态为离线
-                c2CMsgProvider.offLineMsg(buildOffLineMsgDTO(packet));
-            }
-            
-            log.info("{}【receiveAndSendMsg完成】目标服务器接收并转发消息成功 - clientMsgId: {}, msgId: {}", 
-                TAG, packet.getClientMsgId(), packet.getMsgId());
-            return WebBaseResponse.returnResultSuccess("跳转消息成功");
-            
+            req = C2CSendReq.parseFrom(protoRequest.getPayload());
         } catch (InvalidProtocolBufferException e) {
             log.error("{}【receiveAndSendMsg-异常】解析 protobuf 消息失败", TAG, e);
             return WebBaseResponse.returnResultError("解析消息失败: " + e.getMessage());
         }
+        boolean traced = traceSampler.isSampled(req.getClientMsgId());
+        if (traced) {
+            Tracer.createEntrySpan("C2C/Relay", null);
+            ActiveSpan.tag("clientMsgId", ProtoConverterUtil.bytesToUuidString(req.getClientMsgId()));
+        }
+        try {
+            return relay(req, traced || log.isDebugEnabled());
+        } finally {
+            if (traced) {
+                Tracer.stopSpan();
+            }
+        }
+    }
+
+    private WebBaseResponse relay(C2CSendReq req, boolean verbose) {
+        // 源服务器已分配msgId，这里直接使用
+        long msgId = req.getMsgId();
+        C2CSendMsgAO packet = convertToAO(req, msgId);
+
+        // 获取本地接收人 Channel
+        long routeStart = System.nanoTime();
+        Channel targetChannel = LocalChannelManager.getChannelByUserId(packet.getToUserId());
+        String userStatus;
+        try {
+            userStatus = redissonUtils.getHash(ImConstant.RedisKeyConstant.LOGIN_STATUS_PREFIX, packet.getToUserId());
+        } catch (RuntimeException e) {
+            PipelineMetrics.record(MsgType.C2C_SEND, PipelineMetrics.Stage.ROUTE_LOOKUP, PipelineMetrics.ERROR, routeStart);
+            throw e;
+        }
+        PipelineMetrics.record(MsgType.C2C_SEND, PipelineMetrics.Stage.ROUTE_LOOKUP,
+            StringUtils.isBlank(userStatus) || targetChannel == null ? PipelineMetrics.MISS : PipelineMetrics.OK, routeStart);
+
+        if (verbose) {
+            log.info("{}【receiveAndSendMsg-状态检查】用户: {}, 在线状态: {}, 本地Channel: {} - clientMsgId: {}, msgId: {}, from: {}",
+                TAG, packet.getToUserId(), userStatus, (targetChannel != null ? "存在" : "不存在"),
+                packet.getClientMsgId(), packet.getMsgId(), packet.getFromUserId());
+        }
+
+        // 二次校验接收人在线状态
+        if (StringUtils.isNotBlank(userStatus) && null != targetChannel) {
+            // 心跳异常检测：如果接收人心跳ping异常，第一时间感知
+            // 注意：消息已经在exchange方法中入库（初始状态为"未读"），这里不应该再次保存为离线消息
+            // 应该直接返回，不推送，让服务端重推机制来处理（延迟队列会重试推送）
+            String channelId = targetChannel.id().asLongText();
+            if (isUserHeartbeatAbnormal(targetChannel, channelId, packet.getToUserId())) {
+                // 心跳异常，不推送，加入redis zset等待重推机制处理，重推机制重试3次后 仍旧收不到接收方ack，则判定为离线消息
+                log.warn("{}【receiveAndSendMsg-心跳异常检测】用户{}心跳异常，跳过推送，等待重推机制处理 - clientMsgId: {}, msgId: {}, channelId: {}",
+                    TAG, packet.getToUserId(), packet.getClientMsgId(), packet.getMsgId(), channelId);
+            }
+
+            sendProtoMsg(targetChannel, buildPushMsgResp(req, msgId, packet), packet, verbose);
+
+            // 新增：发送到redis Zset（等待客户端ACK）
+            c2CMsgRetryService.addToRetryQueue(packet);
+        } else {
+            if (verbose) {
+                log.info("{}【receiveAndSendMsg-离线处理】跳转后用户{}不在线,将消息保存至离线表中 - clientMsgId: {}, msgId: {}",
+                    TAG, packet.getToUserId(), packet.getClientMsgId(), packet.getMsgId());
+            }
+            // 发送mq消息，记录离线消息并更新db中消息状态为离线
+            c2CMsgProvider.offLineMsg(buildOffLineMsgDTO(packet));
+        }
+        return WebBaseResponse.returnResultSuccess("跳转消息成功");
+    }
+    
+
+    /**
+     * 确定服务端msgId：客户端传了则使用，否则服务端无锁生成
+     */
+    private long resolveMsgId(long clientMsgId) {
+        if (clientMsgId > 0) {
+            return clientMsgId;
+        }
+        long msgId = snowflakeIdService.nextId();
+        if (log.isDebugEnabled()) {
+            log.debug("{}客户端msgId为空，服务端生成新msgId: {}", TAG, msgId);
+        }
+        return msgId;
     }
     
     /**
      * 将 C2CSendReq 转换为 C2CSendMsgAO（优化后：适配fixed64和bytes）
      */
-    private C2CSendMsgAO convertToAO(C2CSendReq req) {
+    private C2CSendMsgAO convertToAO(C2CSendReq req, long msgId) {
         C2CSendMsgAO ao = new C2CSendMsgAO();
         
         // UUID bytes -> string
         ao.setClientMsgId(ProtoConverterUtil.bytesToUuidString(req.getClientMsgId()));
         
-        // fixed64 -> string（如果客户端传了msgId则使用，否则服务端生成）
-        String msgId;
-        if (req.getMsgId() > 0) {
-            msgId = ProtoConverterUtil.longToSnowflakeString(req.getMsgId());
-            log.debug("{}使用客户端传递的msgId: {}", TAG, msgId);
-        } else {
-            msgId = snowflakeIdService.generateSimpleMessageId();
-            log.info("{}客户端msgId为空，服务端生成新msgId: {}", TAG, msgId);
-        }
-        ao.setMsgId(msgId);
+        // fixed64 -> string（AO 经 MQ 持久化，仍使用字符串）
+        ao.setMsgId(String.valueOf(msgId));
         
         // fixed64 -> string
         ao.setFromUserId(ProtoConverterUtil.longToSnowflakeString(req.getFrom()));
@@ -286,15 +358,15 @@ public class C2CMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract implem
     }
     
     /**
-     * 构建推送消息响应（优化后：使用fixed64和bytes，chatId已删除）
+     * 构建推送消息响应（直接使用上行请求中的 fixed64/bytes 字段，无需 string 往返转换）
      */
-    private C2CMsgPush buildPushMsgResp(C2CSendMsgAO packet) {
+    private C2CMsgPush buildPushMsgResp(C2CSendReq req, long msgId, C2CSendMsgAO packet) {
         return C2CMsgPush.newBuilder()
-            .setClientMsgId(ProtoConverterUtil.uuidStringToBytes(packet.getClientMsgId())) // string UUID -> bytes
-            .setMsgId(ProtoConverterUtil.snowflakeStringToLong(packet.getMsgId())) // string -> fixed64
-            .setFrom(ProtoConverterUtil.snowflakeStringToLong(packet.getFromUserId())) // string -> fixed64
-            .setTo(ProtoConverterUtil.snowflakeStringToLong(packet.getToUserId())) // string -> fixed64
-            .setFormat(packet.getMsgFormat())
+            .setClientMsgId(req.getClientMsgId())
+            .setMsgId(msgId)
+            .setFrom(req.getFrom())
+            .setTo(req.getTo())
+            .setFormat(req.getFormat())
             .setContent(packet.getMsgContent())
             .setTime(packet.getMsgCreateTime())
             // chatId 已删除，客户端根据from+to动态拼接
@@ -307,12 +379,10 @@ public class C2CMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract implem
      * @param channel 目标Channel
      * @param pushMsg 推送消息
      * @param packet 原始消息包
+     * @param verbose 是否输出明细日志（消息被采样或开启 debug）
      */
-    private void sendProtoMsg(Channel channel, C2CMsgPush pushMsg, C2CSendMsgAO packet) {
+    private void sendProtoMsg(Channel channel, C2CMsgPush pushMsg, C2CSendMsgAO packet, boolean verbose) {
         try {
-            log.debug("{}【sendProtoMsg】开始发送消息到客户端 - clientMsgId(bytes): {}, msgId: {}, to: {}",
-                TAG, ProtoConverterUtil.bytesToUuidString(pushMsg.getClientMsgId()), pushMsg.getMsgId(), pushMsg.getTo());
-            
             ImProtoResponse response = ImProtoResponse.newBuilder()
                 .setType(MsgType.C2C_MSG_PUSH)
                 .setPayload(com.google.protobuf.ByteString.copyFrom(pushMsg.toByteArray()))
@@ -322,12 +392,18 @@ public class C2CMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract implem
             byte[] bytes = response.toByteArray();
             ByteBuf buf = Unpooled.wrappedBuffer(bytes);
             
-            // 添加发送结果检测（双重保障）
-            channel.writeAndFlush(new BinaryWebSocketFrame(buf))
+            // 添加发送结果检测（双重保障），连接不可写时暂存，恢复可写后补发
+            long writeStart = System.nanoTime();
+            outboundPushService.push(channel, new BinaryWebSocketFrame(buf))
                 .addListener(future -> {
+                    PipelineMetrics.record(MsgType.C2C_SEND, PipelineMetrics.Stage.WRITE,
+                        future.isSuccess() ? PipelineMetrics.OK : PipelineMetrics.ERROR, writeStart);
                     if (future.isSuccess()) {
-                        log.debug("{}【sendProtoMsg成功】消息发送到客户端成功 - clientMsgId: {}, msgId: {}, to: {}, payloadSize: {} bytes",
-                            TAG, packet.getClientMsgId(), packet.getMsgId(), packet.getToUserId(), bytes.length);
+                        PipelineMetrics.recordE2E(MsgType.C2C_SEND, packet.getMsgCreateTime());
+                        if (verbose) {
+                            log.info("{}【sendProtoMsg成功】消息发送到客户端成功 - clientMsgId: {}, msgId: {}, to: {}, payloadSize: {} bytes",
+                                TAG, packet.getClientMsgId(), packet.getMsgId(), packet.getToUserId(), bytes.length);
+                        }
                     } else {
                         //发送失败（重发由重发机制保障)
                     }
@@ -339,6 +415,19 @@ public class C2CMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract implem
         }
     }
     
+    /**
+     * 告知发送方消息被拒收，payload 原样带回上行请求，客户端按 clientMsgId 标记对应消息
+     */
+    private void sendBlockedResponse(ChannelHandlerContext ctx, ImProtoRequest protoRequest) {
+        ImProtoResponse response = ImProtoResponse.newBuilder()
+            .setType(MsgType.C2C_SEND)
+            .setPayload(protoRequest.getPayload())
+            .setCode(ProtoResponseCode.BLOCKED)
+            .setMsg("消息已发出，但被对方拒收了")
+            .build();
+        ctx.writeAndFlush(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(response.toByteArray())));
+    }
+    
     /**
      * 检查用户心跳是否异常
      * 如果心跳失败次数 > 0，认为用户可能已断网（服务端在120s之后断网清理连接），此时消息应保存为离线消息，待客户端自动重连后  给其推送离线消息
@@ -365,7 +454,7 @@ public class C2CMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract implem
                     (NettyServerHeartBeatHandlerImpl) heartBeatHandler;
                 
                 // 获取心跳失败次数
-                int failureCount = heartbeatHandler.getHeartbeatFailureCount(channelId);
+                int failureCount = heartbeatHandler.getHeartbeatFailureCount(channel);
                 
                 if (failureCount > 0) {
                     log.warn("{}【心跳异常检测】用户{}心跳失败次数={}，可能已断网 - channelId: {}", 
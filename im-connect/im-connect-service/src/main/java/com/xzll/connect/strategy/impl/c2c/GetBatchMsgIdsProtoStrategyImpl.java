@@ -0,0 +1,77 @@
+package com.xzll.connect.strategy.impl.c2c;
+
+import com.xzll.common.constant.ProtoResponseCode;
+import com.xzll.common.util.msgId.SnowflakeIdService;
+import com.xzll.connect.strategy.ProtoMsgHandlerStrategy;
+import com.xzll.grpc.BatchMsgIdsPush;
+import com.xzll.grpc.ImProtoRequest;
+import com.xzll.grpc.ImProtoResponse;
+import com.xzll.grpc.MsgType;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 客户端批量获取消息ID，Protobuf 处理器
+ *
+ * 一次 CAS 预留一段连续雪花ID，以 long 直接写入 BatchMsgIdsPush（repeated fixed64），全程无装箱、无字符串转换
+ * 每次下发数量不超过一毫秒的序列号容量，避免单个请求把逻辑时钟推到系统时钟前面
+ */
+@Slf4j
+@Service
+public class GetBatchMsgIdsProtoStrategyImpl implements ProtoMsgHandlerStrategy {
+
+    private static final String TAG = "[Protobuf客户端批量获取消息ID]_";
+
+    @Resource
+    private SnowflakeIdService snowflakeIdService;
+
+    @Value("${im-server.msg-id.batch-count:" + SnowflakeIdService.ONCE_BATCH_COUNT + "}")
+    private int batchCount;
+
+    @PostConstruct
+    public void init() {
+        int configured = batchCount;
+        batchCount = Math.max(1, Math.min(configured, SnowflakeIdService.MAX_RESERVE_COUNT));
+        if (batchCount != configured) {
+            log.warn("{}批量消息ID数量{}超出范围，按{}下发", TAG, configured, batchCount);
+        }
+    }
+
+    @Override
+    public MsgType supportMsgType() {
+        return MsgType.GET_BATCH_MSG_IDS;
+    }
+
+    @Override
+    public void exchange(ChannelHandlerContext ctx, ImProtoRequest protoRequest) {
+        long[] ids = new long[batchCount];
+        snowflakeIdService.nextIds(ids);
+
+        BatchMsgIdsPush.Builder push = BatchMsgIdsPush.newBuilder();
+        for (long id : ids) {
+            push.addMsgIds(id);
+        }
+        ImProtoResponse response = ImProtoResponse.newBuilder()
+                .setType(MsgType.PUSH_BATCH_MSG_IDS)
+                .setPayload(push.build().toByteString())
+                .setCode(ProtoResponseCode.SUCCESS)
+                .build();
+
+        ctx.writeAndFlush(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(response.toByteArray())))
+                .addListener(future -> {
+                    if (!future.isSuccess()) {
+                        log.warn("{}推送消息ID失败 - channel: {}", TAG, ctx.channel().id().asShortText(), future.cause());
+                    }
+                });
+        log.debug("{}已下发{}个消息ID", TAG, ids.length);
+    }
+}
@@ -8,6 +8,7 @@ import com.xzll.common.util.ChatIdUtils;
 import com.xzll.common.util.ProtoConverterUtil;
 import com.xzll.common.utils.RedissonUtils;
 import com.xzll.connect.cluster.provider.GroupMsgProvider;
+import com.xzll.connect.service.SensitiveWordFilterService;
 import org.redisson.api.RedissonClient;
 import org.redisson.client.codec.StringCodec;
 import com.xzll.connect.strategy.MsgHandlerCommonAbstract;
@@ -54,6 +55,8 @@ public class GroupMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract impl
     private GroupMsgProvider groupMsgProvider;
     @Resource
     private SnowflakeIdService snowflakeIdService;
+    @Resource
+    private SensitiveWordFilterService sensitiveWordFilterService;
 
     @Override
     public MsgType supportMsgType() {
@@ -87,6 +90,8 @@ public class GroupMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract impl
                 req.getFrom(), req.getFormat(), req.getTime(), req.getContent().length());
 
             GroupSendMsgAO packet = convertToAO(req);
+            // 敏感词过滤（仅文本消息，广播和入库使用过滤后的内容）
+            packet.setMsgContent(sensitiveWordFilterService.filter(packet.getMsgFormat(), packet.getMsgContent()));
 
             // 打印转换后的AO对象信息
             log.debug("{}【步骤2-转换完成】转换后AO - msgId: {}, groupId: {}, fromUserId: {}",
@@ -135,16 +140,9 @@ public class GroupMsgSendProtoStrategyImpl extends MsgHandlerCommonAbstract impl
         // GroupSendReq没有clientMsgId字段，所以不设置
         // ao.setClientMsgId(...);
 
-        // fixed64 -> string（如果客户端传了msgId则使用，否则服务端生成）
-        String msgId;
-        if (req.getMsgId() > 0) {
-            msgId = ProtoConverterUtil.longToSnowflakeString(req.getMsgId());
-            log.debug("{}使用客户端传递的msgId: {}", TAG, msgId);
-        } else {
-            msgId = snowflakeIdService.generateSimpleMessageId();
-            log.info("{}客户端msgId为空，服务端生成新msgId: {}", TAG, msgId);
-        }
-        ao.setMsgId(msgId);
+        // 如果客户端传了msgId则使用，否则服务端无锁生成（long），只在写入AO时转换一次字符串
+        long msgId = req.getMsgId() > 0 ? req.getMsgId() : snowflakeIdService.nextId();
+        ao.setMsgId(String.valueOf(msgId));
 
         // fixed64 -> string
         ao.setFromUserId(ProtoConverterUtil.longToSnowflakeString(req.getFrom()));
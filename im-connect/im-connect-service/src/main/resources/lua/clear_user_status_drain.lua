@@ -0,0 +1,15 @@
+local route_prefix = KEYS[1]        -- 用户登录的机器信息
+local login_status_prefix = KEYS[2] -- 用户登录状态
+local server = ARGV[1]              -- 当前下线节点（ip:port）
+
+-- ARGV[2..n] 为用户id，只清理路由仍指向当前节点的用户，已重连到其他节点的不动
+local cleared = 0
+for i = 2, #ARGV do
+    local uid = ARGV[i]
+    if redis.call("HGET", route_prefix, uid) == server then
+        redis.call("HDEL", route_prefix, uid)
+        redis.call("HDEL", login_status_prefix, uid)
+        cleared = cleared + 1
+    end
+end
+return cleared
@@ -0,0 +1,17 @@
+local compact_id_key = KEYS[1]  -- userId -> 紧凑ID 映射
+local compact_id_seq = KEYS[2]  -- 紧凑ID序列
+local bitmap_key = KEYS[3]      -- 当天活跃位图
+local ttl = tonumber(ARGV[1])   -- 位图过期时间（秒）
+
+local assigned = 0
+for i = 2, #ARGV do
+    local id = redis.call('HGET', compact_id_key, ARGV[i])
+    if not id then
+        id = redis.call('INCR', compact_id_seq)
+        redis.call('HSET', compact_id_key, ARGV[i], id)
+        assigned = assigned + 1
+    end
+    redis.call('SETBIT', bitmap_key, tonumber(id), 1)
+end
+redis.call('EXPIRE', bitmap_key, ttl)
+return assigned
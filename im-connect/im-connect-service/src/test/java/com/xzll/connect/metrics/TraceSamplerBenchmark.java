@@ -0,0 +1,118 @@
+package com.xzll.connect.metrics;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.xzll.common.util.ProtoConverterUtil;
+import com.xzll.grpc.C2CSendReq;
+import com.xzll.grpc.ImProtoRequest;
+import com.xzll.grpc.MsgType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.helpers.MessageFormatter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 链路采样基准测试：单条 C2C 消息在发送链路前半段（解析 + 采样判断 + 明细日志）的 CPU 开销
+ *
+ * sampleRate=0 / 0.01 / 1 对比 TraceSampler 与日志守卫的效果；unguarded 为改造前每条消息都格式化明细日志的参照
+ * 日志只格式化不落盘（MessageFormatter 产出字符串交给 Blackhole），排除 appender IO 的干扰
+ * 运行：直接执行 main 方法，或 mvn test-compile 后用 JMH 命令行运行
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TraceSamplerBenchmark {
+
+    private static final int MSG_COUNT = 1024;
+    private static final String TAG = "[C2C消息发送]_";
+
+    @Param({"0", "0.01", "1"})
+    private double sampleRate;
+
+    private TraceSampler sampler;
+    private ImProtoRequest[] requests;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sampler = new TraceSampler();
+        ReflectionTestUtils.setField(sampler, "sampleRate", sampleRate);
+        sampler.init();
+
+        Random random = new Random(20261019L);
+        requests = new ImProtoRequest[MSG_COUNT];
+        for (int i = 0; i < MSG_COUNT; i++) {
+            C2CSendReq req = C2CSendReq.newBuilder()
+                    .setClientMsgId(ProtoConverterUtil.uuidStringToBytes(new UUID(random.nextLong(), random.nextLong()).toString()))
+                    .setMsgId(random.nextLong() & Long.MAX_VALUE)
+                    .setFrom(random.nextLong() & Long.MAX_VALUE)
+                    .setTo(random.nextLong() & Long.MAX_VALUE)
+                    .setFormat(1)
+                    .setContent("你好，今晚一起吃饭吗？" + i)
+                    .setTime(System.currentTimeMillis())
+                    .build();
+            requests[i] = ImProtoRequest.newBuilder()
+                    .setType(MsgType.C2C_SEND)
+                    .setPayload(req.toByteString())
+                    .build();
+        }
+    }
+
+    private ImProtoRequest nextRequest() {
+        return requests[(cursor++) & (MSG_COUNT - 1)];
+    }
+
+    /**
+     * 现状：按 clientMsgId 采样，只有采样的消息做参数转换与日志格式化
+     */
+    @Benchmark
+    public void guarded(Blackhole bh) throws InvalidProtocolBufferException {
+        ImProtoRequest protoRequest = nextRequest();
+        C2CSendReq req = C2CSendReq.parseFrom(protoRequest.getPayload());
+        boolean verbose = sampler.isSampled(req.getClientMsgId());
+        if (verbose) {
+            bh.consume(formatDetail(protoRequest, req));
+        }
+        bh.consume(req);
+    }
+
+    /**
+     * 改造前：每条消息都转换 clientMsgId 并格式化明细日志（与 sampleRate 无关）
+     */
+    @Benchmark
+    public void unguarded(Blackhole bh) throws InvalidProtocolBufferException {
+        ImProtoRequest protoRequest = nextRequest();
+        C2CSendReq req = C2CSendReq.parseFrom(protoRequest.getPayload());
+        bh.consume(formatDetail(protoRequest, req));
+        bh.consume(req);
+    }
+
+    private static String formatDetail(ImProtoRequest protoRequest, C2CSendReq req) {
+        String clientMsgId = ProtoConverterUtil.bytesToUuidString(req.getClientMsgId());
+        String step1 = MessageFormatter.arrayFormat(
+                "{}【步骤1-接收消息】clientMsgId: {}, msgId: {}, from: {}, to: {}, format: {}, time: {}, contentLength: {}, payloadSize: {} bytes",
+                new Object[]{TAG, clientMsgId, req.getMsgId(), req.getFrom(), req.getTo(), req.getFormat(),
+                        req.getTime(), req.getContent().length(), protoRequest.getPayload().size()}).getMessage();
+        String step2 = MessageFormatter.arrayFormat(
+                "{}【步骤2-接收者状态】clientMsgId: {}, msgId: {}, 接收者id: {}, 在线状态: {}",
+                new Object[]{TAG, clientMsgId, req.getMsgId(), req.getTo(), "1"}).getMessage();
+        return step1 + step2;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TraceSamplerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,129 @@
+package com.xzll.connect.netty.compression;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 标准 permessage-deflate 有上限解码测试：上下文复用、分片消息、解压大小上限
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public class BoundedPerMessageDeflateDecoderTest {
+
+    private static final byte[] PAYLOAD = ("{\"type\":\"C2C_MSG_SEND\",\"payload\":{\"to\":\"100002\",\"chatId\":\"100001_100002\","
+            + "\"format\":1,\"content\":\"hello hello hello\"}}").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testContextTakeoverAcrossMessages() {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        EmbeddedChannel decoder = new EmbeddedChannel(new BoundedPerMessageDeflateDecoder(false, 64 * 1024));
+        try {
+            // 第二条消息引用第一条的滑动窗口，解码器必须保留上下文
+            for (int i = 0; i < 2; i++) {
+                assertTrue(decoder.writeInbound(new TextWebSocketFrame(true, WebSocketExtension.RSV1,
+                        Unpooled.wrappedBuffer(compress(deflater, PAYLOAD)))));
+                TextWebSocketFrame decoded = decoder.readInbound();
+                assertEquals(0, decoded.rsv() & WebSocketExtension.RSV1, "解压后应清除 RSV1");
+                assertArrayEquals(PAYLOAD, ByteBufUtil.getBytes(decoded.content()));
+                decoded.release();
+            }
+        } finally {
+            deflater.end();
+            decoder.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testFragmentedMessage() {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        byte[] compressed = compress(deflater, PAYLOAD);
+        deflater.end();
+        int half = compressed.length / 2;
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new BoundedPerMessageDeflateDecoder(true, 64 * 1024));
+        try {
+            decoder.writeInbound(new BinaryWebSocketFrame(false, WebSocketExtension.RSV1,
+                    Unpooled.wrappedBuffer(Arrays.copyOfRange(compressed, 0, half))));
+            decoder.writeInbound(new ContinuationWebSocketFrame(true, 0,
+                    Unpooled.wrappedBuffer(Arrays.copyOfRange(compressed, half, compressed.length))));
+
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            WebSocketFrame frame;
+            while ((frame = decoder.readInbound()) != null) {
+                joined.writeBytes(ByteBufUtil.getBytes(frame.content()));
+                frame.release();
+            }
+            assertArrayEquals(PAYLOAD, joined.toByteArray());
+        } finally {
+            decoder.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testMaxInboundSize() {
+        byte[] payload = new byte[1024];
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        byte[] compressed = compress(deflater, payload);
+        deflater.end();
+
+        // 正好等于上限可以通过
+        EmbeddedChannel atLimit = new EmbeddedChannel(new BoundedPerMessageDeflateDecoder(true, payload.length));
+        assertTrue(atLimit.writeInbound(new BinaryWebSocketFrame(true, WebSocketExtension.RSV1, Unpooled.wrappedBuffer(compressed))));
+        WebSocketFrame decoded = atLimit.readInbound();
+        assertEquals(payload.length, decoded.content().readableBytes());
+        decoded.release();
+        atLimit.finishAndReleaseAll();
+
+        // 超过上限直接报错
+        EmbeddedChannel overLimit = new EmbeddedChannel(new BoundedPerMessageDeflateDecoder(true, payload.length - 1));
+        assertThrows(TooLongFrameException.class, () -> overLimit.writeInbound(
+                new BinaryWebSocketFrame(true, WebSocketExtension.RSV1, Unpooled.wrappedBuffer(compressed))));
+        assertNull(overLimit.readInbound());
+        overLimit.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testUncompressedFramePassesThrough() {
+        EmbeddedChannel decoder = new EmbeddedChannel(new BoundedPerMessageDeflateDecoder(true, 16));
+        try {
+            BinaryWebSocketFrame frame = new BinaryWebSocketFrame(Unpooled.wrappedBuffer(PAYLOAD));
+            assertTrue(decoder.writeInbound(frame));
+            WebSocketFrame read = decoder.readInbound();
+            assertSame(frame, read, "未压缩帧应原样透传，不受上限约束");
+            read.release();
+        } finally {
+            decoder.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * 按 permessage-deflate 压缩一条消息：SYNC_FLUSH 后去掉 4 字节尾部
+     */
+    private static byte[] compress(Deflater deflater, byte[] payload) {
+        deflater.setInput(payload);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        byte[] bytes = out.toByteArray();
+        return Arrays.copyOf(bytes, bytes.length - 4);
+    }
+}
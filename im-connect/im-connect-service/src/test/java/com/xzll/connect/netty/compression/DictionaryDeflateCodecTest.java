@@ -0,0 +1,118 @@
+package com.xzll.connect.netty.compression;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * x-im-deflate 编解码测试：预置字典压缩往返、字典对压缩率的作用、解压大小上限
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public class DictionaryDeflateCodecTest {
+
+    private static final byte[] DICTIONARY = ("{\"type\":\"C2C_MSG_PUSH\",\"code\":0,\"payload\":{\"msgId\":\"\",\"from\":\"\","
+            + "\"to\":\"\",\"chatId\":\"\",\"format\":1,\"content\":\"\",\"time\":0}}").getBytes(StandardCharsets.UTF_8);
+
+    private static final int THRESHOLD = 16;
+
+    @Test
+    public void testRoundTripWithDictionary() {
+        byte[] payload = samplePayload();
+        WebSocketFrame compressed = encode(DICTIONARY, payload);
+        try {
+            assertNotEquals(0, compressed.rsv() & WebSocketExtension.RSV1, "压缩帧应置 RSV1");
+            assertTrue(compressed.content().readableBytes() < payload.length, "压缩后应变小");
+
+            EmbeddedChannel decoder = new EmbeddedChannel(new DictionaryDeflateDecoder(DICTIONARY, 64 * 1024));
+            assertTrue(decoder.writeInbound(compressed.retain()));
+            WebSocketFrame decoded = decoder.readInbound();
+            try {
+                assertEquals(0, decoded.rsv() & WebSocketExtension.RSV1, "解压后应清除 RSV1");
+                assertArrayEquals(payload, ByteBufUtil.getBytes(decoded.content()));
+            } finally {
+                decoded.release();
+                decoder.finishAndReleaseAll();
+            }
+        } finally {
+            compressed.release();
+        }
+    }
+
+    @Test
+    public void testDictionaryImprovesCompression() {
+        byte[] payload = samplePayload();
+        WebSocketFrame withDictionary = encode(DICTIONARY, payload);
+        WebSocketFrame withoutDictionary = encode(new byte[0], payload);
+        try {
+            assertTrue(withDictionary.content().readableBytes() < withoutDictionary.content().readableBytes(),
+                    "预置字典应提高小消息的压缩率");
+        } finally {
+            withDictionary.release();
+            withoutDictionary.release();
+        }
+    }
+
+    @Test
+    public void testSmallFrameSentUncompressed() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new DictionaryDeflateEncoder(DICTIONARY, Deflater.DEFAULT_COMPRESSION, THRESHOLD));
+        byte[] payload = "{}".getBytes(StandardCharsets.UTF_8);
+        assertTrue(encoder.writeOutbound(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(payload))));
+        WebSocketFrame frame = encoder.readOutbound();
+        try {
+            assertEquals(0, frame.rsv() & WebSocketExtension.RSV1);
+            assertArrayEquals(payload, ByteBufUtil.getBytes(frame.content()));
+        } finally {
+            frame.release();
+            encoder.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testMaxInboundSize() {
+        byte[] payload = new byte[1024];
+        WebSocketFrame compressed = encode(DICTIONARY, payload);
+        try {
+            // 正好等于上限可以通过
+            EmbeddedChannel atLimit = new EmbeddedChannel(new DictionaryDeflateDecoder(DICTIONARY, payload.length));
+            assertTrue(atLimit.writeInbound(compressed.retain()));
+            WebSocketFrame decoded = atLimit.readInbound();
+            assertEquals(payload.length, decoded.content().readableBytes());
+            decoded.release();
+            atLimit.finishAndReleaseAll();
+
+            // 超过上限直接报错
+            EmbeddedChannel overLimit = new EmbeddedChannel(new DictionaryDeflateDecoder(DICTIONARY, payload.length - 1));
+            assertThrows(TooLongFrameException.class, () -> overLimit.writeInbound(compressed.retain()));
+            assertNull(overLimit.readInbound());
+            overLimit.finishAndReleaseAll();
+        } finally {
+            compressed.release();
+        }
+    }
+
+    private static WebSocketFrame encode(byte[] dictionary, byte[] payload) {
+        EmbeddedChannel encoder = new EmbeddedChannel(new DictionaryDeflateEncoder(dictionary, Deflater.DEFAULT_COMPRESSION, THRESHOLD));
+        assertTrue(encoder.writeOutbound(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(payload))));
+        WebSocketFrame frame = encoder.readOutbound();
+        encoder.finishAndReleaseAll();
+        return frame;
+    }
+
+    private static byte[] samplePayload() {
+        return ("{\"type\":\"C2C_MSG_PUSH\",\"code\":0,\"payload\":{\"msgId\":\"1790000000000000001\",\"from\":\"100001\","
+                + "\"to\":\"100002\",\"chatId\":\"100001_100002\",\"format\":1,\"content\":\"hello\",\"time\":1790000000000}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
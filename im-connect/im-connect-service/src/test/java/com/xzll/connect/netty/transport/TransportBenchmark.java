@@ -0,0 +1,189 @@
+package com.xzll.connect.netty.transport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 传输实现基准测试：NIO vs epoll vs io_uring（本机回环）
+ *
+ * acceptAndClose：新建连接并立即 RST 关闭，衡量 accept 速率（重连风暴场景）
+ * echoRoundTrip：单连接流水线发送 BATCH 条 64 字节消息并等待全部回显，衡量每条消息的延迟与 CPU
+ * 每轮迭代结束打印进程 CPU 时间 / 操作数（ns），用于比较每条消息的 CPU 开销
+ * 运行：在 Linux 上直接执行 main 方法，或 mvn test-compile 后用 JMH 命令行运行；当前环境不可用的传输会直接失败
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransportBenchmark {
+
+    private static final int BATCH = 128;
+    private static final int MSG_SIZE = 64;
+
+    @Param({"nio", "epoll", "io_uring"})
+    private String transportName;
+
+    private TransportType transport;
+    private EventLoopGroup serverGroup;
+    private EventLoopGroup clientGroup;
+    private Channel serverChannel;
+    private InetSocketAddress address;
+
+    private Bootstrap connectBootstrap;
+    private Channel echoChannel;
+    private final EchoClientHandler echoClientHandler = new EchoClientHandler();
+    private ByteBuf message;
+
+    private final com.sun.management.OperatingSystemMXBean os =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    private long cpuStart;
+    private long ops;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        transport = TransportType.valueOf(transportName.toUpperCase());
+        if (!transport.isAvailable()) {
+            throw new IllegalStateException(transport + " unavailable: " + transport.unavailabilityCause());
+        }
+        serverGroup = transport.newEventLoopGroup(1, new DefaultThreadFactory("bench-server"));
+        clientGroup = transport.newEventLoopGroup(1, new DefaultThreadFactory("bench-client"));
+
+        serverChannel = new ServerBootstrap()
+                .group(serverGroup)
+                .channel(transport.serverChannelClass())
+                .option(ChannelOption.SO_BACKLOG, 4096)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new EchoServerHandler())
+                .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        address = (InetSocketAddress) serverChannel.localAddress();
+
+        connectBootstrap = new Bootstrap()
+                .group(clientGroup)
+                .channel(transport.socketChannelClass())
+                .option(ChannelOption.SO_LINGER, 0)
+                .handler(new ChannelInboundHandlerAdapter());
+
+        echoChannel = new Bootstrap()
+                .group(clientGroup)
+                .channel(transport.socketChannelClass())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(echoClientHandler);
+                    }
+                })
+                .connect(address).sync().channel();
+        message = Unpooled.unreleasableBuffer(Unpooled.directBuffer(MSG_SIZE).writeZero(MSG_SIZE));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (echoChannel != null) {
+            echoChannel.close().syncUninterruptibly();
+        }
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+        }
+        clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Setup(Level.Iteration)
+    public void startCpu() {
+        cpuStart = os.getProcessCpuTime();
+        ops = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportCpu() {
+        long cpu = os.getProcessCpuTime() - cpuStart;
+        if (ops > 0) {
+            System.out.printf("%n[%s] process cpu per op: %d ns (%d ops)%n", transport, cpu / ops, ops);
+        }
+    }
+
+    @Benchmark
+    public void acceptAndClose() throws InterruptedException {
+        ChannelFuture connect = connectBootstrap.connect(address).sync();
+        connect.channel().close().sync();
+        ops++;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void echoRoundTrip() throws InterruptedException {
+        CountDownLatch done = echoClientHandler.expect(BATCH * MSG_SIZE);
+        for (int i = 0; i < BATCH; i++) {
+            echoChannel.write(message.duplicate());
+        }
+        echoChannel.flush();
+        done.await();
+        ops += BATCH;
+    }
+
+    @ChannelHandler.Sharable
+    private static final class EchoServerHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.write(msg);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static final class EchoClientHandler extends ChannelInboundHandlerAdapter {
+        private CountDownLatch latch;
+        private long remaining;
+
+        synchronized CountDownLatch expect(long bytes) {
+            remaining = bytes;
+            latch = new CountDownLatch(1);
+            return latch;
+        }
+
+        @Override
+        public synchronized void channelRead(ChannelHandlerContext ctx, Object msg) {
+            remaining -= ((ByteBuf) msg).readableBytes();
+            ReferenceCountUtil.release(msg);
+            if (remaining <= 0 && latch != null) {
+                latch.countDown();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TransportBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
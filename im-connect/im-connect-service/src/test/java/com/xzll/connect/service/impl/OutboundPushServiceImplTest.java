@@ -0,0 +1,104 @@
+package com.xzll.connect.service.impl;
+
+import com.xzll.connect.config.IMConnectServerConfig;
+import com.xzll.connect.netty.outbound.OutboundQueue;
+import com.xzll.grpc.GroupSyncPush;
+import com.xzll.grpc.ImProtoResponse;
+import com.xzll.grpc.MsgType;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 下行推送暂存队列测试：用 EmbeddedChannel 的自定义可写位模拟慢消费者
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+public class OutboundPushServiceImplTest {
+
+    private static final int BUDGET = 100;
+
+    private OutboundPushServiceImpl outboundPushService;
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    public void setUp() {
+        IMConnectServerConfig config = new IMConnectServerConfig();
+        config.setMaxParkedBytesPerChannel(BUDGET);
+        outboundPushService = new OutboundPushServiceImpl();
+        ReflectionTestUtils.setField(outboundPushService, "imConnectServerConfig", config);
+        channel = new EmbeddedChannel();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testParkPastBudgetClosesChannel() {
+        setWritable(false);
+        BinaryWebSocketFrame first = frame(60);
+        BinaryWebSocketFrame second = frame(60);
+
+        ChannelFuture firstFuture = outboundPushService.push(channel, first);
+        assertFalse(firstFuture.isDone(), "预算内的推送应暂存");
+        assertTrue(channel.isActive());
+
+        ChannelFuture secondFuture = outboundPushService.push(channel, second);
+        assertFalse(channel.isActive(), "超出预算应断开连接");
+        assertSame(OutboundQueue.DISCARDED, firstFuture.cause());
+        assertSame(OutboundQueue.DISCARDED, secondFuture.cause());
+        assertEquals(0, first.refCnt(), "丢弃的推送应释放");
+        assertEquals(0, second.refCnt(), "丢弃的推送应释放");
+        assertNull(channel.readOutbound(), "暂存的推送不应写出");
+
+        ChannelFuture afterClose = outboundPushService.push(channel, frame(10));
+        assertFalse(afterClose.isSuccess(), "断开后的推送应直接失败");
+    }
+
+    @Test
+    public void testSecondSameGroupPushCollapsesIntoOneSyncNotice() throws Exception {
+        setWritable(false);
+        ChannelFuture first = outboundPushService.pushGroup(channel, frame(40), 7L, 1001L);
+        ChannelFuture second = outboundPushService.pushGroup(channel, frame(40), 7L, 1002L);
+        assertSame(OutboundQueue.COLLAPSED, first.cause());
+        assertSame(OutboundQueue.COLLAPSED, second.cause());
+        assertTrue(channel.isActive());
+
+        setWritable(true);
+        outboundPushService.onWritable(channel);
+
+        BinaryWebSocketFrame written = channel.readOutbound();
+        assertNotNull(written, "应写出一条同步通知");
+        try {
+            ImProtoResponse response = ImProtoResponse.parseFrom(ByteBufUtil.getBytes(written.content()));
+            assertEquals(MsgType.GROUP_SYNC_REQUIRED, response.getType());
+            GroupSyncPush push = GroupSyncPush.parseFrom(response.getPayload());
+            assertEquals(7L, push.getGroupId());
+            assertEquals(1002L, push.getLastMsgId());
+            assertEquals(2, push.getSkipped());
+        } finally {
+            written.release();
+        }
+        assertNull(channel.readOutbound(), "同一群只应有一条同步通知");
+    }
+
+    private void setWritable(boolean writable) {
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, writable);
+        assertEquals(writable, channel.isWritable());
+    }
+
+    private static BinaryWebSocketFrame frame(int size) {
+        return new BinaryWebSocketFrame(Unpooled.buffer(size).writeZero(size));
+    }
+}
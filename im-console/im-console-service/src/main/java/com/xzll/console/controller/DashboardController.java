@@ -2,11 +2,18 @@ package com.xzll.console.controller;
 
 import com.xzll.common.pojo.base.WebBaseResponse;
 import com.xzll.console.service.DashboardService;
+import com.xzll.console.service.MessageStatsRollupService;
+import com.xzll.console.service.UserActivityStatsService;
 import com.xzll.console.vo.DashboardVO;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.annotation.Resource;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @Author: hzz
@@ -22,6 +29,12 @@ public class DashboardController {
     @Resource
     private DashboardService dashboardService;
     
+    @Resource
+    private MessageStatsRollupService messageStatsRollupService;
+    
+    @Resource
+    private UserActivityStatsService userActivityStatsService;
+    
     /**
      * 获取看板统计数据
      */
@@ -77,4 +90,79 @@ public class DashboardController {
             return WebBaseResponse.returnResultError("获取消息TPS失败");
         }
     }
+    
+    /**
+     * 从MongoDB重建消息统计预聚合（首次上线或数据修复时执行，会扫描消息集合，请在低峰期调用）
+     */
+    @PostMapping("/message-stats/rebuild")
+    public WebBaseResponse<Map<String, Object>> rebuildMessageStats(@RequestParam(defaultValue = "30") int days) {
+        try {
+            Map<String, Object> summary = messageStatsRollupService.rebuildFromSource(days);
+            return WebBaseResponse.returnResultSuccess(summary);
+        } catch (Exception e) {
+            log.error("重建消息统计预聚合失败", e);
+            return WebBaseResponse.returnResultError("重建消息统计预聚合失败");
+        }
+    }
+    
+    /**
+     * 活跃用户概览：今日日活、本月月活、近7天/近30天去重活跃
+     */
+    @GetMapping("/active-users")
+    public WebBaseResponse<Map<String, Long>> getActiveUsers() {
+        try {
+            Map<String, Long> result = new LinkedHashMap<>();
+            result.put("dau", userActivityStatsService.getDau(LocalDate.now()));
+            result.put("wau", userActivityStatsService.getActiveUserCount(7));
+            result.put("mau", userActivityStatsService.getMau(YearMonth.now()));
+            result.put("active30d", userActivityStatsService.getActiveUserCount(30));
+            return WebBaseResponse.returnResultSuccess(result);
+        } catch (Exception e) {
+            log.error("获取活跃用户概览失败", e);
+            return WebBaseResponse.returnResultError("获取活跃用户概览失败");
+        }
+    }
+    
+    /**
+     * 近N天日活趋势
+     */
+    @GetMapping("/dau-trend")
+    public WebBaseResponse<Map<String, Long>> getDauTrend(@RequestParam(defaultValue = "7") int days) {
+        try {
+            return WebBaseResponse.returnResultSuccess(userActivityStatsService.getDauTrend(Math.min(days, 90)));
+        } catch (Exception e) {
+            log.error("获取日活趋势失败", e);
+            return WebBaseResponse.returnResultError("获取日活趋势失败");
+        }
+    }
+    
+    /**
+     * 某天的在线人数分钟采样与峰值，默认今天
+     */
+    @GetMapping("/online-samples")
+    public WebBaseResponse<Map<String, Object>> getOnlineSamples(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            return WebBaseResponse.returnResultSuccess(
+                    userActivityStatsService.getOnlineSamples(date == null ? LocalDate.now() : date));
+        } catch (Exception e) {
+            log.error("获取在线采样失败", e);
+            return WebBaseResponse.returnResultError("获取在线采样失败");
+        }
+    }
+    
+    /**
+     * 留存：cohortDate 当天活跃用户在第1/3/7/14/30天的留存
+     */
+    @GetMapping("/retention")
+    public WebBaseResponse<Map<String, Object>> getRetention(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate cohortDate) {
+        try {
+            return WebBaseResponse.returnResultSuccess(
+                    userActivityStatsService.getRetention(cohortDate, 1, 3, 7, 14, 30));
+        } catch (Exception e) {
+            log.error("计算留存失败", e);
+            return WebBaseResponse.returnResultError("计算留存失败");
+        }
+    }
 }
@@ -79,6 +79,22 @@ public class MessageSearchDTO {
      */
     private Boolean countOnly = false;
 
+    /**
+     * 游标：上一页最后一条消息的创建时间（取上次结果的 nextCursorTime）
+     * 与 cursorMsgId 同时传入时按游标翻页，忽略 pageNum，深翻页不再随页码变慢
+     */
+    private Long cursorTime;
+
+    /**
+     * 游标：上一页最后一条消息的ID（取上次结果的 nextCursorMsgId）
+     */
+    private String cursorMsgId;
+
+    /**
+     * 是否统计总数，翻页时可传false跳过计数，total 返回估算值
+     */
+    private Boolean withTotal = true;
+
     /**
      * 获取起始位置
      */
@@ -86,6 +102,13 @@ public class MessageSearchDTO {
         return (pageNum - 1) * pageSize;
     }
 
+    /**
+     * 是否按游标翻页
+     */
+    public boolean hasCursor() {
+        return cursorTime != null && cursorMsgId != null && !cursorMsgId.isEmpty();
+    }
+
     /**
      * 检查是否有任何搜索条件
      */
@@ -43,6 +43,9 @@ public class MessageQueryRouter {
     @Resource
     private MessageESQueryService esQueryService;
 
+    @Resource
+    private MessageStatsRollupService messageStatsRollupService;
+
     @Resource(name = "elasticSearchNacosConfig")
     private ElasticSearchNacosConfig elasticSearchConfig;
 
@@ -51,6 +54,7 @@ public class MessageQueryRouter {
      */
     public static final String SOURCE_MONGODB = "MongoDB";
     public static final String SOURCE_ES = "ES";
+    public static final String SOURCE_ROLLUP = "Rollup";
 
     /**
      * 判断是否启用ES
@@ -206,20 +210,12 @@ public class MessageQueryRouter {
     }
 
     /**
-     * 获取消息统计信息 - 无chatId，根据ES配置智能路由
+     * 获取消息统计信息 - 读预聚合，不扫描消息集合
      */
     public java.util.Map<String, Object> getMessageStatistics() {
-        if (isESEnabled()) {
-            log.info("获取消息统计 -> ES");
-            java.util.Map<String, Object> stats = esQueryService.getMessageStatistics();
-            stats.put("dataSource", SOURCE_ES);
-            return stats;
-        } else {
-            log.warn("获取消息统计 -> MongoDB（跨分片）");
-            java.util.Map<String, Object> stats = mongoQueryService.getMessageStatistics();
-            stats.put("dataSource", SOURCE_MONGODB);
-            return stats;
-        }
+        java.util.Map<String, Object> stats = messageStatsRollupService.getMessageStatistics();
+        stats.put("dataSource", SOURCE_ROLLUP);
+        return stats;
     }
 
     /**
@@ -250,32 +246,20 @@ public class MessageQueryRouter {
     }
 
     /**
-     * 获取今日消息数 - 无chatId，根据ES配置智能路由
+     * 获取今日消息数 - 读预聚合
      */
     public Long getTodayMessageCount() {
-        if (isESEnabled()) {
-            log.info("获取今日消息数 -> ES");
-            return esQueryService.getTodayMessageCount();
-        } else {
-            log.warn("获取今日消息数 -> MongoDB（跨分片）");
-            return mongoQueryService.getTodayMessageCount();
-        }
+        return messageStatsRollupService.getTodayMessageCount();
     }
 
     /**
-     * 获取消息趋势 - 无chatId，根据ES配置智能路由
+     * 获取消息趋势 - 读预聚合
      *
      * @param days 天数
      * @return Map<日期(MM-dd), 消息数>
      */
     public java.util.Map<String, Long> getMessagesTrend(int days) {
-        if (isESEnabled()) {
-            log.info("获取消息趋势 -> ES: days={}", days);
-            return esQueryService.getMessagesTrend(days);
-        } else {
-            log.warn("获取消息趋势 -> MongoDB（跨分片）: days={}", days);
-            return mongoQueryService.getMessagesTrend(days);
-        }
+        return messageStatsRollupService.getMessagesTrend(days);
     }
 
     /**
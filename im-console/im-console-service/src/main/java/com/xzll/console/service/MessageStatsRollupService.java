@@ -0,0 +1,46 @@
+package com.xzll.console.service;
+
+import java.util.Map;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 消息统计预聚合读取服务
+ *
+ * 预聚合由 im-business 消费消息时写入 Redis（key 约定见 ImConstant.MsgStatsConstant），
+ * 看板与统计接口只读预聚合结果，不再对消息集合做 count
+ */
+public interface MessageStatsRollupService {
+
+    /**
+     * 今日消息数
+     */
+    Long getTodayMessageCount();
+
+    /**
+     * 近N天消息趋势
+     *
+     * @param days 天数
+     * @return Map<日期(MM-dd), 消息数>，按日期升序
+     */
+    Map<String, Long> getMessagesTrend(int days);
+
+    /**
+     * 全量消息统计：totalCount、statusStats、formatStats、withdrawCount
+     */
+    Map<String, Object> getMessageStatistics();
+
+    /**
+     * 消息TPS（上一个完整分钟的平均值）
+     */
+    Long getMessageTps();
+
+    /**
+     * 从MongoDB重建预聚合（首次上线或数据修复时手动执行）
+     * 重建全量累计与今天之前的天级分桶；今天的分桶与分钟/小时分桶只由实时消费累加
+     *
+     * @param days 重建最近多少天的天级分桶
+     * @return 重建结果摘要
+     */
+    Map<String, Object> rebuildFromSource(int days);
+}
@@ -0,0 +1,57 @@
+package com.xzll.console.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 在线与活跃用户统计读取服务
+ *
+ * 数据由 im-connect 各节点写入 Redis（key 约定见 ImConstant.UserActivityConstant），
+ * 这里只读 HyperLogLog / 位图 / 节点上报值，不扫描用户表和在线状态Hash
+ */
+public interface UserActivityStatsService {
+
+    /**
+     * 当前在线用户数（各节点最近一次上报之和，忽略超时未上报的节点）
+     */
+    Long getOnlineUserCount();
+
+    /**
+     * 某天的日活（HyperLogLog估算，误差约0.81%）
+     */
+    Long getDau(LocalDate date);
+
+    /**
+     * 某月的月活（HyperLogLog估算）
+     */
+    Long getMau(YearMonth month);
+
+    /**
+     * 近N天日活趋势
+     *
+     * @return Map<日期(MM-dd), 日活>，按日期升序
+     */
+    Map<String, Long> getDauTrend(int days);
+
+    /**
+     * 近N天（含今天）去重活跃用户数，多个日活 HyperLogLog 合并计数
+     */
+    Long getActiveUserCount(int days);
+
+    /**
+     * 某天的在线人数分钟采样及峰值：samples(HH:mm -> 在线数)、peak、peakTime
+     */
+    Map<String, Object> getOnlineSamples(LocalDate date);
+
+    /**
+     * 留存：cohortDate 当天活跃的用户在之后第N天仍活跃的比例（基于活跃位图，精确值）
+     *
+     * @param cohortDate 基准日期
+     * @param dayOffsets 第N天，如 1、3、7、30
+     * @return cohortSize 与每个 dayN 的 retained / rate；尚未到达的日期不返回
+     */
+    Map<String, Object> getRetention(LocalDate cohortDate, int... dayOffsets);
+}
@@ -1,22 +1,17 @@
 package com.xzll.console.service.impl;
 
-import com.xzll.common.utils.RedissonUtils;
 import com.xzll.console.dto.TerminalTypeCountDTO;
-import com.xzll.console.entity.mongo.ImC2CMsgRecordMongo;
 import com.xzll.console.mapper.ImFriendRelationMapper;
 import com.xzll.console.mapper.ImUserMapper;
 import com.xzll.console.service.DashboardService;
-import com.xzll.console.service.MessageQueryRouter;
+import com.xzll.console.service.MessageStatsRollupService;
+import com.xzll.console.service.UserActivityStatsService;
 import com.xzll.console.vo.DashboardVO;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
@@ -30,8 +25,6 @@ import java.util.*;
 public class DashboardServiceImpl implements DashboardService {
 
     private static final String ONLINE_USERS_PATTERN = "im:user:online:*";
-    private static final String MESSAGE_COUNT_KEY = "im:stats:message:count:";
-    private static final String MESSAGE_TPS_KEY = "im:stats:message:tps";
 
     @Resource
     private ImUserMapper imUserMapper;
@@ -40,13 +33,10 @@ public class DashboardServiceImpl implements DashboardService {
     private ImFriendRelationMapper friendRelationMapper;
 
     @Resource
-    private RedissonUtils redissonUtils;
+    private UserActivityStatsService userActivityStatsService;
 
     @Resource
-    private MongoTemplate mongoTemplate;
-
-    @Resource
-    private MessageQueryRouter messageQueryRouter;
+    private MessageStatsRollupService messageStatsRollupService;
     
     @Override
     public DashboardVO getDashboardStats() {
@@ -66,51 +56,18 @@ public class DashboardServiceImpl implements DashboardService {
     
     @Override
     public Long getOnlineUserCount() {
-        try {
-            // userLogin:status: 是一个Hash结构，存储所有在线用户的状态
-            // Field: 用户ID, Value: 状态值
-            // Hash的大小即为在线用户数
-            String loginStatusKey = "userLogin:status:";
-            // 【关键修复】使用默认Codec（与Lua脚本保持一致，不使用StringCodec）
-            long count = redissonUtils.sizeHash(loginStatusKey);
-
-            log.info("获取在线用户数成功: count={}", count);
-            return count;
-        } catch (Exception e) {
-            log.error("获取在线用户数失败", e);
-            return 0L;
-        }
+        // 各connect节点每分钟上报的在线数之和，不再对 userLogin:status: 做 HLEN
+        return userActivityStatsService.getOnlineUserCount();
     }
     
     @Override
     public Long getTodayMessageCount() {
-        try {
-            // 优先从Redis获取
-            String today = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-            String key = MESSAGE_COUNT_KEY + today;
-            String count = redissonUtils.getString(key);
-            if (count != null) {
-                return Long.parseLong(count);
-            }
-
-            // Redis没有数据，使用路由器查询（根据配置选择ES或MongoDB）
-            log.info("Redis中没有今日消息数据，使用路由器查询");
-            return messageQueryRouter.getTodayMessageCount();
-        } catch (Exception e) {
-            log.error("获取今日消息数失败", e);
-            return 0L;
-        }
+        return messageStatsRollupService.getTodayMessageCount();
     }
     
     @Override
     public Long getMessageTps() {
-        try {
-            String tps = redissonUtils.getString(MESSAGE_TPS_KEY);
-            return tps != null ? Long.parseLong(tps) : 0L;
-        } catch (Exception e) {
-            log.error("获取消息TPS失败", e);
-            return 0L;
-        }
+        return messageStatsRollupService.getMessageTps();
     }
     
     private Long getTotalUsers() {
@@ -122,16 +79,8 @@ public class DashboardServiceImpl implements DashboardService {
     }
     
     private Long getTotalMessageCount() {
-        try {
-            // 从路由器获取消息统计（根据配置选择ES或MongoDB）
-            Map<String, Object> stats = messageQueryRouter.getMessageStatistics();
-            Long totalCount = (Long) stats.get("totalCount");
-            log.info("获取总消息数: dataSource={}, totalCount={}", stats.get("dataSource"), totalCount);
-            return totalCount != null ? totalCount : 0L;
-        } catch (Exception e) {
-            log.error("获取总消息数失败", e);
-            return 0L;
-        }
+        Object totalCount = messageStatsRollupService.getMessageStatistics().get("totalCount");
+        return totalCount instanceof Long ? (Long) totalCount : 0L;
     }
     
     private Long getTotalFriendRelations() {
@@ -166,77 +115,7 @@ public class DashboardServiceImpl implements DashboardService {
     }
     
     private Map<String, Long> getMessagesTrend() {
-        Map<String, Long> result = new LinkedHashMap<>();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd");
-
-        // 优先从Redis获取统计数据（高性能）
-        boolean hasRedisData = false;
-        for (int i = 6; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
-            String dateStr = date.format(formatter);
-            String key = MESSAGE_COUNT_KEY + date.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-
-            try {
-                String count = redissonUtils.getString(key);
-                if (count != null) {
-                    result.put(dateStr, Long.parseLong(count));
-                    hasRedisData = true;
-                } else {
-                    result.put(dateStr, 0L);
-                }
-            } catch (Exception e) {
-                result.put(dateStr, 0L);
-            }
-        }
-
-        // 如果Redis没有数据，使用路由器查询（根据配置选择ES或MongoDB）
-        if (!hasRedisData) {
-            log.info("Redis中没有消息统计数据，使用路由器查询");
-            result = messageQueryRouter.getMessagesTrend(7);
-        }
-
-        return result;
-    }
-
-    /**
-     * 从MongoDB获取近7天的消息趋势
-     * @deprecated 已废弃，使用 messageQueryRouter.getMessagesTrend() 代替
-     */
-    @Deprecated
-    private Map<String, Long> getMessagesTrendFromMongoDB() {
-        Map<String, Long> result = new LinkedHashMap<>();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd");
-
-        try {
-            for (int i = 6; i >= 0; i--) {
-                LocalDate date = LocalDate.now().minusDays(i);
-                String dateStr = date.format(formatter);
-
-                // 计算当天的时间范围（毫秒时间戳）
-                LocalDateTime startOfDay = date.atStartOfDay();
-                LocalDateTime endOfDay = date.plusDays(1).atStartOfDay();
-
-                long startTime = startOfDay.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
-                long endTime = endOfDay.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
-
-                // 从MongoDB查询当天的消息数
-                Query query = new Query(Criteria.where("msgCreateTime").gte(startTime).lt(endTime));
-                long count = mongoTemplate.count(query, ImC2CMsgRecordMongo.class);
-
-                result.put(dateStr, count);
-                log.info("MongoDB查询消息趋势: {} = {}", dateStr, count);
-            }
-        } catch (Exception e) {
-            log.error("从MongoDB获取消息趋势失败", e);
-            // 失败时返回0
-            for (int i = 6; i >= 0; i--) {
-                LocalDate date = LocalDate.now().minusDays(i);
-                String dateStr = date.format(formatter);
-                result.put(dateStr, 0L);
-            }
-        }
-
-        return result;
+        return messageStatsRollupService.getMessagesTrend(7);
     }
     
     private Map<String, Long> getUsersTrend() {
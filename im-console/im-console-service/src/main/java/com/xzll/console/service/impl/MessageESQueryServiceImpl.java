@@ -2,11 +2,14 @@ package com.xzll.console.service.impl;
 
 import cn.hutool.core.util.StrUtil;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.query_dsl.*;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHits;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
 import co.elastic.clients.json.JsonData;
 import com.xzll.console.dto.MessageSearchDTO;
 import com.xzll.console.entity.ImC2CMsgRecord;
@@ -14,6 +17,7 @@ import com.xzll.console.entity.es.ImC2CMsgRecordES;
 import com.xzll.console.service.MessageESQueryService;
 import com.xzll.console.vo.MessageSearchResultVO;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
@@ -38,6 +42,12 @@ public class MessageESQueryServiceImpl implements MessageESQueryService {
 
     private static final String INDEX_NAME = "im_c2c_msg_record";
 
+    /**
+     * 分页查询总数统计上限（track_total_hits），超过上限只返回下限
+     */
+    @Value("${im.message.query.count-limit:10000}")
+    private int countLimit;
+
     @Override
     public MessageSearchResultVO search(MessageSearchDTO searchDTO) {
         long startTime = System.currentTimeMillis();
@@ -113,14 +123,24 @@ public class MessageESQueryServiceImpl implements MessageESQueryService {
 
             final int finalPageSize = pageSize;
             final int finalPageNum = pageNum;
-
-            SearchRequest searchRequest = SearchRequest.of(s -> s
-                    .index(INDEX_NAME)
-                    .query(boolQueryBuilder.build()._toQuery())
-                    .from((finalPageNum - 1) * finalPageSize)
-                    .size(finalPageSize)
-                    .sort(sortOption("msgCreateTime", SortOrder.Desc))  // 按时间倒序
-            );
+            final boolean useCursor = searchDTO.hasCursor();
+            final boolean withTotal = !Boolean.FALSE.equals(searchDTO.getWithTotal());
+
+            SearchRequest searchRequest = SearchRequest.of(s -> {
+                s.index(INDEX_NAME)
+                        .query(boolQueryBuilder.build()._toQuery())
+                        .size(finalPageSize + 1)  // 多取一条判断是否有下一页
+                        // 按时间倒序，同一毫秒按消息ID倒序，保证翻页顺序稳定
+                        .sort(sortOption("msgCreateTime", SortOrder.Desc))
+                        .sort(sortOption("msgId", SortOrder.Desc))
+                        .trackTotalHits(t -> withTotal ? t.count(countLimit) : t.enabled(false));
+                if (useCursor) {
+                    s.searchAfter(FieldValue.of(searchDTO.getCursorTime()), FieldValue.of(searchDTO.getCursorMsgId()));
+                } else {
+                    s.from((finalPageNum - 1) * finalPageSize);
+                }
+                return s;
+            });
 
             // 执行查询
             SearchResponse<ImC2CMsgRecordES> response = elasticsearchClient.search(
@@ -128,21 +148,29 @@ public class MessageESQueryServiceImpl implements MessageESQueryService {
                     ImC2CMsgRecordES.class
             );
 
-            // 获取总数
-            long total = response.hits().total().value();
-
             // 转换结果
             List<ImC2CMsgRecord> records = response.hits().hits().stream()
                     .map(Hit::source)
                     .filter(Objects::nonNull)
                     .map(ImC2CMsgRecordES::toRecord)
                     .collect(Collectors.toList());
+            boolean hasMore = records.size() > pageSize;
+            if (hasMore) {
+                records = records.subList(0, pageSize);
+            }
+
+            // 获取总数：超过统计上限时ES只返回下限；未统计时按已翻过的条数估算
+            long offset = useCursor ? 0L : (long) (pageNum - 1) * pageSize;
+            long fetchedUpTo = offset + records.size() + (hasMore ? 1 : 0);
+            TotalHits totalHits = response.hits().total();
+            long total = totalHits != null ? Math.max(totalHits.value(), fetchedUpTo) : fetchedUpTo;
+            boolean totalExact = totalHits != null ? totalHits.relation() == TotalHitsRelation.Eq : !hasMore && !useCursor;
 
             long costMs = System.currentTimeMillis() - startTime;
             log.info("ES查询完成: 条件={}, 命中={}, 返回={}, 耗时={}ms",
                     summarizeConditions(searchDTO), total, records.size(), costMs);
 
-            MessageSearchResultVO result = MessageSearchResultVO.success(records, total, pageNum, pageSize);
+            MessageSearchResultVO result = MessageSearchResultVO.success(records, total, totalExact, hasMore, pageNum, pageSize);
             result.setDataSource("ES");
             result.setCostMs(costMs);
 
@@ -8,9 +8,8 @@ import com.xzll.console.service.MessageMongoQueryService;
 import com.xzll.console.vo.MessageSearchResultVO;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -55,6 +54,12 @@ public class MessageMongoQueryServiceImpl implements MessageMongoQueryService {
     @Resource
     private MongoTemplate mongoTemplate;
 
+    /**
+     * 分页查询总数统计上限，超过上限的总数不再精确统计；为0时不执行count，只返回估算总数
+     */
+    @Value("${im.message.query.count-limit:10000}")
+    private int countLimit;
+
     @Override
     public MessageSearchResultVO search(MessageSearchDTO searchDTO) {
         long startTime = System.currentTimeMillis();
@@ -68,23 +73,48 @@ public class MessageMongoQueryServiceImpl implements MessageMongoQueryService {
         try {
             // 构建查询条件
             Criteria criteria = buildCriteria(searchDTO);
-            Query query = new Query(criteria);
-            
-            // 统计总数
-            long total = mongoTemplate.count(query, ImC2CMsgRecordMongo.class);
             
             // 分页参数
             int pageNum = searchDTO.getPageNum() != null ? searchDTO.getPageNum() : 1;
             int pageSize = searchDTO.getPageSize() != null ? searchDTO.getPageSize() : 20;
             if (pageSize > 100) pageSize = 100;
+            boolean useCursor = searchDTO.hasCursor();
             
-            // 排序（按消息创建时间倒序）
-            Sort sort = Sort.by(Sort.Direction.DESC, "msgCreateTime");
-            Pageable pageable = PageRequest.of(pageNum - 1, pageSize, sort);
-            query.with(pageable);
+            // 排序（按消息创建时间倒序，同一毫秒按消息ID倒序，保证翻页顺序稳定）
+            Sort sort = Sort.by(Sort.Direction.DESC, "msgCreateTime").and(Sort.by(Sort.Direction.DESC, "msgId"));
+            Query query;
+            long offset;
+            if (useCursor) {
+                // 游标翻页：从上一页最后一条之后开始，不再skip
+                Criteria cursor = new Criteria().orOperator(
+                        Criteria.where("msgCreateTime").lt(searchDTO.getCursorTime()),
+                        Criteria.where("msgCreateTime").is(searchDTO.getCursorTime()).and("msgId").lt(searchDTO.getCursorMsgId()));
+                query = new Query(new Criteria().andOperator(criteria, cursor));
+                offset = 0L;
+            } else {
+                query = new Query(criteria);
+                offset = (long) (pageNum - 1) * pageSize;
+                query.skip(offset);
+            }
+            // 多取一条判断是否有下一页
+            query.with(sort).limit(pageSize + 1);
             
             // 执行查询
             List<ImC2CMsgRecordMongo> mongoRecords = mongoTemplate.find(query, ImC2CMsgRecordMongo.class);
+            boolean hasMore = mongoRecords.size() > pageSize;
+            if (hasMore) {
+                mongoRecords = mongoRecords.subList(0, pageSize);
+            }
+            
+            // 统计总数：没有下一页时可直接算出；否则最多统计到 countLimit 条
+            long fetchedUpTo = offset + mongoRecords.size() + (hasMore ? 1 : 0);
+            long total = fetchedUpTo;
+            boolean totalExact = !hasMore && !useCursor;
+            if (hasMore && !Boolean.FALSE.equals(searchDTO.getWithTotal()) && countLimit > 0) {
+                long counted = mongoTemplate.count(new Query(criteria).limit(countLimit), ImC2CMsgRecordMongo.class);
+                total = Math.max(counted, fetchedUpTo);
+                totalExact = counted < countLimit;
+            }
             
             // 转换结果
             List<ImC2CMsgRecord> records = mongoRecords.stream()
@@ -95,7 +125,7 @@ public class MessageMongoQueryServiceImpl implements MessageMongoQueryService {
             log.info("MongoDB查询完成: 条件={}, 命中={}, 返回={}, 耗时={}ms, 分片优化={}", 
                     summarizeConditions(searchDTO), total, records.size(), costMs, hasShardKey ? "是" : "否");
             
-            MessageSearchResultVO result = MessageSearchResultVO.success(records, total, pageNum, pageSize);
+            MessageSearchResultVO result = MessageSearchResultVO.success(records, total, totalExact, hasMore, pageNum, pageSize);
             result.setDataSource("MongoDB");
             result.setCostMs(costMs);
             
@@ -0,0 +1,258 @@
+package com.xzll.console.service.impl;
+
+import com.xzll.console.service.MessageStatsRollupService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RMap;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import static com.xzll.common.constant.ImConstant.MsgStatsConstant.*;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 消息统计预聚合读取服务实现类
+ */
+@Slf4j
+@Service
+public class MessageStatsRollupServiceImpl implements MessageStatsRollupService {
+
+    private static final String TAG = "[消息统计预聚合]_";
+
+    private static final String MSG_COLLECTION = "im_c2c_msg_record";
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern(DAY_BUCKET_PATTERN);
+    private static final DateTimeFormatter MINUTE_FORMATTER = DateTimeFormatter.ofPattern(MINUTE_BUCKET_PATTERN).withZone(ZONE);
+    private static final DateTimeFormatter TREND_FORMATTER = DateTimeFormatter.ofPattern("MM-dd");
+
+    /**
+     * 原子替换整个 Hash：DEL 与 HSET 在同一脚本内执行，读取方不会看到空的或只写了一半的累计值
+     */
+    private static final String REPLACE_HASH_SCRIPT =
+            "redis.call('DEL', KEYS[1]) " +
+            "for i = 1, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "return #ARGV / 2";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private MongoTemplate mongoTemplate;
+
+    @Value("${im.message.stats.day-ttl-days:400}")
+    private long dayTtlDays;
+
+    @Override
+    public Long getTodayMessageCount() {
+        try {
+            String count = rollupMap(DAY_BUCKET_PREFIX + LocalDate.now(ZONE).format(DAY_FORMATTER)).get(FIELD_TOTAL);
+            return parseLong(count);
+        } catch (Exception e) {
+            log.error("{}获取今日消息数失败", TAG, e);
+            return 0L;
+        }
+    }
+
+    @Override
+    public Map<String, Long> getMessagesTrend(int days) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        LocalDate today = LocalDate.now(ZONE);
+        List<LocalDate> dates = new ArrayList<>(days);
+        for (int i = days - 1; i >= 0; i--) {
+            LocalDate date = today.minusDays(i);
+            dates.add(date);
+            result.put(date.format(TREND_FORMATTER), 0L);
+        }
+
+        try {
+            // 一次往返读取所有天的分桶
+            RBatch batch = redissonClient.createBatch();
+            List<RFuture<String>> futures = new ArrayList<>(days);
+            for (LocalDate date : dates) {
+                futures.add(batch.<String, String>getMap(DAY_BUCKET_PREFIX + date.format(DAY_FORMATTER), StringCodec.INSTANCE)
+                        .getAsync(FIELD_TOTAL));
+            }
+            batch.execute();
+            for (int i = 0; i < dates.size(); i++) {
+                result.put(dates.get(i).format(TREND_FORMATTER), parseLong(futures.get(i).getNow()));
+            }
+        } catch (Exception e) {
+            log.error("{}获取消息趋势失败, days: {}", TAG, days, e);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getMessageStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        try {
+            Map<String, String> fields = rollupMap(TOTAL_KEY).readAllMap();
+
+            Map<Integer, Long> statusStats = new TreeMap<>();
+            Map<Integer, Long> formatStats = new TreeMap<>();
+            for (Map.Entry<String, String> e : fields.entrySet()) {
+                String field = e.getKey();
+                long value = parseLong(e.getValue());
+                if (field.startsWith(FIELD_STATUS_PREFIX)) {
+                    statusStats.put(Integer.valueOf(field.substring(FIELD_STATUS_PREFIX.length())), Math.max(0L, value));
+                } else if (field.startsWith(FIELD_FORMAT_PREFIX) && value > 0) {
+                    formatStats.put(Integer.valueOf(field.substring(FIELD_FORMAT_PREFIX.length())), value);
+                }
+            }
+            long totalCount = parseLong(fields.get(FIELD_TOTAL));
+            long withdrawCount = parseLong(fields.get(FIELD_WITHDRAW));
+
+            stats.put("totalCount", totalCount);
+            stats.put("statusStats", statusStats);
+            stats.put("formatStats", formatStats);
+            stats.put("withdrawCount", withdrawCount);
+            log.info("{}获取消息统计成功: 总数={}, 撤回={}", TAG, totalCount, withdrawCount);
+        } catch (Exception e) {
+            log.error("{}获取消息统计失败", TAG, e);
+            stats.put("error", e.getMessage());
+        }
+        return stats;
+    }
+
+    @Override
+    public Long getMessageTps() {
+        try {
+            Instant lastMinute = Instant.now().minusSeconds(60);
+            String count = rollupMap(MINUTE_BUCKET_PREFIX + MINUTE_FORMATTER.format(lastMinute)).get(FIELD_TOTAL);
+            return parseLong(count) / 60;
+        } catch (Exception e) {
+            log.error("{}获取消息TPS失败", TAG, e);
+            return 0L;
+        }
+    }
+
+    @Override
+    public Map<String, Object> rebuildFromSource(int days) {
+        long start = System.currentTimeMillis();
+        Map<String, Object> summary = new LinkedHashMap<>();
+
+        // 1. 全量累计：按 (格式, 状态, 撤回标志) 一次分组
+        Map<String, String> totalFields = new HashMap<>();
+        long total = 0;
+        for (Document row : aggregate(null, null, false)) {
+            Document id = row.get("_id", Document.class);
+            long n = ((Number) row.get("n")).longValue();
+            total += n;
+            if (toInt(id.get("f")) != null) {
+                addField(totalFields, FIELD_FORMAT_PREFIX + toInt(id.get("f")), n);
+            }
+            if (toInt(id.get("s")) != null) {
+                addField(totalFields, FIELD_STATUS_PREFIX + toInt(id.get("s")), n);
+            }
+            if (Objects.equals(toInt(id.get("w")), 1)) {
+                addField(totalFields, FIELD_WITHDRAW, n);
+            }
+        }
+        totalFields.put(FIELD_TOTAL, String.valueOf(total));
+        replaceHash(TOTAL_KEY, totalFields);
+        summary.put("totalCount", total);
+
+        // 2. 今天之前的天级分桶：按 (日期, 格式, 撤回标志) 一次分组
+        long todayStart = LocalDate.now(ZONE).atStartOfDay(ZONE).toInstant().toEpochMilli();
+        long rangeStart = LocalDate.now(ZONE).minusDays(days).atStartOfDay(ZONE).toInstant().toEpochMilli();
+        Map<String, Map<String, String>> dayFields = new TreeMap<>();
+        for (Document row : aggregate(rangeStart, todayStart, true)) {
+            Document id = row.get("_id", Document.class);
+            long n = ((Number) row.get("n")).longValue();
+            Map<String, String> fields = dayFields.computeIfAbsent(DAY_BUCKET_PREFIX + id.get("d"), k -> new HashMap<>());
+            addField(fields, FIELD_TOTAL, n);
+            if (toInt(id.get("f")) != null) {
+                addField(fields, FIELD_FORMAT_PREFIX + toInt(id.get("f")), n);
+            }
+            if (Objects.equals(toInt(id.get("w")), 1)) {
+                addField(fields, FIELD_WITHDRAW, n);
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> e : dayFields.entrySet()) {
+            RMap<String, String> dayMap = rollupMap(e.getKey());
+            dayMap.putAll(e.getValue());
+            dayMap.expire(Duration.ofDays(dayTtlDays));
+        }
+        summary.put("rebuiltDays", dayFields.size());
+        summary.put("costMs", System.currentTimeMillis() - start);
+        log.info("{}从MongoDB重建预聚合完成: {}", TAG, summary);
+        return summary;
+    }
+
+    /**
+     * 消息集合分组计数，单次扫描
+     */
+    private List<Document> aggregate(Long startTime, Long endTime, boolean byDay) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        if (startTime != null && endTime != null) {
+            stages.add(ctx -> new Document("$match", new Document("msgCreateTime",
+                    new Document("$gte", startTime).append("$lt", endTime))));
+        }
+        Document groupId = new Document("f", "$msgFormat").append("w", "$withdrawFlag");
+        if (byDay) {
+            groupId.append("d", new Document("$dateToString", new Document("format", "%Y%m%d")
+                    .append("date", new Document("$toDate", "$msgCreateTime"))
+                    .append("timezone", ZONE.getId())));
+        } else {
+            groupId.append("s", "$msgStatus");
+        }
+        stages.add(ctx -> new Document("$group", new Document("_id", groupId).append("n", new Document("$sum", 1))));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(stages), MSG_COLLECTION, Document.class)
+                .getMappedResults();
+    }
+
+    private void replaceHash(String key, Map<String, String> fields) {
+        Object[] args = new Object[fields.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, String> e : fields.entrySet()) {
+            args[i++] = e.getKey();
+            args[i++] = e.getValue();
+        }
+        redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, REPLACE_HASH_SCRIPT,
+                RScript.ReturnType.INTEGER, Collections.<Object>singletonList(key), args);
+    }
+
+    private RMap<String, String> rollupMap(String key) {
+        return redissonClient.getMap(key, StringCodec.INSTANCE);
+    }
+
+    private static void addField(Map<String, String> fields, String field, long n) {
+        fields.merge(field, String.valueOf(n), (a, b) -> String.valueOf(Long.parseLong(a) + Long.parseLong(b)));
+    }
+
+    private static Integer toInt(Object value) {
+        return value instanceof Number number ? number.intValue() : null;
+    }
+
+    /**
+     * 计数字段由 HINCRBYFLOAT 维护，整数值可能带小数点形式，统一按 double 解析后取整
+     */
+    private static long parseLong(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return (long) Double.parseDouble(value);
+        }
+    }
+}
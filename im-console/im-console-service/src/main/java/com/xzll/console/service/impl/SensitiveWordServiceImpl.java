@@ -3,6 +3,8 @@ package com.xzll.console.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.xzll.common.constant.ImConstant;
+import com.xzll.common.utils.AhoCorasickMatcher;
 import com.xzll.console.dto.SensitiveWordDTO;
 import com.xzll.console.entity.SensitiveWordDO;
 import com.xzll.console.mapper.SensitiveWordMapper;
@@ -10,6 +12,9 @@ import com.xzll.console.service.SensitiveWordService;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.beans.BeanUtils;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -18,14 +23,14 @@ import org.springframework.util.StringUtils;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 /**
  * @Author: hzz
  * @Date: 2026/01/20
  * @Description: 敏感词管理服务实现
  * 
- * 使用DFA（确定有限自动机）算法进行敏感词检测，性能高效
+ * 使用 Aho-Corasick 自动机进行敏感词检测，单次扫描完成匹配；
+ * 词库刷新后同步发布到 Redis，供 im-connect 在发送链路上实时过滤
  */
 @Slf4j
 @Service
@@ -34,17 +39,23 @@ public class SensitiveWordServiceImpl implements SensitiveWordService {
     @Resource
     private SensitiveWordMapper sensitiveWordMapper;
     
+    @Resource
+    private RedissonClient redissonClient;
+    
     /**
-     * 敏感词缓存（DFA树结构）
+     * 敏感词自动机（不可变，刷新时整体替换）
      */
-    private volatile Map<Character, Object> sensitiveWordMap = new ConcurrentHashMap<>();
+    private volatile AhoCorasickMatcher matcher = AhoCorasickMatcher.empty();
     
     /**
      * 启用的敏感词集合（用于快速查询）
      */
     private volatile Set<String> enabledWordsCache = ConcurrentHashMap.newKeySet();
     
-    private static final String END_FLAG = "isEnd";
+    /**
+     * 最近一次成功发布到Redis的词库
+     */
+    private volatile Set<String> publishedWords = Collections.emptySet();
     
     @PostConstruct
     public void init() {
@@ -59,8 +70,16 @@ public class SensitiveWordServiceImpl implements SensitiveWordService {
         log.info("刷新敏感词缓存...");
         try {
             List<String> words = sensitiveWordMapper.selectAllEnabledWords();
-            buildDFATree(words);
-            enabledWordsCache = new HashSet<>(words);
+            Set<String> newWords = new HashSet<>(words);
+            matcher = AhoCorasickMatcher.build(newWords);
+            enabledWordsCache = newWords;
+            // 词库有变化（或Redis中尚无版本号）时才发布，避免每次定时刷新都触发im-connect重建
+            if (!newWords.equals(publishedWords)
+                    || !redissonClient.getAtomicLong(ImConstant.RedisKeyConstant.SENSITIVE_WORDS_VERSION).isExists()) {
+                if (publishWords(newWords)) {
+                    publishedWords = newWords;
+                }
+            }
             log.info("敏感词缓存刷新完成，共{}个敏感词", words.size());
         } catch (Exception e) {
             log.error("刷新敏感词缓存失败", e);
@@ -170,19 +189,7 @@ public class SensitiveWordServiceImpl implements SensitiveWordService {
         if (!StringUtils.hasText(text)) {
             return Collections.emptyList();
         }
-        
-        Set<String> sensitiveWords = new LinkedHashSet<>();
-        char[] chars = text.toCharArray();
-        
-        for (int i = 0; i < chars.length; i++) {
-            int length = checkSensitiveWord(chars, i);
-            if (length > 0) {
-                sensitiveWords.add(text.substring(i, i + length));
-                i += length - 1;
-            }
-        }
-        
-        return new ArrayList<>(sensitiveWords);
+        return matcher.findAll(text);
     }
     
     @Override
@@ -190,85 +197,29 @@ public class SensitiveWordServiceImpl implements SensitiveWordService {
         if (!StringUtils.hasText(text)) {
             return text;
         }
-        
-        StringBuilder result = new StringBuilder(text);
-        char[] chars = text.toCharArray();
-        
-        for (int i = 0; i < chars.length; i++) {
-            int length = checkSensitiveWord(chars, i);
-            if (length > 0) {
-                // 替换为*
-                for (int j = i; j < i + length; j++) {
-                    result.setCharAt(j, '*');
-                }
-                i += length - 1;
-            }
-        }
-        
-        return result.toString();
+        return matcher.mask(text, '*');
     }
     
     /**
-     * 构建DFA树
+     * 发布词库到Redis：先写临时key再RENAME，保证im-connect读到的始终是完整词库，最后递增版本号通知重建
      */
-    @SuppressWarnings("unchecked")
-    private void buildDFATree(List<String> words) {
-        Map<Character, Object> newMap = new ConcurrentHashMap<>();
-        
-        for (String word : words) {
-            if (!StringUtils.hasText(word)) continue;
-            
-            Map<Character, Object> currentMap = newMap;
-            char[] chars = word.toCharArray();
-            
-            for (int i = 0; i < chars.length; i++) {
-                char c = chars[i];
-                Object obj = currentMap.get(c);
-                
-                if (obj == null) {
-                    Map<Character, Object> newNode = new HashMap<>();
-                    if (i == chars.length - 1) {
-                        newNode.put(END_FLAG.charAt(0), true);
-                    }
-                    currentMap.put(c, newNode);
-                    currentMap = newNode;
-                } else {
-                    currentMap = (Map<Character, Object>) obj;
-                    if (i == chars.length - 1) {
-                        currentMap.put(END_FLAG.charAt(0), true);
-                    }
-                }
-            }
-        }
-        
-        this.sensitiveWordMap = newMap;
-    }
-    
-    /**
-     * 检查敏感词，返回匹配的长度
-     */
-    @SuppressWarnings("unchecked")
-    private int checkSensitiveWord(char[] chars, int startIndex) {
-        Map<Character, Object> currentMap = sensitiveWordMap;
-        int matchLength = 0;
-        int lastMatchLength = 0;
-        
-        for (int i = startIndex; i < chars.length; i++) {
-            char c = chars[i];
-            Object obj = currentMap.get(c);
-            
-            if (obj == null) {
-                break;
-            }
-            
-            matchLength++;
-            currentMap = (Map<Character, Object>) obj;
-            
-            if (currentMap.containsKey(END_FLAG.charAt(0))) {
-                lastMatchLength = matchLength;
+    private boolean publishWords(Set<String> words) {
+        String key = ImConstant.RedisKeyConstant.SENSITIVE_WORDS;
+        try {
+            if (words.isEmpty()) {
+                redissonClient.getSet(key, StringCodec.INSTANCE).delete();
+            } else {
+                RSet<String> tmpSet = redissonClient.getSet(key + ":tmp", StringCodec.INSTANCE);
+                tmpSet.delete();
+                tmpSet.addAll(words);
+                tmpSet.rename(key);
             }
+            long version = redissonClient.getAtomicLong(ImConstant.RedisKeyConstant.SENSITIVE_WORDS_VERSION).incrementAndGet();
+            log.info("敏感词库已发布到Redis，版本: {}, 词数: {}", version, words.size());
+            return true;
+        } catch (Exception e) {
+            log.error("发布敏感词库到Redis失败", e);
+            return false;
         }
-        
-        return lastMatchLength;
     }
 }
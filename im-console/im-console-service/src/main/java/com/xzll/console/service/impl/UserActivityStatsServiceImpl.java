@@ -0,0 +1,224 @@
+package com.xzll.console.service.impl;
+
+import com.xzll.common.utils.RedissonUtils;
+import com.xzll.console.service.UserActivityStatsService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import static com.xzll.common.constant.ImConstant.UserActivityConstant.*;
+
+/**
+ * @Author: hzz
+ * @Date: 2026-10-19
+ * @Description: 在线与活跃用户统计读取服务实现类
+ */
+@Slf4j
+@Service
+public class UserActivityStatsServiceImpl implements UserActivityStatsService {
+
+    private static final String TAG = "[用户活跃统计]_";
+
+    /**
+     * 两个活跃位图按位与后计数，临时key用完即删
+     * KEYS[1]: 基准日位图, KEYS[2]: 第N天位图, KEYS[3]: 临时key
+     */
+    private static final String RETENTION_SCRIPT =
+            "redis.call('BITOP', 'AND', KEYS[3], KEYS[1], KEYS[2]) " +
+            "local n = redis.call('BITCOUNT', KEYS[3]) " +
+            "redis.call('DEL', KEYS[3]) " +
+            "return n";
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern(DAY_PATTERN);
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern(MONTH_PATTERN);
+    private static final DateTimeFormatter TREND_FORMATTER = DateTimeFormatter.ofPattern("MM-dd");
+
+    @Resource
+    private RedissonUtils redissonUtils;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    /**
+     * 节点上报超时时间，超过则视为节点已下线（上报周期为1分钟）
+     */
+    @Value("${im.user-activity.node-stale-ms:150000}")
+    private long nodeStaleMs;
+
+    @Override
+    public Long getOnlineUserCount() {
+        try {
+            RMap<String, String> nodes = redissonClient.getMap(ONLINE_NODES_KEY, StringCodec.INSTANCE);
+            long now = System.currentTimeMillis();
+            long total = 0;
+            for (Map.Entry<String, String> e : nodes.readAllMap().entrySet()) {
+                String[] parts = e.getValue().split(":");
+                if (parts.length != 2 || now - Long.parseLong(parts[1]) > nodeStaleMs) {
+                    // 节点异常退出未清理，移除过期上报
+                    nodes.fastRemove(e.getKey());
+                    continue;
+                }
+                total += Long.parseLong(parts[0]);
+            }
+            return total;
+        } catch (Exception e) {
+            log.error("{}获取在线用户数失败", TAG, e);
+            return 0L;
+        }
+    }
+
+    @Override
+    public Long getDau(LocalDate date) {
+        try {
+            return redissonUtils.getHyperLogLogCount(DAU_HLL_PREFIX + date.format(DAY_FORMATTER));
+        } catch (Exception e) {
+            log.error("{}获取日活失败, date: {}", TAG, date, e);
+            return 0L;
+        }
+    }
+
+    @Override
+    public Long getMau(YearMonth month) {
+        try {
+            return redissonUtils.getHyperLogLogCount(MAU_HLL_PREFIX + month.format(MONTH_FORMATTER));
+        } catch (Exception e) {
+            log.error("{}获取月活失败, month: {}", TAG, month, e);
+            return 0L;
+        }
+    }
+
+    @Override
+    public Map<String, Long> getDauTrend(int days) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        LocalDate today = LocalDate.now(ZONE);
+        List<LocalDate> dates = new ArrayList<>(days);
+        for (int i = days - 1; i >= 0; i--) {
+            LocalDate date = today.minusDays(i);
+            dates.add(date);
+            result.put(date.format(TREND_FORMATTER), 0L);
+        }
+
+        try {
+            // 一次往返读取所有天的 PFCOUNT
+            RBatch batch = redissonClient.createBatch();
+            List<RFuture<Long>> futures = new ArrayList<>(days);
+            for (LocalDate date : dates) {
+                futures.add(batch.<String>getHyperLogLog(DAU_HLL_PREFIX + date.format(DAY_FORMATTER)).countAsync());
+            }
+            batch.execute();
+            for (int i = 0; i < dates.size(); i++) {
+                result.put(dates.get(i).format(TREND_FORMATTER), futures.get(i).getNow());
+            }
+        } catch (Exception e) {
+            log.error("{}获取日活趋势失败, days: {}", TAG, days, e);
+        }
+        return result;
+    }
+
+    @Override
+    public Long getActiveUserCount(int days) {
+        if (days <= 0) {
+            return 0L;
+        }
+        LocalDate today = LocalDate.now(ZONE);
+        String[] others = new String[days - 1];
+        for (int i = 1; i < days; i++) {
+            others[i - 1] = DAU_HLL_PREFIX + today.minusDays(i).format(DAY_FORMATTER);
+        }
+        try {
+            return redissonUtils.getHyperLogLog(DAU_HLL_PREFIX + today.format(DAY_FORMATTER)).countWith(others);
+        } catch (Exception e) {
+            log.error("{}获取近{}天活跃用户数失败", TAG, days, e);
+            return 0L;
+        }
+    }
+
+    @Override
+    public Map<String, Object> getOnlineSamples(LocalDate date) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Map<String, Long> samples = new TreeMap<>();
+        String peakTime = null;
+        long peak = 0;
+        try {
+            Map<String, String> raw = redissonClient.<String, String>getMap(
+                    ONLINE_SAMPLES_PREFIX + date.format(DAY_FORMATTER), StringCodec.INSTANCE).readAllMap();
+            for (Map.Entry<String, String> e : raw.entrySet()) {
+                String minute = e.getKey();
+                long online = parseLong(e.getValue());
+                String time = minute.length() == 4 ? minute.substring(0, 2) + ":" + minute.substring(2) : minute;
+                samples.put(time, online);
+                if (online > peak) {
+                    peak = online;
+                    peakTime = time;
+                }
+            }
+        } catch (Exception e) {
+            log.error("{}获取在线采样失败, date: {}", TAG, date, e);
+        }
+        result.put("date", date.toString());
+        result.put("peak", peak);
+        result.put("peakTime", peakTime);
+        result.put("samples", samples);
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getRetention(LocalDate cohortDate, int... dayOffsets) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        String cohortKey = ACTIVE_BITMAP_PREFIX + cohortDate.format(DAY_FORMATTER);
+        LocalDate today = LocalDate.now(ZONE);
+        try {
+            long cohortSize = redissonUtils.getBitCount(cohortKey);
+            result.put("cohortDate", cohortDate.toString());
+            result.put("cohortSize", cohortSize);
+
+            Map<String, Object> retention = new LinkedHashMap<>();
+            for (int n : dayOffsets) {
+                LocalDate target = cohortDate.plusDays(n);
+                if (n <= 0 || target.isAfter(today)) {
+                    continue;
+                }
+                String targetKey = ACTIVE_BITMAP_PREFIX + target.format(DAY_FORMATTER);
+                String tmpKey = cohortKey + ":and:" + target.format(DAY_FORMATTER) + ":" + UUID.randomUUID();
+                Long retained = redissonUtils.executeLuaScriptAsLongUseStringCodec(RETENTION_SCRIPT,
+                        Arrays.asList(cohortKey, targetKey, tmpKey));
+                long count = retained == null ? 0L : retained;
+
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("date", target.toString());
+                item.put("retained", count);
+                item.put("rate", cohortSize == 0 ? 0D : Math.round(count * 10000D / cohortSize) / 100D);
+                retention.put("day" + n, item);
+            }
+            result.put("retention", retention);
+        } catch (Exception e) {
+            log.error("{}计算留存失败, cohortDate: {}", TAG, cohortDate, e);
+            result.put("error", e.getMessage());
+        }
+        return result;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return (long) Double.parseDouble(value);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.xzll.console.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.xzll.common.constant.ImConstant;
 import com.xzll.common.utils.RedissonUtils;
 import com.xzll.console.dto.UserQueryDTO;
 import com.xzll.console.entity.ImUserDO;
@@ -235,6 +236,15 @@ public class UserManageServiceImpl implements UserManageService {
     
     @Override
     public Long getFriendCount(String userId) {
+        // 优先读 im-business 维护的好友集合（ZCARD），集合中含一个"已加载"占位成员；未加载时查库
+        try {
+            long size = redissonUtils.sizeZSet(String.format(ImConstant.RedisKeyConstant.FRIEND_IDS_KEY_FORMAT, userId));
+            if (size > 0) {
+                return size - 1;
+            }
+        } catch (Exception e) {
+            log.warn("读取好友集合失败，查库: userId={}", userId, e);
+        }
         return friendRelationMapper.countFriendsByUserId(userId);
     }
     
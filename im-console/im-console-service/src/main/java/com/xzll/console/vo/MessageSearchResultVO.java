@@ -31,6 +31,22 @@ public class MessageSearchResultVO {
      */
     private Long total;
 
+    /**
+     * 总数量是否精确
+     * false 表示命中数超过统计上限（total 为下限）或本次未统计总数（total 为估算值）
+     */
+    private Boolean totalExact = true;
+
+    /**
+     * 下一页游标：本页最后一条消息的创建时间，没有下一页时为null
+     */
+    private Long nextCursorTime;
+
+    /**
+     * 下一页游标：本页最后一条消息的ID，没有下一页时为null
+     */
+    private String nextCursorMsgId;
+
     /**
      * 当前页数量
      */
@@ -92,6 +108,27 @@ public class MessageSearchResultVO {
         return vo;
     }
 
+    /**
+     * 创建成功结果（多取一条判断是否有下一页，并回填下一页游标）
+     *
+     * @param data       当前页数据（不含多取的那一条）
+     * @param total      总数量
+     * @param totalExact 总数量是否精确
+     * @param hasMore    是否有下一页
+     */
+    public static MessageSearchResultVO success(List<ImC2CMsgRecord> data, Long total, boolean totalExact,
+                                                boolean hasMore, Integer pageNum, Integer pageSize) {
+        MessageSearchResultVO vo = success(data, total, pageNum, pageSize);
+        vo.setTotalExact(totalExact);
+        vo.setHasMore(hasMore);
+        if (hasMore && data != null && !data.isEmpty()) {
+            ImC2CMsgRecord last = data.get(data.size() - 1);
+            vo.setNextCursorTime(last.getMsgCreateTime());
+            vo.setNextCursorMsgId(last.getMsgId());
+        }
+        return vo;
+    }
+
     /**
      * 创建失败结果
      */
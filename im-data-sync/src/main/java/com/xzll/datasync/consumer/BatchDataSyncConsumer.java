@@ -4,24 +4,27 @@ import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.json.JSONUtil;
 import com.xzll.datasync.config.nacos.ElasticSearchNacosConfig;
 import com.xzll.datasync.entity.ImC2CMsgRecordES;
+import com.xzll.datasync.indexer.EsBulkIndexer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
 import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
 import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
 import org.apache.rocketmq.common.message.MessageExt;
-import org.elasticsearch.action.bulk.BulkRequest;
-import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
-import org.elasticsearch.client.RequestOptions;
-import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.xcontent.XContentType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.Resource;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.xzll.common.constant.ImConstant.*;
@@ -37,6 +40,8 @@ import static com.xzll.common.constant.ImConstant.TableConstant.*;
  * - 设为 true 时启用ES同步
  * - 支持 Nacos 配置热更新
  * 
+ * ES写入由 EsBulkIndexer 跨回调合并、并发发送、自适应批大小，只重试失败条目
+ * 
  * @Author: hzz
  * @Date: 2024/12/20
  */
@@ -45,15 +50,21 @@ import static com.xzll.common.constant.ImConstant.TableConstant.*;
 public class BatchDataSyncConsumer implements MessageListenerConcurrently {
     
     @Resource
-    private RestHighLevelClient restHighLevelClient;
+    private ElasticSearchNacosConfig elasticSearchNacosConfig;
     
     @Resource
-    private ElasticSearchNacosConfig elasticSearchNacosConfig;
+    private EsBulkIndexer esBulkIndexer;
+    
+    // 单批次等待ES写入完成的最长时间，超时按失败处理并重新消费
+    @Value("${im.elasticsearch.bulk.await-timeout-ms:20000}")
+    private long awaitTimeoutMs;
     
     // 统计信息
     private final AtomicLong totalProcessed = new AtomicLong(0);
     private final AtomicLong totalBatches = new AtomicLong(0);
     private final AtomicLong totalErrors = new AtomicLong(0);
+    private final AtomicLong syncLagMs = new AtomicLong(0);
+    private volatile long lastSyncLagMs;
     
     @Override
     public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
@@ -73,9 +84,10 @@ public class BatchDataSyncConsumer implements MessageListenerConcurrently {
             // 检查ES同步开关
             boolean esSyncEnabled = Boolean.TRUE.equals(elasticSearchNacosConfig.getSyncEnabled());
             
-            // 按操作类型分组，预分配容量以提高性能
-            List<ImC2CMsgRecordES> insertRecords = new ArrayList<>(msgs.size());
-            List<ImC2CMsgRecordES> updateRecords = new ArrayList<>(msgs.size());
+            // 写请求按消息顺序排列（同一文档的新增与更新不能颠倒），预分配容量以提高性能
+            List<DocWriteRequest<?>> writeRequests = new ArrayList<>(msgs.size());
+            int insertCount = 0;
+            int updateCount = 0;
             
             // 批量解析所有消息
             for (MessageExt msg : msgs) {
@@ -100,11 +112,17 @@ public class BatchDataSyncConsumer implements MessageListenerConcurrently {
                         BeanUtil.copyProperties(recordData, esRecord);
                         esRecord.buildId();
                         
-                        // 按操作类型分组，减少ES操作次数
+                        // 新增为全量 Index，其余为 docAsUpsert
                         if (OPERATION_TYPE_SAVE.equals(operationType)) {
-                            insertRecords.add(esRecord);
+                            writeRequests.add(new IndexRequest(IM_C2C_MSG_RECORD)
+                                    .id(esRecord.getId())
+                                    .source(JSONUtil.toJsonStr(esRecord), XContentType.JSON));
+                            insertCount++;
                         } else {
-                            updateRecords.add(esRecord);
+                            writeRequests.add(new UpdateRequest(IM_C2C_MSG_RECORD, esRecord.getId())
+                                    .doc(JSONUtil.toJsonStr(esRecord), XContentType.JSON)
+                                    .docAsUpsert(true));
+                            updateCount++;
                         }
                         
                         successCount++;
@@ -119,55 +137,33 @@ public class BatchDataSyncConsumer implements MessageListenerConcurrently {
             }
             
             // 批量写入ES - 仅当ES同步开关开启时才执行
+            // 写请求交给 EsBulkIndexer 跨批次合并发送（同一文档按提交顺序串行写入），本批次等待自己的条目全部写入后再确认消费位点
             if (esSyncEnabled) {
-                if (!insertRecords.isEmpty()) {
-                    try {
-                        BulkRequest bulkRequest = new BulkRequest();
-                        for (ImC2CMsgRecordES record : insertRecords) {
-                            IndexRequest indexRequest = new IndexRequest(IM_C2C_MSG_RECORD)
-                                    .id(record.getId())
-                                    .source(JSONUtil.toJsonStr(record), XContentType.JSON);
-                            bulkRequest.add(indexRequest);
-                        }
-                        
-                        BulkResponse bulkResponse = restHighLevelClient.bulk(bulkRequest, RequestOptions.DEFAULT);
-                        if (bulkResponse.hasFailures()) {
-                            log.warn("批量插入ES存在部分失败，总数: {}, 失败数: {}", 
-                                    insertRecords.size(), bulkResponse.getItems().length - bulkResponse.getItems().length);
-                        }
-                        log.debug("批量插入ES成功，数量: {}, 索引: im_c2c_msg_record", insertRecords.size());
-                    } catch (Exception e) {
-                        log.error("批量插入ES失败，数量: {}", insertRecords.size(), e);
-                        errorCount += insertRecords.size();
-                    }
+                List<CompletableFuture<Void>> futures = new ArrayList<>(writeRequests.size());
+                for (DocWriteRequest<?> request : writeRequests) {
+                    futures.add(esBulkIndexer.submit(request));
                 }
                 
-                if (!updateRecords.isEmpty()) {
-                    try {
-                        BulkRequest bulkRequest = new BulkRequest();
-                        for (ImC2CMsgRecordES record : updateRecords) {
-                            UpdateRequest updateRequest = new UpdateRequest(IM_C2C_MSG_RECORD, record.getId())
-                                    .doc(JSONUtil.toJsonStr(record), XContentType.JSON)
-                                    .docAsUpsert(true);
-                            bulkRequest.add(updateRequest);
-                        }
-                        
-                        BulkResponse bulkResponse = restHighLevelClient.bulk(bulkRequest, RequestOptions.DEFAULT);
-                        if (bulkResponse.hasFailures()) {
-                            log.warn("批量更新ES存在部分失败，总数: {}, 失败数: {}", 
-                                    updateRecords.size(), bulkResponse.getItems().length - bulkResponse.getItems().length);
-                        }
-                        log.debug("批量更新ES成功，数量: {}, 索引: im_c2c_msg_record", updateRecords.size());
-                    } catch (Exception e) {
-                        log.error("批量更新ES失败，数量: {}", updateRecords.size(), e);
-                        errorCount += updateRecords.size();
-                    }
+                int esFailed = awaitIndexed(futures);
+                if (esFailed > 0) {
+                    // 写入按文档ID幂等（index / upsert），整批重新消费是安全的
+                    log.warn("写入ES失败，稍后重新消费 - 总数: {}, 失败数: {}", futures.size(), esFailed);
+                    totalErrors.addAndGet(esFailed);
+                    return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+                }
+                
+                // 端到端延迟：消息写入 broker 到写入 ES 完成
+                long now = System.currentTimeMillis();
+                for (MessageExt msg : msgs) {
+                    syncLagMs.accumulateAndGet(now - msg.getStoreTimestamp(), Math::max);
                 }
+                lastSyncLagMs = now - msgs.get(msgs.size() - 1).getStoreTimestamp();
+                log.debug("写入ES成功，插入: {}, 更新: {}, 索引: im_c2c_msg_record", insertCount, updateCount);
             } else {
                 // ES同步关闭，记录日志但不写入ES
-                if (!insertRecords.isEmpty() || !updateRecords.isEmpty()) {
+                if (!writeRequests.isEmpty()) {
                     log.info("ES同步开关关闭，跳过ES写入。待插入: {}, 待更新: {}", 
-                            insertRecords.size(), updateRecords.size());
+                            insertCount, updateCount);
                 }
             }
             
@@ -195,6 +191,30 @@ public class BatchDataSyncConsumer implements MessageListenerConcurrently {
         }
     }
     
+    /**
+     * 等待本批次的ES写入结果
+     *
+     * @return 失败条数
+     */
+    private int awaitIndexed(List<CompletableFuture<Void>> futures) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(awaitTimeoutMs);
+        int failed = 0;
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return futures.size();
+            } catch (ExecutionException | TimeoutException e) {
+                if (failed == 0) {
+                    log.error("ES写入条目失败", e instanceof ExecutionException ? e.getCause() : e);
+                }
+                failed++;
+            }
+        }
+        return failed;
+    }
+    
     /**
      * 获取统计信息
      */
@@ -202,4 +222,15 @@ public class BatchDataSyncConsumer implements MessageListenerConcurrently {
         return String.format("已处理消息: %d, 批次: %d, 错误: %d", 
                 totalProcessed.get(), totalBatches.get(), totalErrors.get());
     }
+    
+    /**
+     * 同步延迟（毫秒）：最近一批、历史最大
+     */
+    public long getLastSyncLagMs() {
+        return lastSyncLagMs;
+    }
+    
+    public long getMaxSyncLagMs() {
+        return syncLagMs.get();
+    }
 } 
\ No newline at end of file
@@ -1,12 +1,15 @@
 package com.xzll.datasync.controller;
 
 import com.xzll.datasync.consumer.BatchDataSyncConsumer;
+import com.xzll.datasync.indexer.EsBulkIndexer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import jakarta.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 监控控制器
@@ -23,6 +26,9 @@ public class MonitorController {
     @Resource
     private BatchDataSyncConsumer batchDataSyncConsumer;
     
+    @Resource
+    private EsBulkIndexer esBulkIndexer;
+    
     /**
      * 获取数据同步统计信息
      */
@@ -37,6 +43,17 @@ public class MonitorController {
         }
     }
     
+    /**
+     * ES批量写入统计：批大小、在途请求、写入/失败/重试条数、耗时与同步延迟
+     */
+    @GetMapping("/es-bulk")
+    public Map<String, Object> getEsBulkStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(esBulkIndexer.getStats());
+        stats.put("lastSyncLagMs", batchDataSyncConsumer.getLastSyncLagMs());
+        stats.put("maxSyncLagMs", batchDataSyncConsumer.getMaxSyncLagMs());
+        return stats;
+    }
+    
     /**
      * 健康检查
      */
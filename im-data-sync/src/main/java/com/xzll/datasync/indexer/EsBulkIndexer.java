@@ -0,0 +1,433 @@
+package com.xzll.datasync.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ES 批量写入器
+ * 跨 RocketMQ 回调累积写请求，按条数 / 字节数 / 最长等待时间三个条件触发 bulk，多个 bulk 并发执行
+ *
+ * 1. 自适应批大小：ES 返回 429 时批大小减半；耗时超过目标值时缩小 1/4；耗时正常时逐步放大（AIMD）
+ * 2. 部分失败只重试失败的条目：429 / 5xx 按退避时间重新入队，4xx（如 mapping 错误）直接失败
+ * 3. 每个条目对应一个 Future，调用方等待自己的条目完成后再提交消费位点，保证至少一次
+ * 4. 并发 bulk 数由信号量控制，达到上限时提交线程阻塞，反压到 RocketMQ 拉取
+ * 5. 同一文档（index + id）同一时刻只有一个条目在缓冲 / 在途 / 等待重试，后续条目排队，前一个完成（含重试耗尽）后才发送，
+ *    保证并发 bulk 和部分失败重试下同一文档的写入顺序不变（避免旧的全量 Index 覆盖新的 docAsUpsert）
+ *
+ * @Author: hzz
+ * @Date: 2026-10-19
+ */
+@Slf4j
+@Component
+public class EsBulkIndexer {
+
+    @Resource
+    private RestHighLevelClient restHighLevelClient;
+
+    @Value("${im.elasticsearch.bulk.initial-actions:1000}")
+    private int initialActions;
+
+    @Value("${im.elasticsearch.bulk.min-actions:100}")
+    private int minActions;
+
+    @Value("${im.elasticsearch.bulk.max-actions:5000}")
+    private int maxActions;
+
+    @Value("${im.elasticsearch.bulk.max-bytes:5242880}")
+    private long maxBytes;
+
+    @Value("${im.elasticsearch.bulk.linger-ms:50}")
+    private long lingerMs;
+
+    @Value("${im.elasticsearch.bulk.concurrency:4}")
+    private int concurrency;
+
+    @Value("${im.elasticsearch.bulk.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${im.elasticsearch.bulk.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    @Value("${im.elasticsearch.bulk.target-latency-ms:500}")
+    private long targetLatencyMs;
+
+    /**
+     * 当前批大小（条数），随 429 和耗时动态调整
+     */
+    private volatile int batchActions;
+
+    private Semaphore inFlightPermits;
+
+    private ScheduledExecutorService scheduler;
+
+    // 待发送缓冲区，lock 保护
+    private final Object lock = new Object();
+    private List<PendingItem> buffer = new ArrayList<>();
+    private long bufferBytes;
+    private long bufferOldestNanos;
+    /**
+     * 文档key -> 排在当前条目之后等待发送的条目；key 存在表示该文档已有条目在处理中，lock 保护
+     */
+    private final Map<String, ArrayDeque<PendingItem>> docQueues = new HashMap<>();
+    private int waitingItems;
+
+    // ============= 统计 =============
+    private final AtomicLong submittedItems = new AtomicLong();
+    private final AtomicLong indexedItems = new AtomicLong();
+    private final AtomicLong failedItems = new AtomicLong();
+    private final AtomicLong retriedItems = new AtomicLong();
+    private final AtomicLong bulkRequests = new AtomicLong();
+    private final AtomicLong rejectedBulks = new AtomicLong();
+    private final AtomicLong bulkTookMsTotal = new AtomicLong();
+    private final AtomicLong ackLatencyMsTotal = new AtomicLong();
+    private final AtomicLong ackLatencyMsMax = new AtomicLong();
+    private final AtomicInteger inFlightBulks = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        batchActions = Math.max(minActions, Math.min(maxActions, initialActions));
+        inFlightPermits = new Semaphore(concurrency);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "es-bulk-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushIfLingered, lingerMs, Math.max(1, lingerMs / 2), TimeUnit.MILLISECONDS);
+        log.info("ES批量写入器启动 - 初始批大小: {}, 范围: [{}, {}], 最大字节: {}, 最长等待: {}ms, 并发: {}",
+                batchActions, minActions, maxActions, maxBytes, lingerMs, concurrency);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+        try {
+            // 等待在途 bulk 完成
+            if (inFlightPermits.tryAcquire(concurrency, 30, TimeUnit.SECONDS)) {
+                inFlightPermits.release(concurrency);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 提交一条写请求
+     *
+     * @param request Index / Update 请求
+     * @return 写入成功（含重试后成功）时完成；重试耗尽或不可重试时异常完成
+     */
+    public CompletableFuture<Void> submit(DocWriteRequest<?> request) {
+        PendingItem item = new PendingItem(request);
+        submittedItems.incrementAndGet();
+        if (item.docKey != null) {
+            synchronized (lock) {
+                ArrayDeque<PendingItem> waiting = docQueues.get(item.docKey);
+                if (waiting != null) {
+                    // 同一文档已有条目在处理中，排队等待前一个完成
+                    waiting.add(item);
+                    waitingItems++;
+                    return item.future;
+                }
+                docQueues.put(item.docKey, new ArrayDeque<>());
+            }
+        }
+        enqueue(item);
+        return item.future;
+    }
+
+    /**
+     * 立即发送缓冲区中的请求
+     */
+    public void flush() {
+        List<PendingItem> batch;
+        synchronized (lock) {
+            batch = drainLocked();
+        }
+        send(batch);
+    }
+
+    private void enqueue(PendingItem item) {
+        List<PendingItem> batch = null;
+        synchronized (lock) {
+            if (buffer.isEmpty()) {
+                bufferOldestNanos = System.nanoTime();
+            }
+            buffer.add(item);
+            bufferBytes += item.estimatedBytes;
+            if (buffer.size() >= batchActions || bufferBytes >= maxBytes) {
+                batch = drainLocked();
+            }
+        }
+        // 在锁外发送，并发上限时在这里阻塞
+        send(batch);
+    }
+
+    private void flushIfLingered() {
+        try {
+            List<PendingItem> batch = null;
+            synchronized (lock) {
+                if (!buffer.isEmpty() && System.nanoTime() - bufferOldestNanos >= TimeUnit.MILLISECONDS.toNanos(lingerMs)) {
+                    batch = drainLocked();
+                }
+            }
+            send(batch);
+        } catch (Exception e) {
+            log.error("ES批量写入定时刷新异常", e);
+        }
+    }
+
+    private List<PendingItem> drainLocked() {
+        if (buffer.isEmpty()) {
+            return null;
+        }
+        List<PendingItem> batch = buffer;
+        buffer = new ArrayList<>(batchActions);
+        bufferBytes = 0;
+        return batch;
+    }
+
+    private void send(List<PendingItem> batch) {
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+        try {
+            inFlightPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.forEach(item -> item.future.completeExceptionally(e));
+            return;
+        }
+
+        BulkRequest bulkRequest = new BulkRequest();
+        for (PendingItem item : batch) {
+            bulkRequest.add(item.request);
+        }
+        long start = System.nanoTime();
+        inFlightBulks.incrementAndGet();
+        bulkRequests.incrementAndGet();
+        try {
+            restHighLevelClient.bulkAsync(bulkRequest, RequestOptions.DEFAULT, new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse response) {
+                    release();
+                    onBulkResponse(batch, response, start);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    release();
+                    onBulkFailure(batch, e);
+                }
+            });
+        } catch (Exception e) {
+            release();
+            onBulkFailure(batch, e);
+        }
+    }
+
+    private void release() {
+        inFlightBulks.decrementAndGet();
+        inFlightPermits.release();
+    }
+
+    private void onBulkResponse(List<PendingItem> batch, BulkResponse response, long startNanos) {
+        long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        bulkTookMsTotal.addAndGet(tookMs);
+
+        boolean throttled = false;
+        List<PendingItem> retry = null;
+        for (BulkItemResponse itemResponse : response.getItems()) {
+            PendingItem item = batch.get(itemResponse.getItemId());
+            if (!itemResponse.isFailed()) {
+                complete(item);
+                continue;
+            }
+            RestStatus status = itemResponse.getFailure().getStatus();
+            throttled |= status == RestStatus.TOO_MANY_REQUESTS;
+            if (isRetryable(status) && item.attempts < maxRetries) {
+                if (retry == null) {
+                    retry = new ArrayList<>();
+                }
+                retry.add(item);
+            } else {
+                fail(item, itemResponse.getFailure().getCause());
+            }
+        }
+
+        adjustBatchSize(throttled, tookMs);
+        if (retry != null) {
+            log.warn("ES批量写入部分失败 - 总数: {}, 重试: {}, 是否限流: {}", batch.size(), retry.size(), throttled);
+            scheduleRetry(retry);
+        }
+    }
+
+    private void onBulkFailure(List<PendingItem> batch, Exception e) {
+        RestStatus status = e instanceof ElasticsearchException ? ((ElasticsearchException) e).status() : null;
+        // 连接异常/超时等 IO 问题同样按可重试处理
+        boolean retryable = status == null ? e instanceof IOException : isRetryable(status);
+        if (status == RestStatus.TOO_MANY_REQUESTS) {
+            adjustBatchSize(true, 0);
+        }
+        log.error("ES批量写入请求失败 - 数量: {}, 状态: {}, 可重试: {}", batch.size(), status, retryable, e);
+
+        List<PendingItem> retry = new ArrayList<>();
+        for (PendingItem item : batch) {
+            if (retryable && item.attempts < maxRetries) {
+                retry.add(item);
+            } else {
+                fail(item, e);
+            }
+        }
+        scheduleRetry(retry);
+    }
+
+    private void scheduleRetry(List<PendingItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        retriedItems.addAndGet(items.size());
+        // 指数退避，按本批最大的重试次数计算
+        int attempts = items.stream().mapToInt(item -> ++item.attempts).max().orElse(1);
+        long delay = retryBackoffMs << Math.min(attempts - 1, 6);
+        scheduler.schedule(() -> items.forEach(this::enqueue), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * AIMD：429 减半，超过目标耗时缩小 1/4，耗时正常放大 10%
+     */
+    private void adjustBatchSize(boolean throttled, long tookMs) {
+        int current = batchActions;
+        int next;
+        if (throttled) {
+            rejectedBulks.incrementAndGet();
+            next = current / 2;
+        } else if (tookMs > targetLatencyMs) {
+            next = current - current / 4;
+        } else {
+            next = current + Math.max(1, current / 10);
+        }
+        next = Math.max(minActions, Math.min(maxActions, next));
+        if (next != current) {
+            batchActions = next;
+            log.debug("ES批大小调整: {} -> {}, 限流: {}, 耗时: {}ms", current, next, throttled, tookMs);
+        }
+    }
+
+    private static boolean isRetryable(RestStatus status) {
+        return status == RestStatus.TOO_MANY_REQUESTS || status.getStatus() >= 500;
+    }
+
+    private void complete(PendingItem item) {
+        indexedItems.incrementAndGet();
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - item.submitNanos);
+        ackLatencyMsTotal.addAndGet(latencyMs);
+        ackLatencyMsMax.accumulateAndGet(latencyMs, Math::max);
+        item.future.complete(null);
+        releaseDoc(item);
+    }
+
+    private void fail(PendingItem item, Throwable cause) {
+        failedItems.incrementAndGet();
+        item.future.completeExceptionally(cause);
+        releaseDoc(item);
+    }
+
+    /**
+     * 条目结束（成功或最终失败）后放行同一文档的下一个条目
+     * 在调度线程上入队，避免在 ES 客户端回调线程上因并发上限阻塞
+     */
+    private void releaseDoc(PendingItem item) {
+        if (item.docKey == null) {
+            return;
+        }
+        PendingItem next;
+        synchronized (lock) {
+            ArrayDeque<PendingItem> waiting = docQueues.get(item.docKey);
+            next = waiting == null ? null : waiting.poll();
+            if (next == null) {
+                docQueues.remove(item.docKey);
+            } else {
+                waitingItems--;
+            }
+        }
+        if (next != null) {
+            PendingItem successor = next;
+            scheduler.execute(() -> enqueue(successor));
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long bulks = bulkRequests.get();
+        long indexed = indexedItems.get();
+        int buffered;
+        int waiting;
+        synchronized (lock) {
+            buffered = buffer.size();
+            waiting = waitingItems;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batchActions", batchActions);
+        stats.put("bufferedItems", buffered);
+        stats.put("waitingItems", waiting);
+        stats.put("inFlightBulks", inFlightBulks.get());
+        stats.put("submittedItems", submittedItems.get());
+        stats.put("indexedItems", indexed);
+        stats.put("failedItems", failedItems.get());
+        stats.put("retriedItems", retriedItems.get());
+        stats.put("bulkRequests", bulks);
+        stats.put("throttledBulks", rejectedBulks.get());
+        stats.put("avgBulkTookMs", bulks == 0 ? 0 : bulkTookMsTotal.get() / bulks);
+        stats.put("avgAckLatencyMs", indexed == 0 ? 0 : ackLatencyMsTotal.get() / indexed);
+        stats.put("maxAckLatencyMs", ackLatencyMsMax.get());
+        return stats;
+    }
+
+    /**
+     * 待写入条目
+     */
+    private static final class PendingItem {
+        final DocWriteRequest<?> request;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final long submitNanos = System.nanoTime();
+        final long estimatedBytes;
+        /**
+         * index/id，自动生成 id 的请求为 null（无需保序）
+         */
+        final String docKey;
+        int attempts;
+
+        PendingItem(DocWriteRequest<?> request) {
+            this.request = request;
+            this.estimatedBytes = request.ramBytesUsed();
+            this.docKey = request.id() == null ? null : request.index() + "/" + request.id();
+        }
+    }
+}
@@ -11,8 +11,7 @@ import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import com.xzll.common.utils.RedissonUtils;
-import org.redisson.api.RedissonClient;
+import com.xzll.common.utils.AsyncRedissonUtils;
 import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.authorization.ReactiveAuthorizationManager;
 import org.springframework.security.core.Authentication;
@@ -23,6 +22,7 @@ import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -35,16 +35,15 @@ import java.util.stream.Collectors;
  * 1. 验证JWT的有效性和权限
  * 2. 检查Redis中token是否存在（防止已登出的token继续使用）
  * 3. 验证用户是否有访问当前路径的权限
+ * <p>
+ * 所有Redis访问通过 AsyncRedissonUtils 完成，不阻塞网关的 Netty 线程
  */
 @Slf4j
 @Component
 public class AuthorizationManager implements ReactiveAuthorizationManager<AuthorizationContext> {
 
     @Autowired
-    private RedissonUtils redissonUtils;
-    
-    @Autowired
-    private RedissonClient redissonClient;
+    private AsyncRedissonUtils asyncRedissonUtils;
 
     @Autowired
     private AuthConfig authConfig;
@@ -65,70 +64,69 @@ public class AuthorizationManager implements ReactiveAuthorizationManager<Author
             log.info("绕过接口权限验证，但保留Token认证 - 路径: {}", requestPath);
         }
         
-        // 从Redis中获取当前路径可访问角色列表（支持通配符匹配）
-        List<String> authorities = findMatchedAuthorities(requestPath);
-
-        // 如果没有配置权限且未绕过权限检查，记录警告并拒绝访问
-        if (authorities == null || authorities.isEmpty()) {
-            if (!bypassPermissionCheck) {
-                log.warn("接口未配置权限规则，拒绝访问 - 路径: {}", requestPath);
-                return Mono.just(new AuthorizationDecision(false));
-            } else {
-                log.info("接口未配置权限规则，但已绕过权限检查 - 路径: {}", requestPath);
+        // 从Redis中获取当前路径可访问角色列表（支持通配符匹配），全程非阻塞
+        return findMatchedAuthorities(requestPath).flatMap(authorities -> {
+            // 如果没有配置权限且未绕过权限检查，记录警告并拒绝访问
+            if (authorities.isEmpty()) {
+                if (!bypassPermissionCheck) {
+                    log.warn("接口未配置权限规则，拒绝访问 - 路径: {}", requestPath);
+                    return Mono.just(new AuthorizationDecision(false));
+                } else {
+                    log.info("接口未配置权限规则，但已绕过权限检查 - 路径: {}", requestPath);
+                }
             }
-        }
-        
-        // 添加权限前缀
-        final List<String> finalAuthorities = authorities != null ? authorities.stream()
-                .map(i -> i = AuthConstant.AUTHORITY_PREFIX + i)
-                .collect(Collectors.toList()) : null;
-        
-        if (finalAuthorities != null) {
-            log.info("接口所需权限: {} - 路径: {}", finalAuthorities, requestPath);
-        }
-        
-        // 认证通过且角色匹配的用户可访问当前路径
-        return mono
-                .filter(Authentication::isAuthenticated)
-                .filter(authentication -> {
-                    // 检查Redis中token是否存在
-                    boolean tokenValid = checkTokenInRedis(authentication, authorizationContext);
-                    if (!tokenValid) {
-                        log.warn("Token验证失败 - 路径: {}, 用户: {}", requestPath, 
-                                authentication.getName());
-                    }
-                    return tokenValid;
-                })
-                .flatMap(authentication -> {
-                    // 如果绕过权限检查，直接通过（但Token认证已完成）
-                    if (bypassPermissionCheck) {
-                        log.debug("Token认证通过，绕过接口权限检查 - 用户: {}, 路径: {}", 
+            
+            // 添加权限前缀
+            final List<String> finalAuthorities = authorities.stream()
+                    .map(i -> i = AuthConstant.AUTHORITY_PREFIX + i)
+                    .collect(Collectors.toList());
+            
+            if (!finalAuthorities.isEmpty()) {
+                log.info("接口所需权限: {} - 路径: {}", finalAuthorities, requestPath);
+            }
+            
+            // 认证通过且角色匹配的用户可访问当前路径
+            return mono
+                    .filter(Authentication::isAuthenticated)
+                    .filterWhen(authentication -> checkTokenInRedis(authentication)
+                            .doOnNext(tokenValid -> {
+                                // 检查Redis中token是否存在
+                                if (!tokenValid) {
+                                    log.warn("Token验证失败 - 路径: {}, 用户: {}", requestPath, 
+                                            authentication.getName());
+                                }
+                            }))
+                    .map(authentication -> {
+                        // 如果绕过权限检查，直接通过（但Token认证已完成）
+                        if (bypassPermissionCheck) {
+                            log.debug("Token认证通过，绕过接口权限检查 - 用户: {}, 路径: {}", 
+                                    authentication.getName(), requestPath);
+                            return new AuthorizationDecision(true);
+                        }
+                        
+                        // 获取用户权限列表
+                        List<String> userAuthorities = authentication.getAuthorities().stream()
+                                .map(GrantedAuthority::getAuthority)
+                                .collect(Collectors.toList());
+                        
+                        log.debug("用户权限: {} - 用户: {}, 路径: {}", userAuthorities, 
                                 authentication.getName(), requestPath);
-                        return Mono.just(new AuthorizationDecision(true));
-                    }
-                    
-                    // 获取用户权限列表
-                    List<String> userAuthorities = authentication.getAuthorities().stream()
-                            .map(GrantedAuthority::getAuthority)
-                            .collect(Collectors.toList());
-                    
-                    log.debug("用户权限: {} - 用户: {}, 路径: {}", userAuthorities, 
-                            authentication.getName(), requestPath);
-                    
-                    // 检查是否有匹配的权限
-                    boolean hasPermission = userAuthorities.stream()
-                            .anyMatch(finalAuthorities::contains);
-                    
-                    if (!hasPermission) {
-                        log.warn("权限不足 - 用户: {}, 用户权限: {}, 所需权限: {}, 路径: {}", 
-                                authentication.getName(), userAuthorities, finalAuthorities, requestPath);
-                    } else {
-                        log.debug("权限校验通过 - 用户: {}, 路径: {}", authentication.getName(), requestPath);
-                    }
-                    
-                    return Mono.just(new AuthorizationDecision(hasPermission));
-                })
-                .defaultIfEmpty(new AuthorizationDecision(false));
+                        
+                        // 检查是否有匹配的权限
+                        boolean hasPermission = userAuthorities.stream()
+                                .anyMatch(finalAuthorities::contains);
+                        
+                        if (!hasPermission) {
+                            log.warn("权限不足 - 用户: {}, 用户权限: {}, 所需权限: {}, 路径: {}", 
+                                    authentication.getName(), userAuthorities, finalAuthorities, requestPath);
+                        } else {
+                            log.debug("权限校验通过 - 用户: {}, 路径: {}", authentication.getName(), requestPath);
+                        }
+                        
+                        return new AuthorizationDecision(hasPermission);
+                    })
+                    .defaultIfEmpty(new AuthorizationDecision(false));
+        });
     }
 
     /**
@@ -141,88 +139,76 @@ public class AuthorizationManager implements ReactiveAuthorizationManager<Author
      * 4. 如果不存在，说明token已被登出
      *
      * @param authentication 认证对象
-     * @param authorizationContext 授权上下文
      * @return true表示token存在，false表示token不存在
      */
-    private boolean checkTokenInRedis(Authentication authentication, AuthorizationContext authorizationContext) {
-        try {
-            // 获取JWT对象
-            if (!(authentication.getPrincipal() instanceof Jwt)) {
-                log.warn("认证主体不是JWT类型");
-                return false;
-            }
-            
-            Jwt jwt = (Jwt) authentication.getPrincipal();
-            String token = jwt.getTokenValue();
-            
-            // 从JWT中获取用户ID
-            Long idClaim = jwt.getClaim("id");
-            if (idClaim == null) {
-                log.warn("JWT中未找到用户ID");
-                return false;
-            }
-            String userId = String.valueOf(idClaim);
-            
-            // 从JWT中获取设备类型
-            Object deviceTypeClaim = jwt.getClaim("device_type");
-            Integer deviceTypeCode = null;
-            if (deviceTypeClaim != null) {
-                // 安全地处理不同类型的设备类型
-                if (deviceTypeClaim instanceof Integer) {
-                    deviceTypeCode = (Integer) deviceTypeClaim;
-                } else if (deviceTypeClaim instanceof Long) {
-                    deviceTypeCode = ((Long) deviceTypeClaim).intValue();
-                } else if (deviceTypeClaim instanceof String) {
-                    try {
-                        deviceTypeCode = Integer.valueOf((String) deviceTypeClaim);
-                    } catch (NumberFormatException e) {
-                        log.warn("设备类型格式错误: {}", deviceTypeClaim);
-                    }
+    private Mono<Boolean> checkTokenInRedis(Authentication authentication) {
+        // 获取JWT对象
+        if (!(authentication.getPrincipal() instanceof Jwt)) {
+            log.warn("认证主体不是JWT类型");
+            return Mono.just(false);
+        }
+        
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        String token = jwt.getTokenValue();
+        
+        // 从JWT中获取用户ID
+        Long idClaim = jwt.getClaim("id");
+        if (idClaim == null) {
+            log.warn("JWT中未找到用户ID");
+            return Mono.just(false);
+        }
+        String userId = String.valueOf(idClaim);
+        
+        // 从JWT中获取设备类型
+        Object deviceTypeClaim = jwt.getClaim("device_type");
+        Integer deviceTypeCode = null;
+        if (deviceTypeClaim != null) {
+            // 安全地处理不同类型的设备类型
+            if (deviceTypeClaim instanceof Integer) {
+                deviceTypeCode = (Integer) deviceTypeClaim;
+            } else if (deviceTypeClaim instanceof Long) {
+                deviceTypeCode = ((Long) deviceTypeClaim).intValue();
+            } else if (deviceTypeClaim instanceof String) {
+                try {
+                    deviceTypeCode = Integer.valueOf((String) deviceTypeClaim);
+                } catch (NumberFormatException e) {
+                    log.warn("设备类型格式错误: {}", deviceTypeClaim);
                 }
             }
-            if (deviceTypeCode == null) {
-                log.warn("JWT中未找到有效的设备类型，使用兼容模式查找所有设备类型");
-                // 兼容模式：查找所有设备类型
-                return checkTokenInRedisCompatibleMode(jwt, userId);
-            }
+        }
+        if (deviceTypeCode == null) {
+            log.warn("JWT中未找到有效的设备类型，使用兼容模式查找所有设备类型");
+            // 兼容模式：查找所有设备类型
+            return checkTokenInRedisCompatibleMode(jwt, userId);
+        }
 
-            
-            ImTerminalType deviceType = ImTerminalType.fromCode(deviceTypeCode);
-            if (deviceType == null || (deviceType != ImTerminalType.ANDROID && deviceType != ImTerminalType.IOS && 
-                    deviceType != ImTerminalType.MINI_PROGRAM && deviceType != ImTerminalType.WEB)) {
-                log.warn("无效的设备类型: {}, 使用兼容模式查找所有设备类型", deviceTypeCode);
-                return checkTokenInRedisCompatibleMode(jwt, userId);
-            }
-            
-            // 计算token的MD5哈希值
-            String tokenMd5 = DigestUtil.md5Hex(token);
-            
-            // 构建Redis key模式：USER_TOKEN_KEY + userId + deviceType + tokenMd5
-            String keyPattern = ImConstant.RedisKeyConstant.USER_TOKEN_KEY + userId + ":" + deviceType.getCode() + ":" + tokenMd5;
-            
-            // 使用RedissonClient查找匹配的keys
-            Iterable<String> keys = redissonClient.getKeys().getKeysByPattern(keyPattern);
-            
-            // 检查是否存在匹配的token记录
-            boolean tokenExists = false;
-            for (String key : keys) {
-                String storedUserId = redissonUtils.getString(key);
-                if (storedUserId != null && storedUserId.equals(userId)) {
-                    tokenExists = true;
-                    break;
-                }
-            }
-            
-            if (!tokenExists) {
-                log.warn("Token在Redis中不存在，可能已被登出，用户ID: {}, tokenMd5: {}", userId, tokenMd5);
-            }
-            
-            return tokenExists;
-            
-        } catch (Exception e) {
-            log.error("检查Redis中token存在性时发生异常", e);
-            return false;
+        
+        ImTerminalType deviceType = ImTerminalType.fromCode(deviceTypeCode);
+        if (deviceType == null || (deviceType != ImTerminalType.ANDROID && deviceType != ImTerminalType.IOS && 
+                deviceType != ImTerminalType.MINI_PROGRAM && deviceType != ImTerminalType.WEB)) {
+            log.warn("无效的设备类型: {}, 使用兼容模式查找所有设备类型", deviceTypeCode);
+            return checkTokenInRedisCompatibleMode(jwt, userId);
         }
+        
+        // 计算token的MD5哈希值
+        String tokenMd5 = DigestUtil.md5Hex(token);
+        
+        // 构建Redis key：USER_TOKEN_KEY + userId + deviceType + tokenMd5
+        // key 中不含通配符，直接 GET，不再 SCAN 整个 keyspace
+        String tokenKey = ImConstant.RedisKeyConstant.USER_TOKEN_KEY + userId + ":" + deviceType.getCode() + ":" + tokenMd5;
+        
+        return asyncRedissonUtils.getStringMono(tokenKey)
+                .map(userId::equals)
+                .defaultIfEmpty(false)
+                .doOnNext(tokenExists -> {
+                    if (!tokenExists) {
+                        log.warn("Token在Redis中不存在，可能已被登出，用户ID: {}, tokenMd5: {}", userId, tokenMd5);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.error("检查Redis中token存在性时发生异常", e);
+                    return Mono.just(false);
+                });
     }
 
     /**
@@ -234,43 +220,32 @@ public class AuthorizationManager implements ReactiveAuthorizationManager<Author
      * @param userId 用户ID
      * @return true表示token存在，false表示token不存在
      */
-    private boolean checkTokenInRedisCompatibleMode(Jwt jwt, String userId) {
-        try {
-            String token = jwt.getTokenValue();
-            String tokenMd5 = DigestUtil.md5Hex(token);
-            
-            // 确保userId不为空
-            if (userId == null || userId.isEmpty()) {
-                log.warn("兼容模式：用户ID为空");
-                return false;
-            }
-            
-            // 查找该用户所有设备类型的token
-            String keyPattern = ImConstant.RedisKeyConstant.USER_TOKEN_KEY + userId + ":*:" + tokenMd5;
-            
-            // 使用RedissonClient查找匹配的keys
-            Iterable<String> keys = redissonClient.getKeys().getKeysByPattern(keyPattern);
-            
-            // 检查是否存在匹配的token记录
-            boolean tokenExists = false;
-            for (String key : keys) {
-                String storedUserId = redissonUtils.getString(key);
-                if (storedUserId != null && storedUserId.equals(userId)) {
-                    tokenExists = true;
-                    break;
-                }
-            }
-            
-            if (!tokenExists) {
-                log.warn("兼容模式：Token在Redis中不存在，可能已被登出，用户ID: {}, tokenMd5: {}", userId, tokenMd5);
-            }
-            
-            return tokenExists;
-
-        } catch (Exception e) {
-            log.error("兼容模式检查Redis中token存在性时发生异常", e);
-            return false;
+    private Mono<Boolean> checkTokenInRedisCompatibleMode(Jwt jwt, String userId) {
+        // 确保userId不为空
+        if (userId == null || userId.isEmpty()) {
+            log.warn("兼容模式：用户ID为空");
+            return Mono.just(false);
         }
+        
+        String token = jwt.getTokenValue();
+        String tokenMd5 = DigestUtil.md5Hex(token);
+        
+        // 查找该用户所有设备类型的token
+        String keyPattern = ImConstant.RedisKeyConstant.USER_TOKEN_KEY + userId + ":*:" + tokenMd5;
+        
+        // 非阻塞扫描匹配的keys，找到一条有效记录即停止
+        return asyncRedissonUtils.scanKeys(keyPattern)
+                .concatMap(asyncRedissonUtils::getStringMono)
+                .any(userId::equals)
+                .doOnNext(tokenExists -> {
+                    if (!tokenExists) {
+                        log.warn("兼容模式：Token在Redis中不存在，可能已被登出，用户ID: {}, tokenMd5: {}", userId, tokenMd5);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.error("兼容模式检查Redis中token存在性时发生异常", e);
+                    return Mono.just(false);
+                });
     }
 
     /**
@@ -289,43 +264,31 @@ public class AuthorizationManager implements ReactiveAuthorizationManager<Author
      * @param requestPath 请求路径
      * @return 权限列表，如果找不到返回 null
      */
-    private List<String> findMatchedAuthorities(String requestPath) {
-        try {
-            // 1. 先尝试精确匹配
-            Object obj = redissonUtils.getHash(RedisConstant.RESOURCE_ROLES_MAP, requestPath);
-            List<String> authorities = Convert.toList(String.class, obj);
-
-            if (authorities != null && !authorities.isEmpty()) {
-                log.debug("精确匹配权限规则 - 路径: {}, 权限: {}", requestPath, authorities);
-                return authorities;
-            }
-
-            // 2. 精确匹配失败，尝试通配符匹配
-            // 获取 Redis Hash 中所有的 key
-            java.util.Set<Object> allKeys = redissonClient.getMap(RedisConstant.RESOURCE_ROLES_MAP).readAllKeySet();
-
-            // 遍历所有 key，找到匹配的通配符模式
-            for (Object keyObj : allKeys) {
-                String pattern = String.valueOf(keyObj);
-                if (matchesPattern(requestPath, pattern)) {
-                    Object matchedObj = redissonUtils.getHash(RedisConstant.RESOURCE_ROLES_MAP, pattern);
-                    List<String> matchedAuthorities = Convert.toList(String.class, matchedObj);
-
-                    if (matchedAuthorities != null && !matchedAuthorities.isEmpty()) {
-                        log.info("通配符匹配权限规则 - 请求路径: {}, 匹配模式: {}, 权限: {}",
-                                requestPath, pattern, matchedAuthorities);
-                        return matchedAuthorities;
-                    }
-                }
-            }
-
-            log.debug("未找到匹配的权限规则 - 路径: {}", requestPath);
-            return null;
-
-        } catch (Exception e) {
-            log.error("查找匹配权限规则时发生异常 - 路径: {}", requestPath, e);
-            return null;
-        }
+    private Mono<List<String>> findMatchedAuthorities(String requestPath) {
+        // 1. 先尝试精确匹配
+        return asyncRedissonUtils.getHashMono(RedisConstant.RESOURCE_ROLES_MAP, requestPath)
+                .mapNotNull(obj -> Convert.toList(String.class, obj))
+                .filter(authorities -> authorities != null && !authorities.isEmpty())
+                .doOnNext(authorities -> log.debug("精确匹配权限规则 - 路径: {}, 权限: {}", requestPath, authorities))
+                // 2. 精确匹配失败，尝试通配符匹配：遍历 Redis Hash 中所有的 key，找到匹配的通配符模式
+                .switchIfEmpty(Mono.defer(() -> asyncRedissonUtils.getHashKeysMono(RedisConstant.RESOURCE_ROLES_MAP)
+                        .flatMapIterable(allKeys -> allKeys)
+                        .map(String::valueOf)
+                        .filter(pattern -> matchesPattern(requestPath, pattern))
+                        .concatMap(pattern -> asyncRedissonUtils.getHashMono(RedisConstant.RESOURCE_ROLES_MAP, pattern)
+                                .mapNotNull(matchedObj -> Convert.toList(String.class, matchedObj))
+                                .filter(matched -> matched != null && !matched.isEmpty())
+                                .doOnNext(matched -> log.info("通配符匹配权限规则 - 请求路径: {}, 匹配模式: {}, 权限: {}",
+                                        requestPath, pattern, matched)))
+                        .next()))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.debug("未找到匹配的权限规则 - 路径: {}", requestPath);
+                    return Collections.<String>emptyList();
+                }))
+                .onErrorResume(e -> {
+                    log.error("查找匹配权限规则时发生异常 - 路径: {}", requestPath, e);
+                    return Mono.just(Collections.emptyList());
+                });
     }
 
     /**